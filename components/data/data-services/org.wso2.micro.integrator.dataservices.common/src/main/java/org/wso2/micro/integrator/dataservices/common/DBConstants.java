@@ -58,6 +58,11 @@ public final class DBConstants {
     public static final String DEFAULT_XSD_TYPE = DEFAULT_XSD_PREFIX + ":string";
     public static final String EMPTY_QUERY_ID = "__dataservices_empty_query__";
     public static final String EMPTY_END_BOXCAR_QUERY_ID = "__dataservices_empty_end_boxcar_query__";
+    /**
+     * System property to enable writing JSON responses directly from the query results. Otherwise the XML result is
+     * converted by the configured JSON message formatter.
+     */
+    public static final String DSS_JSON_STREAMING_ENABLED = "dss.json.streaming.enabled";
     public static final String RDF_NAMESPACE = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
     public static final String XSD_NAMESPACE = "http://www.w3.org/2001/XMLSchema";
     public static final String DEFAULT_RDF_PREFIX = "rdf";
@@ -390,6 +395,7 @@ public final class DBConstants {
         public static final String FETCH_SIZE = "fetchSize";
         public static final String MAX_FIELD_SIZE = "maxFieldSize";
         public static final String MAX_ROWS = "maxRows";        
+        public static final String NESTED_QUERY_BATCH_SIZE = "nestedQueryBatchSize";
         public static final String DYNAMIC_USER_AUTH_CLASS = "dynamicUserAuthClass";
         public static final String DYNAMIC_USER_AUTH_MAPPING = "dynamicUserAuthMapping";
         public static final String USERNAME_WILDCARD = "*";
@@ -627,6 +633,7 @@ public final class DBConstants {
         }
 
         public static final String DATASOURCE = "excel_datasource";
+        public static final String STREAMING = "excel_streaming";
         public static final String WORKBOOK_NAME = "workbookname";
         public static final String STARTING_ROW = "startingrow";
         public static final String MAX_ROW_COUNT = "maxrowcount";
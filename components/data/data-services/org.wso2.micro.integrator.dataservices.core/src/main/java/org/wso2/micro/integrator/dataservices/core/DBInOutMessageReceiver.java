@@ -18,6 +18,7 @@
 package org.wso2.micro.integrator.dataservices.core;
 
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMSourcedElement;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axiom.soap.SOAPFactory;
 import org.apache.axis2.AxisFault;
@@ -29,6 +30,7 @@ import org.apache.axis2.transport.http.HTTPConstants;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.micro.integrator.dataservices.common.DBConstants;
+import org.wso2.micro.integrator.dataservices.core.engine.DSOMDataSource;
 
 import java.util.Map;
 
@@ -38,6 +40,8 @@ import java.util.Map;
 public class DBInOutMessageReceiver extends RawXMLINOutMessageReceiver {
 	
 	private static final Log log = LogFactory.getLog(DBInOutMessageReceiver.class);
+
+	private static final DataServiceJsonFormatter JSON_FORMATTER = new DataServiceJsonFormatter();
 	
 	/**
 	 * Invokes the business logic invocation on the service implementation class
@@ -88,6 +92,10 @@ public class DBInOutMessageReceiver extends RawXMLINOutMessageReceiver {
 			if (isAcceptJson) {
 				newMsgContext.setProperty(Constants.Configuration.MESSAGE_TYPE,
 						HTTPConstants.MEDIA_TYPE_APPLICATION_JSON);
+				/* if enabled, write the JSON response directly from the query results, when the result is not built yet */
+				if (Boolean.getBoolean(DBConstants.DSS_JSON_STREAMING_ENABLED) && isJSONStreamable(result)) {
+					newMsgContext.setProperty(Constants.Configuration.MESSAGE_FORMATTER, JSON_FORMATTER);
+				}
 			}
 		} catch (Exception e) {
 			log.error("Error in in-out message receiver", e);
@@ -108,5 +116,13 @@ public class DBInOutMessageReceiver extends RawXMLINOutMessageReceiver {
 			}
 		}
 	}
+
+	private static boolean isJSONStreamable(OMElement result) {
+		if (!(result instanceof OMSourcedElement) || ((OMSourcedElement) result).isExpanded()) {
+			return false;
+		}
+		Object dataSource = ((OMSourcedElement) result).getDataSource();
+		return dataSource instanceof DSOMDataSource && ((DSOMDataSource) dataSource).isJSONStreamable();
+	}
     
 }
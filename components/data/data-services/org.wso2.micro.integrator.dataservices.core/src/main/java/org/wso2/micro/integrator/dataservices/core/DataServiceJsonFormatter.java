@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core;
+
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMOutputFormat;
+import org.apache.axiom.om.OMSourcedElement;
+import org.apache.axis2.AxisFault;
+import org.apache.axis2.context.MessageContext;
+import org.apache.axis2.transport.MessageFormatter;
+import org.apache.axis2.transport.http.HTTPConstants;
+import org.wso2.micro.integrator.dataservices.core.engine.DSOMDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Message formatter which writes the JSON response of a data service directly from the query results, without
+ * building the XML response and converting it. Responses which are no longer backed by the data service
+ * data source, e.g. after an XSLT transformation or when the response has been built, are written by the
+ * application/json formatter of the axis2 configuration.
+ */
+public class DataServiceJsonFormatter implements MessageFormatter {
+
+    private static final String DEFAULT_CHARSET = "UTF-8";
+
+    @Override
+    public byte[] getBytes(MessageContext msgContext, OMOutputFormat format) throws AxisFault {
+        DSOMDataSource dataSource = getStreamableDataSource(msgContext);
+        if (dataSource == null) {
+            return getDefaultFormatter(msgContext).getBytes(msgContext, format);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeJSON(dataSource, format, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public void writeTo(MessageContext msgContext, OMOutputFormat format, OutputStream out, boolean preserve)
+            throws AxisFault {
+        DSOMDataSource dataSource = getStreamableDataSource(msgContext);
+        if (dataSource == null) {
+            getDefaultFormatter(msgContext).writeTo(msgContext, format, out, preserve);
+        } else {
+            writeJSON(dataSource, format, out);
+        }
+    }
+
+    @Override
+    public String getContentType(MessageContext msgContext, OMOutputFormat format, String soapAction) {
+        return HTTPConstants.MEDIA_TYPE_APPLICATION_JSON + "; charset=" + getCharset(format);
+    }
+
+    @Override
+    public URL getTargetAddress(MessageContext msgContext, OMOutputFormat format, URL targetURL) {
+        return targetURL;
+    }
+
+    @Override
+    public String formatSOAPAction(MessageContext msgContext, OMOutputFormat format, String soapAction) {
+        return soapAction;
+    }
+
+    /**
+     * Returns the data source of the response if the response has not been built yet and its result can be
+     * written as JSON, or null otherwise.
+     */
+    private static DSOMDataSource getStreamableDataSource(MessageContext msgContext) {
+        if (msgContext.getEnvelope() == null || msgContext.getEnvelope().getBody() == null) {
+            return null;
+        }
+        OMElement result = msgContext.getEnvelope().getBody().getFirstElement();
+        if (!(result instanceof OMSourcedElement) || ((OMSourcedElement) result).isExpanded()) {
+            return null;
+        }
+        Object dataSource = ((OMSourcedElement) result).getDataSource();
+        if (dataSource instanceof DSOMDataSource && ((DSOMDataSource) dataSource).isJSONStreamable()) {
+            return (DSOMDataSource) dataSource;
+        }
+        return null;
+    }
+
+    private static void writeJSON(DSOMDataSource dataSource, OMOutputFormat format, OutputStream out)
+            throws AxisFault {
+        try {
+            Writer writer = new OutputStreamWriter(out, getCharset(format));
+            dataSource.serializeAsJSON(writer);
+            writer.flush();
+        } catch (XMLStreamException | IOException e) {
+            throw new AxisFault("Error in writing the JSON response of the data service", e);
+        }
+    }
+
+    private static String getCharset(OMOutputFormat format) {
+        String charset = format != null ? format.getCharSetEncoding() : null;
+        return charset != null ? charset : DEFAULT_CHARSET;
+    }
+
+    private static MessageFormatter getDefaultFormatter(MessageContext msgContext) throws AxisFault {
+        MessageFormatter formatter = msgContext.getConfigurationContext().getAxisConfiguration()
+                .getMessageFormatter(HTTPConstants.MEDIA_TYPE_APPLICATION_JSON);
+        if (formatter == null) {
+            throw new AxisFault("No message formatter is available for "
+                    + HTTPConstants.MEDIA_TYPE_APPLICATION_JSON);
+        }
+        return formatter;
+    }
+}
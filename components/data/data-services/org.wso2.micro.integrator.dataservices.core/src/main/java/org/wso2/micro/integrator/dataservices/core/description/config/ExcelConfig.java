@@ -29,9 +29,13 @@ import org.wso2.micro.integrator.dataservices.core.DataServiceFault;
 import org.wso2.micro.integrator.dataservices.core.engine.DataService;
 import org.wso2.micro.integrator.dataservices.core.odata.ODataDataHandler;
 import org.wso2.micro.integrator.dataservices.core.odata.ODataServiceFault;
+import org.wso2.micro.integrator.dataservices.sql.driver.util.ExcelStreamReader;
 
+import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.SQLException;
 import java.util.Map;
 
 /**
@@ -44,14 +48,24 @@ public class ExcelConfig extends Config {
 	
 	private String excelDataSourcePath;
 
+	private boolean streaming;
+
 	public ExcelConfig(DataService dataService, String configId, Map<String, String> properties, boolean odataEnable) {
 		super(dataService, configId, DataSourceTypes.EXCEL, properties, odataEnable);
 		this.excelDataSourcePath = this.getProperty(DBConstants.Excel.DATASOURCE).trim();
+		this.streaming = Boolean.parseBoolean(this.getProperty(DBConstants.Excel.STREAMING));
 	}
 
 	public String getExcelDataSourcePath() {
 		return excelDataSourcePath;
 	}
+
+	/**
+	 * @return true if the sheets are to be read row by row rather than by loading the workbook
+	 */
+	public boolean isStreaming() {
+		return streaming;
+	}
 	
 	public Workbook createWorkbook() throws IOException, InvalidFormatException, DataServiceFault {
 		InputStream ins = DBUtils.getInputStreamFromPath(this.getExcelDataSourcePath());
@@ -59,6 +73,34 @@ public class ExcelConfig extends Config {
 		return wb;
 	}
 	
+	/**
+	 * Opens the Excel document to be read row by row, which is supported for XLSX documents only.
+	 *
+	 * @return Stream reader of the document, which must be closed, or null if the document is not an XLSX document
+	 */
+	public ExcelStreamReader createStreamReader() throws IOException, DataServiceFault {
+		String path = this.getExcelDataSourcePath();
+		InputStream ins = new BufferedInputStream(DBUtils.getInputStreamFromPath(path));
+		try {
+			if (!ExcelStreamReader.isXLSX(ins)) {
+				return null;
+			}
+			if (!path.startsWith("http://") && !DBUtils.isRegistryPath(path)) {
+				/* local files are read while the rows are read, rather than loading them */
+				return new ExcelStreamReader(new File(path));
+			}
+			ExcelStreamReader reader = new ExcelStreamReader(ins);
+			ins = null;
+			return reader;
+		} catch (SQLException e) {
+			throw new DataServiceFault(e, "Error in opening the Excel document '" + path + "'");
+		} finally {
+			if (ins != null) {
+				ins.close();
+			}
+		}
+	}
+
 	@Override
 	public boolean isActive() {
 		try {
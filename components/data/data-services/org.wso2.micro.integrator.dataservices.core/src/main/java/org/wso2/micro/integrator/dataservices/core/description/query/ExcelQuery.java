@@ -33,8 +33,13 @@ import org.wso2.micro.integrator.dataservices.core.engine.ParamValue;
 import org.wso2.micro.integrator.dataservices.core.engine.QueryParam;
 import org.wso2.micro.integrator.dataservices.core.engine.Result;
 
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataCell;
+import org.wso2.micro.integrator.dataservices.sql.driver.util.ExcelStreamReader;
+
 import javax.xml.stream.XMLStreamWriter;
 
+import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -92,6 +97,14 @@ public class ExcelQuery extends Query {
         if (!this.isHasHeader()) {
             return null;
         }
+        ExcelStreamReader reader = this.getConfig().isStreaming() ? this.getConfig().createStreamReader() : null;
+        if (reader != null) {
+            try {
+                return this.readHeader(reader);
+            } finally {
+                reader.close();
+            }
+        }
         Workbook wb = this.getConfig().createWorkbook();
         Sheet sheet = wb.getSheet(this.getWorkbookName());
         return this.extractRowData(sheet.getRow(this.getHeaderRow() - 1));
@@ -130,6 +143,65 @@ public class ExcelQuery extends Query {
         return data;
     }
 
+    /**
+     * Reads the header row of the sheet from the given stream reader, reading only the rows up to the header row.
+     */
+    private String[] readHeader(ExcelStreamReader reader) throws Exception {
+        ExcelStreamReader.SheetReader sheet = this.openSheet(reader);
+        try {
+            while (sheet.next() && sheet.getRowIndex() < this.getHeaderRow() - 1) {
+                /* skips the rows before the header row */
+            }
+            return sheet.getCells() != null && sheet.getRowIndex() == this.getHeaderRow() - 1 ?
+                    this.extractRowData(sheet.getCells()) : null;
+        } finally {
+            sheet.close();
+        }
+    }
+
+    private ExcelStreamReader.SheetReader openSheet(ExcelStreamReader reader) throws SQLException,
+            DataServiceFault {
+        ExcelStreamReader.SheetReader sheet = reader.openSheet(this.getWorkbookName());
+        if (sheet == null) {
+            throw new DataServiceFault("Excel sheet named '" + this.getWorkbookName() + "' does not exist");
+        }
+        return sheet;
+    }
+
+    /**
+     * Extracts the row data from the cells read by the stream reader, as from the cells of a workbook row.
+     */
+    private String[] extractRowData(List<DataCell> cells) {
+        if (cells.isEmpty()) {
+            return null;
+        }
+        String[] data = new String[cells.get(cells.size() - 1).getColumnId()];
+        Arrays.fill(data, "");
+        for (DataCell cell : cells) {
+            int i = cell.getColumnId() - 1;
+            switch (cell.getCellType()) {
+                case HSSFCell.CELL_TYPE_STRING:
+                    data[i] = (String) cell.getCellValue();
+                    break;
+                case HSSFCell.CELL_TYPE_BLANK:
+                    data[i] = "";
+                    break;
+                case HSSFCell.CELL_TYPE_BOOLEAN:
+                    data[i] = String.valueOf(cell.getCellValue());
+                    break;
+                case HSSFCell.CELL_TYPE_FORMULA:
+                    data[i] = "{formula}";
+                    break;
+                case HSSFCell.CELL_TYPE_NUMERIC:
+                    data[i] = processNumericValue((Double) cell.getCellValue());
+                    break;
+                default:
+                    data[i] = null;
+            }
+        }
+        return data;
+    }
+
     private String processNumericValue(double val) {
         if (val == (long) val) {
             return String.valueOf((long) val);
@@ -165,6 +237,13 @@ public class ExcelQuery extends Query {
     public Object runPreQuery(InternalParamCollection params, int queryLevel)
             throws DataServiceFault {
         try {
+            if (this.getConfig().isStreaming()) {
+                /* the rows are read from the stream reader while the result is written */
+                ExcelStreamReader reader = this.getConfig().createStreamReader();
+                if (reader != null) {
+                    return reader;
+                }
+            }
             Workbook wb = this.getConfig().createWorkbook();
             return wb.getSheet(this.getWorkbookName());
         } catch (Exception e) {
@@ -175,6 +254,10 @@ public class ExcelQuery extends Query {
     @Override
     public void runPostQuery(Object result, XMLStreamWriter xmlWriter,
                              InternalParamCollection params, int queryLevel) throws DataServiceFault {
+        if (result instanceof ExcelStreamReader) {
+            this.writeStreamedRows((ExcelStreamReader) result, xmlWriter, params, queryLevel);
+            return;
+        }
         Sheet sheet = (Sheet) result;
         int maxCount = this.getMaxRowCount();
         int i = this.getStartingRow() - 1;
@@ -198,4 +281,50 @@ public class ExcelQuery extends Query {
 
         }
     }
+
+    /**
+     * Writes the rows read from the given stream reader as in {@link #runPostQuery}, where a row is read only when
+     * the previous row is written, and the reading stops at the first missing or empty row, or at the maximum
+     * row count.
+     */
+    private void writeStreamedRows(ExcelStreamReader reader, XMLStreamWriter xmlWriter,
+                                   InternalParamCollection params, int queryLevel) throws DataServiceFault {
+        try {
+            ExcelStreamReader.SheetReader sheet = this.openSheet(reader);
+            try {
+                int maxCount = this.getMaxRowCount();
+                int i = this.getStartingRow() - 1;
+                int count = 0;
+                DataEntry dataEntry;
+                String[] record;
+                Map<Integer, String> columnsMap = this.getColumnMappings();
+                boolean useColumnNumbers = this.isUsingColumnNumbers();
+                while (sheet.next()) {
+                    if (sheet.getRowIndex() < i) {
+                        continue;
+                    }
+                    if (sheet.getRowIndex() > i || (record = this.extractRowData(sheet.getCells())) == null) {
+                        break;
+                    }
+                    if (maxCount != -1 && count >= maxCount) {
+                        break;
+                    }
+                    dataEntry = new DataEntry();
+                    for (int j = 0; j < record.length; j++) {
+                        dataEntry.addValue(useColumnNumbers ? Integer.toString(j + 1) :
+                                columnsMap.get(j + 1), new ParamValue(record[j]));
+                    }
+                    this.writeResultEntry(xmlWriter, dataEntry, params, queryLevel);
+                    i++;
+                    count++;
+                }
+            } finally {
+                sheet.close();
+            }
+        } catch (SQLException e) {
+            throw new DataServiceFault(e, "Error in reading the Excel sheet '" + this.getWorkbookName() + "'");
+        } finally {
+            reader.close();
+        }
+    }
 }
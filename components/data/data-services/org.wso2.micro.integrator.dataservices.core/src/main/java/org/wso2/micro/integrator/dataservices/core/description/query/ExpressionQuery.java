@@ -353,7 +353,7 @@ public abstract class ExpressionQuery extends Query {
         return new Object[] { query, resultParamCount };
     }
 
-    private Integer[] extractQueryParamIndices(String query) {
+    protected Integer[] extractQueryParamIndices(String query) {
         List<Integer> result = new ArrayList<>();
         boolean doubleQuoteExists = false;
         boolean singleQuoteExists = false;
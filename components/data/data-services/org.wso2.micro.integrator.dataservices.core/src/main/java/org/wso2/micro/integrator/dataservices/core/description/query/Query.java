@@ -20,6 +20,7 @@ package org.wso2.micro.integrator.dataservices.core.description.query;
 import org.apache.axiom.om.OMDocument;
 import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMFactory;
+import org.wso2.micro.integrator.dataservices.common.DBConstants;
 import org.wso2.micro.integrator.dataservices.common.DBConstants.DBSFields;
 import org.wso2.micro.integrator.dataservices.common.DBConstants.FaultCodes;
 import org.wso2.micro.integrator.dataservices.common.DBConstants.QueryParamTypes;
@@ -30,15 +31,19 @@ import org.wso2.micro.integrator.dataservices.core.TLConnectionStore;
 import org.wso2.micro.integrator.dataservices.core.boxcarring.TLParamStore;
 import org.wso2.micro.integrator.dataservices.core.description.event.EventTrigger;
 import org.wso2.micro.integrator.dataservices.core.dispatch.DispatchStatus;
+import org.wso2.micro.integrator.dataservices.core.engine.CallQuery;
 import org.wso2.micro.integrator.dataservices.core.engine.DataEntry;
 import org.wso2.micro.integrator.dataservices.core.engine.DataService;
 import org.wso2.micro.integrator.dataservices.core.engine.ExternalParam;
 import org.wso2.micro.integrator.dataservices.core.engine.ExternalParamCollection;
 import org.wso2.micro.integrator.dataservices.core.engine.InternalParam;
 import org.wso2.micro.integrator.dataservices.core.engine.InternalParamCollection;
+import org.wso2.micro.integrator.dataservices.core.engine.OutputElement;
+import org.wso2.micro.integrator.dataservices.core.engine.OutputElementGroup;
 import org.wso2.micro.integrator.dataservices.core.engine.ParamValue;
 import org.wso2.micro.integrator.dataservices.core.engine.QueryParam;
 import org.wso2.micro.integrator.dataservices.core.engine.Result;
+import org.wso2.micro.integrator.dataservices.core.engine.StaticOutputElement;
 import org.wso2.micro.integrator.dataservices.core.engine.XMLWriterHelper;
 import org.wso2.micro.integrator.dataservices.core.validation.ValidationContext;
 import org.wso2.micro.integrator.dataservices.core.validation.ValidationException;
@@ -48,8 +53,10 @@ import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Represents a query in a data service.
@@ -82,6 +89,9 @@ public abstract class Query extends XMLWriterHelper {
 	
 	private boolean useColumnNumbers;
 
+	/* lower case names of the result columns used by the result, null if all the columns are required */
+	private Set<String> referencedColumns;
+
 	private static ThreadLocal<Object> queryPreprocessObjects = new ThreadLocal<Object>() {
 	    @Override
 	    public Object initialValue() {
@@ -130,6 +140,73 @@ public abstract class Query extends XMLWriterHelper {
 		if (result != null) {
 			useColumnNumbers = result.isUseColumnNumbers();
 		}
+		this.referencedColumns = this.calculateReferencedColumns();
+	}
+
+	/**
+	 * Calculates the names of the result columns which are referenced by the output elements
+	 * and the nested queries of the result. All the columns are considered to be required when
+	 * the columns are referenced in other ways, i.e. in RDF results.
+	 */
+	private Set<String> calculateReferencedColumns() {
+		if (this.getResult() == null || this.getResult().getDefaultElementGroup() == null ||
+				this.getResult().getResultType() == DBConstants.ResultTypes.RDF) {
+			return null;
+		}
+		Set<String> columns = new HashSet<String>();
+		if (!this.addReferencedColumns(this.getResult().getDefaultElementGroup(), columns)) {
+			return null;
+		}
+		return columns;
+	}
+
+	private boolean addReferencedColumns(OutputElementGroup group, Set<String> columns) {
+		List<OutputElement> elements = new ArrayList<OutputElement>(group.getAttributeEntries());
+		elements.addAll(group.getAllElements());
+		for (OutputElement element : elements) {
+			if (element instanceof OutputElementGroup) {
+				if (!this.addReferencedColumns((OutputElementGroup) element, columns)) {
+					return false;
+				}
+			} else if (element instanceof CallQuery) {
+				for (CallQuery.WithParam withParam : ((CallQuery) element).getWithParams().values()) {
+					this.addReferencedColumn(withParam.getParam(), columns);
+				}
+			} else if (element instanceof StaticOutputElement) {
+				String paramType = element.getParamType();
+				if (DBSFields.COLUMN.equals(paramType) || DBSFields.QUERY_PARAM.equals(paramType)) {
+					this.addReferencedColumn(element.getParam(), columns);
+				} else if (!DBSFields.VALUE.equals(paramType) && !DBSFields.RDF_REF_URI.equals(paramType)) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+			if (element.getArrayName() != null) {
+				this.addReferencedColumn(element.getArrayName(), columns);
+			}
+		}
+		return true;
+	}
+
+	private void addReferencedColumn(String param, Set<String> columns) {
+		if (param == null) {
+			return;
+		}
+		columns.add(param.toLowerCase());
+		/* user defined types and arrays are retrieved by the name of the column, e.g. address[0].city */
+		String udtObjName = DBUtils.extractUDTObjectName(param);
+		if (udtObjName != null) {
+			columns.add(udtObjName.toLowerCase());
+		}
+	}
+
+	/**
+	 * Returns the lower case names of the result columns used to generate the result of this
+	 * query, or null if all the columns are required.
+	 */
+	public Set<String> getReferencedColumns() {
+		return referencedColumns;
 	}
 	
 	private boolean checkPreBuildResult() {
@@ -320,7 +397,7 @@ public abstract class Query extends XMLWriterHelper {
         }
 	}
 
-    private void processContentFiltering() throws DataServiceFault {
+    protected void processContentFiltering() throws DataServiceFault {
         if (this.hasResult()) {
 			/* set required roles in result */
             if (DataService.getCurrentUser() != null) {
@@ -451,7 +528,7 @@ public abstract class Query extends XMLWriterHelper {
 		}
 	}
 
-	private ExternalParamCollection createExternalParamCollection(DataEntry dataEntry,
+	protected ExternalParamCollection createExternalParamCollection(DataEntry dataEntry,
                                                                   InternalParamCollection queryParams) {
 		ExternalParamCollection pc = new ExternalParamCollection();
 		/* 'toLowerCase' - workaround for different character case issues in column names */
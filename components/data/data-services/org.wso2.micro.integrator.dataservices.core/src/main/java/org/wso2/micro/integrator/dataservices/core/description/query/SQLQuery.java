@@ -36,14 +36,18 @@ import org.wso2.micro.integrator.dataservices.core.description.event.EventTrigge
 import org.wso2.micro.integrator.dataservices.core.dispatch.BatchDataServiceRequest;
 import org.wso2.micro.integrator.dataservices.core.dispatch.BatchRequestParticipant;
 import org.wso2.micro.integrator.dataservices.core.dispatch.DispatchStatus;
+import org.wso2.micro.integrator.dataservices.core.engine.CallQuery;
 import org.wso2.micro.integrator.dataservices.core.engine.DataEntry;
 import org.wso2.micro.integrator.dataservices.core.engine.DataService;
 import org.wso2.micro.integrator.dataservices.core.engine.InternalParam;
 import org.wso2.micro.integrator.dataservices.core.engine.InternalParamCollection;
+import org.wso2.micro.integrator.dataservices.core.engine.OutputElement;
+import org.wso2.micro.integrator.dataservices.core.engine.OutputElementGroup;
 import org.wso2.micro.integrator.dataservices.core.engine.ParamValue;
 import org.wso2.micro.integrator.dataservices.core.engine.QueryParam;
 import org.wso2.micro.integrator.dataservices.core.engine.Result;
 import org.wso2.micro.integrator.dataservices.core.engine.ResultSetWrapper;
+import org.wso2.micro.integrator.dataservices.core.engine.TypedParamValue;
 import org.wso2.micro.integrator.dataservices.core.sqlparser.LexicalConstants;
 
 import javax.xml.stream.XMLStreamWriter;
@@ -76,10 +80,20 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This class represents an SQL query in a data service.
@@ -148,6 +162,70 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
 
     private boolean timeConvertEnabled = true;
 
+    private boolean hasOptionalParams;
+
+    /**
+     * The maximum number of values of the nested batch parameter this query is executed with at once, when it is
+     * called as a nested query, 0 if nested query batching is not enabled or not supported by the query.
+     */
+    private int nestedQueryBatchSize;
+
+    private QueryParam nestedBatchParam;
+
+    /* the SQL executing the query for a list of values of the nested batch parameter, around the list of "?"s */
+    private String nestedBatchSQLPrefix;
+
+    private String nestedBatchSQLSuffix;
+
+    /* the number of nested query batches whose rows were matched to the parameter values */
+    private final AtomicLong nestedBatchCount = new AtomicLong();
+
+    /* the call-queries of the result which are executed once for a window of rows, and their query levels */
+    private volatile Map<CallQuery, Integer> batchableCallQueries;
+
+    private static final String NESTED_BATCH_KEY_COLUMN = "DSS_NESTED_BATCH_KEY";
+
+    /*
+     * the types of the nested batch parameter whose values are compared by value in all databases, unlike e.g.
+     * strings, whose comparison may ignore case or trailing spaces, so that the returned keys match the values
+     */
+    private static final Set<String> NESTED_BATCH_KEY_TYPES = new HashSet<String>(Arrays.asList(
+            DBConstants.DataTypes.TINYINT, DBConstants.DataTypes.SMALLINT, DBConstants.DataTypes.INTEGER,
+            DBConstants.DataTypes.BIGINT));
+
+    private static final Pattern NESTED_BATCH_SELECT_PATTERN =
+            Pattern.compile("^\\s*select\\s+(distinct\\s+)?", Pattern.CASE_INSENSITIVE);
+
+    /*
+     * constructs where the rows returned for a list of values differ from the rows returned for each value, i.e.
+     * sub queries, disjunctions, aggregations, row limits and column positions
+     */
+    private static final Pattern NESTED_BATCH_UNSUPPORTED_PATTERN = Pattern.compile(
+            "\\b(select|union|intersect|except|minus|or|not|case|group\\s+by|having|limit|offset|fetch|rownum)\\b"
+                    + "|\\b(count|sum|avg|min|max|over|top)\\s*\\(|\\btop\\s+\\d|order\\s+by\\b.*\\b\\d+\\b|^\\s*\\*",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final Pattern NESTED_BATCH_KEY_PATTERN =
+            Pattern.compile("\\bwhere\\b.*?([\\w.\"`\\[\\]]+)\\s*=\\s*$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * The maximum number of query plans kept per query.
+     */
+    private static final int QUERY_PLAN_CACHE_SIZE = 100;
+
+    /**
+     * Query plans of this query keyed by the shape of the parameters they were created for.
+     */
+    private final Map<String, QueryPlan> queryPlanCache =
+            Collections.synchronizedMap(new LinkedHashMap<String, QueryPlan>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<String, QueryPlan> eldest) {
+                    return super.size() > QUERY_PLAN_CACHE_SIZE;
+                }
+            });
+
     private static QueryType sqlQueryType;
 
     /**
@@ -205,6 +283,15 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
         this.checkRefCursor(this.getQueryParams());
         /* check for existence of any SQL Arrays */
         this.hasOutParams = this.getOutQueryParams().size() > 0;
+        this.hasOptionalParams = false;
+        for (QueryParam queryParam : this.getQueryParams()) {
+            if (queryParam.isOptional()) {
+                this.hasOptionalParams = true;
+                break;
+            }
+        }
+        this.queryPlanCache.clear();
+        this.initNestedQueryBatching();
         /*
          * Create Calendar instance with "UTC" time zone
          * to use when setting timestamp for prepared statements
@@ -532,6 +619,316 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
         if (!DBUtils.isEmptyString(forceJDBCBatchRequests)) {
             this.forceJDBCBatchReqs = Boolean.parseBoolean(forceJDBCBatchRequests);
         }
+        /* nested query batch size */
+        String nestedQueryBatchSizeProp = props.get(RDBMS.NESTED_QUERY_BATCH_SIZE);
+        if (!DBUtils.isEmptyString(nestedQueryBatchSizeProp)) {
+            nestedQueryBatchSizeProp = nestedQueryBatchSizeProp.trim();
+            try {
+                this.nestedQueryBatchSize = Integer.parseInt(nestedQueryBatchSizeProp);
+                if (this.nestedQueryBatchSize <= 0) {
+                    throw new DataServiceFault("Invalid nested query batch size: " + nestedQueryBatchSizeProp
+                            + ", nested query batch size should be a positive integer");
+                }
+            } catch (NumberFormatException e) {
+                throw new DataServiceFault(e, "Invalid nested query batch size: " + nestedQueryBatchSizeProp
+                        + ", nested query batch size should be a positive integer");
+            }
+        } else {
+            this.nestedQueryBatchSize = 0;
+        }
+    }
+
+    /**
+     * Prepares the SQL which executes this query for a list of values of its single parameter, if nested query
+     * batching is enabled. The query must select rows with an equality condition on the parameter, e.g.
+     * "SELECT id, total FROM orders WHERE customer_id = :customer", which is executed as
+     * "SELECT customer_id AS DSS_NESTED_BATCH_KEY, id, total FROM orders WHERE customer_id IN (?,?,..)".
+     * Nested query batching is disabled with a warning for queries where this does not return the same rows, and
+     * for parameters other than integers, whose rows may not be matched to the values by string equality.
+     */
+    private void initNestedQueryBatching() {
+        if (this.nestedQueryBatchSize <= 0) {
+            return;
+        }
+        String reason = null;
+        String query = this.getQuery();
+        Matcher selectMatcher = NESTED_BATCH_SELECT_PATTERN.matcher(query);
+        Integer[] paramIndices = this.extractQueryParamIndices(query);
+        if (this.getQueryType() != SQLQuery.DS_QUERY_TYPE_NORMAL || !selectMatcher.find() || !this.hasResult()
+                || this.isReturnGeneratedKeys() || this.isReturnUpdatedRowCount()) {
+            reason = "only select queries with a result are supported";
+        } else if (this.getQueryParams().size() != 1 || paramIndices.length != 1) {
+            reason = "the query should have a single parameter used once";
+        } else if (this.getInputEventTrigger() != null || this.getOutputEventTrigger() != null
+                || this.isHasMaxRows() || this.isUsingColumnNumbers()) {
+            reason = "event triggers, maximum rows and column numbers are not supported";
+        } else {
+            QueryParam queryParam = this.getQueryParams().get(0);
+            String body = query.substring(selectMatcher.end());
+            Matcher keyMatcher = NESTED_BATCH_KEY_PATTERN.matcher(query.substring(0, paramIndices[0]));
+            if (!QueryTypes.IN.equals(queryParam.getType()) || queryParam.isOptional()
+                    || !DBConstants.QueryParamTypes.SCALAR.equals(queryParam.getParamType())
+                    || DBConstants.DataTypes.QUERY_STRING.equals(queryParam.getSqlType())
+                    || !queryParam.getValidators().isEmpty()) {
+                reason = "the parameter should be a mandatory scalar IN parameter without validators";
+            } else if (!NESTED_BATCH_KEY_TYPES.contains(queryParam.getSqlType())) {
+                reason = "the parameter should be of an integer type, as the database may match other values to "
+                        + "the rows differently, e.g. ignoring case";
+            } else if (NESTED_BATCH_UNSUPPORTED_PATTERN.matcher(body).find()) {
+                reason = "sub queries, disjunctions, aggregations, row limits and column positions are not supported";
+            } else if (!keyMatcher.find()) {
+                reason = "the parameter should be compared to a column in the where clause, e.g. column = :param";
+            } else {
+                String keyColumn = keyMatcher.group(1);
+                this.nestedBatchParam = queryParam;
+                this.nestedBatchSQLPrefix = query.substring(0, selectMatcher.end()) + keyColumn + " AS "
+                        + NESTED_BATCH_KEY_COLUMN + ", " + query.substring(selectMatcher.end(), keyMatcher.start(1))
+                        + keyColumn + " IN (";
+                this.nestedBatchSQLSuffix = ")" + query.substring(paramIndices[0] + 1);
+            }
+        }
+        if (reason != null) {
+            log.warn("Nested query batching is disabled for query '" + this.getQueryId() + "' : " + reason);
+            this.nestedQueryBatchSize = 0;
+        }
+    }
+
+    /**
+     * @return the maximum number of parameter values this query is executed with at once, when it is called as a
+     * nested query, or 0 if nested query batching is not enabled
+     */
+    public int getNestedQueryBatchSize() {
+        return nestedQueryBatchSize;
+    }
+
+    /**
+     * @return the number of nested query batches executed for this query, whose rows were matched to the parameter
+     * values, i.e. which were not executed again for each value
+     */
+    public long getNestedBatchCount() {
+        return nestedBatchCount.get();
+    }
+
+    /**
+     * @return the name of the parameter whose values are batched in nested query batching
+     */
+    public String getNestedBatchParamName() {
+        return nestedBatchParam != null ? nestedBatchParam.getName() : null;
+    }
+
+    /**
+     * Executes the query once for the given values of the nested batch parameter.
+     *
+     * @return the rows of the query for each value, or null if the rows cannot be matched to the values as
+     * returned by the database, in which case the query has to be executed for each value
+     */
+    private Map<String, List<DataEntry>> executeNestedBatch(Collection<String> keys, int queryLevel)
+            throws DataServiceFault {
+        for (String key : keys) {
+            if (!isCanonicalNestedBatchKey(key)) {
+                /* e.g. "01", whose rows are returned with the key "1" */
+                if (log.isDebugEnabled()) {
+                    log.debug("Nested query batch of query '" + this.getQueryId() + "' is not executed for the "
+                            + "parameter value '" + key + "', executing the query for each value");
+                }
+                return null;
+            }
+        }
+        /* round the number of values up to a power of two, to reuse the statements of a few SQL strings */
+        int bindCount = Integer.highestOneBit(keys.size());
+        if (bindCount < keys.size()) {
+            bindCount <<= 1;
+        }
+        bindCount = Math.max(keys.size(), Math.min(bindCount, this.getNestedQueryBatchSize()));
+        StringBuilder sql = new StringBuilder(this.nestedBatchSQLPrefix);
+        for (int i = 0; i < bindCount; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        sql.append(this.nestedBatchSQLSuffix);
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            Connection conn = this.createConnection(queryLevel);
+            if (log.isDebugEnabled()) {
+                log.debug("Starting DB calls: for nested query batch \"" + sql + "\" with params - " + keys
+                        + ", ThreadID - " + Thread.currentThread().getId());
+            }
+            stmt = conn.prepareStatement(sql.toString());
+            if (this.isHasQueryTimeout()) {
+                stmt.setQueryTimeout(this.getQueryTimeout());
+            }
+            try {
+                stmt.setPoolable(true);
+                if (this.isHasFetchSize()) {
+                    stmt.setFetchSize(this.getFetchSize());
+                }
+            } catch (Throwable e) {
+                log.debug("Exception while setting fetch size: " + e.getMessage(), e);
+            }
+            InternalParam param = new InternalParam(this.nestedBatchParam.getName(), null,
+                    this.nestedBatchParam.getSqlType(), this.nestedBatchParam.getType(),
+                    this.nestedBatchParam.getStructType(), 1);
+            Map<String, List<DataEntry>> result = new HashMap<String, List<DataEntry>>(keys.size() * 2);
+            int index = 0;
+            String lastKey = null;
+            for (String key : keys) {
+                this.setParamInPreparedStatement(stmt, param, key, SQLQuery.DS_QUERY_TYPE_NORMAL, index++);
+                result.put(key, new ArrayList<DataEntry>());
+                lastKey = key;
+            }
+            /* repeat the last value for the remaining "?"s */
+            while (index < bindCount) {
+                this.setParamInPreparedStatement(stmt, param, lastKey, SQLQuery.DS_QUERY_TYPE_NORMAL, index++);
+            }
+            rs = stmt.executeQuery();
+            ResultSetPlan resultSetPlan = null;
+            ColumnExtractor keyExtractor = null;
+            List<DataEntry> entries;
+            while (rs.next()) {
+                if (resultSetPlan == null) {
+                    resultSetPlan = this.createResultSetPlan(rs, 2);
+                    keyExtractor = this.getColumnExtractor(rs.getMetaData().getColumnType(1));
+                }
+                entries = result.get(keyExtractor.extract(rs, 1).getScalarValue());
+                if (entries == null) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Rows of nested query batch of query '" + this.getQueryId()
+                                + "' cannot be matched to the parameter values, executing the query for each value");
+                    }
+                    return null;
+                }
+                entries.add(this.getDataEntryFromRS(rs, resultSetPlan));
+            }
+            this.nestedBatchCount.incrementAndGet();
+            return result;
+        } catch (NumberFormatException e) {
+            throw new DataServiceFault(e, FaultCodes.INCOMPATIBLE_PARAMETERS_ERROR,
+                                       "Error in 'SQLQuery.executeNestedBatch': " + e.getMessage());
+        } catch (SQLException e) {
+            throw new DataServiceFault(e, FaultCodes.DATABASE_ERROR,
+                                       "Error in 'SQLQuery.executeNestedBatch': " + e.getMessage());
+        } finally {
+            this.releaseResources(rs, stmt);
+        }
+    }
+
+    /**
+     * @return whether the value is written as the database returns it in the key column, hence the rows can be
+     * matched to it
+     */
+    private static boolean isCanonicalNestedBatchKey(String key) {
+        try {
+            return Long.toString(Long.parseLong(key)).equals(key);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes the rows of this query fetched by a nested query batch, for the given parameters of a call-query.
+     */
+    public void writeNestedBatchResult(XMLStreamWriter xmlWriter, Map<String, ParamValue> params,
+                                       List<DataEntry> dataEntries, int queryLevel) throws DataServiceFault {
+        this.processContentFiltering();
+        InternalParamCollection internalParams = new InternalParamCollection();
+        String name = this.nestedBatchParam.getName();
+        for (int ordinal : this.nestedBatchParam.getOrdinals()) {
+            internalParams.addParam(new InternalParam(name, params.get(name), this.nestedBatchParam.getSqlType(),
+                    this.nestedBatchParam.getType(), this.nestedBatchParam.getStructType(), ordinal));
+        }
+        for (DataEntry dataEntry : dataEntries) {
+            this.writeResultEntry(xmlWriter, dataEntry, internalParams, queryLevel);
+        }
+    }
+
+    /**
+     * Returns the call-queries of the result which are executed once for a window of rows, with the query level
+     * they are executed at for a row written at level 0.
+     */
+    private Map<CallQuery, Integer> getBatchableCallQueries() {
+        Map<CallQuery, Integer> callQueries = this.batchableCallQueries;
+        if (callQueries == null) {
+            callQueries = new LinkedHashMap<CallQuery, Integer>();
+            if (this.hasResult() && this.getResult().getDefaultElementGroup() != null) {
+                /* writing the row and the default element group increment the query level */
+                this.addBatchableCallQueries(this.getResult().getDefaultElementGroup(), 2, callQueries);
+            }
+            this.batchableCallQueries = callQueries;
+        }
+        return callQueries;
+    }
+
+    private void addBatchableCallQueries(OutputElementGroup group, int queryLevel,
+                                         Map<CallQuery, Integer> callQueries) {
+        for (OutputElement element : group.getAllElements()) {
+            if (element instanceof CallQuery && ((CallQuery) element).isBatchable()) {
+                callQueries.put((CallQuery) element, queryLevel);
+            } else if (element instanceof OutputElementGroup && element.getArrayName() == null) {
+                this.addBatchableCallQueries((OutputElementGroup) element, queryLevel + 1, callQueries);
+            }
+        }
+    }
+
+    /**
+     * Writes the rows of the result set in windows, executing the batchable call-queries once for each window.
+     */
+    private void writeResultEntriesInBatches(ResultSet rs, XMLStreamWriter xmlWriter, InternalParamCollection params,
+                                             int queryLevel, Map<CallQuery, Integer> callQueries)
+            throws DataServiceFault, SQLException {
+        int windowSize = Integer.MAX_VALUE;
+        for (CallQuery callQuery : callQueries.keySet()) {
+            windowSize = Math.min(windowSize, ((SQLQuery) callQuery.getQuery()).getNestedQueryBatchSize());
+        }
+        List<DataEntry> window = new ArrayList<DataEntry>(windowSize);
+        ResultSetPlan resultSetPlan = null;
+        while (rs.next()) {
+            if (resultSetPlan == null) {
+                resultSetPlan = this.createResultSetPlan(rs);
+            }
+            window.add(this.getDataEntryFromRS(rs, resultSetPlan));
+            if (window.size() == windowSize) {
+                this.writeResultEntryWindow(xmlWriter, window, params, queryLevel, callQueries);
+                window.clear();
+            }
+        }
+        if (!window.isEmpty()) {
+            this.writeResultEntryWindow(xmlWriter, window, params, queryLevel, callQueries);
+        }
+    }
+
+    private void writeResultEntryWindow(XMLStreamWriter xmlWriter, List<DataEntry> window,
+                                        InternalParamCollection params, int queryLevel,
+                                        Map<CallQuery, Integer> callQueries) throws DataServiceFault {
+        Map<CallQuery, Map<String, List<DataEntry>>> previousResults =
+                new HashMap<CallQuery, Map<String, List<DataEntry>>>();
+        try {
+            for (Map.Entry<CallQuery, Integer> callQuery : callQueries.entrySet()) {
+                Set<String> keys = new LinkedHashSet<String>();
+                for (DataEntry dataEntry : window) {
+                    ParamValue key = callQuery.getKey().extractNestedBatchKey(
+                            this.createExternalParamCollection(dataEntry, params));
+                    if (key != null && key.getValueType() == ParamValue.PARAM_VALUE_SCALAR
+                            && key.getScalarValue() != null) {
+                        keys.add(key.getScalarValue());
+                    }
+                }
+                if (keys.isEmpty()) {
+                    continue;
+                }
+                Map<String, List<DataEntry>> result = ((SQLQuery) callQuery.getKey().getQuery())
+                        .executeNestedBatch(keys, queryLevel + callQuery.getValue());
+                if (result != null) {
+                    previousResults.put(callQuery.getKey(), CallQuery.setPrefetchedResult(callQuery.getKey(), result));
+                }
+            }
+            for (DataEntry dataEntry : window) {
+                this.writeResultEntry(xmlWriter, dataEntry, params, queryLevel);
+            }
+        } finally {
+            for (Map.Entry<CallQuery, Map<String, List<DataEntry>>> previousResult : previousResults.entrySet()) {
+                CallQuery.restorePrefetchedResult(previousResult.getKey(), previousResult.getValue());
+            }
+        }
     }
 
     public boolean isHasFetchDirection() {
@@ -733,8 +1130,12 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
         DataEntry dataEntry;
         try {
             krs = stmt.getGeneratedKeys();
+            ResultSetPlan resultSetPlan = null;
             while (krs.next()) {
-                dataEntry = this.getDataEntryFromRS(new ResultSetWrapper(krs));
+                if (resultSetPlan == null) {
+                    resultSetPlan = this.createResultSetPlan(krs);
+                }
+                dataEntry = this.getDataEntryFromRS(krs, resultSetPlan);
                 this.writeResultEntry(xmlWriter, dataEntry, params, queryLevel);
             }
         } finally {
@@ -841,10 +1242,16 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
                     /* normal update operation */
                     this.writeGeneratedElements(stmt, xmlWriter, params, queryLevel);
                 }
+            } else if (!this.getBatchableCallQueries().isEmpty()) {
+                this.writeResultEntriesInBatches(rs, xmlWriter, params, queryLevel, this.getBatchableCallQueries());
             } else {
                 DataEntry dataEntry;
+                ResultSetPlan resultSetPlan = null;
                 while (rs.next()) {
-                    dataEntry = this.getDataEntryFromRS(new ResultSetWrapper(rs));
+                    if (resultSetPlan == null) {
+                        resultSetPlan = this.createResultSetPlan(rs);
+                    }
+                    dataEntry = this.getDataEntryFromRS(rs, resultSetPlan);
                     this.writeResultEntry(xmlWriter, dataEntry, params, queryLevel);
                 }
             }
@@ -1018,8 +1425,9 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
                     } else {
                         /* do-while loop since, 'rs.next()' has already been called once */
                         DataEntry dataEntry;
+                        ResultSetPlan resultSetPlan = this.createResultSetPlan(rs);
                         do {
-                            dataEntry = this.getDataEntryFromRS(new ResultSetWrapper(rs));
+                            dataEntry = this.getDataEntryFromRS(rs, resultSetPlan);
                             this.writeResultEntry(xmlWriter, dataEntry, params, queryLevel);
                         } while (rs.next());
                     }
@@ -1065,8 +1473,9 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
                 return entries;
             }
         }
+        ResultSetPlan resultSetPlan = this.createResultSetPlan(rs);
         do {
-            entries.add(this.getDataEntryFromRS(new ResultSetWrapper(rs)));
+            entries.add(this.getDataEntryFromRS(rs, resultSetPlan));
         } while (rs.next());
         return entries;
     }
@@ -1133,171 +1542,124 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
         return dataEntry;
     }
 
-    private DataEntry getDataEntryFromRS(ResultSet rs) throws SQLException {
-        DataEntry dataEntry = new DataEntry();
-        ResultSetMetaData metaData = rs.getMetaData();
+    /**
+     * Resolves the column names and the value extractors of the given result set, which are used to read all
+     * its rows without looking up the result set metadata per row. Columns which are not referenced by the
+     * result of the query are left out, so that they are never fetched.
+     */
+    private ResultSetPlan createResultSetPlan(ResultSet rs) throws SQLException {
+        return this.createResultSetPlan(rs, 1);
+    }
+
+    /**
+     * Creates the plan reading the columns of a result set starting from the given column.
+     */
+    private ResultSetPlan createResultSetPlan(ResultSet rs, int firstColumn) throws SQLException {
+        ResultSetMetaData metaData = new ResultSetWrapper(rs).getMetaData();
         int columnCount = metaData.getColumnCount();
-        int columnType;
-        String value;
-        ParamValue paramValue;
-        Time sqlTime;
-        Date sqlDate;
-        Timestamp sqlTimestamp;
-        Blob sqlBlob;
-        BigDecimal bigDecimal;
-        InputStream binInStream;
+        Set<String> referencedColumns = this.getReferencedColumns();
         boolean useColumnNumbers = this.isUsingColumnNumbers();
-        for (int i = 1; i <= columnCount; i++) {
-            /* retrieve values according to the column type */
-            columnType = metaData.getColumnType(i);
-            switch (columnType) {
-            /* handle string types */
-            case Types.VARCHAR:
-                /* fall through */
-            case Types.LONGVARCHAR:
-                /* fall through */
-            case Types.CHAR:
-                /* fall through */
-            case Types.CLOB:
-                /* fall through */
-            case Types.NCHAR:
-                /* fall through */
-            case Types.NCLOB:
-                /* fall through */
-            case Types.NVARCHAR:
-                /* fall through */
-            case Types.LONGNVARCHAR:
-                value = rs.getString(i);
-                paramValue = new ParamValue(value);
-                break;
-            /* handle numbers */
-            case Types.INTEGER:
-                /* fall through */
-            case Types.TINYINT:
-                /* fall through */
-            case Types.SMALLINT:
-                value = ConverterUtil.convertToString(rs.getInt(i));
-                paramValue = new ParamValue(rs.wasNull() ? null : value);
-                break;
-            case Types.DOUBLE:
-                value = ConverterUtil.convertToString(rs.getDouble(i));
-                paramValue = new ParamValue(rs.wasNull() ? null : value);
-                break;
-            case Types.FLOAT:
-                value = ConverterUtil.convertToString(rs.getFloat(i));
-                paramValue = new ParamValue(rs.wasNull() ? null : value);
-                break;
-            case Types.BOOLEAN:
-                /* fall through */
-            case Types.BIT:
-                value = ConverterUtil.convertToString(rs.getBoolean(i));
-                paramValue = new ParamValue(rs.wasNull() ? null : value);
-                break;
-            case Types.DECIMAL:
-                bigDecimal = rs.getBigDecimal(i);
-                if (bigDecimal != null) {
-                    value = ConverterUtil.convertToString(bigDecimal);
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            /* handle data/time values */
-            case Types.TIME:
-                /* handle time data type */
-                sqlTime = rs.getTime(i);
-                if (sqlTime != null) {
-                    value = this.convertToTimeString(sqlTime);
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            case Types.DATE:
-                /* handle date data type */
-                sqlDate = rs.getDate(i);
-                if (sqlDate != null) {
-                    value = ConverterUtil.convertToString(sqlDate);
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            case Types.TIMESTAMP:
-                if (timeConvertEnabled) {
-                    sqlTimestamp = rs.getTimestamp(i, calendar);
-                } else {
-                    sqlTimestamp = rs.getTimestamp(i);
-                }
-                if (sqlTimestamp != null) {
-                    value = this.convertToTimestampString(sqlTimestamp);
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            /* handle binary types */
-            case Types.BLOB:
-                sqlBlob = rs.getBlob(i);
-                if (sqlBlob != null) {
-                    value = this.getBase64StringFromInputStream(sqlBlob.getBinaryStream());
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            case Types.BINARY:
-                /* fall through */
-            case Types.LONGVARBINARY:
-                /* fall through */
-            case Types.VARBINARY:
-                binInStream = rs.getBinaryStream(i);
-                if (binInStream != null) {
-                    value = this.getBase64StringFromInputStream(binInStream);
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            /* handling User Defined Types */
-            case Types.STRUCT:
-                Struct udt = (Struct) rs.getObject(i);
-                paramValue = new ParamValue(udt);
-                break;
-            case Types.ARRAY:
-                paramValue = new ParamValue(ParamValue.PARAM_VALUE_ARRAY);
-                Array dataArray = (Array) rs.getObject(i);
-                if (dataArray == null) {
-                    break;
-                }
-                paramValue = this.processSQLArray(dataArray, paramValue);
-                break;
-            case Types.NUMERIC:
-                bigDecimal = rs.getBigDecimal(i);
-                if (bigDecimal != null) {
-                    value = ConverterUtil.convertToString(bigDecimal);
-                } else {
-                    value = null;
-                }
-                paramValue = new ParamValue(value);
-                break;
-            case Types.BIGINT:
-                value = ConverterUtil.convertToString(rs.getLong(i));
-                paramValue = new ParamValue(rs.wasNull() ? null : value);
-                break;
-
-            /* handle all other types as strings */
-            default:
-                value = rs.getString(i);
-                paramValue = new ParamValue(value);
-                break;
+        List<Integer> columnIndexes = new ArrayList<Integer>(columnCount);
+        List<String> columnNames = new ArrayList<String>(columnCount);
+        String columnName;
+        for (int i = firstColumn; i <= columnCount; i++) {
+            columnName = useColumnNumbers ? Integer.toString(i) : metaData.getColumnLabel(i);
+            if (referencedColumns == null || columnName == null
+                    || referencedColumns.contains(columnName.toLowerCase())) {
+                columnIndexes.add(i);
+                columnNames.add(columnName);
             }
-            dataEntry.addValue(useColumnNumbers ? Integer.toString(i) : metaData.getColumnLabel(i),
-                    paramValue);
+        }
+        int[] indexes = new int[columnIndexes.size()];
+        ColumnExtractor[] extractors = new ColumnExtractor[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = columnIndexes.get(i);
+            extractors[i] = this.getColumnExtractor(metaData.getColumnType(indexes[i]));
+        }
+        return new ResultSetPlan(indexes, columnNames.toArray(new String[indexes.length]), extractors);
+    }
+
+    private DataEntry getDataEntryFromRS(ResultSet rs, ResultSetPlan resultSetPlan) throws SQLException {
+        DataEntry dataEntry = new DataEntry();
+        int[] columnIndexes = resultSetPlan.getColumnIndexes();
+        String[] columnNames = resultSetPlan.getColumnNames();
+        ColumnExtractor[] extractors = resultSetPlan.getExtractors();
+        for (int i = 0; i < extractors.length; i++) {
+            dataEntry.addValue(columnNames[i], extractors[i].extract(rs, columnIndexes[i]));
         }
         return dataEntry;
     }
 
+    /**
+     * Returns the extractor which retrieves values of the given SQL type from a result set.
+     */
+    private ColumnExtractor getColumnExtractor(int columnType) {
+        switch (columnType) {
+        /* handle string types */
+        case Types.VARCHAR:
+            /* fall through */
+        case Types.LONGVARCHAR:
+            /* fall through */
+        case Types.CHAR:
+            /* fall through */
+        case Types.CLOB:
+            /* fall through */
+        case Types.NCHAR:
+            /* fall through */
+        case Types.NCLOB:
+            /* fall through */
+        case Types.NVARCHAR:
+            /* fall through */
+        case Types.LONGNVARCHAR:
+            return stringExtractor;
+        /* handle numbers */
+        case Types.INTEGER:
+            /* fall through */
+        case Types.TINYINT:
+            /* fall through */
+        case Types.SMALLINT:
+            return intExtractor;
+        case Types.DOUBLE:
+            return doubleExtractor;
+        case Types.FLOAT:
+            return floatExtractor;
+        case Types.BOOLEAN:
+            /* fall through */
+        case Types.BIT:
+            return booleanExtractor;
+        case Types.DECIMAL:
+            /* fall through */
+        case Types.NUMERIC:
+            return bigDecimalExtractor;
+        case Types.BIGINT:
+            return longExtractor;
+        /* handle data/time values */
+        case Types.TIME:
+            return timeExtractor;
+        case Types.DATE:
+            return dateExtractor;
+        case Types.TIMESTAMP:
+            return timestampExtractor;
+        /* handle binary types */
+        case Types.BLOB:
+            return blobExtractor;
+        case Types.BINARY:
+            /* fall through */
+        case Types.LONGVARBINARY:
+            /* fall through */
+        case Types.VARBINARY:
+            return binaryExtractor;
+        /* handling User Defined Types */
+        case Types.STRUCT:
+            return structExtractor;
+        case Types.ARRAY:
+            return arrayExtractor;
+        /* handle all other types as strings */
+        default:
+            return stringExtractor;
+        }
+    }
+
     /**
      * Processes a SQL Array instance and transform it into a ParamValue
      * instance
@@ -1385,30 +1747,75 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
         return result.toArray(new Integer[result.size()]);
     }
 
+    /**
+     * Returns the query plan for the shape of the given parameters, creating it if it is not cached. The ordinals
+     * of the parameters are updated to match the processed query, as done when processing a dynamic query.
+     */
+    private QueryPlan getQueryPlan(InternalParamCollection params) {
+        String shape = this.getQueryShape(params);
+        QueryPlan queryPlan = this.queryPlanCache.get(shape);
+        if (queryPlan != null) {
+            queryPlan.updateParamOrdinals(params);
+            return queryPlan;
+        }
+        int paramCount = this.getParamCount();
+        InternalParam[] originalParams = new InternalParam[paramCount];
+        for (int i = 1; i <= paramCount; i++) {
+            originalParams[i - 1] = params.getParam(i);
+        }
+        /*Creating a new update query based on the parameters passed in the payload, checking whether the missing
+         parameters are optional*/
+        String query = this.getQuery();
+        if (getSqlQueryType() == QueryType.UPDATE && this.hasOptionalParams) {
+            query = generateSQLupdateQuery(params, query);
+        }
+        Object[] result = this.processDynamicQuery(query, params);
+        String dynamicSQL = (String) result[0];
+        int currentParamCount = (Integer) result[1];
+        String processedSQL = this.createProcessedQuery(dynamicSQL, params, currentParamCount);
+        /* record where each parameter ended up, 0 if it was removed by being inlined in to the query */
+        int[] paramOrdinals = new int[paramCount];
+        for (int i = 0; i < paramCount; i++) {
+            InternalParam param = originalParams[i];
+            if (param != null && params.getParam(param.getOrdinal()) == param) {
+                paramOrdinals[i] = param.getOrdinal();
+            }
+        }
+        queryPlan = new QueryPlan(processedSQL, currentParamCount, paramOrdinals);
+        this.queryPlanCache.put(shape, queryPlan);
+        return queryPlan;
+    }
+
+    /**
+     * Returns a key representing everything in the given parameters which changes the processed query, i.e. the
+     * missing parameters, the values of query string parameters and the sizes of array parameters.
+     */
+    private String getQueryShape(InternalParamCollection params) {
+        StringBuilder shape = new StringBuilder();
+        InternalParam param;
+        ParamValue value;
+        for (int i = 1; i <= this.getParamCount(); i++) {
+            param = params.getParam(i);
+            value = param != null ? param.getValue() : null;
+            if (param == null) {
+                shape.append('-');
+            } else if (value != null && value.getValueType() == ParamValue.PARAM_VALUE_ARRAY) {
+                shape.append('a').append(value.getArrayValue().size());
+            } else if (value != null && DBConstants.DataTypes.QUERY_STRING.equals(param.getSqlType())) {
+                String scalarValue = value.getScalarValue();
+                shape.append('q').append(scalarValue.length()).append(':').append(scalarValue);
+            } else {
+                shape.append('s');
+            }
+            shape.append(',');
+        }
+        return shape.toString();
+    }
+
     private PreparedStatement createProcessedPreparedStatement(int queryType,
                                                                InternalParamCollection params, Connection conn) throws
                                                                                                                 DataServiceFault {
         try {
-            /*Creating a new update query based on the parameters passed in the payload, checking whether the missing
-             parameters are optional*/
-            String query = this.getQuery();
-
-            boolean hasOptional = false;
-            for (QueryParam queryParam : this.getQueryParams()) {
-                if (queryParam.isOptional()) {
-                    hasOptional = true;
-                    break;
-                }
-            }
-
-            if (getSqlQueryType() == QueryType.UPDATE && hasOptional) {
-                query = generateSQLupdateQuery(params, query);
-            }
-
-            String paramsStr1 = "";
-            for (int i = 1; i <= this.getParamCount(); i++) {
-                paramsStr1 = paramsStr1 + params.getParam(i) + ",";
-            }
             /*
              * lets see first if there's already a batch prepared statement
              * created
@@ -1420,10 +1827,9 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
             /* create a new prepared statement */
             if (stmt == null) {
                 /* batch mode is not supported for dynamic queries */
-                Object[] result = this.processDynamicQuery(query, params);
-                String dynamicSQL = (String) result[0];
-                currentParamCount = (Integer) result[1];
-                String processedSQL = this.createProcessedQuery(dynamicSQL, params, currentParamCount);
+                QueryPlan queryPlan = this.getQueryPlan(params);
+                currentParamCount = queryPlan.getParamCount();
+                String processedSQL = queryPlan.getProcessedSQL();
                 if (log.isDebugEnabled()) {
                     String paramsStr = "";
                     for (int i = 1; i <= this.getParamCount(); i++) {
@@ -1459,6 +1865,11 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
                 }
                 /* adding the try catch to avoid setting this for jdbc drivers that do not implement this method. */
                 try {
+                    /*
+                     * the processed SQL of a query plan is reused as is, so ask the driver and the connection pool
+                     * to keep the statement in their statement caches
+                     */
+                    stmt.setPoolable(true);
                     /* set fetch direction */
                     if (this.isHasFetchDirection()) {
                         stmt.setFetchDirection(this.getFetchDirection());
@@ -2364,6 +2775,210 @@ public class SQLQuery extends ExpressionQuery implements BatchRequestParticipant
         }
     }
 
+    /**
+     * The processed SQL of the query for a given shape of parameters, together with the mapping of the
+     * parameter ordinals to the processed SQL.
+     */
+    private static class QueryPlan {
+
+        private final String processedSQL;
+
+        private final int paramCount;
+
+        private final int[] paramOrdinals;
+
+        public QueryPlan(String processedSQL, int paramCount, int[] paramOrdinals) {
+            this.processedSQL = processedSQL;
+            this.paramCount = paramCount;
+            this.paramOrdinals = paramOrdinals;
+        }
+
+        public String getProcessedSQL() {
+            return processedSQL;
+        }
+
+        public int getParamCount() {
+            return paramCount;
+        }
+
+        /**
+         * Moves the parameters to their ordinals in the processed SQL, removing the ones inlined in to it.
+         */
+        public void updateParamOrdinals(InternalParamCollection params) {
+            InternalParam param;
+            for (int i = 1; i <= paramOrdinals.length; i++) {
+                param = params.getParam(i);
+                if (param != null) {
+                    params.remove(i);
+                    if (paramOrdinals[i - 1] > 0) {
+                        param.setOrdinal(paramOrdinals[i - 1]);
+                        params.addParam(param);
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * The indexes, the names and the value extractors of the columns read from a result set.
+     */
+    private static class ResultSetPlan {
+
+        private final int[] columnIndexes;
+
+        private final String[] columnNames;
+
+        private final ColumnExtractor[] extractors;
+
+        public ResultSetPlan(int[] columnIndexes, String[] columnNames, ColumnExtractor[] extractors) {
+            this.columnIndexes = columnIndexes;
+            this.columnNames = columnNames;
+            this.extractors = extractors;
+        }
+
+        public int[] getColumnIndexes() {
+            return columnIndexes;
+        }
+
+        public String[] getColumnNames() {
+            return columnNames;
+        }
+
+        public ColumnExtractor[] getExtractors() {
+            return extractors;
+        }
+
+    }
+
+    /**
+     * Retrieves the value of a column of a given SQL type from the current row of a result set.
+     */
+    private abstract static class ColumnExtractor {
+
+        public abstract ParamValue extract(ResultSet rs, int index) throws SQLException;
+
+    }
+
+    private final ColumnExtractor stringExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            return new ParamValue(rs.getString(index));
+        }
+    };
+
+    private final ColumnExtractor intExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            int value = rs.getInt(index);
+            return rs.wasNull() ? new ParamValue((String) null) : TypedParamValue.fromInt(value);
+        }
+    };
+
+    private final ColumnExtractor longExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            long value = rs.getLong(index);
+            return rs.wasNull() ? new ParamValue((String) null) : TypedParamValue.fromLong(value);
+        }
+    };
+
+    private final ColumnExtractor doubleExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            double value = rs.getDouble(index);
+            return rs.wasNull() ? new ParamValue((String) null) : TypedParamValue.fromDouble(value);
+        }
+    };
+
+    private final ColumnExtractor floatExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            float value = rs.getFloat(index);
+            return rs.wasNull() ? new ParamValue((String) null) : TypedParamValue.fromFloat(value);
+        }
+    };
+
+    private final ColumnExtractor booleanExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            boolean value = rs.getBoolean(index);
+            return rs.wasNull() ? new ParamValue((String) null) : TypedParamValue.fromBoolean(value);
+        }
+    };
+
+    private final ColumnExtractor bigDecimalExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            BigDecimal bigDecimal = rs.getBigDecimal(index);
+            return new ParamValue(bigDecimal != null ? ConverterUtil.convertToString(bigDecimal) : null);
+        }
+    };
+
+    private final ColumnExtractor timeExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            Time sqlTime = rs.getTime(index);
+            return new ParamValue(sqlTime != null ? convertToTimeString(sqlTime) : null);
+        }
+    };
+
+    private final ColumnExtractor dateExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            Date sqlDate = rs.getDate(index);
+            return new ParamValue(sqlDate != null ? ConverterUtil.convertToString(sqlDate) : null);
+        }
+    };
+
+    private final ColumnExtractor timestampExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            Timestamp sqlTimestamp;
+            if (timeConvertEnabled) {
+                sqlTimestamp = rs.getTimestamp(index, calendar);
+            } else {
+                sqlTimestamp = rs.getTimestamp(index);
+            }
+            return new ParamValue(sqlTimestamp != null ? convertToTimestampString(sqlTimestamp) : null);
+        }
+    };
+
+    private final ColumnExtractor blobExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            Blob sqlBlob = rs.getBlob(index);
+            return new ParamValue(sqlBlob != null ? getBase64StringFromInputStream(sqlBlob.getBinaryStream()) : null);
+        }
+    };
+
+    private final ColumnExtractor binaryExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            InputStream binInStream = rs.getBinaryStream(index);
+            return new ParamValue(binInStream != null ? getBase64StringFromInputStream(binInStream) : null);
+        }
+    };
+
+    private final ColumnExtractor structExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            return new ParamValue((Struct) rs.getObject(index));
+        }
+    };
+
+    private final ColumnExtractor arrayExtractor = new ColumnExtractor() {
+        @Override
+        public ParamValue extract(ResultSet rs, int index) throws SQLException {
+            ParamValue paramValue = new ParamValue(ParamValue.PARAM_VALUE_ARRAY);
+            Array dataArray = (Array) rs.getObject(index);
+            if (dataArray == null) {
+                return paramValue;
+            }
+            return processSQLArray(dataArray, paramValue);
+        }
+    };
+
     /**
      * This class contains the stored procedure metadata collection.
      */
@@ -49,6 +49,18 @@ public class CallQuery extends OutputElement {
 	/* key - target query's query-param name, value - withparam */
     private Map<String, WithParam> withParams;
 
+	/**
+	 * Results of call-queries fetched at once for a window of rows of the parent query,
+	 * key - the value of the nested batch parameter, value - the rows of the query for that value.
+	 */
+	private static ThreadLocal<Map<CallQuery, Map<String, List<DataEntry>>>> prefetchedResults =
+			new ThreadLocal<Map<CallQuery, Map<String, List<DataEntry>>>>() {
+		@Override
+		protected Map<CallQuery, Map<String, List<DataEntry>>> initialValue() {
+			return new HashMap<CallQuery, Map<String, List<DataEntry>>>();
+		}
+	};
+
 	public CallQuery(DataService dataService, String queryId, Map<String, WithParam> withParams,
 			Set<String> requiredRoles) {
         super(null, requiredRoles);
@@ -82,6 +94,70 @@ public class CallQuery extends OutputElement {
 		return query;
 	}
 
+	/**
+	 * Checks if this call-query can be executed once for a window of rows of the parent query,
+	 * i.e. it passes a single value to an SQL query which supports nested query batching.
+	 */
+	public boolean isBatchable() {
+		if (!(this.getQuery() instanceof SQLQuery) || this.getArrayName() != null
+				|| this.getWithParams().size() != 1) {
+			return false;
+		}
+		SQLQuery sqlQuery = (SQLQuery) this.getQuery();
+		return sqlQuery.getNestedQueryBatchSize() > 0
+				&& this.getWithParams().containsKey(sqlQuery.getNestedBatchParamName());
+	}
+
+	/**
+	 * Returns the value passed to the nested batch parameter of the query for the given params
+	 * of a parent row, or null if it cannot be evaluated, in which case the call-query is
+	 * executed as usual for the row.
+	 */
+	public ParamValue extractNestedBatchKey(ExternalParamCollection params) {
+		try {
+			this.processDefaultValues(params);
+			return this.extractParams(params).get(
+					((SQLQuery) this.getQuery()).getNestedBatchParamName());
+		} catch (DataServiceFault e) {
+			return null;
+		} finally {
+			params.clearTempValues();
+		}
+	}
+
+	/**
+	 * Sets the results fetched at once for a window of rows of the parent query.
+	 *
+	 * @return the previously set results of the call-query, if any
+	 */
+	public static Map<String, List<DataEntry>> setPrefetchedResult(CallQuery callQuery,
+			Map<String, List<DataEntry>> result) {
+		return prefetchedResults.get().put(callQuery, result);
+	}
+
+	/**
+	 * Restores the results of the call-query to the given results, as returned by setPrefetchedResult.
+	 */
+	public static void restorePrefetchedResult(CallQuery callQuery, Map<String, List<DataEntry>> result) {
+		if (result == null) {
+			prefetchedResults.get().remove(callQuery);
+		} else {
+			prefetchedResults.get().put(callQuery, result);
+		}
+	}
+
+	private List<DataEntry> getPrefetchedEntries(Map<String, ParamValue> qparams) {
+		Map<String, List<DataEntry>> result = prefetchedResults.get().get(this);
+		if (result == null) {
+			return null;
+		}
+		ParamValue key = qparams.get(((SQLQuery) this.getQuery()).getNestedBatchParamName());
+		if (key == null || key.getValueType() != ParamValue.PARAM_VALUE_SCALAR) {
+			return null;
+		}
+		return result.get(key.getScalarValue());
+	}
+
 	/**
 	 * This method returns the system variable's value given the property name.
 	 */
@@ -276,8 +352,14 @@ public class CallQuery extends OutputElement {
             this.processDefaultValues(params);
 		    /* convert/filter params according to the WithParams */
             Map<String, ParamValue> qparams = extractParams(params);
-		    /* execute query */
-            this.getQuery().execute(xmlWriter, qparams, queryLevel);
+		    /* execute query, unless its rows are already fetched with the other rows of the parent query */
+            List<DataEntry> prefetchedEntries = this.getPrefetchedEntries(qparams);
+            if (prefetchedEntries != null) {
+                ((SQLQuery) this.getQuery()).writeNestedBatchResult(xmlWriter, qparams, prefetchedEntries,
+                        queryLevel);
+            } else {
+                this.getQuery().execute(xmlWriter, qparams, queryLevel);
+            }
 		    /* clear temp values */
             params.clearTempValues();
 
@@ -21,6 +21,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import javax.xml.stream.XMLStreamException;
@@ -30,7 +31,10 @@ import javax.xml.stream.XMLStreamWriter;
 import org.apache.axiom.om.OMDataSource;
 import org.apache.axiom.om.OMOutputFormat;
 import org.apache.commons.io.output.NullOutputStream;
-import org.wso2.micro.integrator.dataservices.core.DBUtils;import org.wso2.micro.integrator.dataservices.core.DataServiceFault;
+import org.wso2.micro.integrator.dataservices.common.DBConstants;
+import org.wso2.micro.integrator.dataservices.core.DBUtils;
+import org.wso2.micro.integrator.dataservices.core.DataServiceFault;
+import org.wso2.micro.integrator.dataservices.core.description.query.Query;
 
 /**
  * This class represents the data source for an OMElement,
@@ -47,6 +51,12 @@ public class DSOMDataSource implements OMDataSource {
 	private String opName;
 	
 	private Map<String, ParamValue> params;
+
+	/**
+	 * The structure of the JSON result, or null if it has not been collected yet or the
+	 * result cannot be written as JSON.
+	 */
+	private JSONElementStructure jsonStructure;
 			
 	public DSOMDataSource(DataService dataService, String opName,
 			Map<String, ParamValue> params) {
@@ -105,6 +115,120 @@ public class DSOMDataSource implements OMDataSource {
 		this.execute(xmlWriter);
 	}
 
+	/**
+	 * Checks if the result of the request can be written directly as JSON, which is
+	 * the case for XML results of which the repeating elements are known upfront and
+	 * no element has two children of the same name.
+	 */
+	public boolean isJSONStreamable() {
+		return this.getJSONStructure() != null;
+	}
+
+	/**
+	 * Writes the result of the request as JSON to the given writer, as the result
+	 * entries are generated, without buffering the result.
+	 */
+	public void serializeAsJSON(Writer writer) throws XMLStreamException {
+		JSONElementStructure structure = this.getJSONStructure();
+		if (structure == null) {
+			throw new XMLStreamException("The result of the operation cannot be written as JSON: "
+					+ this.getOpName());
+		}
+		XMLStreamWriter jsonWriter = new JSONResultStreamWriter(writer, structure);
+		this.serialize(jsonWriter);
+		jsonWriter.writeEndDocument();
+		jsonWriter.flush();
+	}
+
+	private JSONElementStructure getJSONStructure() {
+		if (this.jsonStructure == null) {
+			JSONElementStructure structure = new JSONElementStructure();
+			Result result = this.getResult();
+			if (result == null || collectJSONStructure(result, structure,
+					new IdentityHashMap<Result, JSONElementStructure>())) {
+				this.jsonStructure = structure;
+			}
+		}
+		return this.jsonStructure;
+	}
+
+	private Result getResult() {
+		CallableRequest callableRequest = this.getDataService().getCallableRequest(this.getOpName());
+		if (callableRequest == null || callableRequest.getCallQuery() == null) {
+			return null;
+		}
+		Query query = callableRequest.getCallQuery().getQuery();
+		return query != null ? query.getResult() : null;
+	}
+
+	/**
+	 * Adds the structure of the given result, the result wrapper with the repeating row
+	 * elements, to the given parent element.
+	 *
+	 * @return false if the result cannot be streamed as JSON, as it is not an XML result,
+	 * its rows are not wrapped in row elements, or it has elements of the same name
+	 */
+	private static boolean collectJSONStructure(Result result, JSONElementStructure parent,
+			Map<Result, JSONElementStructure> visitedResults) {
+		if (result.getResultType() != DBConstants.ResultTypes.XML || DBUtils.isEmptyString(result.getRowName())) {
+			return false;
+		}
+		JSONElementStructure wrapper = parent;
+		if (!DBUtils.isEmptyString(result.getElementName())) {
+			wrapper = new JSONElementStructure();
+			if (!parent.addChild(result.getElementName(), wrapper)) {
+				return false;
+			}
+		}
+		/* a recursive query repeats the structure of the row it is nested in */
+		JSONElementStructure row = visitedResults.get(result);
+		if (row != null) {
+			return wrapper.addChild(result.getRowName(), row);
+		}
+		row = new JSONElementStructure(null, true);
+		visitedResults.put(result, row);
+		return wrapper.addChild(result.getRowName(), row)
+				&& collectJSONStructure(result.getDefaultElementGroup(), row, visitedResults);
+	}
+
+	private static boolean collectJSONStructure(OutputElementGroup group, JSONElementStructure parent,
+			Map<Result, JSONElementStructure> visitedResults) {
+		if (group == null) {
+			return true;
+		}
+		for (StaticOutputElement attribute : group.getAttributeEntries()) {
+			if (!parent.addAttribute(attribute.getName(), attribute.getXsdType())) {
+				return false;
+			}
+		}
+		for (OutputElement element : group.getAllElements()) {
+			boolean collected;
+			if (element instanceof StaticOutputElement) {
+				collected = parent.addChild(element.getName(), new JSONElementStructure(
+						((StaticOutputElement) element).getXsdType(), element.getArrayName() != null));
+			} else if (element instanceof OutputElementGroup) {
+				JSONElementStructure groupStructure = parent;
+				if (element.getName() != null) {
+					groupStructure = new JSONElementStructure(null, element.getArrayName() != null);
+					if (!parent.addChild(element.getName(), groupStructure)) {
+						return false;
+					}
+				}
+				collected = collectJSONStructure((OutputElementGroup) element, groupStructure, visitedResults);
+			} else if (element instanceof CallQuery) {
+				Query query = ((CallQuery) element).getQuery();
+				collected = query == null || query.getResult() == null
+						|| collectJSONStructure(query.getResult(), parent, visitedResults);
+			} else {
+				collected = false;
+			}
+			if (!collected) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public XMLStreamReader getReader() throws XMLStreamException {
 		ByteArrayOutputStream byteOut = new ByteArrayOutputStream(XMLREADER_DEFAULT_MESSAGE_SIZE);
 		XMLStreamWriter xmlWriter = DBUtils.getXMLOutputFactory().createXMLStreamWriter(byteOut);
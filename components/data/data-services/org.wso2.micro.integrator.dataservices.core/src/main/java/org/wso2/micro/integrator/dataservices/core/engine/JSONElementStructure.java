@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.xml.namespace.QName;
+
+/**
+ * The expected structure of an element of a data service result, which tells the {@link JSONResultStreamWriter}
+ * whether the element repeats and the XSD types of its value and attributes. The child elements are kept by their
+ * names, so that elements with the same name at different places of the result are described separately.
+ */
+public class JSONElementStructure {
+
+    private final Map<String, JSONElementStructure> children = new HashMap<>();
+
+    private final Map<String, QName> attributeTypes = new HashMap<>();
+
+    private final QName xsdType;
+
+    private final boolean array;
+
+    public JSONElementStructure() {
+        this(null, false);
+    }
+
+    /**
+     * @param xsdType the XSD type of the value of the element, or null if it is not known
+     * @param array   whether the element repeats, hence is written as a JSON array
+     */
+    public JSONElementStructure(QName xsdType, boolean array) {
+        this.xsdType = xsdType;
+        this.array = array;
+    }
+
+    /**
+     * Adds a child element.
+     *
+     * @param name  the name of the child element
+     * @param child the structure of the child element
+     * @return false if the element already has a child with the given name
+     */
+    public boolean addChild(String name, JSONElementStructure child) {
+        return children.putIfAbsent(name, child) == null;
+    }
+
+    /**
+     * Adds an attribute.
+     *
+     * @param name    the name of the attribute
+     * @param xsdType the XSD type of the attribute
+     * @return false if the element already has an attribute with the given name
+     */
+    public boolean addAttribute(String name, QName xsdType) {
+        return attributeTypes.putIfAbsent(name, xsdType) == null;
+    }
+
+    /**
+     * @param name the name of the child element
+     * @return the structure of the child element, or null if it is not known
+     */
+    public JSONElementStructure getChild(String name) {
+        return children.get(name);
+    }
+
+    /**
+     * @param name the name of the attribute
+     * @return the XSD type of the attribute, or null if it is not known
+     */
+    public QName getAttributeType(String name) {
+        return attributeTypes.get(name);
+    }
+
+    public QName getXsdType() {
+        return xsdType;
+    }
+
+    public boolean isArray() {
+        return array;
+    }
+}
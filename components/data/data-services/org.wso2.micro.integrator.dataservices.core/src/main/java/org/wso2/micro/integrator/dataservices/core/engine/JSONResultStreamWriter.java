@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.engine;
+
+import org.wso2.micro.integrator.dataservices.common.DBConstants;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * An {@link XMLStreamWriter} which writes the result of a data service as JSON directly to the given writer, as the
+ * result entries are written by the queries. Nothing but the currently open elements is kept, hence the memory used
+ * does not depend on the size of the result.
+ * <p>
+ * Since the repeating elements cannot be known while streaming, the structure of the result is given upfront, and
+ * the row elements and the array elements of the results are written as JSON arrays. The values of the elements and
+ * attributes with a numeric or boolean XSD type are written as JSON numbers and booleans. Attributes are written as
+ * members prefixed with "@", and the value of an element having attributes as the "$" member. Namespaces are not
+ * written.
+ */
+public class JSONResultStreamWriter implements XMLStreamWriter {
+
+    private static final Set<String> NUMERIC_TYPES = new HashSet<>(Arrays.asList(
+            "integer", "int", "long", "short", "byte", "decimal", "float", "double", "nonNegativeInteger",
+            "positiveInteger", "nonPositiveInteger", "negativeInteger", "unsignedLong", "unsignedInt",
+            "unsignedShort", "unsignedByte"));
+
+    private static final String BOOLEAN_TYPE = "boolean";
+
+    private static final Pattern JSON_NUMBER = Pattern.compile("-?(0|[1-9]\\d*)(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    private static final String NIL_ATTRIBUTE = "nil";
+
+    private static final String ATTRIBUTE_PREFIX = "@";
+
+    private static final String VALUE_MEMBER = "$";
+
+    /**
+     * Line and paragraph separators are valid in JSON strings, but are escaped since they are line terminators in
+     * JavaScript.
+     */
+    private static final char LINE_SEPARATOR = 0x2028;
+
+    private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    private final Writer writer;
+
+    /**
+     * The currently open elements, with the document at the bottom.
+     */
+    private final Deque<Frame> frames = new ArrayDeque<>();
+
+    private final NamespaceContext namespaceContext = new EmptyNamespaceContext();
+
+    /**
+     * @param writer    the writer the JSON is written to
+     * @param structure the structure of the result, of which the children are the top level elements
+     */
+    public JSONResultStreamWriter(Writer writer, JSONElementStructure structure) {
+        this.writer = writer;
+        this.frames.push(new Frame(null, structure));
+    }
+
+    @Override
+    public void writeStartElement(String localName) throws XMLStreamException {
+        Frame parent = frames.peek();
+        JSONElementStructure structure = parent.structure != null ? parent.structure.getChild(localName) : null;
+        try {
+            startObject(parent);
+            parent.childWritten = true;
+            if (localName.equals(parent.openArrayName)) {
+                /* next entry of the array */
+                writer.write(',');
+            } else {
+                closeArray(parent);
+                startMember(parent, localName);
+                if (structure != null && structure.isArray()) {
+                    writer.write('[');
+                    parent.openArrayName = localName;
+                }
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Error in writing the start of the JSON element: " + localName, e);
+        }
+        frames.push(new Frame(localName, structure));
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) throws XMLStreamException {
+        writeStartElement(localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        writeStartElement(localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName) throws XMLStreamException {
+        writeStartElement(localName);
+        writeEndElement();
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName, String namespaceURI) throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        if (frames.size() == 1) {
+            throw new XMLStreamException("No open element to end");
+        }
+        Frame frame = frames.pop();
+        try {
+            if (frame.objectStarted) {
+                closeArray(frame);
+                if (frame.text != null && !frame.childWritten) {
+                    /* the value of an element having attributes */
+                    startMember(frame, VALUE_MEMBER);
+                    writeValue(frame.getXsdType(), frame.text.toString());
+                }
+                writer.write('}');
+            } else if (frame.nil) {
+                writer.write("null");
+            } else if (frame.text != null) {
+                writeValue(frame.getXsdType(), frame.text.toString());
+            } else {
+                writer.write("{}");
+            }
+            if (frames.size() == 1) {
+                /* end of the result, hence the document object is closed */
+                Frame document = frames.peek();
+                closeArray(document);
+                writer.write('}');
+                document.objectStarted = false;
+                document.memberWritten = false;
+            }
+        } catch (IOException e) {
+            throw new XMLStreamException("Error in writing the end of the JSON element: " + frame.name, e);
+        }
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        while (frames.size() > 1) {
+            writeEndElement();
+        }
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new XMLStreamException("Error in flushing the JSON result", e);
+        }
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value) throws XMLStreamException {
+        Frame frame = frames.peek();
+        try {
+            startObject(frame);
+            closeArray(frame);
+            startMember(frame, ATTRIBUTE_PREFIX + localName);
+            writeValue(frame.structure != null ? frame.structure.getAttributeType(localName) : null, value);
+        } catch (IOException e) {
+            throw new XMLStreamException("Error in writing the JSON attribute: " + localName, e);
+        }
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI, String localName, String value)
+            throws XMLStreamException {
+        writeAttribute(namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName, String value) throws XMLStreamException {
+        if (DBConstants.XSI_NAMESPACE.equals(namespaceURI)) {
+            if (NIL_ATTRIBUTE.equals(localName)) {
+                frames.peek().nil = Boolean.parseBoolean(value);
+            }
+            return;
+        }
+        writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) {
+        /* namespaces are not written in JSON */
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) {
+        /* namespaces are not written in JSON */
+    }
+
+    @Override
+    public void writeComment(String data) {
+        /* comments are not written in JSON */
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target) {
+        /* processing instructions are not written in JSON */
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data) {
+        /* processing instructions are not written in JSON */
+    }
+
+    @Override
+    public void writeCData(String data) {
+        writeCharacters(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) {
+        /* DTDs are not written in JSON */
+    }
+
+    @Override
+    public void writeEntityRef(String name) {
+        /* entity references are not written in JSON */
+    }
+
+    @Override
+    public void writeStartDocument() {
+        /* the document object is started with the first element */
+    }
+
+    @Override
+    public void writeStartDocument(String version) {
+        /* the document object is started with the first element */
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version) {
+        /* the document object is started with the first element */
+    }
+
+    @Override
+    public void writeCharacters(String text) {
+        Frame frame = frames.peek();
+        if (frame.name == null || frame.childWritten) {
+            /* text outside of the elements and mixed content are not written */
+            return;
+        }
+        if (frame.text == null) {
+            frame.text = new StringBuilder(text);
+        } else {
+            frame.text.append(text);
+        }
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len) {
+        writeCharacters(new String(text, start, len));
+    }
+
+    @Override
+    public String getPrefix(String uri) {
+        return namespaceContext.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri) {
+        /* namespaces are not written in JSON */
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) {
+        /* namespaces are not written in JSON */
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {
+        /* namespaces are not written in JSON */
+    }
+
+    /**
+     * Returns a namespace context which binds all the namespaces to the default prefix, so that the result writers
+     * do not declare them.
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return namespaceContext;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("Property not supported: " + name);
+    }
+
+    private void startObject(Frame frame) throws IOException {
+        if (!frame.objectStarted) {
+            writer.write('{');
+            frame.objectStarted = true;
+        }
+    }
+
+    private void startMember(Frame frame, String name) throws IOException {
+        if (frame.memberWritten) {
+            writer.write(',');
+        }
+        writeString(name);
+        writer.write(':');
+        frame.memberWritten = true;
+    }
+
+    private void closeArray(Frame frame) throws IOException {
+        if (frame.openArrayName != null) {
+            writer.write(']');
+            frame.openArrayName = null;
+        }
+    }
+
+    private void writeValue(QName xsdType, String value) throws IOException {
+        if (xsdType != null && value != null) {
+            String type = xsdType.getLocalPart();
+            if (NUMERIC_TYPES.contains(type) && JSON_NUMBER.matcher(value).matches()) {
+                writer.write(value);
+                return;
+            }
+            if (BOOLEAN_TYPE.equals(type) && ("true".equals(value) || "false".equals(value))) {
+                writer.write(value);
+                return;
+            }
+        }
+        writeString(value);
+    }
+
+    private void writeString(String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String escaped;
+            switch (c) {
+                case '"':
+                    escaped = "\\\"";
+                    break;
+                case '\\':
+                    escaped = "\\\\";
+                    break;
+                case '\n':
+                    escaped = "\\n";
+                    break;
+                case '\r':
+                    escaped = "\\r";
+                    break;
+                case '\t':
+                    escaped = "\\t";
+                    break;
+                default:
+                    if (c >= 0x20 && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR) {
+                        continue;
+                    }
+                    escaped = "\\u" + HEX_CHARS[(c >> 12) & 0xF] + HEX_CHARS[(c >> 8) & 0xF]
+                            + HEX_CHARS[(c >> 4) & 0xF] + HEX_CHARS[c & 0xF];
+            }
+            writer.write(value, start, i - start);
+            writer.write(escaped);
+            start = i + 1;
+        }
+        writer.write(value, start, length - start);
+        writer.write('"');
+    }
+
+    /**
+     * An open element, which is written as an object once it has members, and as a value otherwise.
+     */
+    private static class Frame {
+
+        private final String name;
+
+        /**
+         * The expected structure of the element, or null if it is not known.
+         */
+        private final JSONElementStructure structure;
+
+        private boolean objectStarted;
+
+        private boolean childWritten;
+
+        private boolean memberWritten;
+
+        /**
+         * The name of the child elements of the JSON array currently open in this object.
+         */
+        private String openArrayName;
+
+        private StringBuilder text;
+
+        private boolean nil;
+
+        Frame(String name, JSONElementStructure structure) {
+            this.name = name;
+            this.structure = structure;
+        }
+
+        QName getXsdType() {
+            return structure != null ? structure.getXsdType() : null;
+        }
+    }
+
+    /**
+     * A namespace context which binds every namespace to the default prefix.
+     */
+    private static class EmptyNamespaceContext implements NamespaceContext {
+
+        @Override
+        public String getNamespaceURI(String prefix) {
+            return XMLConstants.NULL_NS_URI;
+        }
+
+        @Override
+        public String getPrefix(String namespaceURI) {
+            return XMLConstants.DEFAULT_NS_PREFIX;
+        }
+
+        @Override
+        public Iterator getPrefixes(String namespaceURI) {
+            return Collections.singletonList(XMLConstants.DEFAULT_NS_PREFIX).iterator();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.engine;
+
+import org.apache.axis2.databinding.utils.ConverterUtil;
+
+/**
+ * A scalar ParamValue which keeps a primitive value retrieved from a result set as it is, and
+ * converts it to its string form only when the scalar value is first requested.
+ */
+public class TypedParamValue extends ParamValue {
+
+    private static final int TYPE_INT = 0x01;
+
+    private static final int TYPE_LONG = 0x02;
+
+    private static final int TYPE_DOUBLE = 0x03;
+
+    private static final int TYPE_FLOAT = 0x04;
+
+    private static final int TYPE_BOOLEAN = 0x05;
+
+    private final int primitiveType;
+
+    private final long longValue;
+
+    private final double doubleValue;
+
+    private boolean converted;
+
+    private TypedParamValue(int primitiveType, long longValue, double doubleValue) {
+        super((String) null);
+        this.primitiveType = primitiveType;
+        this.longValue = longValue;
+        this.doubleValue = doubleValue;
+    }
+
+    public static TypedParamValue fromInt(int value) {
+        return new TypedParamValue(TYPE_INT, value, 0);
+    }
+
+    public static TypedParamValue fromLong(long value) {
+        return new TypedParamValue(TYPE_LONG, value, 0);
+    }
+
+    public static TypedParamValue fromDouble(double value) {
+        return new TypedParamValue(TYPE_DOUBLE, 0, value);
+    }
+
+    public static TypedParamValue fromFloat(float value) {
+        return new TypedParamValue(TYPE_FLOAT, 0, value);
+    }
+
+    public static TypedParamValue fromBoolean(boolean value) {
+        return new TypedParamValue(TYPE_BOOLEAN, value ? 1 : 0, 0);
+    }
+
+    @Override
+    public String getScalarValue() {
+        if (!converted) {
+            super.setScalarValue(this.convertToString());
+            converted = true;
+        }
+        return super.getScalarValue();
+    }
+
+    @Override
+    public void setScalarValue(String scalarValue) {
+        super.setScalarValue(scalarValue);
+        converted = true;
+    }
+
+    private String convertToString() {
+        switch (primitiveType) {
+        case TYPE_INT:
+            return ConverterUtil.convertToString((int) longValue);
+        case TYPE_LONG:
+            return ConverterUtil.convertToString(longValue);
+        case TYPE_DOUBLE:
+            return ConverterUtil.convertToString(doubleValue);
+        case TYPE_FLOAT:
+            return ConverterUtil.convertToString((float) doubleValue);
+        default:
+            return ConverterUtil.convertToString(longValue != 0);
+        }
+    }
+
+}
@@ -18,6 +18,8 @@
 
 package org.wso2.micro.integrator.dataservices.core.odata;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ClusteringOrder;
 import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.ColumnMetadata;
 import com.datastax.driver.core.DataType;
@@ -28,8 +30,12 @@ import com.datastax.driver.core.Session;
 import com.datastax.driver.core.SimpleStatement;
 import com.datastax.driver.core.Statement;
 import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.exceptions.DriverException;
 import org.apache.axis2.databinding.utils.ConverterUtil;
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.wso2.micro.integrator.dataservices.common.DBConstants;
 import org.wso2.micro.integrator.dataservices.core.odata.DataColumn.ODataDataType;
 import org.wso2.micro.integrator.dataservices.core.DBUtils;import org.wso2.micro.integrator.dataservices.core.DataServiceFault;
@@ -54,6 +60,8 @@ import java.util.UUID;
  */
 public class CassandraDataHandler implements ODataDataHandler {
 
+    private static final Log log = LogFactory.getLog(CassandraDataHandler.class);
+
     /**
      * Table metadata.
      */
@@ -92,6 +100,11 @@ public class CassandraDataHandler implements ODataDataHandler {
 
     private static final int RECORD_INSERT_STATEMENTS_CACHE_SIZE = 10000;
 
+    /**
+     * Number of rows fetched at a time when reading a table with the query options.
+     */
+    private static final int READ_FETCH_SIZE = 1000;
+
     private Map<String, PreparedStatement> preparedStatementMap =
             Collections.synchronizedMap(new LinkedHashMap<String, PreparedStatement>() {
                 private static final long serialVersionUID = 1L;
@@ -125,6 +138,136 @@ public class CassandraDataHandler implements ODataDataHandler {
         return entryList;
     }
 
+    /**
+     * This method reads the table restricting the primary key with the filter where possible, so that only a slice
+     * of a partition is read, and the rows are fetched in pages.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return EntityCollection
+     * @throws ODataServiceFault
+     * @see CassandraQueryBuilder
+     */
+    @Override
+    public List<ODataEntry> readTable(String tableName, ODataQuery query) throws ODataServiceFault {
+        CassandraQueryBuilder.CassandraQuery cassandraQuery = createQuery(tableName, query);
+        List<ODataEntry> entryList = new ArrayList<>();
+        try {
+            ResultSet resultSet = executeQuery(cassandraQuery);
+            ColumnDefinitions columnDefinitions = resultSet.getColumnDefinitions();
+            for (Row row : resultSet) {
+                entryList.add(createDataEntryFromRow(tableName, row, columnDefinitions,
+                                                     !query.isProjectionApplied()));
+            }
+        } catch (DriverException e) {
+            log.warn("Error occurred when reading the table " + tableName + " with the query " +
+                     cassandraQuery.getCql() + ", reading all the rows. :" + e.getMessage());
+            query.reset();
+            return readTable(tableName);
+        }
+        return entryList;
+    }
+
+    /**
+     * This method returns a cursor over the rows of the table, which fetches the next page of the rows when the
+     * fetched rows are iterated. The query options are applied as in {@link #readTable(String, ODataQuery)}.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return Cursor over the entries
+     * @throws ODataServiceFault
+     */
+    @Override
+    public ODataEntryIterator streamTable(final String tableName, ODataQuery query) throws ODataServiceFault {
+        CassandraQueryBuilder.CassandraQuery cassandraQuery = createQuery(tableName, query);
+        final ResultSet resultSet;
+        try {
+            resultSet = executeQuery(cassandraQuery);
+        } catch (DriverException e) {
+            log.warn("Error occurred when reading the table " + tableName + " with the query " +
+                     cassandraQuery.getCql() + ", reading all the rows. :" + e.getMessage());
+            query.reset();
+            return ODataEntryIterator.of(readTable(tableName));
+        }
+        final ColumnDefinitions columnDefinitions = resultSet.getColumnDefinitions();
+        final Iterator<Row> rows = resultSet.iterator();
+        final boolean eTag = !query.isProjectionApplied();
+        return new ODataEntryIterator() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return rows.hasNext();
+                } catch (DriverException e) {
+                    throw new ODataRuntimeException("Error occurred when reading the table " + tableName + ". :" +
+                                                    e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public ODataEntry next() {
+                try {
+                    return createDataEntryFromRow(tableName, rows.next(), columnDefinitions, eTag);
+                } catch (DriverException | ODataServiceFault e) {
+                    throw new ODataRuntimeException("Error occurred when reading the table " + tableName + ". :" +
+                                                    e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void close() {
+                // the rows of the remaining pages are not fetched
+            }
+        };
+    }
+
+    /**
+     * This method creates the CQL query of the table for the query options, restricting the primary key with the
+     * filter where possible.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return CQL query
+     * @see CassandraQueryBuilder
+     */
+    private CassandraQueryBuilder.CassandraQuery createQuery(String tableName, ODataQuery query) {
+        TableMetadata table = this.session.getCluster().getMetadata().getKeyspace(this.keyspace).getTable(tableName);
+        List<String> partitionKeys = new ArrayList<>();
+        for (ColumnMetadata columnMetadata : table.getPartitionKey()) {
+            partitionKeys.add(columnMetadata.getName());
+        }
+        List<String> clusteringColumns = new ArrayList<>();
+        for (ColumnMetadata columnMetadata : table.getClusteringColumns()) {
+            clusteringColumns.add(columnMetadata.getName());
+        }
+        List<Boolean> clusteringDescending = new ArrayList<>();
+        for (ClusteringOrder order : table.getClusteringOrder()) {
+            clusteringDescending.add(order == ClusteringOrder.DESC);
+        }
+        Map<String, DataType.Name> columnTypes = new HashMap<>();
+        for (ColumnMetadata columnMetadata : table.getColumns()) {
+            columnTypes.put(columnMetadata.getName(), columnMetadata.getType().getName());
+        }
+        return new CassandraQueryBuilder(this.keyspace + "." + tableName, partitionKeys, clusteringColumns,
+                                         clusteringDescending, columnTypes).build(query);
+    }
+
+    /**
+     * This method executes the CQL query, and returns the result set which fetches the rows in pages.
+     *
+     * @param cassandraQuery CQL query
+     * @return Result set
+     */
+    private ResultSet executeQuery(CassandraQueryBuilder.CassandraQuery cassandraQuery) {
+        PreparedStatement statement = this.preparedStatementMap.get(cassandraQuery.getCql());
+        if (statement == null) {
+            statement = this.session.prepare(cassandraQuery.getCql());
+            this.preparedStatementMap.put(cassandraQuery.getCql(), statement);
+        }
+        BoundStatement boundStatement = statement.bind(cassandraQuery.getValues().toArray());
+        boundStatement.setFetchSize(READ_FETCH_SIZE);
+        return this.session.execute(boundStatement);
+    }
+
     @Override
     public List<ODataEntry> readTableWithKeys(String tableName, ODataEntry keys) throws ODataServiceFault {
         List<ColumnMetadata> cassandraTableMetaData = this.session.getCluster().getMetadata().getKeyspace(this.keyspace)
@@ -354,6 +497,21 @@ public class CassandraDataHandler implements ODataDataHandler {
      */
     private ODataEntry createDataEntryFromRow(String tableName, Row row, ColumnDefinitions columnDefinitions)
             throws ODataServiceFault {
+        return createDataEntryFromRow(tableName, row, columnDefinitions, true);
+    }
+
+    /**
+     * This method wraps result set data in to DataEntry.
+     *
+     * @param tableName         Table Name
+     * @param row               Row
+     * @param columnDefinitions Column Definition
+     * @param eTag              Whether to set the E-Tag, which is computed from all the columns of the row
+     * @return DataEntry
+     * @throws ODataServiceFault
+     */
+    private ODataEntry createDataEntryFromRow(String tableName, Row row, ColumnDefinitions columnDefinitions,
+                                              boolean eTag) throws ODataServiceFault {
         String paramValue;
         ODataEntry entry = new ODataEntry();
         //Creating a unique string to represent the
@@ -438,8 +596,10 @@ public class CassandraDataHandler implements ODataDataHandler {
         } catch (DataServiceFault e) {
             throw new ODataServiceFault(e, "Error occurred when creating OData entry. :" + e.getMessage());
         }
-        //Set E-Tag to the entity
-        entry.addValue("ETag", ODataUtils.generateETag(this.configID, tableName, entry));
+        if (eTag) {
+            //Set E-Tag to the entity
+            entry.addValue("ETag", ODataUtils.generateETag(this.configID, tableName, entry));
+        }
         return entry;
     }
 
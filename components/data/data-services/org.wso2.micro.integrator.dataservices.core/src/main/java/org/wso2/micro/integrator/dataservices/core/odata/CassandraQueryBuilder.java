@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.dataservices.core.odata;
+
+import com.datastax.driver.core.DataType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.expression.Binary;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class creates the CQL query to read a table applying the query options which Cassandra evaluates as in memory
+ * without filtering, i.e. restricting only the primary key.
+ * <p>
+ * The comparisons of a primary key column and a literal in the top level conjuncts of the filter are used to select a
+ * single partition, and a slice of it: an equality for each partition key, equalities for a prefix of the clustering
+ * columns, and a range of the next clustering column. The filter is applied if it has no other conjunct, and a weaker
+ * filter is used otherwise. The order is applied within a single partition when it is the clustering order or its
+ * reverse, and the rows are limited to $skip + $top when both the filter and the order are applied. Only the text,
+ * int and bigint columns, and the equality of boolean columns, are used in the query.
+ */
+public class CassandraQueryBuilder {
+
+    private final String tableName;
+
+    private final List<String> partitionKeys;
+
+    private final List<String> clusteringColumns;
+
+    /**
+     * Whether each clustering column is stored in descending order.
+     */
+    private final List<Boolean> clusteringDescending;
+
+    private final Map<String, DataType.Name> columnTypes;
+
+    /**
+     * @param tableName            Name of the table, qualified with the keyspace
+     * @param partitionKeys        Partition key columns
+     * @param clusteringColumns    Clustering columns in the order of the primary key
+     * @param clusteringDescending Whether each clustering column is stored in descending order
+     * @param columnTypes          Column name to Cassandra type map of the table
+     */
+    public CassandraQueryBuilder(String tableName, List<String> partitionKeys, List<String> clusteringColumns,
+                                 List<Boolean> clusteringDescending, Map<String, DataType.Name> columnTypes) {
+        this.tableName = tableName;
+        this.partitionKeys = partitionKeys;
+        this.clusteringColumns = clusteringColumns;
+        this.clusteringDescending = clusteringDescending;
+        this.columnTypes = columnTypes;
+    }
+
+    /**
+     * This method creates the query for the given options, and marks the options applied by the query.
+     *
+     * @param query Query options
+     * @return CQL query with the values of its bind markers
+     */
+    public CassandraQuery build(ODataQuery query) {
+        List<Restriction> restrictions = new ArrayList<>();
+        int conjunctCount = 0;
+        if (query.getFilterOption() != null) {
+            for (Expression conjunct : ODataUtils.getConjuncts(query.getFilterOption().getExpression())) {
+                conjunctCount++;
+                Restriction restriction = getRestriction(conjunct);
+                if (restriction != null) {
+                    restrictions.add(restriction);
+                }
+            }
+        }
+        List<Restriction> where = new ArrayList<>();
+        boolean partitionRestricted = true;
+        for (String partitionKey : partitionKeys) {
+            Restriction equality = find(restrictions, partitionKey, true);
+            if (equality == null) {
+                partitionRestricted = false;
+                break;
+            }
+            where.add(equality);
+        }
+        int clusteringPrefix = 0;
+        if (partitionRestricted) {
+            for (String column : clusteringColumns) {
+                Restriction equality = find(restrictions, column, true);
+                if (equality != null) {
+                    where.add(equality);
+                    clusteringPrefix++;
+                    continue;
+                }
+                Restriction lowerBound = null;
+                Restriction upperBound = null;
+                for (Restriction restriction : restrictions) {
+                    if (restriction.column.equals(column)) {
+                        if (lowerBound == null && (restriction.operator == BinaryOperatorKind.GT ||
+                                                   restriction.operator == BinaryOperatorKind.GE)) {
+                            lowerBound = restriction;
+                        } else if (upperBound == null && (restriction.operator == BinaryOperatorKind.LT ||
+                                                          restriction.operator == BinaryOperatorKind.LE)) {
+                            upperBound = restriction;
+                        }
+                    }
+                }
+                if (lowerBound != null) {
+                    where.add(lowerBound);
+                }
+                if (upperBound != null) {
+                    where.add(upperBound);
+                }
+                break;
+            }
+        } else {
+            // clustering columns can't be restricted without filtering when the partition is not known
+            where.clear();
+        }
+        query.setFilterApplied(query.getFilterOption() != null && where.size() == conjunctCount);
+
+        String orderBy = null;
+        if (query.isFiltered() && query.getOrderByOption() != null && partitionRestricted) {
+            orderBy = createOrderByClause(query.getOrderByOption().getOrders(), clusteringPrefix);
+            query.setOrderByApplied(orderBy != null);
+        }
+
+        StringBuilder cql = new StringBuilder("SELECT ");
+        List<String> selectedProperties = query.getSelectedProperties();
+        if (query.isFiltered() && query.isOrdered() && selectedProperties != null) {
+            Set<String> columns = new LinkedHashSet<>(partitionKeys);
+            columns.addAll(clusteringColumns);
+            for (String property : selectedProperties) {
+                if (columnTypes.containsKey(property)) {
+                    columns.add(property);
+                }
+            }
+            cql.append(String.join(", ", columns));
+            query.setProjectionApplied(true);
+        } else {
+            cql.append("*");
+        }
+        cql.append(" FROM ").append(tableName);
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < where.size(); i++) {
+            Restriction restriction = where.get(i);
+            cql.append(i == 0 ? " WHERE " : " AND ").append(restriction.column).append(" ")
+               .append(getOperator(restriction.operator)).append(" ?");
+            values.add(restriction.value);
+        }
+        if (orderBy != null && !orderBy.isEmpty()) {
+            cql.append(" ORDER BY ").append(orderBy);
+        }
+        Integer top = query.getTop();
+        if (query.isFiltered() && query.isOrdered() && top != null && top > 0 && !query.isCountRequested()) {
+            // the rows are skipped and limited again in memory
+            long limit = (long) top + (query.getSkip() != null ? query.getSkip() : 0);
+            if (limit <= Integer.MAX_VALUE) {
+                cql.append(" LIMIT ").append(limit);
+            }
+        }
+        return new CassandraQuery(cql.toString(), values);
+    }
+
+    /**
+     * This method creates the order by clause of a single partition for the given order by items.
+     *
+     * @param items            Order by items
+     * @param clusteringPrefix Number of leading clustering columns restricted by an equality
+     * @return Order by clause, an empty string for the clustering order, or null if the order can't be applied
+     */
+    private String createOrderByClause(List<OrderByItem> items, int clusteringPrefix) {
+        List<String> columns = new ArrayList<>();
+        List<Boolean> descending = new ArrayList<>();
+        for (OrderByItem item : items) {
+            String column = ODataUtils.getPropertyName(item.getExpression());
+            if (column == null) {
+                return null;
+            }
+            // columns restricted by an equality have a single value in the partition
+            int clusteringIndex = clusteringColumns.indexOf(column);
+            if (partitionKeys.contains(column) || (clusteringIndex >= 0 && clusteringIndex < clusteringPrefix) ||
+                columns.contains(column)) {
+                continue;
+            }
+            columns.add(column);
+            descending.add(item.isDescending());
+        }
+        if (clusteringPrefix + columns.size() > clusteringColumns.size()) {
+            return null;
+        }
+        boolean clusteringOrder = true;
+        boolean reverseOrder = true;
+        for (int i = 0; i < columns.size(); i++) {
+            String column = clusteringColumns.get(clusteringPrefix + i);
+            if (!column.equals(columns.get(i)) || !isOrderable(columnTypes.get(column))) {
+                return null;
+            }
+            boolean columnDescending = clusteringDescending.get(clusteringPrefix + i);
+            clusteringOrder &= descending.get(i) == columnDescending;
+            reverseOrder &= descending.get(i) != columnDescending;
+        }
+        if (clusteringOrder) {
+            return "";
+        }
+        // rows equal in the ordered columns would be reversed as well, unlike the stable in-memory sort
+        if (!reverseOrder || clusteringPrefix + columns.size() != clusteringColumns.size()) {
+            return null;
+        }
+        StringBuilder orderBy = new StringBuilder();
+        for (int i = 0; i < clusteringColumns.size(); i++) {
+            if (i > 0) {
+                orderBy.append(", ");
+            }
+            orderBy.append(clusteringColumns.get(i)).append(clusteringDescending.get(i) ? " ASC" : " DESC");
+        }
+        return orderBy.toString();
+    }
+
+    /**
+     * This method returns the comparison of a primary key column and a literal in a conjunct.
+     *
+     * @param conjunct Conjunct of the filter
+     * @return Restriction, or null if the conjunct is not such a comparison
+     */
+    private Restriction getRestriction(Expression conjunct) {
+        if (!(conjunct instanceof Binary)) {
+            return null;
+        }
+        Binary binary = (Binary) conjunct;
+        BinaryOperatorKind operator = binary.getOperator();
+        if (reverse(operator) == null) {
+            return null;
+        }
+        String column = ODataUtils.getPropertyName(binary.getLeftOperand());
+        Expression literal = binary.getRightOperand();
+        if (column == null) {
+            column = ODataUtils.getPropertyName(binary.getRightOperand());
+            literal = binary.getLeftOperand();
+            operator = reverse(operator);
+        }
+        if (column == null || operator == null || !(literal instanceof Literal) ||
+            (!partitionKeys.contains(column) && !clusteringColumns.contains(column))) {
+            return null;
+        }
+        DataType.Name type = columnTypes.get(column);
+        if (operator != BinaryOperatorKind.EQ && !isOrderable(type)) {
+            return null;
+        }
+        Object value = getValue(type, (Literal) literal);
+        return value != null ? new Restriction(column, operator, value) : null;
+    }
+
+    /**
+     * This method converts a literal to the value of a column of the given type.
+     *
+     * @return Value, or null if the column is not compared with the literal by Cassandra as in memory
+     */
+    private static Object getValue(DataType.Name type, Literal literal) {
+        String text = literal.getText();
+        EdmType literalType = literal.getType();
+        if (type == null || "null".equals(text)) {
+            return null;
+        }
+        try {
+            switch (type) {
+                case ASCII:
+                    /* fall through */
+                case TEXT:
+                    /* fall through */
+                case VARCHAR:
+                    return ODataConstants.primitiveString.equals(literalType) ?
+                           ODataConstants.primitiveString.fromUriLiteral(text) : null;
+                case INT:
+                    if (isIntegerLiteral(literalType)) {
+                        long value = Long.parseLong(text);
+                        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (int) value : null;
+                    }
+                    return null;
+                case BIGINT:
+                    return isIntegerLiteral(literalType) ? Long.parseLong(text) : null;
+                case BOOLEAN:
+                    return ODataConstants.primitiveBoolean.equals(literalType) ? Boolean.valueOf(text) : null;
+                default:
+                    return null;
+            }
+        } catch (EdmPrimitiveTypeException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static boolean isIntegerLiteral(EdmType type) {
+        return ODataConstants.primitiveByte.equals(type) || ODataConstants.primitiveSByte.equals(type) ||
+               ODataConstants.primitiveInt16.equals(type) || ODataConstants.primitiveInt32.equals(type) ||
+               ODataConstants.primitiveInt64.equals(type);
+    }
+
+    private static boolean isOrderable(DataType.Name type) {
+        return type == DataType.Name.ASCII || type == DataType.Name.TEXT || type == DataType.Name.VARCHAR ||
+               type == DataType.Name.INT || type == DataType.Name.BIGINT;
+    }
+
+    private static Restriction find(List<Restriction> restrictions, String column, boolean equality) {
+        for (Restriction restriction : restrictions) {
+            if (restriction.column.equals(column) && (restriction.operator == BinaryOperatorKind.EQ) == equality) {
+                return restriction;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the operator with swapped operands, or null if it is not a comparison used in the query
+     */
+    private static BinaryOperatorKind reverse(BinaryOperatorKind operator) {
+        switch (operator) {
+            case EQ:
+                return BinaryOperatorKind.EQ;
+            case GE:
+                return BinaryOperatorKind.LE;
+            case GT:
+                return BinaryOperatorKind.LT;
+            case LE:
+                return BinaryOperatorKind.GE;
+            case LT:
+                return BinaryOperatorKind.GT;
+            default:
+                return null;
+        }
+    }
+
+    private static String getOperator(BinaryOperatorKind operator) {
+        switch (operator) {
+            case EQ:
+                return "=";
+            case GE:
+                return ">=";
+            case GT:
+                return ">";
+            case LE:
+                return "<=";
+            default:
+                return "<";
+        }
+    }
+
+    /**
+     * A comparison of a primary key column and a value.
+     */
+    private static class Restriction {
+
+        private final String column;
+
+        private final BinaryOperatorKind operator;
+
+        private final Object value;
+
+        private Restriction(String column, BinaryOperatorKind operator, Object value) {
+            this.column = column;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A CQL query with the values of its bind markers in order.
+     */
+    public static class CassandraQuery {
+
+        private final String cql;
+
+        private final List<Object> values;
+
+        private CassandraQuery(String cql, List<Object> values) {
+            this.cql = cql;
+            this.values = values;
+        }
+
+        public String getCql() {
+            return cql;
+        }
+
+        public List<Object> getValues() {
+            return values;
+        }
+    }
+}
@@ -18,22 +18,35 @@
 
 package org.wso2.micro.integrator.dataservices.core.odata;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.WriteResult;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.jongo.Jongo;
 import org.json.JSONObject;
 import org.wso2.micro.integrator.dataservices.core.description.query.MongoQuery;
 import org.wso2.micro.integrator.dataservices.core.engine.DataEntry;
+import org.wso2.micro.integrator.dataservices.core.odata.expression.MongoExpressionVisitor;
 
 /**
  * This class implements MongoDB datasource related operations for ODataDataHandler.
@@ -61,6 +74,12 @@ public class MongoDataHandler implements ODataDataHandler {
      * Metadata of the Collections
      */
     private Map<String, Map<String, DataColumn>> tableMetaData;
+
+    /**
+     * Fields of the Collections holding only string values, or object ids for the document id,
+     * which are compared by MongoDB as in memory.
+     */
+    private Map<String, Set<String>> comparableFields = new HashMap<>();
     private Jongo jongo;
     private static final String ETAG = "ETag";
     private static final String DOCUMENT_ID = "_id";
@@ -94,6 +113,8 @@ public class MongoDataHandler implements ODataDataHandler {
         for (String tableName : this.tableList) {
             DBCollection readResult = jongo.getDatabase().getCollection(tableName);
             Iterator<DBObject> cursor = readResult.find();
+            Set<String> fields = new HashSet<>();
+            Set<String> nonComparableFields = new HashSet<>();
             while (cursor.hasNext()) {
                 DBObject doumentData = cursor.next();
                 String tempValue = doumentData.toString();
@@ -104,9 +125,15 @@ public class MongoDataHandler implements ODataDataHandler {
                                                            ordinalPosition, true, 100, columnName.equals(DOCUMENT_ID));
                     column.put(columnName, dataColumn);
                     ordinalPosition++;
+                    fields.add(columnName);
+                    if (!isComparable(columnName, doumentData.get(columnName))) {
+                        nonComparableFields.add(columnName);
+                    }
                 }
                 metaData.put(tableName, column);
             }
+            fields.removeAll(nonComparableFields);
+            this.comparableFields.put(tableName, fields);
         }
         return metaData;
     }
@@ -176,6 +203,206 @@ public class MongoDataHandler implements ODataDataHandler {
         return entryList;
     }
 
+    /**
+     * This method reads the documents of a given collection applying the query options which MongoDB evaluates
+     * as in memory, i.e. the filter and the order of the fields holding string values, and then the count,
+     * skip, top and the projection of the selected fields.
+     * When the filter can't be translated fully, only the documents matching its translatable conjuncts are read.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return EntityCollection
+     * @throws ODataServiceFault
+     * @see MongoExpressionVisitor
+     */
+    @Override
+    public List<ODataEntry> readTable(String tableName, ODataQuery query) throws ODataServiceFault {
+        List<ODataEntry> entryList = new ArrayList<>();
+        try (DBCursor cursor = openCursor(tableName, query)) {
+            while (cursor.hasNext()) {
+                entryList.add(createDataEntryFromDocument(tableName, cursor.next(), !query.isProjectionApplied()));
+            }
+        } catch (MongoException e) {
+            throw new ODataServiceFault(e, "Error occurred when reading the collection " + tableName + ". :" +
+                                           e.getMessage());
+        }
+        return entryList;
+    }
+
+    /**
+     * This method returns a cursor over the documents of a given collection, which fetches the documents from
+     * MongoDB in batches while they are iterated. The query options are applied as in
+     * {@link #readTable(String, ODataQuery)}.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return Cursor over the entries
+     * @throws ODataServiceFault
+     */
+    @Override
+    public ODataEntryIterator streamTable(final String tableName, ODataQuery query) throws ODataServiceFault {
+        final DBCursor cursor;
+        try {
+            cursor = openCursor(tableName, query);
+        } catch (MongoException e) {
+            throw new ODataServiceFault(e, "Error occurred when reading the collection " + tableName + ". :" +
+                                           e.getMessage());
+        }
+        final boolean eTag = !query.isProjectionApplied();
+        return new ODataEntryIterator() {
+            @Override
+            public boolean hasNext() {
+                try {
+                    return cursor.hasNext();
+                } catch (MongoException e) {
+                    cursor.close();
+                    throw new ODataRuntimeException("Error occurred when reading the collection " + tableName +
+                                                    ". :" + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public ODataEntry next() {
+                try {
+                    return createDataEntryFromDocument(tableName, cursor.next(), eTag);
+                } catch (MongoException e) {
+                    cursor.close();
+                    throw new ODataRuntimeException("Error occurred when reading the collection " + tableName +
+                                                    ". :" + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void close() {
+                cursor.close();
+            }
+        };
+    }
+
+    /**
+     * This method opens a cursor over the documents of a given collection applying the query options, and marks the
+     * applied options in the query.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return Cursor over the documents
+     * @throws ODataServiceFault
+     */
+    private DBCursor openCursor(String tableName, ODataQuery query) throws ODataServiceFault {
+        Set<String> fields = this.comparableFields.get(tableName);
+        MongoExpressionVisitor visitor =
+                new MongoExpressionVisitor(fields != null ? fields : Collections.<String>emptySet());
+        DBObject filter = new BasicDBObject();
+        if (query.getFilterOption() != null) {
+            Expression expression = query.getFilterOption().getExpression();
+            try {
+                try {
+                    filter = visitor.translateFilter(expression);
+                    query.setFilterApplied(true);
+                } catch (ExpressionVisitException e) {
+                    filter = visitor.translateConjuncts(expression);
+                }
+            } catch (ODataApplicationException e) {
+                throw new ODataServiceFault(e, "Error occurred when translating the filter. :" + e.getMessage());
+            }
+        }
+        DBObject sort = null;
+        if (query.isFiltered() && query.getOrderByOption() != null) {
+            sort = createSortObject(visitor, query.getOrderByOption());
+            query.setOrderByApplied(sort != null);
+        }
+        DBObject projection = null;
+        List<String> selectedProperties = query.getSelectedProperties();
+        if (query.isFiltered() && query.isOrdered() && selectedProperties != null) {
+            // the document id is always returned
+            projection = new BasicDBObject();
+            for (String property : selectedProperties) {
+                projection.put(property, 1);
+            }
+            query.setProjectionApplied(true);
+        }
+        DBCollection collection = jongo.getDatabase().getCollection(tableName);
+        DBCursor cursor = collection.find(filter, projection);
+        try {
+            if (sort != null) {
+                cursor.sort(sort);
+            }
+            if (query.isFiltered() && query.isOrdered()) {
+                if (query.getSkip() != null) {
+                    cursor.skip(query.getSkip());
+                    query.setSkipApplied(true);
+                }
+                // a limit of zero returns all the documents
+                if (query.getTop() != null && query.getTop() > 0) {
+                    cursor.limit(query.getTop());
+                    query.setTopApplied(true);
+                }
+                if (query.isCountRequested() && (query.isSkipApplied() || query.isTopApplied())) {
+                    query.setCount(cursor.count());
+                }
+            }
+            return cursor;
+        } catch (MongoException e) {
+            cursor.close();
+            throw e;
+        }
+    }
+
+    /**
+     * This method creates the entry of a document read from a collection.
+     *
+     * @param tableName Name of the table
+     * @param document  Document
+     * @param eTag      Whether the ETag of the entry is set, which is not when the fields are projected
+     * @return Entry of the document
+     */
+    private ODataEntry createDataEntryFromDocument(String tableName, DBObject document, boolean eTag) {
+        String tempValue = document.toString();
+        Iterator<?> keys = new JSONObject(tempValue).keys();
+        ODataEntry dataEntry = createDataEntryFromResult(tempValue, keys);
+        if (eTag) {
+            //Set Etag to the entity
+            dataEntry.addValue(ETAG, ODataUtils.generateETag(this.configId, tableName, dataEntry));
+        }
+        return dataEntry;
+    }
+
+    /**
+     * This method creates the sort document of the order by items.
+     *
+     * @return Sort document, or null if an item can't be sorted by MongoDB
+     */
+    private DBObject createSortObject(MongoExpressionVisitor visitor, OrderByOption orderByOption) {
+        // a null or missing field is sorted first in ascending order and last in descending order, as in memory
+        DBObject sort = new BasicDBObject();
+        try {
+            for (OrderByItem item : orderByOption.getOrders()) {
+                String field = visitor.translateOrderBy(item.getExpression());
+                if (sort.containsField(field)) {
+                    continue;
+                }
+                sort.put(field, item.isDescending() ? -1 : 1);
+            }
+        } catch (ExpressionVisitException e) {
+            return null;
+        }
+        return sort;
+    }
+
+    /**
+     * This method checks whether a value is compared by MongoDB as its string representation in memory.
+     *
+     * @param field Field name
+     * @param value Field value
+     * @return true for strings and nulls, and object ids of the document id
+     */
+    private static boolean isComparable(String field, Object value) {
+        if (DOCUMENT_ID.equals(field)) {
+            return value instanceof ObjectId;
+        }
+        return value == null || value instanceof String;
+    }
+
     /**
      * This method reads the collection data for a given key(i.e. _id).
      * Returns a list of DataEntry object which has been wrapped the entity.
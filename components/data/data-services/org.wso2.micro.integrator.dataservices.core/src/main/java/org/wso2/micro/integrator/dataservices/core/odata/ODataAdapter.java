@@ -24,9 +24,12 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.olingo.commons.api.Constants;
+import org.apache.olingo.commons.api.data.ContextURL;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Operation;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.edm.EdmBindingTarget;
@@ -46,6 +49,7 @@ import org.apache.olingo.commons.api.edm.constants.EdmTypeKind;
 import org.apache.olingo.commons.api.edm.provider.CsdlEdmProvider;
 import org.apache.olingo.commons.api.edm.provider.CsdlProperty;
 import org.apache.olingo.commons.api.edm.provider.CsdlPropertyRef;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpMethod;
@@ -57,7 +61,9 @@ import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataServerError;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
 import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.serializer.SerializerStreamResult;
 import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.UriInfoResource;
 import org.apache.olingo.server.api.uri.UriParameter;
@@ -71,6 +77,7 @@ import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
 import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
 import org.apache.olingo.server.api.uri.queryoption.FilterOption;
 import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
 import org.apache.olingo.server.api.uri.queryoption.SkipOption;
 import org.apache.olingo.server.api.uri.queryoption.SkipTokenOption;
 import org.apache.olingo.server.api.uri.queryoption.TopOption;
@@ -113,6 +120,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 /**
@@ -154,6 +162,20 @@ public class ODataAdapter implements ServiceHandler {
         }
     };
 
+    /**
+     * Whether the entity sets read by the request of the current thread are written while they are read.
+     */
+    private ThreadLocal<Boolean> streamingRequest = new ThreadLocal<Boolean>() {
+        protected synchronized Boolean initialValue() {
+            return false;
+        }
+    };
+
+    /**
+     * Entity stream being written to the response of the current thread.
+     */
+    private ThreadLocal<EntityStream> entityStream = new ThreadLocal<>();
+
     public ODataAdapter(ODataDataHandler dataHandler, String namespace, String configID) throws ODataServiceFault {
         this.dataHandler = dataHandler;
         this.namespace = namespace;
@@ -165,6 +187,30 @@ public class ODataAdapter implements ServiceHandler {
         this.serviceMetadata = serviceMetadata;
     }
 
+    /**
+     * This method prepares the adapter to process a request in the current thread.
+     *
+     * @param streamEntitySets Whether the entity sets read by the request can be written while they are read, which
+     *                         is not possible for the parts of a batch request
+     * @see #endRequest()
+     */
+    public void startRequest(boolean streamEntitySets) {
+        this.streamingRequest.set(streamEntitySets);
+    }
+
+    /**
+     * This method releases the entity stream of the request processed in the current thread, once its response is
+     * written.
+     */
+    public void endRequest() {
+        this.streamingRequest.set(false);
+        EntityStream stream = this.entityStream.get();
+        if (stream != null) {
+            this.entityStream.remove();
+            stream.close();
+        }
+    }
+
     @Override
     public void readMetadata(MetadataRequest request, MetadataResponse response)
             throws ODataApplicationException, ODataLibraryException {
@@ -179,6 +225,7 @@ public class ODataAdapter implements ServiceHandler {
 
     private static class EntityDetails {
         EntityCollection entitySet = null;
+        EntityStream entityStream = null;
         Entity entity = null;
         EdmEntityType entityType;
         boolean eTagMatched = false;
@@ -187,11 +234,12 @@ public class ODataAdapter implements ServiceHandler {
     /**
      * This method process the read requests.
      *
-     * @param request DataRequest
+     * @param request    DataRequest
+     * @param streamable Whether the entity set can be streamed to the response
      * @return EntityDetails
      * @throws ODataApplicationException
      */
-    private EntityDetails process(final DataRequest request) throws ODataApplicationException {
+    private EntityDetails process(final DataRequest request, boolean streamable) throws ODataApplicationException {
         EntityCollection entitySet = null;
         Entity entity = null;
         EdmEntityType entityType;
@@ -200,6 +248,17 @@ public class ODataAdapter implements ServiceHandler {
         EntityDetails details = new EntityDetails();
         String baseURL = request.getODataRequest().getRawBaseUri();
         UriInfo uriInfo = request.getUriInfo();
+        // According to the odatav4 spec we have to perform these queries according to the following order
+        FilterOption filterOption = uriInfo.getFilterOption();
+        CountOption countOption = uriInfo.getCountOption();
+        OrderByOption orderByOption = uriInfo.getOrderByOption();
+        SkipOption skipOption = uriInfo.getSkipOption();
+        TopOption topOption = uriInfo.getTopOption();
+        SkipTokenOption skipTokenOption = uriInfo.getSkipTokenOption();
+        // the selected properties are not projected when expanding, as the navigation needs the referenced columns
+        SelectOption selectOption = uriInfo.getExpandOption() == null ? uriInfo.getSelectOption() : null;
+        ODataQuery query = new ODataQuery(filterOption, orderByOption, skipOption, topOption, countOption,
+                                          selectOption);
         try {
             if (request.isSingleton()) {
                 log.error(new ODataServiceFault("Singletons are not supported."));
@@ -214,6 +273,25 @@ public class ODataAdapter implements ServiceHandler {
                     if (getETagMatchedEntity(request.getETag(), getIfMatch(request), entity) != null) {
                         details.eTagMatched = true;
                     }
+                } else if (isEntitySetRead(uriInfo)) {
+                    // query options are pushed down to the data handler when the entity set itself is read
+                    if (streamable && uriInfo.getExpandOption() == null && skipTokenOption == null) {
+                        ODataEntryIterator entries = this.dataHandler.streamTable(edmEntitySet.getName(), query);
+                        // the entities have to be in memory to be ordered or counted
+                        if ((orderByOption == null || query.isOrderByApplied()) &&
+                            (countOption == null || !countOption.getValue() || query.isCountApplied())) {
+                            details.entityStream = new EntityStream(edmEntitySet, entries, query, skipOption,
+                                                                    topOption, baseURL);
+                            // the stream is closed once the response is written
+                            this.entityStream.set(details.entityStream);
+                            details.entityType = entityType;
+                            return details;
+                        }
+                        entitySet = createEntityCollectionFromDataEntryList(edmEntitySet.getName(),
+                                                                            readEntries(entries), baseURL);
+                    } else {
+                        entitySet = getEntityCollection(edmEntitySet.getName(), query, baseURL);
+                    }
                 } else {
                     entitySet = getEntityCollection(edmEntitySet.getName(), baseURL);
                 }
@@ -293,26 +371,24 @@ public class ODataAdapter implements ServiceHandler {
             details.entity = entity;
             details.entitySet = entitySet;
             details.entityType = entityType;
-            // According to the odatav4 spec we have to perform these queries according to the following order
-            FilterOption filterOption = uriInfo.getFilterOption();
-            CountOption countOption = uriInfo.getCountOption();
-            OrderByOption orderByOption = uriInfo.getOrderByOption();
-            SkipOption skipOption = uriInfo.getSkipOption();
-            TopOption topOption = uriInfo.getTopOption();
-            SkipTokenOption skipTokenOption = uriInfo.getSkipTokenOption();
-            if (filterOption != null) {
+            // options which were not applied by the data handler are applied in memory
+            if (filterOption != null && !query.isFilterApplied()) {
                 QueryHandler.applyFilterSystemQuery(filterOption, details.entitySet, edmEntitySet);
             }
             if (countOption != null) {
-                QueryHandler.applyCountSystemQueryOption(countOption, details.entitySet);
+                if (query.isCountApplied()) {
+                    details.entitySet.setCount((int) query.getCount());
+                } else {
+                    QueryHandler.applyCountSystemQueryOption(countOption, details.entitySet);
+                }
             }
-            if (orderByOption != null) {
+            if (orderByOption != null && !query.isOrderByApplied()) {
                 QueryHandler.applyOrderByOption(orderByOption, details.entitySet, edmEntitySet);
             }
-            if (skipOption != null) {
+            if (skipOption != null && !query.isSkipApplied()) {
                 QueryHandler.applySkipSystemQueryHandler(skipOption, details.entitySet);
             }
-            if (topOption != null) {
+            if (topOption != null && !query.isTopApplied()) {
                 QueryHandler.applyTopSystemQueryOption(topOption, details.entitySet);
             }
             if (skipTokenOption != null) {
@@ -395,7 +471,7 @@ public class ODataAdapter implements ServiceHandler {
     public <T extends ServiceResponse> void read(final DataRequest request, final T response)
             throws ODataApplicationException, ODataLibraryException {
 
-        final EntityDetails details = process(request);
+        final EntityDetails details = process(request, response instanceof EntitySetResponse && isStreamable(request));
 
         response.accepts(new ServiceResponseVisior() {
             @Override
@@ -432,7 +508,9 @@ public class ODataAdapter implements ServiceHandler {
                     response.writeHeader("Preference-Applied", ODATA_MAX_PAGE_SIZE + "=" +
                                                                request.getPreference(ODATA_MAX_PAGE_SIZE));
                 }
-                if (details.entity == null && !request.getNavigations().isEmpty()) {
+                if (details.entityStream != null) {
+                    writeEntityStream(request, response, details.entityType, details.entityStream);
+                } else if (details.entity == null && !request.getNavigations().isEmpty()) {
                     response.writeReadEntitySet(details.entityType, new EntityCollection());
                 } else {
                     response.writeReadEntitySet(details.entityType, details.entitySet);
@@ -1111,27 +1189,42 @@ public class ODataAdapter implements ServiceHandler {
      */
     private EntityCollection createEntityCollectionFromDataEntryList(String tableName, List<ODataEntry> entries,
                                                                      String baseURL) throws ODataServiceFault {
+        EntityCollection entitySet = new EntityCollection();
+        EdmEntityType entityType = this.serviceMetadata.getEdm()
+                                                       .getEntityType(new FullQualifiedName(this.namespace, tableName));
+        int count = 0;
+        for (ODataEntry entry : entries) {
+            entitySet.getEntities().add(createEntityFromDataEntry(entityType, entry, baseURL));
+            count++;
+        }
+        entitySet.setCount(count);
+        return entitySet;
+    }
+
+    /**
+     * Returns the entity of the data entry to use in olingo.
+     *
+     * @param entityType Entity type of the table
+     * @param entry      Data entry
+     * @param baseURL    Base URL of the service
+     * @return Entity
+     * @throws ODataServiceFault
+     * @see Entity
+     */
+    private Entity createEntityFromDataEntry(EdmEntityType entityType, ODataEntry entry, String baseURL)
+            throws ODataServiceFault {
+        String tableName = entityType.getName();
         try {
-            EntityCollection entitySet = new EntityCollection();
-            int count = 0;
-            for (ODataEntry entry : entries) {
-                Entity entity = new Entity();
-                for (DataColumn column : this.dataHandler.getTableMetadata().get(tableName).values()) {
-                    String columnName = column.getColumnName();
-                    entity.addProperty(createPrimitive(column.getColumnType(), columnName, entry.getValue(columnName)));
-                }
-                //Set ETag to the entity
-                EdmEntityType entityType = this.serviceMetadata.getEdm()
-                                                               .getEntityType(new FullQualifiedName(this.namespace,
-                                                                                                    tableName));
-                entity.setId(new URI(ODataUtils.buildLocation(baseURL, entity, entityType.getName(), entityType)));
-                entity.setETag(entry.getValue("ETag"));
-                entity.setType(new FullQualifiedName(this.namespace, tableName).getFullQualifiedNameAsString());
-                entitySet.getEntities().add(entity);
-                count++;
-            }
-            entitySet.setCount(count);
-            return entitySet;
+            Entity entity = new Entity();
+            for (DataColumn column : this.dataHandler.getTableMetadata().get(tableName).values()) {
+                String columnName = column.getColumnName();
+                entity.addProperty(createPrimitive(column.getColumnType(), columnName, entry.getValue(columnName)));
+            }
+            //Set ETag to the entity
+            entity.setId(new URI(ODataUtils.buildLocation(baseURL, entity, entityType.getName(), entityType)));
+            entity.setETag(entry.getValue("ETag"));
+            entity.setType(new FullQualifiedName(this.namespace, tableName).getFullQualifiedNameAsString());
+            return entity;
         } catch (URISyntaxException e) {
             throw new ODataServiceFault(e, "Error occurred when creating id for the entity. :" + e.getMessage());
         } catch (ParseException e) {
@@ -1143,6 +1236,27 @@ public class ODataAdapter implements ServiceHandler {
         }
     }
 
+    /**
+     * This method reads all the entries of the cursor and closes it.
+     *
+     * @param entries Cursor over the entries
+     * @return List of entries
+     * @throws ODataServiceFault
+     */
+    private List<ODataEntry> readEntries(ODataEntryIterator entries) throws ODataServiceFault {
+        try {
+            List<ODataEntry> entryList = new ArrayList<>();
+            while (entries.hasNext()) {
+                entryList.add(entries.next());
+            }
+            return entryList;
+        } catch (ODataRuntimeException e) {
+            throw new ODataServiceFault(e, e.getMessage());
+        } finally {
+            entries.close();
+        }
+    }
+
     /**
      * This method creates the entity in table by calling the insertEntityToTable method in ODataDataHandler.
      * Entity object is wrapped to DataEntry before call the method.
@@ -1359,6 +1473,81 @@ public class ODataAdapter implements ServiceHandler {
         return createEntityCollectionFromDataEntryList(tableName, this.dataHandler.readTable(tableName), baseUrl);
     }
 
+    /**
+     * This method returns the entity collection from the ODataDataHandler, applying the query options supported by
+     * the data handler.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options
+     * @return EntityCollection
+     * @throws ODataServiceFault
+     * @see ODataQuery
+     */
+    private EntityCollection getEntityCollection(String tableName, ODataQuery query, String baseUrl)
+            throws ODataServiceFault {
+        return createEntityCollectionFromDataEntryList(tableName, this.dataHandler.readTable(tableName, query),
+                                                       baseUrl);
+    }
+
+    /**
+     * This method checks whether the entity set read by the request can be written while it is read, which is done
+     * for the JSON format out of batch requests.
+     *
+     * @param request Data request
+     * @return true if the entity set can be streamed
+     */
+    private boolean isStreamable(DataRequest request) {
+        if (!this.streamingRequest.get() || this.batchRequest.get()) {
+            return false;
+        }
+        try {
+            return ContentType.APPLICATION_JSON.isCompatible(request.getResponseContentType());
+        } catch (ContentNegotiatorException e) {
+            return false;
+        }
+    }
+
+    /**
+     * This method writes the entity stream to the response, where the entities are serialized while they are read
+     * from the data handler.
+     *
+     * @param request    Data request
+     * @param response   Entity set response
+     * @param entityType Entity type of the entity set
+     * @param entities   Entity stream
+     * @throws ODataApplicationException
+     * @throws SerializerException
+     */
+    private void writeEntityStream(DataRequest request, EntitySetResponse response, EdmEntityType entityType,
+                                   EntityStream entities) throws ODataApplicationException, SerializerException {
+        try {
+            ContextURL contextURL = request.getContextURL(request.getOdata());
+            EntityCollectionSerializerOptions options =
+                    request.getSerializerOptions(EntityCollectionSerializerOptions.class, contextURL, false);
+            SerializerStreamResult result =
+                    request.getSerializer().entityCollectionStreamed(this.serviceMetadata, entityType, entities,
+                                                                     options);
+            ODataResponse oDataResponse = response.getODataResponse();
+            oDataResponse.setODataContent(result.getODataContent());
+            oDataResponse.setStatusCode(HttpStatusCode.OK.getStatusCode());
+            oDataResponse.setHeader(HttpHeader.CONTENT_TYPE, request.getResponseContentType().toContentTypeString());
+        } catch (ContentNegotiatorException e) {
+            throw new ODataApplicationException(e.getMessage(), HttpStatusCode.NOT_ACCEPTABLE.getStatusCode(),
+                                                Locale.ENGLISH, e);
+        }
+    }
+
+    /**
+     * This method checks whether the request reads the entity set itself, and not its count or a navigation.
+     *
+     * @param uriInfo Uri info of the request
+     * @return true if the entity set is read
+     */
+    private boolean isEntitySetRead(UriInfo uriInfo) {
+        List<UriResource> resourceParts = uriInfo.getUriResourceParts();
+        return resourceParts.size() == 1 && resourceParts.get(0) instanceof UriResourceEntitySet;
+    }
+
     /**
      * This method returns matched entity list, where it uses in getEntity method to get the matched entity.
      *
@@ -2075,4 +2264,125 @@ public class ODataAdapter implements ServiceHandler {
             this.dataHandler.commitTransaction();
         }
     }
+
+    /**
+     * This class creates the entities of the data entries while they are serialized, applying the filter, skip and
+     * top options which were not applied by the data handler. The data entries are closed when all the entities
+     * are read.
+     */
+    private class EntityStream extends EntityIterator {
+
+        private final EdmEntitySet edmEntitySet;
+
+        private final ODataEntryIterator entries;
+
+        private final String baseURL;
+
+        /**
+         * Filter option to apply, or null if it was applied by the data handler.
+         */
+        private final FilterOption filterOption;
+
+        private final Integer count;
+
+        private int skip;
+
+        /**
+         * Number of entities left to return, or -1 if not limited.
+         */
+        private int top;
+
+        private Entity nextEntity;
+
+        private boolean closed;
+
+        EntityStream(EdmEntitySet edmEntitySet, ODataEntryIterator entries, ODataQuery query, SkipOption skipOption,
+                     TopOption topOption, String baseURL) throws ODataApplicationException {
+            this.edmEntitySet = edmEntitySet;
+            this.entries = entries;
+            this.baseURL = baseURL;
+            this.filterOption = query.isFilterApplied() ? null : query.getFilterOption();
+            this.count = query.isCountApplied() ? Integer.valueOf((int) query.getCount()) : null;
+            try {
+                this.skip = skipOption != null && !query.isSkipApplied() ? QueryHandler.getSkipValue(skipOption) : 0;
+                this.top = topOption != null && !query.isTopApplied() ? QueryHandler.getTopValue(topOption) : -1;
+            } catch (ODataApplicationException e) {
+                entries.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.nextEntity == null && !this.closed) {
+                try {
+                    this.nextEntity = readNextEntity();
+                } catch (ODataServiceFault | ODataApplicationException e) {
+                    throw new ODataRuntimeException(e.getMessage(), e);
+                } finally {
+                    if (this.nextEntity == null) {
+                        close();
+                    }
+                }
+            }
+            return this.nextEntity != null;
+        }
+
+        @Override
+        public Entity next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Entity entity = this.nextEntity;
+            this.nextEntity = null;
+            return entity;
+        }
+
+        private Entity readNextEntity() throws ODataServiceFault, ODataApplicationException {
+            while (this.top != 0 && this.entries.hasNext()) {
+                Entity entity = createEntityFromDataEntry(this.edmEntitySet.getEntityType(), this.entries.next(),
+                                                          this.baseURL);
+                if (this.filterOption != null &&
+                    !QueryHandler.matchesFilter(this.filterOption, entity, this.edmEntitySet)) {
+                    continue;
+                }
+                if (this.skip > 0) {
+                    this.skip--;
+                    continue;
+                }
+                if (this.top > 0) {
+                    this.top--;
+                }
+                return entity;
+            }
+            return null;
+        }
+
+        @Override
+        public Integer getCount() {
+            return this.count;
+        }
+
+        @Override
+        public URI getNext() {
+            return null;
+        }
+
+        @Override
+        public URI getDeltaLink() {
+            return null;
+        }
+
+        @Override
+        public List<Operation> getOperations() {
+            return Collections.emptyList();
+        }
+
+        void close() {
+            if (!this.closed) {
+                this.closed = true;
+                this.entries.close();
+            }
+        }
+    }
 }
@@ -39,6 +39,38 @@ public interface ODataDataHandler {
      */
     List<ODataEntry> readTable(String tableName) throws ODataServiceFault;
 
+    /**
+     * This method read the table data applying the given query options where possible and return.
+     * The options applied by the data handler are marked in the query, and the rest are applied to the returned
+     * entities by the caller. By default no option is applied and the whole table is read.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options of the request
+     * @return EntityCollection
+     * @throws ODataServiceFault
+     * @see ODataQuery
+     */
+    default List<ODataEntry> readTable(String tableName, ODataQuery query) throws ODataServiceFault {
+        return readTable(tableName);
+    }
+
+    /**
+     * This method returns a cursor over the table data applying the given query options where possible, which reads
+     * the entries from the data source while they are iterated, so that large tables can be written to the response
+     * without holding all the entries in memory. The options are marked in the query as in
+     * {@link #readTable(String, ODataQuery)}, and the returned cursor must be closed by the caller.
+     * By default the entries are read as in {@link #readTable(String, ODataQuery)}.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options of the request
+     * @return Cursor over the entries
+     * @throws ODataServiceFault
+     * @see ODataEntryIterator
+     */
+    default ODataEntryIterator streamTable(String tableName, ODataQuery query) throws ODataServiceFault {
+        return ODataEntryIterator.of(readTable(tableName, query));
+    }
+
     /**
      * This method read the table with Keys and return.
      * Return a list of DataEntry object which has been wrapped the entity.
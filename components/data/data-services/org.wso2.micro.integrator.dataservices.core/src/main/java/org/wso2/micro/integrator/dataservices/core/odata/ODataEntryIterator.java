@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.dataservices.core.odata;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This interface represents a cursor over the entries of a table, which reads the entries from the data source as
+ * they are iterated. The cursor holds the resources of the data source until it is closed, therefore it must be
+ * closed when the entries are no longer read.
+ * Errors occurred while reading the entries are thrown as {@link org.apache.olingo.commons.api.ex.ODataRuntimeException}.
+ *
+ * @see ODataDataHandler#streamTable(String, ODataQuery)
+ */
+public interface ODataEntryIterator extends Iterator<ODataEntry>, AutoCloseable {
+
+    /**
+     * This method releases the resources held by the cursor.
+     */
+    @Override
+    void close();
+
+    /**
+     * This method returns a cursor over the given entries, which were already read.
+     *
+     * @param entries List of entries
+     * @return Cursor over the entries
+     */
+    static ODataEntryIterator of(List<ODataEntry> entries) {
+        final Iterator<ODataEntry> iterator = entries.iterator();
+        return new ODataEntryIterator() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ODataEntry next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.dataservices.core.odata;
+
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectItem;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class describes the system query options of an entity set read, which a data handler may apply while reading
+ * the table instead of reading all the entities.
+ * <p>
+ * The options are defined to be applied in the order filter, count, orderby, skip and top. A data handler marks the
+ * options it applied, and the remaining options are applied in memory on the returned entities. Therefore an option
+ * must only be applied by the data handler if all the requested options preceding it were applied as well.
+ * <p>
+ * A data handler may also narrow the entities it reads without marking an option as applied, as long as the result of
+ * the in-memory evaluation is not changed, e.g. by reading only the entities matching a part of the filter.
+ * <p>
+ * The selected properties may be projected only when the filter and the order are applied by the data handler, and
+ * the keys of the table must always be read. The entities read with a projection do not carry an ETag, as the ETag
+ * is computed from all the properties of an entity.
+ *
+ * @see ODataDataHandler#readTable(String, ODataQuery)
+ */
+public class ODataQuery {
+
+    private final FilterOption filterOption;
+
+    private final OrderByOption orderByOption;
+
+    private final SkipOption skipOption;
+
+    private final TopOption topOption;
+
+    private final CountOption countOption;
+
+    private final SelectOption selectOption;
+
+    private boolean filterApplied;
+
+    private boolean orderByApplied;
+
+    private boolean skipApplied;
+
+    private boolean topApplied;
+
+    private boolean countApplied;
+
+    private boolean projectionApplied;
+
+    private long count;
+
+    public ODataQuery(FilterOption filterOption, OrderByOption orderByOption, SkipOption skipOption,
+                      TopOption topOption, CountOption countOption) {
+        this(filterOption, orderByOption, skipOption, topOption, countOption, null);
+    }
+
+    public ODataQuery(FilterOption filterOption, OrderByOption orderByOption, SkipOption skipOption,
+                      TopOption topOption, CountOption countOption, SelectOption selectOption) {
+        this.filterOption = filterOption;
+        this.orderByOption = orderByOption;
+        this.skipOption = skipOption;
+        this.topOption = topOption;
+        this.countOption = countOption;
+        this.selectOption = selectOption;
+    }
+
+    public FilterOption getFilterOption() {
+        return filterOption;
+    }
+
+    public OrderByOption getOrderByOption() {
+        return orderByOption;
+    }
+
+    /**
+     * @return number of entities to skip, or null if $skip is not requested
+     */
+    public Integer getSkip() {
+        return skipOption != null ? skipOption.getValue() : null;
+    }
+
+    /**
+     * @return maximum number of entities to return, or null if $top is not requested
+     */
+    public Integer getTop() {
+        return topOption != null ? topOption.getValue() : null;
+    }
+
+    /**
+     * @return true if the number of entities matching the filter has to be returned
+     */
+    public boolean isCountRequested() {
+        return countOption != null && countOption.getValue();
+    }
+
+    /**
+     * @return names of the selected properties, or null if all the properties are selected
+     */
+    public List<String> getSelectedProperties() {
+        if (selectOption == null || selectOption.getSelectItems().isEmpty()) {
+            return null;
+        }
+        List<String> properties = new ArrayList<>();
+        for (SelectItem item : selectOption.getSelectItems()) {
+            if (item.isStar() || item.getResourcePath() == null) {
+                return null;
+            }
+            List<UriResource> resourceParts = item.getResourcePath().getUriResourceParts();
+            if (resourceParts.size() != 1 || !(resourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+                return null;
+            }
+            properties.add(((UriResourcePrimitiveProperty) resourceParts.get(0)).getProperty().getName());
+        }
+        return properties;
+    }
+
+    public boolean isFilterApplied() {
+        return filterApplied;
+    }
+
+    public void setFilterApplied(boolean filterApplied) {
+        this.filterApplied = filterApplied;
+    }
+
+    public boolean isOrderByApplied() {
+        return orderByApplied;
+    }
+
+    public void setOrderByApplied(boolean orderByApplied) {
+        this.orderByApplied = orderByApplied;
+    }
+
+    public boolean isSkipApplied() {
+        return skipApplied;
+    }
+
+    public void setSkipApplied(boolean skipApplied) {
+        this.skipApplied = skipApplied;
+    }
+
+    public boolean isTopApplied() {
+        return topApplied;
+    }
+
+    public void setTopApplied(boolean topApplied) {
+        this.topApplied = topApplied;
+    }
+
+    public boolean isProjectionApplied() {
+        return projectionApplied;
+    }
+
+    public void setProjectionApplied(boolean projectionApplied) {
+        this.projectionApplied = projectionApplied;
+    }
+
+    public boolean isCountApplied() {
+        return countApplied;
+    }
+
+    /**
+     * @return number of entities matching the filter, if the count is applied by the data handler
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * This method sets the number of entities matching the filter, and marks the count as applied.
+     *
+     * @param count number of entities matching the filter
+     */
+    public void setCount(long count) {
+        this.count = count;
+        this.countApplied = true;
+    }
+
+    /**
+     * @return true if the filter is either applied by the data handler or not requested
+     */
+    public boolean isFiltered() {
+        return filterOption == null || filterApplied;
+    }
+
+    /**
+     * @return true if the order is either applied by the data handler or not requested
+     */
+    public boolean isOrdered() {
+        return orderByOption == null || orderByApplied;
+    }
+
+    /**
+     * This method clears the options applied by the data handler, i.e. when it falls back to reading all the entities.
+     */
+    public void reset() {
+        filterApplied = false;
+        orderByApplied = false;
+        skipApplied = false;
+        topApplied = false;
+        countApplied = false;
+        projectionApplied = false;
+        count = 0;
+    }
+}
@@ -19,6 +19,7 @@
 package org.wso2.micro.integrator.dataservices.core.odata;
 
 import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataHttpHandler;
 import org.apache.olingo.server.api.ServiceMetadata;
@@ -56,9 +57,14 @@ public class ODataServiceHandler {
      */
     private ODataHttpHandler handler;
 
+    /**
+     * Service handler which processes the requests.
+     */
+    private ODataAdapter processor;
+
     public ODataServiceHandler(ODataDataHandler dataHandler, String namespace, String configID)
             throws ODataServiceFault {
-        ODataAdapter processor = new ODataAdapter(dataHandler, namespace, configID);
+        this.processor = new ODataAdapter(dataHandler, namespace, configID);
         OData odata = OData4Impl.newInstance();
         ServiceMetadata edm = odata.createServiceMetadata(processor.getEdmProvider(), new ArrayList<EdmxReference>());
         this.handler = odata.createHandler(edm);
@@ -77,7 +83,24 @@ public class ODataServiceHandler {
             Security Comment :
             Modifying only servlet path in the request.
          */
-        handler.process(modifyServletPath(req, serviceRootPath), resp);
+        // the parts of a batch request are serialized into the batch response, therefore they are not streamed
+        processor.startRequest(!isBatchRequest(req));
+        try {
+            handler.process(modifyServletPath(req, serviceRootPath), resp);
+        } finally {
+            processor.endRequest();
+        }
+    }
+
+    /**
+     * This method checks whether the request is a batch request, which has a multipart/mixed body.
+     *
+     * @param req HTTPServletRequest
+     * @return true if the request is a batch request
+     */
+    private boolean isBatchRequest(HttpServletRequest req) {
+        String contentType = req.getHeader(HttpHeader.CONTENT_TYPE);
+        return contentType != null && contentType.toLowerCase(Locale.ENGLISH).startsWith("multipart/mixed");
     }
 
     /**
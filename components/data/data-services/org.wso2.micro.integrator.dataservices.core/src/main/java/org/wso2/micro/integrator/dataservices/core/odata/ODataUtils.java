@@ -26,8 +26,16 @@ import org.apache.olingo.commons.api.edm.EdmProperty;
 import org.apache.olingo.commons.core.Encoder;
 import org.apache.olingo.commons.core.edm.primitivetype.EdmPrimitiveTypeFactory;
 import org.apache.olingo.commons.core.edm.primitivetype.EdmString;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.Binary;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -102,4 +110,37 @@ public class ODataUtils {
         return location.toString();
     }
 
+    /**
+     * This method splits a filter expression to the operands of its top level and operators.
+     *
+     * @param expression filter expression
+     * @return expressions which all have to be true for the filter to be true
+     */
+    public static List<Expression> getConjuncts(Expression expression) {
+        List<Expression> conjuncts = new ArrayList<>();
+        if (expression instanceof Binary && ((Binary) expression).getOperator() == BinaryOperatorKind.AND) {
+            conjuncts.addAll(getConjuncts(((Binary) expression).getLeftOperand()));
+            conjuncts.addAll(getConjuncts(((Binary) expression).getRightOperand()));
+        } else {
+            conjuncts.add(expression);
+        }
+        return conjuncts;
+    }
+
+    /**
+     * This method returns the name of the property referred by an expression.
+     *
+     * @param expression expression
+     * @return property name, or null if the expression is not a primitive property of the entity
+     */
+    public static String getPropertyName(Expression expression) {
+        if (!(expression instanceof Member)) {
+            return null;
+        }
+        List<UriResource> uriResourceParts = ((Member) expression).getResourcePath().getUriResourceParts();
+        if (uriResourceParts.size() != 1 || !(uriResourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+            return null;
+        }
+        return ((UriResourcePrimitiveProperty) uriResourceParts.get(0)).getProperty().getName();
+    }
 }
@@ -67,24 +67,37 @@ public class QueryHandler {
      */
     public static void applyFilterSystemQuery(final FilterOption filterOption, final EntityCollection entitySet,
                                               final EdmBindingTarget edmEntitySet) throws ODataApplicationException {
+        final Iterator<Entity> iter = entitySet.getEntities().iterator();
+        while (iter.hasNext()) {
+            if (!matchesFilter(filterOption, iter.next(), edmEntitySet)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * This method evaluates the filter query option for the given entity.
+     *
+     * @param filterOption Filter option
+     * @param entity       Entity
+     * @param edmEntitySet Entity set
+     * @return false if the filter expression evaluates to false for the entity
+     * @throws ODataApplicationException
+     */
+    public static boolean matchesFilter(final FilterOption filterOption, final Entity entity,
+                                        final EdmBindingTarget edmEntitySet) throws ODataApplicationException {
         try {
-            final Iterator<Entity> iter = entitySet.getEntities().iterator();
-            while (iter.hasNext()) {
-                final VisitorOperand operand =
-                        filterOption.getExpression().accept(new ExpressionVisitorImpl(iter.next(), edmEntitySet));
-                final TypedOperand typedOperand = operand.asTypedOperand();
+            final VisitorOperand operand =
+                    filterOption.getExpression().accept(new ExpressionVisitorImpl(entity, edmEntitySet));
+            final TypedOperand typedOperand = operand.asTypedOperand();
 
-                if (typedOperand.is(ODataConstants.primitiveBoolean)) {
-                    if (Boolean.FALSE.equals(typedOperand.getTypedValue(Boolean.class))) {
-                        iter.remove();
-                    }
-                } else {
-                    throw new ODataApplicationException(
-                            "Invalid filter expression. Filter expressions must return a value of " +
-                            "type Edm.Boolean", HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
-                }
+            if (typedOperand.is(ODataConstants.primitiveBoolean)) {
+                return !Boolean.FALSE.equals(typedOperand.getTypedValue(Boolean.class));
+            } else {
+                throw new ODataApplicationException(
+                        "Invalid filter expression. Filter expressions must return a value of " +
+                        "type Edm.Boolean", HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
             }
-
         } catch (ExpressionVisitException e) {
             throw new ODataApplicationException("Exception in filter evaluation",
                                                 HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
@@ -100,8 +113,19 @@ public class QueryHandler {
      */
     public static void applyTopSystemQueryOption(final TopOption topOption, final EntityCollection entitySet)
             throws ODataApplicationException {
+        reduceToSize(entitySet, getTopValue(topOption));
+    }
+
+    /**
+     * This method returns the number of entities to return for the given top query option.
+     *
+     * @param topOption Top option
+     * @return Top value
+     * @throws ODataApplicationException if the value is negative
+     */
+    public static int getTopValue(final TopOption topOption) throws ODataApplicationException {
         if (topOption.getValue() >= 0) {
-            reduceToSize(entitySet, topOption.getValue());
+            return topOption.getValue();
         } else {
             throw new ODataApplicationException("Top value must be positive",
                                                 HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
@@ -129,8 +153,19 @@ public class QueryHandler {
      */
     public static void applySkipSystemQueryHandler(final SkipOption skipOption, final EntityCollection entitySet)
             throws ODataApplicationException {
+        popAtMost(entitySet, getSkipValue(skipOption));
+    }
+
+    /**
+     * This method returns the number of entities to skip for the given skip query option.
+     *
+     * @param skipOption Skip option
+     * @return Skip value
+     * @throws ODataApplicationException if the value is negative
+     */
+    public static int getSkipValue(final SkipOption skipOption) throws ODataApplicationException {
         if (skipOption.getValue() >= 0) {
-            popAtMost(entitySet, skipOption.getValue());
+            return skipOption.getValue();
         } else {
             throw new ODataApplicationException("Skip value must be positive",
                                                 HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
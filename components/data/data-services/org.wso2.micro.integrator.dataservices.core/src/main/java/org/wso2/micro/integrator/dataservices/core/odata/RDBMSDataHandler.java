@@ -22,11 +22,18 @@ import org.apache.axis2.databinding.utils.ConverterUtil;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
 import org.wso2.micro.integrator.dataservices.common.DBConstants;
 import org.wso2.micro.integrator.dataservices.core.odata.DataColumn.ODataDataType;
 import org.wso2.micro.integrator.dataservices.core.DBUtils;
 import org.wso2.micro.integrator.dataservices.core.DataServiceFault;
 import org.wso2.micro.integrator.dataservices.core.engine.DataEntry;
+import org.wso2.micro.integrator.dataservices.core.odata.expression.SQLExpressionVisitor;
+import org.wso2.micro.integrator.dataservices.core.odata.expression.SQLExpressionVisitor.SQLExpression;
 
 import javax.sql.DataSource;
 import java.io.BufferedReader;
@@ -52,6 +59,7 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * This class implements RDBMS datasource related operations for ODataDataHandler.
@@ -92,6 +100,26 @@ public class RDBMSDataHandler implements ODataDataHandler {
     public static final String VIEW = "VIEW";
     public static final String ORACLE_SERVER = "oracle";
     public static final String MSSQL_SERVER = "microsoft sql server";
+    public static final String MYSQL_SERVER = "mysql";
+    public static final String MARIADB_SERVER = "mariadb";
+    public static final String POSTGRESQL_SERVER = "postgresql";
+    public static final String H2_SERVER = "h2";
+
+    /**
+     * Largest row count accepted by LIMIT, used when only an offset is required.
+     */
+    private static final String MYSQL_MAX_ROWS = "18446744073709551615";
+
+    /**
+     * Number of rows fetched from the database at a time when the entities are streamed.
+     */
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * Fetch size which makes MySQL Connector/J stream the rows one by one, as it reads the whole result set into
+     * memory for any other fetch size unless the connection is configured with useCursorFetch=true.
+     */
+    private static final int MYSQL_STREAM_FETCH_SIZE = Integer.MIN_VALUE;
 
     private ThreadLocal<Connection> transactionalConnection = new ThreadLocal<Connection>() {
         protected synchronized Connection initialValue() {
@@ -107,6 +135,12 @@ public class RDBMSDataHandler implements ODataDataHandler {
      */
     private Map<String, NavigationTable> navigationProperties;
 
+    /**
+     * Database product name in lower case, and major version, used to choose the SQL of pushed down query options.
+     */
+    private String databaseProductName;
+    private int databaseMajorVersion;
+
     public RDBMSDataHandler(DataSource dataSource, String configId) throws ODataServiceFault {
         this.dataSource = dataSource;
         this.tableList = generateTableList();
@@ -390,6 +424,290 @@ public class RDBMSDataHandler implements ODataDataHandler {
         }
     }
 
+    @Override
+    public List<ODataEntry> readTable(String tableName, ODataQuery query) throws ODataServiceFault {
+        SelectQuery select = createSelectQuery(tableName, query);
+        if (select == null) {
+            return readTable(tableName);
+        }
+        try {
+            List<ODataEntry> entries = executeQuery(tableName, select.sql, select.parameters);
+            applyPaging(tableName, query, select);
+            return entries;
+        } catch (SQLException e) {
+            if (getTransactionalConnection() != null) {
+                throw new ODataServiceFault(e, "Error occurred while reading entities from " + tableName +
+                                               " table. :" + e.getMessage());
+            }
+            log.warn("Error occurred while reading entities from " + tableName + " table with the query options, " +
+                     "reading all the entities. :" + e.getMessage());
+            query.reset();
+            return readTable(tableName);
+        }
+    }
+
+    @Override
+    public ODataEntryIterator streamTable(String tableName, ODataQuery query) throws ODataServiceFault {
+        if (getTransactionalConnection() != null) {
+            // the transactional connection is shared with the other operations of the transaction
+            return ODataEntryIterator.of(readTable(tableName, query));
+        }
+        SelectQuery select = createSelectQuery(tableName, query);
+        String sql = select != null ? select.sql : "select * from " + tableName;
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        boolean autoCommit = true;
+        try {
+            connection = this.dataSource.getConnection();
+            autoCommit = connection.getAutoCommit();
+            if (autoCommit) {
+                // some drivers such as PostgreSQL fetch the rows with a cursor only within a transaction
+                connection.setAutoCommit(false);
+            }
+            statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(getStreamFetchSize());
+            if (select != null) {
+                for (int i = 0; i < select.parameters.size(); i++) {
+                    statement.setObject(i + 1, select.parameters.get(i));
+                }
+            }
+            resultSet = statement.executeQuery();
+            if (select != null) {
+                applyPaging(tableName, query, select);
+            }
+            return new ResultSetEntryIterator(tableName, connection, statement, resultSet, autoCommit);
+        } catch (SQLException e) {
+            releaseResources(resultSet, statement);
+            if (connection != null) {
+                releaseStreamConnection(connection, autoCommit);
+            }
+            if (select == null) {
+                throw new ODataServiceFault(e, "Error occurred while reading entities from " + tableName +
+                                               " table. :" + e.getMessage());
+            }
+            log.warn("Error occurred while reading entities from " + tableName + " table with the query options, " +
+                     "reading all the entities. :" + e.getMessage());
+            query.reset();
+            return ODataEntryIterator.of(readTable(tableName));
+        }
+    }
+
+    /**
+     * This method creates the select query of the table for the query options which can be applied in SQL, and marks
+     * them in the query. The skip and top options are marked once the query is executed.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options of the request
+     * @return Select query, or null if none of the options can be applied
+     * @see #applyPaging(String, ODataQuery, SelectQuery)
+     */
+    private SelectQuery createSelectQuery(String tableName, ODataQuery query) {
+        SQLExpressionVisitor visitor = new SQLExpressionVisitor(this.rdbmsDataTypes.get(tableName),
+                                                                getLengthFunction(), isBracketLikeWildcard());
+        String where = "";
+        List<Object> parameters = new ArrayList<>();
+        if (query.getFilterOption() != null) {
+            try {
+                SQLExpression predicate = visitor.translateFilter(query.getFilterOption().getExpression());
+                where = " WHERE " + predicate.getSql();
+                parameters.addAll(predicate.getParameters());
+                query.setFilterApplied(true);
+            } catch (ExpressionVisitException | ODataApplicationException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Filter of " + tableName + " table is applied in memory. :" + e.getMessage());
+                }
+            }
+        }
+        String orderBy = null;
+        if (query.isFiltered() && query.getOrderByOption() != null) {
+            orderBy = createOrderByClause(visitor, query.getOrderByOption());
+            query.setOrderByApplied(orderBy != null);
+        }
+        String paging = null;
+        if (query.isFiltered() && query.isOrdered()) {
+            paging = createPagingClause(query.getSkip(), query.getTop(), orderBy != null);
+        }
+        if (!query.isFilterApplied() && orderBy == null && paging == null) {
+            return null;
+        }
+        String sql = "SELECT * FROM " + tableName + where + (orderBy != null ? orderBy : "") +
+                     (paging != null ? paging : "");
+        return new SelectQuery(sql, where, parameters, paging != null);
+    }
+
+    /**
+     * This method marks the skip and top options in the query if they were applied by the select query, and counts
+     * the entities matching the filter when the count is requested, as the paged result can not be counted.
+     *
+     * @param tableName Name of the table
+     * @param query     Query options of the request
+     * @param select    Executed select query
+     * @throws SQLException
+     */
+    private void applyPaging(String tableName, ODataQuery query, SelectQuery select) throws SQLException {
+        if (select.paged) {
+            query.setSkipApplied(query.getSkip() != null);
+            query.setTopApplied(query.getTop() != null);
+            if (query.isCountRequested()) {
+                query.setCount(executeCountQuery("SELECT COUNT(*) FROM " + tableName + select.where,
+                                                 select.parameters));
+            }
+        }
+    }
+
+    /**
+     * This method executes a select query of the table and creates the entries from the result set.
+     *
+     * @param tableName  Name of the table
+     * @param sql        Select query
+     * @param parameters Values of the query parameters
+     * @return List of entries
+     * @throws SQLException
+     * @throws ODataServiceFault
+     */
+    private List<ODataEntry> executeQuery(String tableName, String sql, List<Object> parameters)
+            throws SQLException, ODataServiceFault {
+        ResultSet resultSet = null;
+        Connection connection = null;
+        PreparedStatement statement = null;
+        try {
+            connection = initializeConnection();
+            statement = connection.prepareStatement(sql);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            resultSet = statement.executeQuery();
+            return createDataEntryCollectionFromRS(tableName, resultSet);
+        } finally {
+            releaseResources(resultSet, statement);
+            releaseConnection(connection);
+        }
+    }
+
+    private long executeCountQuery(String sql, List<Object> parameters) throws SQLException {
+        ResultSet resultSet = null;
+        Connection connection = null;
+        PreparedStatement statement = null;
+        try {
+            connection = initializeConnection();
+            statement = connection.prepareStatement(sql);
+            for (int i = 0; i < parameters.size(); i++) {
+                statement.setObject(i + 1, parameters.get(i));
+            }
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        } finally {
+            releaseResources(resultSet, statement);
+            releaseConnection(connection);
+        }
+    }
+
+    /**
+     * This method creates the ORDER BY clause for the order by option, sorting null values before the others as
+     * in the in-memory ordering.
+     *
+     * @param visitor       SQL expression visitor of the table
+     * @param orderByOption Order by option
+     * @return ORDER BY clause, or null if an order by item can't be translated
+     */
+    private String createOrderByClause(SQLExpressionVisitor visitor, OrderByOption orderByOption) {
+        StringBuilder sql = new StringBuilder();
+        try {
+            for (OrderByItem item : orderByOption.getOrders()) {
+                String value = visitor.translateOrderBy(item.getExpression()).getSql();
+                String direction = item.isDescending() ? " DESC" : " ASC";
+                sql.append(sql.length() == 0 ? " ORDER BY " : ", ");
+                sql.append("CASE WHEN ").append(value).append(" IS NULL THEN 0 ELSE 1 END").append(direction)
+                   .append(", ").append(value).append(direction);
+            }
+        } catch (ExpressionVisitException | ODataApplicationException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Order by option is applied in memory. :" + e.getMessage());
+            }
+            return null;
+        }
+        return sql.length() == 0 ? null : sql.toString();
+    }
+
+    /**
+     * This method creates the clause which skips and limits the rows for the database.
+     *
+     * @param skip    Number of rows to skip, or null
+     * @param top     Maximum number of rows, or null
+     * @param ordered Whether the query has an ORDER BY clause
+     * @return paging clause, or null if paging is not requested or not supported for the database
+     */
+    private String createPagingClause(Integer skip, Integer top, boolean ordered) {
+        if ((skip == null && top == null) || (skip != null && skip < 0) || (top != null && top <= 0)) {
+            // $top=0 and invalid values are handled in memory
+            return null;
+        }
+        StringBuilder sql = new StringBuilder();
+        if (this.databaseProductName.contains(MYSQL_SERVER) || this.databaseProductName.contains(MARIADB_SERVER)) {
+            sql.append(" LIMIT ").append(top != null ? String.valueOf(top) : MYSQL_MAX_ROWS);
+            if (skip != null) {
+                sql.append(" OFFSET ").append(skip);
+            }
+        } else if (this.databaseProductName.contains(POSTGRESQL_SERVER) || H2_SERVER.equals(this.databaseProductName)) {
+            if (top != null) {
+                sql.append(" LIMIT ").append(top);
+            } else if (H2_SERVER.equals(this.databaseProductName)) {
+                sql.append(" LIMIT ").append(Integer.MAX_VALUE);
+            }
+            if (skip != null) {
+                sql.append(" OFFSET ").append(skip);
+            }
+        } else if ((this.databaseProductName.contains(ORACLE_SERVER) && this.databaseMajorVersion >= 12) ||
+                   (this.databaseProductName.contains(MSSQL_SERVER) && this.databaseMajorVersion >= 11)) {
+            if (!ordered && this.databaseProductName.contains(MSSQL_SERVER)) {
+                sql.append(" ORDER BY (SELECT NULL)");
+            }
+            sql.append(" OFFSET ").append(skip != null ? skip : 0).append(" ROWS");
+            if (top != null) {
+                sql.append(" FETCH NEXT ").append(top).append(" ROWS ONLY");
+            }
+        } else {
+            return null;
+        }
+        return sql.toString();
+    }
+
+    /**
+     * @return SQL function returning the number of characters of a string in the database, or null if unknown
+     */
+    private String getLengthFunction() {
+        if (this.databaseProductName.contains(MYSQL_SERVER) || this.databaseProductName.contains(MARIADB_SERVER)) {
+            return "CHAR_LENGTH";
+        } else if (this.databaseProductName.contains(ORACLE_SERVER) ||
+                   this.databaseProductName.contains(POSTGRESQL_SERVER) || H2_SERVER.equals(this.databaseProductName)) {
+            return "LENGTH";
+        }
+        // LEN of SQL Server ignores trailing spaces
+        return null;
+    }
+
+    /**
+     * @return fetch size of the statements reading the streamed entities
+     */
+    private int getStreamFetchSize() {
+        // MariaDB Connector/J streams with a positive fetch size, while MariaDB servers accessed through
+        // MySQL Connector/J report the product name of MySQL
+        if (this.databaseProductName.contains(MYSQL_SERVER)) {
+            return MYSQL_STREAM_FETCH_SIZE;
+        }
+        return STREAM_FETCH_SIZE;
+    }
+
+    /**
+     * @return false if the database is known to treat '[' as an ordinary character in LIKE patterns
+     */
+    private boolean isBracketLikeWildcard() {
+        return !(this.databaseProductName.contains(MYSQL_SERVER) || this.databaseProductName.contains(MARIADB_SERVER) ||
+                 this.databaseProductName.contains(ORACLE_SERVER) ||
+                 this.databaseProductName.contains(POSTGRESQL_SERVER) || H2_SERVER.equals(this.databaseProductName));
+    }
+
     @Override
     public List<String> getTableList() {
         return this.tableList;
@@ -828,18 +1146,8 @@ public class RDBMSDataHandler implements ODataDataHandler {
             throws ODataServiceFault {
         List<ODataEntry> entitySet = new ArrayList<>();
         try {
-            String paramValue;
             while (resultSet.next()) {
-                ODataEntry entry = new ODataEntry();
-                //Creating a unique string to represent the
-                for (String column : this.rdbmsDataTypes.get(tableName).keySet()) {
-                    int columnType = this.rdbmsDataTypes.get(tableName).get(column);
-                    paramValue = getValueFromResultSet(columnType, column, resultSet);
-                    entry.addValue(column, paramValue);
-                }
-                //Set Etag to the entity
-                entry.addValue("ETag", ODataUtils.generateETag(this.configID, tableName, entry));
-                entitySet.add(entry);
+                entitySet.add(createDataEntryFromRS(tableName, resultSet));
             }
             return entitySet;
         } catch (SQLException e) {
@@ -847,6 +1155,25 @@ public class RDBMSDataHandler implements ODataDataHandler {
         }
     }
 
+    /**
+     * This method creates the entry of the current row of the result set.
+     *
+     * @param tableName Name of the table
+     * @param resultSet Result set
+     * @return Entry of the row
+     * @throws SQLException
+     */
+    private ODataEntry createDataEntryFromRS(String tableName, ResultSet resultSet) throws SQLException {
+        ODataEntry entry = new ODataEntry();
+        for (String column : this.rdbmsDataTypes.get(tableName).keySet()) {
+            int columnType = this.rdbmsDataTypes.get(tableName).get(column);
+            entry.addValue(column, getValueFromResultSet(columnType, column, resultSet));
+        }
+        //Set Etag to the entity
+        entry.addValue("ETag", ODataUtils.generateETag(this.configID, tableName, entry));
+        return entry;
+    }
+
     private String getValueFromResultSet(int columnType, String column, ResultSet resultSet) throws SQLException {
         String paramValue;
         switch (columnType) {
@@ -1081,6 +1408,8 @@ public class RDBMSDataHandler implements ODataDataHandler {
             connection = initializeConnection();
             DatabaseMetaData metadata = connection.getMetaData();
             String catalog = connection.getCatalog();
+            this.databaseProductName = metadata.getDatabaseProductName().toLowerCase();
+            this.databaseMajorVersion = metadata.getDatabaseMajorVersion();
             for (String tableName : this.tableList) {
                 this.tableMetaData.put(tableName, readTableColumnMetaData(tableName, metadata));
                 this.navigationProperties.put(tableName, readForeignKeys(tableName, metadata, catalog));
@@ -1416,4 +1745,117 @@ public class RDBMSDataHandler implements ODataDataHandler {
             }
         }
     }
+
+    /**
+     * This method releases the connection of a streamed read, ending its read only transaction.
+     *
+     * @param connection Connection
+     * @param autoCommit Auto commit mode of the connection before the read
+     */
+    private void releaseStreamConnection(Connection connection, boolean autoCommit) {
+        try {
+            if (autoCommit) {
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            log.warn("Error occurred while ending the transaction of the streamed read. :" + e.getMessage());
+        } finally {
+            try {
+                connection.close();
+            } catch (Exception ignore) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * This class represents a select query of a table created for the query options.
+     */
+    private static class SelectQuery {
+
+        private final String sql;
+
+        private final String where;
+
+        private final List<Object> parameters;
+
+        /**
+         * Whether the skip and top options are applied by the query.
+         */
+        private final boolean paged;
+
+        SelectQuery(String sql, String where, List<Object> parameters, boolean paged) {
+            this.sql = sql;
+            this.where = where;
+            this.parameters = parameters;
+            this.paged = paged;
+        }
+    }
+
+    /**
+     * This class iterates the rows of a result set, holding the connection until the result set is closed.
+     */
+    private class ResultSetEntryIterator implements ODataEntryIterator {
+
+        private final String tableName;
+
+        private final Connection connection;
+
+        private final PreparedStatement statement;
+
+        private final ResultSet resultSet;
+
+        private final boolean autoCommit;
+
+        private ODataEntry nextEntry;
+
+        private boolean closed;
+
+        ResultSetEntryIterator(String tableName, Connection connection, PreparedStatement statement,
+                               ResultSet resultSet, boolean autoCommit) {
+            this.tableName = tableName;
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+            this.autoCommit = autoCommit;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (this.nextEntry == null && !this.closed) {
+                try {
+                    if (this.resultSet.next()) {
+                        this.nextEntry = createDataEntryFromRS(this.tableName, this.resultSet);
+                    } else {
+                        close();
+                    }
+                } catch (SQLException e) {
+                    close();
+                    throw new ODataRuntimeException("Error occurred while reading entities from " + this.tableName +
+                                                    " table. :" + e.getMessage(), e);
+                }
+            }
+            return this.nextEntry != null;
+        }
+
+        @Override
+        public ODataEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ODataEntry entry = this.nextEntry;
+            this.nextEntry = null;
+            return entry;
+        }
+
+        @Override
+        public void close() {
+            if (!this.closed) {
+                this.closed = true;
+                releaseResources(this.resultSet, this.statement);
+                releaseStreamConnection(this.connection, this.autoCommit);
+            }
+        }
+    }
 }
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.dataservices.core.odata.expression;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.apache.olingo.commons.api.edm.EdmEnumType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitor;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.UnaryOperatorKind;
+import org.bson.types.ObjectId;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataConstants;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class translates an OData expression to a MongoDB query document of the fields of a collection.
+ * <p>
+ * All the fields of a collection are exposed as strings, so only the fields holding string values, and the object
+ * id, are compared by MongoDB with the same result as the in-memory evaluation of {@link ExpressionVisitorImpl}.
+ * Comparisons of such a field with a string literal or null, and the string methods contains, startswith and
+ * endswith of a string literal are translated, and an {@link ExpressionVisitException} is thrown for the rest.
+ */
+public class MongoExpressionVisitor implements ExpressionVisitor<MongoExpressionVisitor.MongoExpression> {
+
+    private static final String DOCUMENT_ID = "_id";
+
+    /**
+     * Fields of the collection holding only string values, or object ids for the document id.
+     */
+    private final Set<String> comparableFields;
+
+    public MongoExpressionVisitor(Set<String> comparableFields) {
+        this.comparableFields = comparableFields;
+    }
+
+    /**
+     * This method translates a filter expression to a query document.
+     *
+     * @param expression Filter expression
+     * @return Query document
+     * @throws ExpressionVisitException  if the expression can't be translated
+     * @throws ODataApplicationException
+     */
+    public DBObject translateFilter(Expression expression) throws ExpressionVisitException, ODataApplicationException {
+        MongoExpression predicate = expression.accept(this);
+        if (predicate.kind != Kind.PREDICATE) {
+            throw notTranslatable("filter of type " + predicate.kind);
+        }
+        return predicate.query;
+    }
+
+    /**
+     * This method translates the conjuncts of a filter expression which can be translated to a query document.
+     * The documents matching the query include all the documents matching the filter.
+     *
+     * @param expression Filter expression
+     * @return Query document, which is empty if no conjunct can be translated
+     * @throws ODataApplicationException
+     */
+    public DBObject translateConjuncts(Expression expression) throws ODataApplicationException {
+        List<DBObject> queries = new ArrayList<>();
+        for (Expression conjunct : ODataUtils.getConjuncts(expression)) {
+            try {
+                queries.add(translateFilter(conjunct));
+            } catch (ExpressionVisitException e) {
+                // the conjunct is evaluated in memory
+            }
+        }
+        if (queries.isEmpty()) {
+            return new BasicDBObject();
+        }
+        return queries.size() == 1 ? queries.get(0) : new BasicDBObject("$and", queries);
+    }
+
+    /**
+     * This method translates an order by expression to the name of the field to sort.
+     *
+     * @param expression Order by expression
+     * @return Field name
+     * @throws ExpressionVisitException if the expression is not a field which can be sorted by MongoDB
+     */
+    public String translateOrderBy(Expression expression) throws ExpressionVisitException {
+        String field = ODataUtils.getPropertyName(expression);
+        if (field == null || !comparableFields.contains(field)) {
+            throw notTranslatable("order by expression " + expression);
+        }
+        return field;
+    }
+
+    @Override
+    public MongoExpression visitBinaryOperator(final BinaryOperatorKind operator, final MongoExpression left,
+                                               final MongoExpression right) throws ExpressionVisitException {
+        switch (operator) {
+            case AND:
+                return logical("$and", operator, left, right);
+            case OR:
+                return logical("$or", operator, left, right);
+            case EQ:
+                /* fall through */
+            case NE:
+                /* fall through */
+            case GE:
+                /* fall through */
+            case GT:
+                /* fall through */
+            case LE:
+                /* fall through */
+            case LT:
+                return comparison(operator, left, right);
+            default:
+                throw notTranslatable(operator.name());
+        }
+    }
+
+    @Override
+    public MongoExpression visitUnaryOperator(final UnaryOperatorKind operator, final MongoExpression operand)
+            throws ExpressionVisitException {
+        if (operator != UnaryOperatorKind.NOT || operand.kind != Kind.PREDICATE) {
+            throw notTranslatable(operator.name());
+        }
+        return MongoExpression.predicate(new BasicDBObject("$nor", Arrays.asList(operand.query)));
+    }
+
+    @Override
+    public MongoExpression visitMethodCall(final MethodKind methodCall, final List<MongoExpression> parameters)
+            throws ExpressionVisitException {
+        switch (methodCall) {
+            case CONTAINS:
+                return regex(parameters, false, false);
+            case STARTSWITH:
+                return regex(parameters, true, false);
+            case ENDSWITH:
+                return regex(parameters, false, true);
+            default:
+                throw notTranslatable(methodCall.name());
+        }
+    }
+
+    @Override
+    public MongoExpression visitLambdaExpression(final String lambdaFunction, final String lambdaVariable,
+                                                 final Expression expression) throws ExpressionVisitException {
+        throw notTranslatable(lambdaFunction);
+    }
+
+    @Override
+    public MongoExpression visitLiteral(Literal literal) throws ExpressionVisitException {
+        String text = literal.getText();
+        EdmType type = literal.getType();
+        if ("null".equals(text)) {
+            return MongoExpression.NULL;
+        }
+        if (!ODataConstants.primitiveString.equals(type)) {
+            throw notTranslatable("literal " + text);
+        }
+        try {
+            return new MongoExpression(Kind.STRING, ODataConstants.primitiveString.fromUriLiteral(text), null);
+        } catch (EdmPrimitiveTypeException e) {
+            throw notTranslatable("literal " + text);
+        }
+    }
+
+    @Override
+    public MongoExpression visitMember(Member member) throws ExpressionVisitException {
+        String field = ODataUtils.getPropertyName(member);
+        if (field == null || !comparableFields.contains(field)) {
+            throw notTranslatable("member " + member);
+        }
+        return new MongoExpression(Kind.FIELD, field, null);
+    }
+
+    @Override
+    public MongoExpression visitAlias(final String aliasName) throws ExpressionVisitException {
+        throw notTranslatable("alias " + aliasName);
+    }
+
+    @Override
+    public MongoExpression visitTypeLiteral(final EdmType type) throws ExpressionVisitException {
+        throw notTranslatable("type literal " + type.getName());
+    }
+
+    @Override
+    public MongoExpression visitLambdaReference(final String variableName) throws ExpressionVisitException {
+        throw notTranslatable("lambda reference " + variableName);
+    }
+
+    @Override
+    public MongoExpression visitEnum(final EdmEnumType type, final List<String> enumValues)
+            throws ExpressionVisitException {
+        throw notTranslatable("enum " + type.getName());
+    }
+
+    private MongoExpression logical(String mongoOperator, BinaryOperatorKind operator, MongoExpression left,
+                                    MongoExpression right) throws ExpressionVisitException {
+        if (left.kind != Kind.PREDICATE || right.kind != Kind.PREDICATE) {
+            throw notTranslatable(operator + " of non boolean operands");
+        }
+        return MongoExpression.predicate(new BasicDBObject(mongoOperator, Arrays.asList(left.query, right.query)));
+    }
+
+    /**
+     * This method translates a comparison of a field and a literal. A missing field is null, so that a comparison
+     * with a missing field is false, and ne is true, as in the in-memory evaluation.
+     */
+    private MongoExpression comparison(BinaryOperatorKind operator, MongoExpression left, MongoExpression right)
+            throws ExpressionVisitException {
+        if (right.kind == Kind.FIELD && left.kind != Kind.FIELD) {
+            return comparison(reverse(operator), right, left);
+        }
+        if (left.kind != Kind.FIELD || (right.kind != Kind.STRING && right.kind != Kind.NULL)) {
+            throw notTranslatable(operator + " of " + left.kind + " and " + right.kind);
+        }
+        String field = left.value;
+        Object value = right.value;
+        if (right.kind == Kind.NULL) {
+            if (operator != BinaryOperatorKind.EQ && operator != BinaryOperatorKind.NE) {
+                throw notTranslatable(operator + " of null");
+            }
+        } else if (DOCUMENT_ID.equals(field)) {
+            // object ids are compared as their hexadecimal strings in memory
+            if ((operator != BinaryOperatorKind.EQ && operator != BinaryOperatorKind.NE) ||
+                !ObjectId.isValid(right.value) || !right.value.equals(right.value.toLowerCase())) {
+                throw notTranslatable(operator + " of " + DOCUMENT_ID);
+            }
+            value = new ObjectId(right.value);
+        }
+        switch (operator) {
+            case EQ:
+                return MongoExpression.predicate(new BasicDBObject(field, value));
+            case NE:
+                return MongoExpression.predicate(new BasicDBObject(field, new BasicDBObject("$ne", value)));
+            case GE:
+                return MongoExpression.predicate(new BasicDBObject(field, new BasicDBObject("$gte", value)));
+            case GT:
+                return MongoExpression.predicate(new BasicDBObject(field, new BasicDBObject("$gt", value)));
+            case LE:
+                return MongoExpression.predicate(new BasicDBObject(field, new BasicDBObject("$lte", value)));
+            default:
+                return MongoExpression.predicate(new BasicDBObject(field, new BasicDBObject("$lt", value)));
+        }
+    }
+
+    /**
+     * This method translates contains, startswith and endswith of a field and a string literal to a regular
+     * expression, which only matches string values.
+     */
+    private MongoExpression regex(List<MongoExpression> parameters, boolean anchorStart, boolean anchorEnd)
+            throws ExpressionVisitException {
+        if (parameters.size() != 2 || parameters.get(0).kind != Kind.FIELD ||
+            DOCUMENT_ID.equals(parameters.get(0).value) || parameters.get(1).kind != Kind.STRING) {
+            throw notTranslatable("string method");
+        }
+        StringBuilder pattern = new StringBuilder();
+        if (anchorStart) {
+            pattern.append('^');
+        }
+        for (char c : parameters.get(1).value.toCharArray()) {
+            // an escaped ASCII punctuation character always matches itself
+            if (c < 128 && !Character.isLetterOrDigit(c)) {
+                pattern.append('\\');
+            }
+            pattern.append(c);
+        }
+        if (anchorEnd) {
+            pattern.append("\\z");
+        }
+        return MongoExpression.predicate(new BasicDBObject(parameters.get(0).value,
+                                                           new BasicDBObject("$regex", pattern.toString())));
+    }
+
+    private static BinaryOperatorKind reverse(BinaryOperatorKind operator) {
+        switch (operator) {
+            case GE:
+                return BinaryOperatorKind.LE;
+            case GT:
+                return BinaryOperatorKind.LT;
+            case LE:
+                return BinaryOperatorKind.GE;
+            case LT:
+                return BinaryOperatorKind.GT;
+            default:
+                return operator;
+        }
+    }
+
+    private static ExpressionVisitException notTranslatable(String part) {
+        return new ExpressionVisitException("Cannot translate " + part + " to a MongoDB query");
+    }
+
+    /**
+     * Kinds of MongoDB expressions.
+     */
+    public enum Kind {
+        PREDICATE, FIELD, STRING, NULL
+    }
+
+    /**
+     * A query document, a field name or a literal value.
+     */
+    public static class MongoExpression {
+
+        private static final MongoExpression NULL = new MongoExpression(Kind.NULL, null, null);
+
+        private final Kind kind;
+
+        /**
+         * Field name or string literal value.
+         */
+        private final String value;
+
+        private final DBObject query;
+
+        private MongoExpression(Kind kind, String value, DBObject query) {
+            this.kind = kind;
+            this.value = value;
+            this.query = query;
+        }
+
+        private static MongoExpression predicate(DBObject query) {
+            return new MongoExpression(Kind.PREDICATE, null, query);
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+    }
+}
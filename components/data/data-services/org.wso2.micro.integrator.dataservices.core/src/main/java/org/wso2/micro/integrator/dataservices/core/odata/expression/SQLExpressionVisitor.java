@@ -0,0 +1,525 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.dataservices.core.odata.expression;
+
+import org.apache.olingo.commons.api.edm.EdmEnumType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitor;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.UnaryOperatorKind;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataConstants;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class translates an OData expression to a parameterized SQL expression of the columns of a table.
+ * <p>
+ * Only the expressions which can be evaluated by the database with the same result as the in-memory evaluation of
+ * {@link ExpressionVisitorImpl} are translated, and an {@link ExpressionVisitException} is thrown for the rest.
+ * Comparisons are translated to two-valued predicates, so that a null operand makes a comparison false, ne true,
+ * and two null operands are equal, as in the in-memory evaluation.
+ */
+public class SQLExpressionVisitor implements ExpressionVisitor<SQLExpressionVisitor.SQLExpression> {
+
+    private static final char LIKE_ESCAPE_CHAR = '!';
+
+    /**
+     * Column name to JDBC type map of the table.
+     */
+    private final Map<String, Integer> columnTypes;
+
+    /**
+     * SQL function returning the number of characters in a string, null if length() is not translated.
+     */
+    private final String lengthFunction;
+
+    /**
+     * True if '[' starts a character class in LIKE patterns of the database, as in SQL Server.
+     */
+    private final boolean bracketWildcard;
+
+    public SQLExpressionVisitor(Map<String, Integer> columnTypes, String lengthFunction, boolean bracketWildcard) {
+        this.columnTypes = columnTypes;
+        this.lengthFunction = lengthFunction;
+        this.bracketWildcard = bracketWildcard;
+    }
+
+    /**
+     * This method translates a filter expression to a SQL predicate.
+     *
+     * @param expression Filter expression
+     * @return SQL predicate
+     * @throws ExpressionVisitException  if the expression can't be translated
+     * @throws ODataApplicationException
+     */
+    public SQLExpression translateFilter(Expression expression)
+            throws ExpressionVisitException, ODataApplicationException {
+        SQLExpression predicate = expression.accept(this);
+        if (predicate.kind != Kind.PREDICATE) {
+            throw notTranslatable("filter of type " + predicate.kind);
+        }
+        return predicate;
+    }
+
+    /**
+     * This method translates an order by expression to a SQL value expression of the columns.
+     *
+     * @param expression Order by expression
+     * @return SQL value expression without parameters
+     * @throws ExpressionVisitException  if the expression can't be translated
+     * @throws ODataApplicationException
+     */
+    public SQLExpression translateOrderBy(Expression expression)
+            throws ExpressionVisitException, ODataApplicationException {
+        SQLExpression value = expression.accept(this);
+        if (value.kind == Kind.PREDICATE || value.kind == Kind.NULL || value.literal ||
+            !value.parameters.isEmpty()) {
+            throw notTranslatable("order by expression " + value.sql);
+        }
+        return value;
+    }
+
+    @Override
+    public SQLExpression visitBinaryOperator(final BinaryOperatorKind operator, final SQLExpression left,
+                                             final SQLExpression right) throws ExpressionVisitException {
+        switch (operator) {
+            case AND:
+                /* fall through */
+            case OR:
+                if (left.kind != Kind.PREDICATE || right.kind != Kind.PREDICATE) {
+                    throw notTranslatable(operator + " of non boolean operands");
+                }
+                return new Builder(Kind.PREDICATE, false).append("(").append(left).append(" ").append(operator.name())
+                                                         .append(" ").append(right).append(")").build();
+            case EQ:
+                /* fall through */
+            case NE:
+                /* fall through */
+            case GE:
+                /* fall through */
+            case GT:
+                /* fall through */
+            case LE:
+                /* fall through */
+            case LT:
+                return comparison(operator, left, right);
+            case ADD:
+                return arithmetic("+", left, right);
+            case SUB:
+                return arithmetic("-", left, right);
+            case MUL:
+                return arithmetic("*", left, right);
+            default:
+                // div and mod results depend on the database for integer operands
+                throw notTranslatable(operator.name());
+        }
+    }
+
+    @Override
+    public SQLExpression visitUnaryOperator(final UnaryOperatorKind operator, final SQLExpression operand)
+            throws ExpressionVisitException {
+        switch (operator) {
+            case NOT:
+                if (operand.kind != Kind.PREDICATE) {
+                    throw notTranslatable("not of a non boolean operand");
+                }
+                return new Builder(Kind.PREDICATE, false).append("(NOT ").append(operand).append(")").build();
+            case MINUS:
+                if (operand.kind != Kind.NUMBER) {
+                    throw notTranslatable("minus of a non numeric operand");
+                }
+                return new Builder(Kind.NUMBER, operand.literal).append("(-").append(operand).append(")").build();
+            default:
+                throw notTranslatable(operator.name());
+        }
+    }
+
+    @Override
+    public SQLExpression visitMethodCall(final MethodKind methodCall, final List<SQLExpression> parameters)
+            throws ExpressionVisitException {
+        switch (methodCall) {
+            case CONTAINS:
+                return like(parameters, true, true);
+            case STARTSWITH:
+                return like(parameters, false, true);
+            case ENDSWITH:
+                return like(parameters, true, false);
+            case TOLOWER:
+                return stringFunction("LOWER", Kind.STRING, parameters);
+            case TOUPPER:
+                return stringFunction("UPPER", Kind.STRING, parameters);
+            case LENGTH:
+                if (lengthFunction == null) {
+                    throw notTranslatable(methodCall.name());
+                }
+                return stringFunction(lengthFunction, Kind.NUMBER, parameters);
+            default:
+                throw notTranslatable(methodCall.name());
+        }
+    }
+
+    @Override
+    public SQLExpression visitLambdaExpression(final String lambdaFunction, final String lambdaVariable,
+                                               final Expression expression) throws ExpressionVisitException {
+        throw notTranslatable(lambdaFunction);
+    }
+
+    @Override
+    public SQLExpression visitLiteral(Literal literal) throws ExpressionVisitException {
+        String text = literal.getText();
+        EdmType type = literal.getType();
+        if ("null".equals(text)) {
+            return SQLExpression.NULL;
+        }
+        if (!(type instanceof EdmPrimitiveType)) {
+            throw notTranslatable("literal " + text);
+        }
+        EdmPrimitiveType primitiveType = (EdmPrimitiveType) type;
+        try {
+            if (primitiveType.equals(ODataConstants.primitiveString)) {
+                return SQLExpression.parameter(Kind.STRING, primitiveType.fromUriLiteral(text));
+            } else if (primitiveType.equals(ODataConstants.primitiveBoolean)) {
+                return SQLExpression.parameter(Kind.BOOLEAN, Boolean.valueOf(text));
+            } else if (primitiveType.equals(ODataConstants.primitiveByte) ||
+                       primitiveType.equals(ODataConstants.primitiveSByte) ||
+                       primitiveType.equals(ODataConstants.primitiveInt16) ||
+                       primitiveType.equals(ODataConstants.primitiveInt32) ||
+                       primitiveType.equals(ODataConstants.primitiveInt64) ||
+                       primitiveType.equals(ODataConstants.primitiveDecimal) ||
+                       primitiveType.equals(ODataConstants.primitiveSingle) ||
+                       primitiveType.equals(ODataConstants.primitiveDouble)) {
+                return SQLExpression.parameter(Kind.NUMBER, new BigDecimal(text));
+            } else if (primitiveType.equals(ODataConstants.primitiveDate)) {
+                return SQLExpression.parameter(Kind.DATE, Date.valueOf(text));
+            }
+        } catch (EdmPrimitiveTypeException | IllegalArgumentException e) {
+            // NaN, INF and malformed literals are left to the in-memory evaluation
+            throw notTranslatable("literal " + text);
+        }
+        throw notTranslatable("literal " + text + " of type " + primitiveType.getName());
+    }
+
+    @Override
+    public SQLExpression visitMember(Member member) throws ExpressionVisitException {
+        List<UriResource> uriResourceParts = member.getResourcePath().getUriResourceParts();
+        if (uriResourceParts.size() != 1 || !(uriResourceParts.get(0) instanceof UriResourcePrimitiveProperty)) {
+            throw notTranslatable("member " + member);
+        }
+        String column = ((UriResourcePrimitiveProperty) uriResourceParts.get(0)).getProperty().getName();
+        Integer columnType = columnTypes.get(column);
+        Kind kind = columnType != null ? getKind(columnType) : null;
+        if (kind == null) {
+            throw notTranslatable("column " + column);
+        }
+        return new SQLExpression(column, kind, false, Collections.emptyList());
+    }
+
+    @Override
+    public SQLExpression visitAlias(final String aliasName) throws ExpressionVisitException {
+        throw notTranslatable("alias " + aliasName);
+    }
+
+    @Override
+    public SQLExpression visitTypeLiteral(final EdmType type) throws ExpressionVisitException {
+        throw notTranslatable("type literal " + type.getName());
+    }
+
+    @Override
+    public SQLExpression visitLambdaReference(final String variableName) throws ExpressionVisitException {
+        throw notTranslatable("lambda reference " + variableName);
+    }
+
+    @Override
+    public SQLExpression visitEnum(final EdmEnumType type, final List<String> enumValues)
+            throws ExpressionVisitException {
+        throw notTranslatable("enum " + type.getName());
+    }
+
+    private SQLExpression comparison(BinaryOperatorKind operator, SQLExpression left, SQLExpression right)
+            throws ExpressionVisitException {
+        if (left.kind == Kind.NULL || right.kind == Kind.NULL) {
+            SQLExpression value = left.kind == Kind.NULL ? right : left;
+            if (value.kind == Kind.NULL || value.kind == Kind.PREDICATE || value.literal) {
+                throw notTranslatable(operator + " of null");
+            }
+            if (operator == BinaryOperatorKind.EQ) {
+                return new Builder(Kind.PREDICATE, false).append("(").append(value).append(" IS NULL)").build();
+            } else if (operator == BinaryOperatorKind.NE) {
+                return new Builder(Kind.PREDICATE, false).append("(").append(value).append(" IS NOT NULL)").build();
+            }
+            throw notTranslatable(operator + " of null");
+        }
+        if (left.kind != right.kind || left.kind == Kind.PREDICATE) {
+            throw notTranslatable(operator + " of " + left.kind + " and " + right.kind);
+        }
+        if (left.literal && right.literal) {
+            throw notTranslatable(operator + " of literals");
+        }
+        switch (operator) {
+            case NE:
+                return new Builder(Kind.PREDICATE, false).append("(NOT ")
+                                                         .append(nullSafeComparison(BinaryOperatorKind.EQ, "=", left,
+                                                                                    right)).append(")").build();
+            case EQ:
+                return nullSafeComparison(operator, "=", left, right);
+            case GE:
+                return nullSafeComparison(operator, ">=", left, right);
+            case GT:
+                return nullSafeComparison(operator, ">", left, right);
+            case LE:
+                return nullSafeComparison(operator, "<=", left, right);
+            default:
+                return nullSafeComparison(operator, "<", left, right);
+        }
+    }
+
+    /**
+     * This method creates a comparison which is false if one operand is null, and true for eq, ge and le if both
+     * operands are null.
+     */
+    private SQLExpression nullSafeComparison(BinaryOperatorKind operator, String sqlOperator, SQLExpression left,
+                                             SQLExpression right) {
+        Builder builder = new Builder(Kind.PREDICATE, false).append("(");
+        if (!left.literal && !right.literal &&
+            (operator == BinaryOperatorKind.EQ || operator == BinaryOperatorKind.GE ||
+             operator == BinaryOperatorKind.LE)) {
+            builder.append("(").append(left).append(" IS NULL AND ").append(right).append(" IS NULL) OR ");
+        }
+        builder.append("(");
+        if (!left.literal) {
+            builder.append(left).append(" IS NOT NULL AND ");
+        }
+        if (!right.literal) {
+            builder.append(right).append(" IS NOT NULL AND ");
+        }
+        return builder.append(left).append(" ").append(sqlOperator).append(" ").append(right).append("))").build();
+    }
+
+    private SQLExpression arithmetic(String sqlOperator, SQLExpression left, SQLExpression right)
+            throws ExpressionVisitException {
+        if (left.kind != Kind.NUMBER || right.kind != Kind.NUMBER) {
+            throw notTranslatable(sqlOperator + " of " + left.kind + " and " + right.kind);
+        }
+        return new Builder(Kind.NUMBER, left.literal && right.literal).append("(").append(left).append(" ")
+                                                                      .append(sqlOperator).append(" ").append(right)
+                                                                      .append(")").build();
+    }
+
+    private SQLExpression stringFunction(String function, Kind kind, List<SQLExpression> parameters)
+            throws ExpressionVisitException {
+        if (parameters.size() != 1 || parameters.get(0).kind != Kind.STRING) {
+            throw notTranslatable(function);
+        }
+        SQLExpression parameter = parameters.get(0);
+        return new Builder(kind, parameter.literal).append(function).append("(").append(parameter).append(")").build();
+    }
+
+    /**
+     * This method translates contains, startswith and endswith of a string and a string literal to a LIKE predicate.
+     * Only the standard wildcards and the escape character are escaped, since escaping any other character is
+     * undefined or an error in some databases. Hence a search containing '[' is not translated if the database treats
+     * it as a wildcard.
+     */
+    private SQLExpression like(List<SQLExpression> parameters, boolean leadingWildcard, boolean trailingWildcard)
+            throws ExpressionVisitException {
+        if (parameters.size() != 2) {
+            throw notTranslatable("string method with " + parameters.size() + " parameters");
+        }
+        SQLExpression value = parameters.get(0);
+        SQLExpression search = parameters.get(1);
+        if (value.kind != Kind.STRING || value.literal || search.kind != Kind.STRING || !search.isParameter()) {
+            throw notTranslatable("string method of " + value.kind + " and " + search.kind);
+        }
+        StringBuilder pattern = new StringBuilder();
+        if (leadingWildcard) {
+            pattern.append('%');
+        }
+        String searchString = (String) search.parameters.get(0);
+        if (bracketWildcard && searchString.indexOf('[') >= 0) {
+            throw notTranslatable("string method with a search containing [");
+        }
+        for (char c : searchString.toCharArray()) {
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE_CHAR) {
+                pattern.append(LIKE_ESCAPE_CHAR);
+            }
+            pattern.append(c);
+        }
+        if (trailingWildcard) {
+            pattern.append('%');
+        }
+        return new Builder(Kind.PREDICATE, false).append("(").append(value).append(" IS NOT NULL AND ").append(value)
+                                                 .append(" LIKE ").append(SQLExpression.parameter(Kind.STRING,
+                                                                                                  pattern.toString()))
+                                                 .append(" ESCAPE '" + LIKE_ESCAPE_CHAR + "')").build();
+    }
+
+    /**
+     * This method returns the kind of values of a column which can be compared in the database as in memory.
+     *
+     * @param columnType JDBC type of the column
+     * @return kind, or null if the column is not used in SQL expressions
+     */
+    private static Kind getKind(int columnType) {
+        switch (columnType) {
+            case Types.INTEGER:
+                /* fall through */
+            case Types.TINYINT:
+                /* fall through */
+            case Types.SMALLINT:
+                /* fall through */
+            case Types.BIGINT:
+                /* fall through */
+            case Types.DOUBLE:
+                /* fall through */
+            case Types.FLOAT:
+                /* fall through */
+            case Types.REAL:
+                /* fall through */
+            case Types.DECIMAL:
+                /* fall through */
+            case Types.NUMERIC:
+                return Kind.NUMBER;
+            case Types.VARCHAR:
+                /* fall through */
+            case Types.LONGVARCHAR:
+                /* fall through */
+            case Types.NVARCHAR:
+                /* fall through */
+            case Types.LONGNVARCHAR:
+                return Kind.STRING;
+            case Types.BOOLEAN:
+                /* fall through */
+            case Types.BIT:
+                return Kind.BOOLEAN;
+            case Types.DATE:
+                return Kind.DATE;
+            default:
+                // padded CHAR values, LOBs, binaries, times and timestamps are compared in memory
+                return null;
+        }
+    }
+
+    private static ExpressionVisitException notTranslatable(String part) {
+        return new ExpressionVisitException("Cannot translate " + part + " to SQL");
+    }
+
+    /**
+     * Kinds of SQL expressions.
+     */
+    public enum Kind {
+        PREDICATE, NUMBER, STRING, BOOLEAN, DATE, NULL
+    }
+
+    /**
+     * A SQL expression with the values of its parameters in the order of the parameter markers.
+     */
+    public static class SQLExpression {
+
+        private static final SQLExpression NULL = new SQLExpression("NULL", Kind.NULL, true,
+                                                                    Collections.emptyList());
+
+        private final String sql;
+
+        private final Kind kind;
+
+        /**
+         * True if the expression does not refer to any column, i.e. its value is never null.
+         */
+        private final boolean literal;
+
+        private final List<Object> parameters;
+
+        private SQLExpression(String sql, Kind kind, boolean literal, List<Object> parameters) {
+            this.sql = sql;
+            this.kind = kind;
+            this.literal = literal;
+            this.parameters = parameters;
+        }
+
+        private static SQLExpression parameter(Kind kind, Object value) {
+            return new SQLExpression("?", kind, true, Collections.singletonList(value));
+        }
+
+        private boolean isParameter() {
+            return "?".equals(sql);
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public List<Object> getParameters() {
+            return parameters;
+        }
+    }
+
+    /**
+     * Builds a SQL expression from SQL text and other expressions, collecting their parameters in order.
+     */
+    private static class Builder {
+
+        private final StringBuilder sql = new StringBuilder();
+
+        private final List<Object> parameters = new ArrayList<>();
+
+        private final Kind kind;
+
+        private final boolean literal;
+
+        private Builder(Kind kind, boolean literal) {
+            this.kind = kind;
+            this.literal = literal;
+        }
+
+        private Builder append(String text) {
+            sql.append(text);
+            return this;
+        }
+
+        private Builder append(SQLExpression expression) {
+            sql.append(expression.sql);
+            parameters.addAll(expression.parameters);
+            return this;
+        }
+
+        private SQLExpression build() {
+            return new SQLExpression(sql.toString(), kind, literal, parameters);
+        }
+    }
+}
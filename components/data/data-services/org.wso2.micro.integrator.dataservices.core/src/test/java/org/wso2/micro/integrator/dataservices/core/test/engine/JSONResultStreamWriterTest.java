@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.engine;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import junit.framework.TestCase;
+
+import org.wso2.micro.integrator.dataservices.common.DBConstants;
+import org.wso2.micro.integrator.dataservices.core.engine.JSONElementStructure;
+import org.wso2.micro.integrator.dataservices.core.engine.JSONResultStreamWriter;
+
+/**
+ * Tests the JSON written for data service results, by replaying the XML results through the JSON writer.
+ */
+public class JSONResultStreamWriterTest extends TestCase {
+
+	private static final QName STRING = new QName(DBConstants.XSD_NAMESPACE, "string");
+
+	private static final QName INTEGER = new QName(DBConstants.XSD_NAMESPACE, "integer");
+
+	private static final QName DOUBLE = new QName(DBConstants.XSD_NAMESPACE, "double");
+
+	private static final QName BOOLEAN = new QName(DBConstants.XSD_NAMESPACE, "boolean");
+
+	private static final String DS_NAMESPACE = "http://ws.wso2.org/dataservice";
+
+	public void testRows() throws Exception {
+		JSONElementStructure root = new JSONElementStructure();
+		JSONElementStructure row = addRows(root, "Products", "Product");
+		row.addChild("id", new JSONElementStructure(INTEGER, false));
+		row.addChild("name", new JSONElementStructure(STRING, false));
+		row.addChild("price", new JSONElementStructure(DOUBLE, false));
+		row.addChild("available", new JSONElementStructure(BOOLEAN, false));
+
+		String xml = "<Products xmlns=\"" + DS_NAMESPACE + "\">"
+				+ "<Product><id>1</id><name>Chair</name><price>10.5</price><available>true</available></Product>"
+				+ "<Product><id>N/A</id><name>Desk \"L\"</name><price>20</price><available>no</available></Product>"
+				+ "</Products>";
+		assertEquals("{\"Products\":{\"Product\":["
+				+ "{\"id\":1,\"name\":\"Chair\",\"price\":10.5,\"available\":true},"
+				+ "{\"id\":\"N/A\",\"name\":\"Desk \\\"L\\\"\",\"price\":20,\"available\":\"no\"}]}}",
+				toJSON(xml, root));
+	}
+
+	public void testAttributes() throws Exception {
+		JSONElementStructure root = new JSONElementStructure();
+		JSONElementStructure row = addRows(root, "Products", "Product");
+		row.addAttribute("id", INTEGER);
+		row.addAttribute("discontinued", BOOLEAN);
+		JSONElementStructure name = new JSONElementStructure(STRING, false);
+		name.addAttribute("lang", STRING);
+		row.addChild("name", name);
+		row.addChild("price", new JSONElementStructure(DOUBLE, false));
+
+		String xml = "<Products xmlns=\"" + DS_NAMESPACE + "\">"
+				+ "<Product id=\"1\" discontinued=\"false\"><name lang=\"en\">Chair</name><price>10</price></Product>"
+				+ "</Products>";
+		assertEquals("{\"Products\":{\"Product\":[{\"@id\":1,\"@discontinued\":false,"
+				+ "\"name\":{\"@lang\":\"en\",\"$\":\"Chair\"},\"price\":10}]}}", toJSON(xml, root));
+	}
+
+	public void testNestedElementsOfTheSameName() throws Exception {
+		JSONElementStructure root = new JSONElementStructure();
+		JSONElementStructure customer = addRows(root, "Customers", "Customer");
+		customer.addChild("name", new JSONElementStructure(STRING, false));
+		customer.addChild("Order", new JSONElementStructure(STRING, false));
+		JSONElementStructure order = addRows(customer, "Orders", "Order");
+		order.addChild("name", new JSONElementStructure(INTEGER, false));
+
+		String xml = "<Customers xmlns=\"" + DS_NAMESPACE + "\"><Customer>"
+				+ "<name>1001</name><Order>latest</Order>"
+				+ "<Orders><Order><name>1001</name></Order><Order><name>1002</name></Order></Orders>"
+				+ "</Customer></Customers>";
+		assertEquals("{\"Customers\":{\"Customer\":[{\"name\":\"1001\",\"Order\":\"latest\","
+				+ "\"Orders\":{\"Order\":[{\"name\":1001},{\"name\":1002}]}}]}}", toJSON(xml, root));
+	}
+
+	public void testArrayFollowedBySibling() throws Exception {
+		JSONElementStructure root = new JSONElementStructure();
+		JSONElementStructure wrapper = new JSONElementStructure();
+		root.addChild("Result", wrapper);
+		wrapper.addChild("Row", new JSONElementStructure(INTEGER, true));
+		wrapper.addChild("count", new JSONElementStructure(INTEGER, false));
+
+		String xml = "<Result><Row>1</Row><Row>2</Row><count>2</count></Result>";
+		assertEquals("{\"Result\":{\"Row\":[1,2],\"count\":2}}", toJSON(xml, root));
+	}
+
+	public void testValues() throws Exception {
+		JSONElementStructure root = new JSONElementStructure();
+		JSONElementStructure row = addRows(root, "Entries", "Entry");
+		row.addChild("id", new JSONElementStructure(INTEGER, false));
+
+		String xml = "<Entries xmlns:xsi=\"" + DBConstants.XSI_NAMESPACE + "\">"
+				+ "<Entry><id xsi:nil=\"true\"/><text>a\tb&#x2028;c</text><extra>5</extra></Entry>"
+				+ "</Entries>";
+		assertEquals("{\"Entries\":{\"Entry\":[{\"id\":null,\"text\":\"a\\tb\\u2028c\","
+				+ "\"extra\":\"5\"}]}}", toJSON(xml, root));
+		assertEquals("{\"Entries\":{}}", toJSON("<Entries/>", root));
+	}
+
+	private static JSONElementStructure addRows(JSONElementStructure parent, String wrapperName, String rowName) {
+		JSONElementStructure wrapper = new JSONElementStructure();
+		parent.addChild(wrapperName, wrapper);
+		JSONElementStructure row = new JSONElementStructure(null, true);
+		wrapper.addChild(rowName, row);
+		return row;
+	}
+
+	/**
+	 * Writes the given XML result as JSON, with the same calls the data service makes to the result writer.
+	 */
+	private static String toJSON(String xml, JSONElementStructure structure) throws XMLStreamException {
+		StringWriter out = new StringWriter();
+		XMLStreamWriter jsonWriter = new JSONResultStreamWriter(out, structure);
+		XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml));
+		while (reader.hasNext()) {
+			switch (reader.next()) {
+			case XMLStreamConstants.START_ELEMENT:
+				jsonWriter.writeStartElement(reader.getNamespaceURI(), reader.getLocalName());
+				for (int i = 0; i < reader.getAttributeCount(); i++) {
+					String namespace = reader.getAttributeNamespace(i);
+					jsonWriter.writeAttribute(namespace != null ? namespace : "", reader.getAttributeLocalName(i),
+							reader.getAttributeValue(i));
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+				jsonWriter.writeCharacters(reader.getText());
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				jsonWriter.writeEndElement();
+				break;
+			case XMLStreamConstants.END_DOCUMENT:
+				jsonWriter.writeEndDocument();
+				break;
+			default:
+				break;
+			}
+		}
+		jsonWriter.flush();
+		return out.toString();
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.odata;
+
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.and;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.binary;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.count;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.filter;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.literal;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.member;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.orderBy;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.select;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.skip;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.top;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.wso2.micro.integrator.dataservices.core.odata.CassandraQueryBuilder;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataConstants;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataQuery;
+
+import com.datastax.driver.core.DataType;
+
+/**
+ * Tests the CQL queries created for the table readings (device text, day int, seq bigint, value text,
+ * PRIMARY KEY (device, day, seq)) WITH CLUSTERING ORDER BY (day ASC, seq DESC).
+ */
+public class CassandraQueryBuilderTest extends TestCase {
+
+	private CassandraQueryBuilder builder;
+
+	@Override
+	protected void setUp() throws Exception {
+		Map<String, DataType.Name> columnTypes = new HashMap<>();
+		columnTypes.put("device", DataType.Name.TEXT);
+		columnTypes.put("day", DataType.Name.INT);
+		columnTypes.put("seq", DataType.Name.BIGINT);
+		columnTypes.put("value", DataType.Name.TEXT);
+		builder = new CassandraQueryBuilder("ks.readings", Collections.singletonList("device"),
+				Arrays.asList("day", "seq"), Arrays.asList(false, true), columnTypes);
+	}
+
+	private static Expression device(String value) {
+		return binary(member("device"), BinaryOperatorKind.EQ,
+				literal("'" + value + "'", ODataConstants.primitiveString));
+	}
+
+	private static Expression compare(String column, BinaryOperatorKind operator, int value) {
+		return binary(member(column), operator, literal(String.valueOf(value), ODataConstants.primitiveInt32));
+	}
+
+	public void testFullTableScan() {
+		ODataQuery query = new ODataQuery(null, null, skip(2), top(3), null);
+		CassandraQueryBuilder.CassandraQuery cql = builder.build(query);
+		assertEquals("SELECT * FROM ks.readings LIMIT 5", cql.getCql());
+		assertTrue(cql.getValues().isEmpty());
+		assertFalse(query.isSkipApplied());
+		assertFalse(query.isTopApplied());
+	}
+
+	public void testPartitionSlice() {
+		ODataQuery query = new ODataQuery(filter(and(device("d1"), and(compare("day", BinaryOperatorKind.EQ, 3),
+				compare("seq", BinaryOperatorKind.GT, 10)))), null, null, null, null);
+		CassandraQueryBuilder.CassandraQuery cql = builder.build(query);
+		assertEquals("SELECT * FROM ks.readings WHERE device = ? AND day = ? AND seq > ?", cql.getCql());
+		assertEquals(Arrays.<Object>asList("d1", 3, 10L), cql.getValues());
+		assertTrue(query.isFilterApplied());
+	}
+
+	public void testPartialFilter() {
+		Expression value = binary(member("value"), BinaryOperatorKind.EQ,
+				literal("'x'", ODataConstants.primitiveString));
+		ODataQuery query = new ODataQuery(filter(and(value, device("d1"))), orderBy("day"), null, top(1), null);
+		CassandraQueryBuilder.CassandraQuery cql = builder.build(query);
+		assertEquals("SELECT * FROM ks.readings WHERE device = ?", cql.getCql());
+		assertFalse(query.isFilterApplied());
+		assertFalse(query.isOrderByApplied());
+	}
+
+	public void testClusteringColumnsWithoutPartition() {
+		ODataQuery query = new ODataQuery(filter(compare("day", BinaryOperatorKind.EQ, 3)), null, null, null, null);
+		assertEquals("SELECT * FROM ks.readings", builder.build(query).getCql());
+		assertFalse(query.isFilterApplied());
+	}
+
+	public void testClusteringOrder() {
+		ODataQuery query = new ODataQuery(filter(device("d1")), orderBy("device", "day", "-seq"), null, top(10),
+				count());
+		assertEquals("SELECT * FROM ks.readings WHERE device = ?", builder.build(query).getCql());
+		assertTrue(query.isOrderByApplied());
+	}
+
+	public void testReverseOrder() {
+		ODataQuery query = new ODataQuery(filter(device("d1")), orderBy("-day", "seq"), skip(5), top(10), null,
+				select("value"));
+		CassandraQueryBuilder.CassandraQuery cql = builder.build(query);
+		assertEquals("SELECT device, day, seq, value FROM ks.readings WHERE device = ? ORDER BY day DESC, seq ASC "
+				+ "LIMIT 15", cql.getCql());
+		assertTrue(query.isOrderByApplied());
+		assertTrue(query.isProjectionApplied());
+
+		// rows of a day would be in the reverse order of seq
+		query = new ODataQuery(filter(device("d1")), orderBy("-day"), null, top(10), null);
+		assertEquals("SELECT * FROM ks.readings WHERE device = ?", builder.build(query).getCql());
+		assertFalse(query.isOrderByApplied());
+	}
+
+	public void testLiteralTypes() {
+		Expression day = binary(member("day"), BinaryOperatorKind.EQ,
+				literal("'3'", ODataConstants.primitiveString));
+		ODataQuery query = new ODataQuery(filter(and(device("d1"), day)), null, null, null, null);
+		assertEquals("SELECT * FROM ks.readings WHERE device = ?", builder.build(query).getCql());
+		assertFalse(query.isFilterApplied());
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.odata;
+
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.and;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.binary;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.literal;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.member;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.method;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.unary;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.UnaryOperatorKind;
+import org.bson.types.ObjectId;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataConstants;
+import org.wso2.micro.integrator.dataservices.core.odata.expression.MongoExpressionVisitor;
+
+import com.mongodb.BasicDBObject;
+
+/**
+ * Tests the translation of OData filters to MongoDB queries, for the fields name and _id holding strings and object
+ * ids, and the field age holding numbers.
+ */
+public class MongoExpressionVisitorTest extends TestCase {
+
+	private static final String OBJECT_ID = "5d1b3c1e9f1b2a0001a1b2c3";
+
+	private MongoExpressionVisitor visitor = new MongoExpressionVisitor(new HashSet<>(Arrays.asList("_id", "name")));
+
+	private static Expression string(String value) {
+		return literal("'" + value.replace("'", "''") + "'", ODataConstants.primitiveString);
+	}
+
+	public void testComparison() throws Exception {
+		assertEquals(new BasicDBObject("name", "John"),
+				visitor.translateFilter(binary(member("name"), BinaryOperatorKind.EQ, string("John"))));
+		assertEquals(new BasicDBObject("name", new BasicDBObject("$ne", "O'Neil")),
+				visitor.translateFilter(binary(member("name"), BinaryOperatorKind.NE, string("O'Neil"))));
+		// the literal is compared with the field in the reverse order
+		assertEquals(new BasicDBObject("name", new BasicDBObject("$gt", "M")),
+				visitor.translateFilter(binary(string("M"), BinaryOperatorKind.LT, member("name"))));
+	}
+
+	public void testNull() throws Exception {
+		Expression isNull = binary(member("name"), BinaryOperatorKind.EQ,
+				literal("null", null));
+		assertEquals(new BasicDBObject("name", null), visitor.translateFilter(isNull));
+		assertEquals(new BasicDBObject("$nor", Arrays.asList(new BasicDBObject("name", null))),
+				visitor.translateFilter(unary(UnaryOperatorKind.NOT, isNull)));
+		try {
+			visitor.translateFilter(binary(member("name"), BinaryOperatorKind.GT, literal("null", null)));
+			fail("gt null is false in memory");
+		} catch (ExpressionVisitException e) {
+			// expected
+		}
+	}
+
+	public void testDocumentId() throws Exception {
+		assertEquals(new BasicDBObject("_id", new ObjectId(OBJECT_ID)),
+				visitor.translateFilter(binary(member("_id"), BinaryOperatorKind.EQ, string(OBJECT_ID))));
+		try {
+			visitor.translateFilter(binary(member("_id"), BinaryOperatorKind.EQ,
+					string(OBJECT_ID.toUpperCase())));
+			fail("the upper case id does not match in memory");
+		} catch (ExpressionVisitException e) {
+			// expected
+		}
+	}
+
+	public void testStringMethods() throws Exception {
+		assertEquals(new BasicDBObject("name", new BasicDBObject("$regex", "a\\.b\\*")),
+				visitor.translateFilter(method(MethodKind.CONTAINS, member("name"), string("a.b*"))));
+		assertEquals(new BasicDBObject("name", new BasicDBObject("$regex", "^Jo")),
+				visitor.translateFilter(method(MethodKind.STARTSWITH, member("name"), string("Jo"))));
+		assertEquals(new BasicDBObject("name", new BasicDBObject("$regex", "hn\\z")),
+				visitor.translateFilter(method(MethodKind.ENDSWITH, member("name"), string("hn"))));
+	}
+
+	public void testNotTranslatable() throws Exception {
+		Expression[] filters = {
+				binary(member("age"), BinaryOperatorKind.EQ, string("30")),
+				binary(member("name"), BinaryOperatorKind.EQ, literal("30", ODataConstants.primitiveInt32)),
+				binary(member("name"), BinaryOperatorKind.EQ, member("_id")),
+				method(MethodKind.TOLOWER, member("name")) };
+		for (Expression filter : filters) {
+			try {
+				visitor.translateFilter(filter);
+				fail(filter + " is translated");
+			} catch (ExpressionVisitException e) {
+				// expected
+			}
+		}
+	}
+
+	public void testConjuncts() throws Exception {
+		Expression name = binary(member("name"), BinaryOperatorKind.EQ, string("John"));
+		Expression age = binary(member("age"), BinaryOperatorKind.EQ, string("30"));
+		assertEquals(new BasicDBObject("name", "John"), visitor.translateConjuncts(and(age, name)));
+		assertEquals(new BasicDBObject(), visitor.translateConjuncts(age));
+		assertEquals(new BasicDBObject("$and", Arrays.asList(new BasicDBObject("name", "John"),
+				new BasicDBObject("name", "John"))), visitor.translateConjuncts(and(name, and(age, name))));
+	}
+}
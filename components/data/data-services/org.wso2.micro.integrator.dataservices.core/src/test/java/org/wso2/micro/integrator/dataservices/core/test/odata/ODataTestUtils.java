@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.odata;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectItem;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.Binary;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitor;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.Method;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Unary;
+import org.apache.olingo.server.api.uri.queryoption.expression.UnaryOperatorKind;
+
+/**
+ * Builds OData query options and expressions as the URI parser does, without an EDM.
+ */
+public class ODataTestUtils {
+
+	public static Member member(final String name) {
+		final Map<String, Object> values = new HashMap<>();
+		values.put("getResourcePath", propertyPath(name));
+		values.put("isCollection", false);
+		values.put("toString", name);
+		return fake(Member.class, values, new Accept() {
+			public Object accept(ExpressionVisitor<Object> visitor, Object self) throws Exception {
+				return visitor.visitMember((Member) self);
+			}
+		});
+	}
+
+	public static Literal literal(String text, EdmType type) {
+		Map<String, Object> values = new HashMap<>();
+		values.put("getText", text);
+		values.put("getType", type);
+		values.put("toString", text);
+		return fake(Literal.class, values, new Accept() {
+			public Object accept(ExpressionVisitor<Object> visitor, Object self) throws Exception {
+				return visitor.visitLiteral((Literal) self);
+			}
+		});
+	}
+
+	public static Binary binary(final Expression left, final BinaryOperatorKind operator, final Expression right) {
+		Map<String, Object> values = new HashMap<>();
+		values.put("getLeftOperand", left);
+		values.put("getOperator", operator);
+		values.put("getRightOperand", right);
+		values.put("toString", "(" + left + " " + operator + " " + right + ")");
+		return fake(Binary.class, values, new Accept() {
+			public Object accept(ExpressionVisitor<Object> visitor, Object self) throws Exception {
+				return visitor.visitBinaryOperator(operator, left.accept(visitor), right.accept(visitor));
+			}
+		});
+	}
+
+	public static Binary and(Expression left, Expression right) {
+		return binary(left, BinaryOperatorKind.AND, right);
+	}
+
+	public static Unary unary(final UnaryOperatorKind operator, final Expression operand) {
+		Map<String, Object> values = new HashMap<>();
+		values.put("getOperator", operator);
+		values.put("getOperand", operand);
+		values.put("toString", operator + " " + operand);
+		return fake(Unary.class, values, new Accept() {
+			public Object accept(ExpressionVisitor<Object> visitor, Object self) throws Exception {
+				return visitor.visitUnaryOperator(operator, operand.accept(visitor));
+			}
+		});
+	}
+
+	public static Method method(final MethodKind method, final Expression... parameters) {
+		Map<String, Object> values = new HashMap<>();
+		values.put("getMethod", method);
+		values.put("getParameters", Arrays.asList(parameters));
+		values.put("toString", method + Arrays.toString(parameters));
+		return fake(Method.class, values, new Accept() {
+			public Object accept(ExpressionVisitor<Object> visitor, Object self) throws Exception {
+				List<Object> operands = new ArrayList<>();
+				for (Expression parameter : parameters) {
+					operands.add(parameter.accept(visitor));
+				}
+				return visitor.visitMethodCall(method, operands);
+			}
+		});
+	}
+
+	public static FilterOption filter(Expression expression) {
+		return fake(FilterOption.class, Collections.<String, Object>singletonMap("getExpression", expression),
+				null);
+	}
+
+	/**
+	 * @param items property names, prefixed with '-' for the descending order
+	 */
+	public static OrderByOption orderBy(String... items) {
+		List<OrderByItem> orders = new ArrayList<>();
+		for (String item : items) {
+			Map<String, Object> values = new HashMap<>();
+			values.put("getExpression", member(item.replace("-", "")));
+			values.put("isDescending", item.startsWith("-"));
+			orders.add(fake(OrderByItem.class, values, null));
+		}
+		return fake(OrderByOption.class, Collections.<String, Object>singletonMap("getOrders", orders), null);
+	}
+
+	public static SkipOption skip(int value) {
+		return fake(SkipOption.class, Collections.<String, Object>singletonMap("getValue", value), null);
+	}
+
+	public static TopOption top(int value) {
+		return fake(TopOption.class, Collections.<String, Object>singletonMap("getValue", value), null);
+	}
+
+	public static CountOption count() {
+		return fake(CountOption.class, Collections.<String, Object>singletonMap("getValue", true), null);
+	}
+
+	public static SelectOption select(String... properties) {
+		List<SelectItem> items = new ArrayList<>();
+		for (String property : properties) {
+			Map<String, Object> values = new HashMap<>();
+			values.put("isStar", false);
+			values.put("getResourcePath", propertyPath(property));
+			items.add(fake(SelectItem.class, values, null));
+		}
+		return fake(SelectOption.class, Collections.<String, Object>singletonMap("getSelectItems", items), null);
+	}
+
+	private static UriInfoResource propertyPath(String name) {
+		EdmProperty property = fake(EdmProperty.class, Collections.<String, Object>singletonMap("getName", name),
+				null);
+		UriResourcePrimitiveProperty resource = fake(UriResourcePrimitiveProperty.class,
+				Collections.<String, Object>singletonMap("getProperty", property), null);
+		return fake(UriInfoResource.class, Collections.<String, Object>singletonMap("getUriResourceParts",
+				Collections.singletonList(resource)), null);
+	}
+
+	/**
+	 * Creates an instance of the given interface returning the given values by method name, and null, false or
+	 * zero for other methods.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T fake(final Class<T> type, final Map<String, Object> values, final Accept accept) {
+		InvocationHandler handler = new InvocationHandler() {
+			public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if ("accept".equals(name) && accept != null) {
+					return accept.accept((ExpressionVisitor<Object>) args[0], proxy);
+				} else if ("equals".equals(name)) {
+					return proxy == args[0];
+				} else if ("hashCode".equals(name)) {
+					return System.identityHashCode(proxy);
+				} else if (values.containsKey(name)) {
+					return values.get(name);
+				} else if ("toString".equals(name)) {
+					return type.getSimpleName();
+				} else if (method.getReturnType() == boolean.class) {
+					return false;
+				} else if (method.getReturnType() == int.class) {
+					return 0;
+				}
+				return null;
+			}
+		};
+		return (T) Proxy.newProxyInstance(ODataTestUtils.class.getClassLoader(), new Class<?>[] { type }, handler);
+	}
+
+	private interface Accept {
+
+		Object accept(ExpressionVisitor<Object> visitor, Object self) throws Exception;
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.odata;
+
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.orderBy;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.skip;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.top;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import junit.framework.TestCase;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataEntry;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataEntryIterator;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataQuery;
+import org.wso2.micro.integrator.dataservices.core.odata.RDBMSDataHandler;
+
+/**
+ * Tests the entities streamed from a H2 table, which is also presented as a MySQL database to check the fetch size
+ * the rows are streamed with.
+ */
+public class RDBMSStreamTableTest extends TestCase {
+
+	private static final String URL = "jdbc:h2:mem:odata-stream-test;DB_CLOSE_DELAY=-1";
+
+	private static final String TABLE = "CUSTOMERS";
+
+	private static final int ROWS = 25;
+
+	private Connection keepAlive;
+
+	private JdbcDataSource h2;
+
+	private List<Integer> fetchSizes = new ArrayList<>();
+
+	private int openConnections;
+
+	@Override
+	protected void setUp() throws Exception {
+		keepAlive = DriverManager.getConnection(URL);
+		Statement statement = keepAlive.createStatement();
+		statement.execute("CREATE TABLE " + TABLE + " (ID INT PRIMARY KEY, NAME VARCHAR(20))");
+		for (int i = 0; i < ROWS; i++) {
+			statement.execute("INSERT INTO " + TABLE + " VALUES (" + i + ", 'customer" + i + "')");
+		}
+		statement.close();
+		h2 = new JdbcDataSource();
+		h2.setURL(URL);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		Statement statement = keepAlive.createStatement();
+		statement.execute("DROP TABLE " + TABLE);
+		statement.close();
+		keepAlive.close();
+	}
+
+	public void testStreamedEntitiesMatchReadTable() throws Exception {
+		RDBMSDataHandler handler = new RDBMSDataHandler(trackingDataSource(null), "default");
+		ODataEntryIterator entries = handler.streamTable(TABLE, new ODataQuery(null, null, null, null, null));
+		assertEquals(data(handler.readTable(TABLE)), data(entries));
+		assertEquals(Integer.valueOf(1000), fetchSizes.get(fetchSizes.size() - 1));
+		assertEquals(0, openConnections);
+	}
+
+	public void testStreamedPage() throws Exception {
+		RDBMSDataHandler handler = new RDBMSDataHandler(trackingDataSource(null), "default");
+		ODataQuery query = new ODataQuery(null, orderBy("ID"), skip(5), top(10), null);
+		ODataEntryIterator entries = handler.streamTable(TABLE, query);
+		List<Map<String, String>> page = data(entries);
+		assertTrue(query.isOrderByApplied() && query.isSkipApplied() && query.isTopApplied());
+		assertEquals(data(handler.readTable(TABLE)).subList(5, 15), page);
+	}
+
+	public void testMySQLStreamsRowByRow() throws Exception {
+		RDBMSDataHandler handler = new RDBMSDataHandler(trackingDataSource("MySQL"), "default");
+		fetchSizes.clear();
+		ODataEntryIterator entries = handler.streamTable(TABLE, new ODataQuery(null, null, null, null, null));
+		assertEquals(1, fetchSizes.size());
+		assertEquals(Integer.valueOf(Integer.MIN_VALUE), fetchSizes.get(0));
+		assertEquals(ROWS, data(entries).size());
+	}
+
+	public void testCloseReleasesConnection() throws Exception {
+		RDBMSDataHandler handler = new RDBMSDataHandler(trackingDataSource(null), "default");
+		ODataEntryIterator entries = handler.streamTable(TABLE, new ODataQuery(null, null, null, null, null));
+		assertTrue(entries.hasNext());
+		assertEquals(1, openConnections);
+		entries.close();
+		assertEquals(0, openConnections);
+		assertFalse(entries.hasNext());
+	}
+
+	private static List<Map<String, String>> data(List<ODataEntry> entries) {
+		List<Map<String, String>> data = new ArrayList<>();
+		for (ODataEntry entry : entries) {
+			data.add(entry.getData());
+		}
+		return data;
+	}
+
+	private static List<Map<String, String>> data(ODataEntryIterator entries) {
+		List<ODataEntry> list = new ArrayList<>();
+		try {
+			while (entries.hasNext()) {
+				list.add(entries.next());
+			}
+		} finally {
+			entries.close();
+		}
+		return data(list);
+	}
+
+	/**
+	 * Creates a data source over the H2 database which counts the open connections and records the fetch sizes of
+	 * the statements, optionally reporting another database product name.
+	 */
+	private DataSource trackingDataSource(final String productName) {
+		return (DataSource) proxy(DataSource.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("getConnection".equals(method.getName())) {
+					openConnections++;
+					return connection(h2.getConnection(), productName);
+				}
+				return call(h2, method, args);
+			}
+		});
+	}
+
+	private Connection connection(final Connection target, final String productName) {
+		return (Connection) proxy(Connection.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("close".equals(method.getName()) && !target.isClosed()) {
+					openConnections--;
+				} else if ("getMetaData".equals(method.getName()) && productName != null) {
+					return metaData(target.getMetaData(), productName);
+				} else if ("prepareStatement".equals(method.getName())) {
+					return statement((PreparedStatement) call(target, method, args));
+				}
+				return call(target, method, args);
+			}
+		});
+	}
+
+	private DatabaseMetaData metaData(final DatabaseMetaData target, final String productName) {
+		return (DatabaseMetaData) proxy(DatabaseMetaData.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("getDatabaseProductName".equals(method.getName())) {
+					return productName;
+				}
+				return call(target, method, args);
+			}
+		});
+	}
+
+	private PreparedStatement statement(final PreparedStatement target) {
+		return (PreparedStatement) proxy(PreparedStatement.class, new InvocationHandler() {
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if ("setFetchSize".equals(method.getName())) {
+					// H2 rejects the negative fetch size of MySQL
+					fetchSizes.add((Integer) args[0]);
+					return null;
+				}
+				return call(target, method, args);
+			}
+		});
+	}
+
+	private static Object proxy(Class<?> type, InvocationHandler handler) {
+		return Proxy.newProxyInstance(RDBMSStreamTableTest.class.getClassLoader(), new Class<?>[] { type },
+				handler);
+	}
+
+	private static Object call(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.odata;
+
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.binary;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.literal;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.member;
+import static org.wso2.micro.integrator.dataservices.core.test.odata.ODataTestUtils.method;
+
+import java.math.BigDecimal;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.wso2.micro.integrator.dataservices.core.odata.ODataConstants;
+import org.wso2.micro.integrator.dataservices.core.odata.expression.SQLExpressionVisitor;
+import org.wso2.micro.integrator.dataservices.core.odata.expression.SQLExpressionVisitor.SQLExpression;
+
+/**
+ * Tests the SQL generated for OData filters and order by expressions, for the column name holding strings and the
+ * column age holding numbers.
+ */
+public class SQLExpressionVisitorTest extends TestCase {
+
+	private static final String LIKE_SQL = "(name IS NOT NULL AND name LIKE ? ESCAPE '!')";
+
+	private Map<String, Integer> columnTypes = new HashMap<>();
+
+	private SQLExpressionVisitor visitor;
+
+	@Override
+	protected void setUp() throws Exception {
+		columnTypes.put("name", Types.VARCHAR);
+		columnTypes.put("age", Types.INTEGER);
+		visitor = new SQLExpressionVisitor(columnTypes, "CHAR_LENGTH", false);
+	}
+
+	private static Expression string(String value) {
+		return literal("'" + value.replace("'", "''") + "'", ODataConstants.primitiveString);
+	}
+
+	public void testComparison() throws Exception {
+		SQLExpression predicate = visitor.translateFilter(
+				binary(member("name"), BinaryOperatorKind.EQ, string("O'Neil")));
+		assertEquals("((name IS NOT NULL AND name = ?))", predicate.getSql());
+		assertEquals(Collections.<Object>singletonList("O'Neil"), predicate.getParameters());
+
+		predicate = visitor.translateFilter(binary(member("name"), BinaryOperatorKind.EQ, literal("null", null)));
+		assertEquals("(name IS NULL)", predicate.getSql());
+		assertTrue(predicate.getParameters().isEmpty());
+	}
+
+	public void testLikeEscapesOnlyWildcards() throws Exception {
+		SQLExpression predicate = visitor.translateFilter(
+				method(MethodKind.CONTAINS, member("name"), string("50%_off!")));
+		assertEquals(LIKE_SQL, predicate.getSql());
+		assertEquals(Collections.<Object>singletonList("%50!%!_off!!%"), predicate.getParameters());
+
+		predicate = visitor.translateFilter(method(MethodKind.STARTSWITH, member("name"), string("[a]")));
+		assertEquals(LIKE_SQL, predicate.getSql());
+		assertEquals(Collections.<Object>singletonList("[a]%"), predicate.getParameters());
+
+		predicate = visitor.translateFilter(method(MethodKind.ENDSWITH, member("name"), string("son")));
+		assertEquals(Collections.<Object>singletonList("%son"), predicate.getParameters());
+	}
+
+	public void testLikeWithBracketWildcard() throws Exception {
+		SQLExpressionVisitor bracketVisitor = new SQLExpressionVisitor(columnTypes, null, true);
+		SQLExpression predicate = bracketVisitor.translateFilter(
+				method(MethodKind.CONTAINS, member("name"), string("a_b")));
+		assertEquals(Collections.<Object>singletonList("%a!_b%"), predicate.getParameters());
+		try {
+			bracketVisitor.translateFilter(method(MethodKind.CONTAINS, member("name"), string("[a]")));
+			fail("[ is a wildcard of the database");
+		} catch (ExpressionVisitException e) {
+			// expected
+		}
+	}
+
+	public void testLength() throws Exception {
+		Expression filter = binary(method(MethodKind.LENGTH, member("name")), BinaryOperatorKind.GT,
+				literal("3", ODataConstants.primitiveInt32));
+		SQLExpression predicate = visitor.translateFilter(filter);
+		assertEquals("((CHAR_LENGTH(name) IS NOT NULL AND CHAR_LENGTH(name) > ?))", predicate.getSql());
+		assertEquals(Collections.<Object>singletonList(new BigDecimal("3")), predicate.getParameters());
+		try {
+			new SQLExpressionVisitor(columnTypes, null, true).translateFilter(filter);
+			fail("length is not translated without a length function");
+		} catch (ExpressionVisitException e) {
+			// expected
+		}
+	}
+
+	public void testConjuncts() throws Exception {
+		SQLExpression predicate = visitor.translateFilter(ODataTestUtils.and(
+				binary(member("age"), BinaryOperatorKind.GE, literal("30", ODataConstants.primitiveInt32)),
+				method(MethodKind.STARTSWITH, member("name"), string("Jo"))));
+		assertEquals("(((age IS NOT NULL AND age >= ?)) AND " + LIKE_SQL + ")", predicate.getSql());
+		assertEquals(Arrays.<Object>asList(new BigDecimal("30"), "Jo%"), predicate.getParameters());
+	}
+
+	public void testOrderBy() throws Exception {
+		assertEquals("age", visitor.translateOrderBy(member("age")).getSql());
+		try {
+			visitor.translateOrderBy(member("unknown"));
+			fail("unknown columns are not translated");
+		} catch (ExpressionVisitException e) {
+			// expected
+		}
+	}
+
+}
@@ -18,8 +18,12 @@
 package org.wso2.micro.integrator.dataservices.core.test.sql;
 
 import org.apache.axiom.om.OMElement;
+import org.wso2.micro.integrator.dataservices.common.DBConstants;
+import org.wso2.micro.integrator.dataservices.core.description.query.SQLQuery;
+import org.wso2.micro.integrator.dataservices.core.engine.DataService;
 import org.wso2.micro.integrator.dataservices.core.test.DataServiceBaseTestCase;
 import org.wso2.micro.integrator.dataservices.core.test.util.TestUtils;
+import org.wso2.micro.integrator.dataservices.core.test.util.UtilServer;
 
 /**
  * Class to represent nested sql query test cases.
@@ -29,9 +33,12 @@ public abstract class AbstractNestedQueryServiceTest extends
 
 	private String epr = null;
 
+	private String serviceName = null;
+
 	public AbstractNestedQueryServiceTest(String testName, String serviceName) {
 		super(testName);
 		this.epr = this.baseEpr + serviceName;
+		this.serviceName = serviceName;
 	}
 
 	protected void nestedQuery1() {
@@ -62,6 +69,32 @@ public abstract class AbstractNestedQueryServiceTest extends
 		}
 	}
 	
+	/*
+	 * Test nested query executed in batches, which should return the same result as executing it for each row
+	 */
+	protected void nestedQueryBatched() {
+		TestUtils.showMessage(this.epr + " - nestedQueryBatched");
+		try {
+            TestUtils.checkForService(this.epr);
+			DataService dataService = (DataService) UtilServer.getConfigurationContext().getAxisConfiguration()
+					.getService(this.serviceName).getParameter(DBConstants.DATA_SERVICE_OBJECT).getValue();
+			SQLQuery batchedQuery = (SQLQuery) dataService.getQuery("select_customer_batched_query");
+			assertTrue("Nested query batching is not enabled", batchedQuery.getNestedQueryBatchSize() > 0);
+			OMElement result = TestUtils.callOperation(this.epr,
+					"payment_info_op", null);
+			long batchCount = batchedQuery.getNestedBatchCount();
+			OMElement batchedResult = TestUtils.callOperation(this.epr,
+					"payment_info_batched_op", null);
+			assertTrue("Nested query is not executed in batches", batchedQuery.getNestedBatchCount() > batchCount);
+			assertTrue(TestUtils.validateResultStructure(batchedResult,
+					TestUtils.PAYMENT_INFO_NESTED_XSD_PATH));
+			assertEquals(result.toString(), batchedResult.toString());
+		} catch (Exception e) {
+			e.printStackTrace();
+			fail(e.getMessage());
+		}
+	}
+
 	/*
 	 * Test nested query with DateTime 
 	 */
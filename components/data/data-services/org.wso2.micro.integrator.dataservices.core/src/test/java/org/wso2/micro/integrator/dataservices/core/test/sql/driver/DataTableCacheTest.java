@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.sql.driver;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.wso2.micro.integrator.dataservices.sql.driver.TExcelConnection;
+import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataReaderFactory;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataRow;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTableCache;
+
+/**
+ * Tests that the tables read from an Excel document are shared by the connections until the document is modified.
+ */
+public class DataTableCacheTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("data-table-cache", ".xlsx");
+		writeWorkbook("alice", "bob");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		DataTableCache.invalidate(file.getPath());
+		file.delete();
+	}
+
+	public void testTablesSharedByConnections() throws Exception {
+		DataTable table = readTable(true);
+		assertSame(table, readTable(true));
+		assertEquals("[alice, bob]", names(table));
+	}
+
+	public void testTablesReadAgainWhenFileChanges() throws Exception {
+		DataTable table = readTable(true);
+		long lastModified = file.lastModified();
+		writeWorkbook("carol", "dave", "eve");
+		/* the file system may keep the modification time in seconds */
+		assertTrue(file.setLastModified(lastModified + 2000));
+
+		DataTable changed = readTable(true);
+		assertNotSame(table, changed);
+		assertEquals("[carol, dave, eve]", names(changed));
+		assertSame(changed, readTable(true));
+	}
+
+	public void testTablesReadAgainWhenInvalidated() throws Exception {
+		DataTable table = readTable(true);
+		/* done by the driver when it writes the document */
+		DataTableCache.invalidate(file.getPath());
+		DataTable reread = readTable(true);
+		assertNotSame(table, reread);
+		assertEquals(names(table), names(reread));
+	}
+
+	public void testTablesKeyedByHeaderOptions() throws Exception {
+		DataTable withHeader = readTable(true);
+		DataTable withoutHeader = readTable(false);
+		assertNotSame(withHeader, withoutHeader);
+		assertEquals("COLUMN1", withoutHeader.getHeaders()[0].getName());
+		assertSame(withoutHeader, readTable(false));
+	}
+
+	public void testTablesReadDuringInvalidationNotCached() throws Exception {
+		String key = DataTableCache.createKey(file.getPath(), createConnection(true));
+		long version = DataTableCache.getFileVersion(file.getPath());
+		long invalidationCount = DataTableCache.getInvalidationCount();
+		Map<String, DataTable> tables = Collections.emptyMap();
+
+		DataTableCache.put(key, version, invalidationCount, tables);
+		assertSame(tables, DataTableCache.get(key, version));
+		assertNull(DataTableCache.get(key, version + 1));
+
+		/* the document was written while the tables were read */
+		DataTableCache.invalidate(file.getPath());
+		DataTableCache.put(key, version, invalidationCount, new HashMap<String, DataTable>());
+		assertNull(DataTableCache.get(key, version));
+	}
+
+	public void testRemoteDocumentsNotVersioned() throws Exception {
+		assertTrue(DataTableCache.getFileVersion(file.getPath()) > 0);
+		assertEquals(-1, DataTableCache.getFileVersion("http://localhost/data.xlsx"));
+		assertEquals(-1, DataTableCache.getFileVersion(file.getPath() + ".missing"));
+	}
+
+	private DataTable readTable(boolean hasHeader) throws Exception {
+		return DataReaderFactory.createDataReader(createConnection(hasHeader)).getDataTable("Sheet1");
+	}
+
+	private TExcelConnection createConnection(boolean hasHeader) throws Exception {
+		Properties properties = new Properties();
+		properties.setProperty(Constants.DRIVER_PROPERTIES.DATA_SOURCE_TYPE, Constants.EXCEL_PREFIX);
+		properties.setProperty(Constants.DRIVER_PROPERTIES.FILE_PATH, file.getPath());
+		properties.setProperty(Constants.DRIVER_PROPERTIES.HAS_HEADER, String.valueOf(hasHeader));
+		properties.setProperty(Constants.DRIVER_PROPERTIES.MAX_COLUMNS, "2");
+		return new TExcelConnection(properties);
+	}
+
+	private void writeWorkbook(String... names) throws Exception {
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		Sheet sheet = workbook.createSheet("Sheet1");
+		Row header = sheet.createRow(0);
+		header.createCell(0).setCellValue("ID");
+		header.createCell(1).setCellValue("NAME");
+		for (int i = 0; i < names.length; i++) {
+			Row row = sheet.createRow(i + 1);
+			row.createCell(0).setCellValue(i + 1);
+			row.createCell(1).setCellValue(names[i]);
+		}
+		OutputStream out = new FileOutputStream(file);
+		try {
+			workbook.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String names(DataTable table) throws Exception {
+		StringBuilder names = new StringBuilder();
+		for (DataRow row : table.getRows().values()) {
+			names.append(names.length() == 0 ? "[" : ", ").append(row.getCell(2).getCellValue());
+		}
+		return names.append(']').toString();
+	}
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.sql.driver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.wso2.micro.integrator.dataservices.sql.driver.TExcelConnection;
+import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataCell;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataReaderFactory;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataRow;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTableCache;
+import org.wso2.micro.integrator.dataservices.sql.driver.query.ColumnInfo;
+import org.wso2.micro.integrator.dataservices.sql.driver.util.ExcelStreamReader;
+
+/**
+ * Compares the cells read row by row by the ExcelStreamReader with the cells read through the POI workbook.
+ */
+public class ExcelStreamReaderTest extends TestCase {
+
+	private File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("excel-stream-reader", ".xlsx");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		DataTableCache.invalidate(file.getPath());
+		file.delete();
+	}
+
+	public void testTablesMatchWorkbook() throws Exception {
+		write(createWorkbook(new XSSFWorkbook()));
+		assertSameTables();
+	}
+
+	public void testInlineStringTablesMatchWorkbook() throws Exception {
+		/* the streaming workbook writes the strings inline rather than in the shared strings table */
+		SXSSFWorkbook workbook = new SXSSFWorkbook();
+		try {
+			write(createWorkbook(workbook));
+		} finally {
+			workbook.dispose();
+		}
+		assertSameTables();
+	}
+
+	public void testCells() throws Exception {
+		Workbook workbook = createWorkbook(new XSSFWorkbook());
+		write(workbook);
+		ExcelStreamReader reader = new ExcelStreamReader(file);
+		try {
+			assertEquals(Arrays.asList("Sheet1", "Empty"), reader.getSheetNames());
+			assertNull(reader.openSheet("Sheet2"));
+			ExcelStreamReader.SheetReader sheet = reader.openSheet("Sheet1");
+			try {
+				Sheet expectedSheet = workbook.getSheet("Sheet1");
+				int rows = 0;
+				while (sheet.next()) {
+					Row expectedRow = expectedSheet.getRow(sheet.getRowIndex());
+					assertNotNull("row " + sheet.getRowIndex(), expectedRow);
+					List<String> expected = new ArrayList<>();
+					for (Cell cell : expectedRow) {
+						expected.add(describe(cell.getColumnIndex() + 1, cell.getCellType(), value(cell)));
+					}
+					List<String> actual = new ArrayList<>();
+					for (DataCell cell : sheet.getCells()) {
+						actual.add(describe(cell.getColumnId(), cell.getCellType(), cell.getCellValue()));
+					}
+					assertEquals("row " + sheet.getRowIndex(), expected, actual);
+					rows++;
+				}
+				/* the missing row 5 is skipped */
+				assertEquals(expectedSheet.getPhysicalNumberOfRows(), rows);
+				assertEquals(6, sheet.getRowIndex());
+				assertFalse(sheet.next());
+			} finally {
+				sheet.close();
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	public void testXLSXDetection() throws Exception {
+		write(createWorkbook(new XSSFWorkbook()));
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			assertTrue(ExcelStreamReader.isXLSX(in));
+			/* the stream is reset to its start */
+			assertEquals('P', in.read());
+		} finally {
+			in.close();
+		}
+		ByteArrayOutputStream xls = new ByteArrayOutputStream();
+		createWorkbook(new HSSFWorkbook()).write(xls);
+		assertFalse(ExcelStreamReader.isXLSX(new ByteArrayInputStream(xls.toByteArray())));
+		assertFalse(ExcelStreamReader.isXLSX(new ByteArrayInputStream(new byte[] { 'P', 'K' })));
+	}
+
+	/**
+	 * Creates a sheet with a header row, repeated and escaped strings, numbers, dates, booleans, blank and missing
+	 * cells and a missing row, and an empty sheet.
+	 */
+	private static Workbook createWorkbook(Workbook workbook) {
+		Sheet sheet = workbook.createSheet("Sheet1");
+		CellStyle dateStyle = workbook.createCellStyle();
+		dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+		Row header = sheet.createRow(0);
+		String[] columns = { "ID", "NAME", "PRICE", "CREATED", "ACTIVE", "NOTE" };
+		for (int i = 0; i < columns.length; i++) {
+			header.createCell(i).setCellValue(columns[i]);
+		}
+		Object[][] rows = {
+				{ 1, "apple", 0.1, date(2019, 1, 31), true, "fresh" },
+				{ 2, "apple", -42.5, date(1900, 3, 1), false, null },
+				{ 3, "", 1234567890123.0, null, null, "apple" },
+				{ 4, "pear & plum <x>", 1e-10, date(2038, 12, 31), true, "" } };
+		for (int i = 0; i < rows.length; i++) {
+			Row row = sheet.createRow(i + 1);
+			for (int j = 0; j < rows[i].length; j++) {
+				Object value = rows[i][j];
+				if (value == null) {
+					/* a missing cell */
+					continue;
+				}
+				Cell cell = row.createCell(j);
+				if (value instanceof Integer) {
+					cell.setCellValue((Integer) value);
+				} else if (value instanceof Double) {
+					cell.setCellValue((Double) value);
+				} else if (value instanceof Calendar) {
+					cell.setCellValue((Calendar) value);
+					cell.setCellStyle(dateStyle);
+				} else if (value instanceof Boolean) {
+					cell.setCellValue((Boolean) value);
+				} else if (!"".equals(value)) {
+					cell.setCellValue((String) value);
+				}
+				/* an empty string is kept as a blank cell */
+			}
+		}
+		/* row 5 is missing */
+		Row last = sheet.createRow(6);
+		last.createCell(0).setCellValue(6);
+		last.createCell(3).setCellType(Cell.CELL_TYPE_BLANK);
+		workbook.createSheet("Empty");
+		return workbook;
+	}
+
+	private static Calendar date(int year, int month, int day) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month - 1, day);
+		return calendar;
+	}
+
+	private void write(Workbook workbook) throws Exception {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			workbook.write(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Compares the tables the driver reads with and without streaming the document.
+	 */
+	private void assertSameTables() throws Exception {
+		for (String sheetName : new String[] { "Sheet1", "Empty" }) {
+			DataTable expected = readTable(sheetName, false);
+			DataTable actual = readTable(sheetName, true);
+			assertEquals(sheetName, describe(expected.getHeaders()), describe(actual.getHeaders()));
+			assertEquals(sheetName, describe(expected.getRows()), describe(actual.getRows()));
+		}
+		assertEquals(5, readTable("Sheet1", true).getRows().size());
+	}
+
+	private DataTable readTable(String sheetName, boolean streaming) throws Exception {
+		/* the tables are cached regardless of the reading mode */
+		DataTableCache.invalidate(file.getPath());
+		Properties properties = new Properties();
+		properties.setProperty(Constants.DRIVER_PROPERTIES.DATA_SOURCE_TYPE, Constants.EXCEL_PREFIX);
+		properties.setProperty(Constants.DRIVER_PROPERTIES.FILE_PATH, file.getPath());
+		properties.setProperty(Constants.DRIVER_PROPERTIES.STREAMING, String.valueOf(streaming));
+		return DataReaderFactory.createDataReader(new TExcelConnection(properties)).getDataTable(sheetName);
+	}
+
+	private static Object value(Cell cell) {
+		switch (cell.getCellType()) {
+		case Cell.CELL_TYPE_NUMERIC:
+			return cell.getNumericCellValue();
+		case Cell.CELL_TYPE_BOOLEAN:
+			return cell.getBooleanCellValue();
+		default:
+			return cell.getStringCellValue();
+		}
+	}
+
+	private static String describe(int columnId, int cellType, Object value) {
+		return columnId + ":" + cellType + ":" + (value != null ? value.getClass().getSimpleName() : null) + ":" +
+				value;
+	}
+
+	private static List<String> describe(ColumnInfo[] headers) {
+		List<String> result = new ArrayList<>();
+		for (ColumnInfo header : headers) {
+			result.add(header.getId() + ":" + header.getName() + ":" + header.getSqlType());
+		}
+		return result;
+	}
+
+	private static List<String> describe(Map<Integer, DataRow> rows) {
+		List<String> result = new ArrayList<>();
+		for (DataRow row : rows.values()) {
+			for (Map.Entry<Integer, DataCell> cell : row.getCells().entrySet()) {
+				DataCell value = cell.getValue();
+				result.add(row.getRowId() + "/" + cell.getKey() + "=" +
+						describe(value.getColumnId(), value.getCellType(), value.getCellValue()));
+			}
+		}
+		return result;
+	}
+}
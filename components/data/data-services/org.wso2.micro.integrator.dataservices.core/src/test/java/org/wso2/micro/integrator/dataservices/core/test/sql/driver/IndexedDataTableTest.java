@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.core.test.sql.driver;
+
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataCell;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataRow;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.FixedDataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.IndexedDataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.query.ColumnInfo;
+
+/**
+ * Compares the rows found through the indexes of an IndexedDataTable with the rows found by the full scan of a
+ * FixedDataTable holding the same rows.
+ */
+public class IndexedDataTableTest extends TestCase {
+
+	private static final String[] NAMES = { "alice", "bob", "carol", "dave", "10", "" };
+
+	private static final String[] OPERATORS = { Constants.EQUAL, Constants.LESS_THAN, Constants.GREATER_THAN };
+
+	private ColumnInfo[] headers;
+
+	private IndexedDataTable indexed;
+
+	private FixedDataTable scanned;
+
+	@Override
+	protected void setUp() throws Exception {
+		headers = new ColumnInfo[] {
+				new ColumnInfo(1, "ID", "Sheet1", Types.DOUBLE, 0),
+				new ColumnInfo(2, "NAME", "Sheet1", Types.VARCHAR, 1),
+				new ColumnInfo(3, "SCORE", "Sheet1", Types.DOUBLE, 2) };
+		Random random = new Random(7);
+		List<DataRow> rows = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			DataRow row = new DataRow(i + 1);
+			row.addCell(1, new DataCell(1, 0, (double) (i + 1)));
+			row.addCell(2, new DataCell(2, 1, NAMES[random.nextInt(NAMES.length)]));
+			/* scores repeat, and are negative, fractional or held as strings as read from the documents */
+			double score = (random.nextInt(41) - 20) / 2.0;
+			row.addCell(3, new DataCell(3, 0, random.nextBoolean() ? (Object) score : String.valueOf(score)));
+			rows.add(row);
+		}
+		/* the rows are given out of their order */
+		List<DataRow> shuffled = new ArrayList<>(rows);
+		Collections.shuffle(shuffled, random);
+		indexed = new IndexedDataTable("Sheet1", headers, shuffled);
+		scanned = new FixedDataTable("Sheet1", headers);
+		for (DataRow row : rows) {
+			scanned.addRow(row);
+		}
+	}
+
+	public void testNumberConditionsMatchFullScan() throws Exception {
+		String[] values = { "-10", "-10.0", "-9.75", "-0.5", "0", "3", "3.5", "9.5", "10", "10.5", "1E1" };
+		for (String column : new String[] { "ID", "SCORE" }) {
+			for (String operator : OPERATORS) {
+				for (String value : values) {
+					assertSameRows(column + " " + operator + " " + value, scanned.applyCondition(column, value,
+							operator), indexed.applyCondition(column, value, operator));
+				}
+			}
+		}
+		assertSameRows("ID > 0", scanned.getRows(), indexed.applyCondition("ID", "0", Constants.GREATER_THAN));
+		assertEquals(0, indexed.applyCondition("ID", "501", Constants.GREATER_THAN).size());
+	}
+
+	public void testStringConditionsMatchFullScan() throws Exception {
+		for (String value : NAMES) {
+			assertSameRows("NAME = " + value, scanned.applyCondition("NAME", value, Constants.EQUAL),
+					indexed.applyCondition("NAME", value, Constants.EQUAL));
+		}
+		assertEquals(0, indexed.applyCondition("NAME", "eve", Constants.EQUAL).size());
+		/* a string is not comparable with the less than and greater than conditions */
+		assertEquals(0, indexed.applyCondition("NAME", "bob", Constants.LESS_THAN).size());
+		assertEquals(0, scanned.applyCondition("NAME", "bob", Constants.GREATER_THAN).size());
+		assertEquals(0, indexed.applyCondition("NAME", "bob", Constants.GREATER_THAN).size());
+	}
+
+	public void testColumnNamesIgnoreCase() throws Exception {
+		assertSameRows("name = bob", scanned.applyCondition("NAME", "bob", Constants.EQUAL),
+				indexed.applyCondition("name", "bob", Constants.EQUAL));
+		try {
+			indexed.applyCondition("AGE", "1", Constants.EQUAL);
+			fail("A condition on a missing column must fail");
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+
+	public void testRowsOfPositions() throws Exception {
+		assertSameRows("all rows", scanned.getRows(), indexed.getRows());
+		assertEquals(500, indexed.size());
+		DataRow row = indexed.getRow(41, new ColumnInfo[] { new ColumnInfo(3, "SCORE", "Sheet1", Types.DOUBLE, 0),
+				new ColumnInfo(1, "ID", "Sheet1", Types.DOUBLE, 1) });
+		assertEquals(42, row.getRowId());
+		assertEquals(42.0, row.getCell(1).getCellValue());
+		assertSame(scanned.getRows().get(42).getCell(3), row.getCell(0));
+	}
+
+	public void testReadOnly() throws Exception {
+		try {
+			indexed.addRow(new DataRow(501));
+			fail("An indexed table must be read only");
+		} catch (SQLException e) {
+			// expected
+		}
+		try {
+			indexed.deleteRows(1);
+			fail("An indexed table must be read only");
+		} catch (SQLException e) {
+			// expected
+		}
+	}
+
+	public void testConcurrentQueries() throws Exception {
+		final Map<Integer, DataRow> expected = scanned.applyCondition("SCORE", "2.5", Constants.LESS_THAN);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Map<Integer, DataRow>>> results = new ArrayList<>();
+			for (int i = 0; i < 32; i++) {
+				/* the index of the column is built by the first queries, concurrently */
+				results.add(executor.submit(new Callable<Map<Integer, DataRow>>() {
+					@Override
+					public Map<Integer, DataRow> call() throws Exception {
+						return indexed.applyCondition("SCORE", "2.5", Constants.LESS_THAN);
+					}
+				}));
+			}
+			for (Future<Map<Integer, DataRow>> result : results) {
+				assertSameRows("SCORE < 2.5", expected, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static void assertSameRows(String condition, Map<Integer, DataRow> expected,
+			Map<Integer, DataRow> actual) {
+		assertEquals(condition, new TreeMap<>(expected).keySet().toString(), actual.keySet().toString());
+		for (DataRow row : actual.values()) {
+			DataRow expectedRow = expected.get(row.getRowId());
+			assertEquals(condition, expectedRow.getCells().size(), row.getCells().size());
+			for (Map.Entry<Integer, DataCell> cell : row.getCells().entrySet()) {
+				assertSame(condition, expectedRow.getCell(cell.getKey()), cell.getValue());
+			}
+		}
+	}
+}
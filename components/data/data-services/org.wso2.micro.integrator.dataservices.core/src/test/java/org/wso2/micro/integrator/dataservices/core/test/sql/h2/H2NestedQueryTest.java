@@ -32,5 +32,9 @@ public class H2NestedQueryTest extends AbstractNestedQueryServiceTest {
     public void testH2NestedQuery2() {
     	this.nestedQuery2();
 	}
+
+    public void testH2NestedQueryBatched() {
+    	this.nestedQueryBatched();
+	}
 	
 }
@@ -40,17 +40,51 @@ import org.apache.synapse.core.axis2.Axis2Sender;
 import org.apache.synapse.transport.passthru.PassThroughConstants;
 import org.apache.synapse.transport.passthru.util.RelayUtils;
 
+import javax.activation.DataHandler;
+import javax.activation.DataSource;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class ODataPassThroughHandler extends AbstractSynapseHandler {
     private static final Log log = LogFactory.getLog(ODataPassThroughHandler.class);
     public final static String JSON_CONTENT_TYPE = "application/json";
     public final static String XML_CONTENT_TYPE = "application/xml";
     public final static String TEXT_CONTENT_TYPE = "text/plain";
+    public final static String BINARY_CONTENT_TYPE = "application/octet-stream";
     private final static QName TEXT_ELEMENT = new QName("http://ws.apache.org/commons/ns/payload", "text");
+    private final static QName BINARY_ELEMENT = new QName("http://ws.apache.org/commons/ns/payload", "binary");
+
+    /**
+     * Maximum number of threads writing the OData responses, which can be set with the system property
+     * "odata.response.writers".
+     */
+    private final static int RESPONSE_WRITER_COUNT = Integer.getInteger("odata.response.writers",
+                                                                       2 * Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Threads writing the OData responses, so that large JSON bodies are streamed to the client by the transport
+     * thread while they are written. When all of them are busy, the transport thread writes the response itself
+     * without streaming, which holds back the requests of the transport until a writer is free.
+     */
+    private final static ThreadPoolExecutor RESPONSE_WRITERS = new ThreadPoolExecutor(
+            RESPONSE_WRITER_COUNT, RESPONSE_WRITER_COUNT, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadFactory());
+
+    static {
+        RESPONSE_WRITERS.allowCoreThreadTimeOut(true);
+    }
 
 
     @Override
@@ -63,13 +97,34 @@ public class ODataPassThroughHandler extends AbstractSynapseHandler {
             if (axis2MessageContext.getProperty("TransportInURL") != null && isODataService != null) {
                 RelayUtils.buildMessage(axis2MessageContext);
                 ODataServletRequest request = new ODataServletRequest(axis2MessageContext);
-                ODataServletResponse response = new ODataServletResponse(axis2MessageContext);
-                ODataEndpoint.process(request, response);
-                setContent(axis2MessageContext, response);
-                setHeaders(axis2MessageContext, response);
-                messageContext.setTo(null);
-                messageContext.setResponse(true);
-                Axis2Sender.sendBack(messageContext);
+                ODataServletResponse response = new ODataServletResponse(axis2MessageContext, true);
+                InputStream streamedBody;
+                try {
+                    streamedBody = process(request, response);
+                } catch (RejectedExecutionException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("All the OData response writers are busy, writing the response without streaming");
+                    }
+                    response = new ODataServletResponse(axis2MessageContext);
+                    streamedBody = null;
+                    ODataEndpoint.process(request, response);
+                }
+                try {
+                    if (streamedBody != null) {
+                        setStreamedContent(axis2MessageContext, response, streamedBody);
+                    } else {
+                        setContent(axis2MessageContext, response);
+                    }
+                    setHeaders(axis2MessageContext, response, streamedBody != null);
+                    messageContext.setTo(null);
+                    messageContext.setResponse(true);
+                    Axis2Sender.sendBack(messageContext);
+                } finally {
+                    if (streamedBody != null) {
+                        // stops the writer if the body was not sent completely
+                        streamedBody.close();
+                    }
+                }
             }
             return true;
         } catch (Exception e) {
@@ -78,8 +133,37 @@ public class ODataPassThroughHandler extends AbstractSynapseHandler {
         }
     }
 
+    /**
+     * Processes the request in a response writer thread, and waits until the response body is either complete or
+     * being streamed.
+     *
+     * @param request  OData request
+     * @param response OData response
+     * @return the response body if it is streamed, or null if the response is complete
+     * @throws RejectedExecutionException if all the response writers are busy
+     */
+    private InputStream process(final ODataServletRequest request, final ODataServletResponse response)
+            throws InterruptedException, ExecutionException {
+        Future<?> processing = RESPONSE_WRITERS.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ODataEndpoint.process(request, response);
+                } finally {
+                    response.complete();
+                }
+            }
+        });
+        InputStream streamedBody = response.awaitStreamedBody();
+        if (streamedBody == null) {
+            // throws the errors of the processing
+            processing.get();
+        }
+        return streamedBody;
+    }
+
     private void setHeaders(org.apache.axis2.context.MessageContext axis2MessageContext,
-                            ODataServletResponse response) throws UnsupportedEncodingException {
+                            ODataServletResponse response, boolean streamed) throws UnsupportedEncodingException {
         axis2MessageContext.setProperty(Constants.Configuration.CONTENT_TYPE, response.getContentType());
         Object o = axis2MessageContext.getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
         Map headers = (Map) o;
@@ -87,7 +171,7 @@ public class ODataPassThroughHandler extends AbstractSynapseHandler {
             headers.remove(HTTP.CONTENT_TYPE);
             headers.put(HTTP.CONTENT_TYPE, response.getContentType());
         }
-        if (response.getContentAsString() != null && response.getContentAsString().length() != 0) {
+        if (streamed || (response.getContentAsString() != null && response.getContentAsString().length() != 0)) {
             axis2MessageContext.removeProperty(PassThroughConstants.NO_ENTITY_BODY);
         }
     }
@@ -114,6 +198,21 @@ public class ODataPassThroughHandler extends AbstractSynapseHandler {
         }
     }
 
+    /**
+     * Sets the streamed body as binary content, which the message formatter copies to the client as it is read.
+     */
+    private void setStreamedContent(org.apache.axis2.context.MessageContext axis2MessageContext,
+                                    ODataServletResponse response, InputStream streamedBody) throws AxisFault {
+        axis2MessageContext.setProperty(Constants.Configuration.MESSAGE_TYPE, BINARY_CONTENT_TYPE);
+        SOAPFactory fac = OMAbstractFactory.getSOAP11Factory();
+        SOAPEnvelope envelope = fac.getDefaultEnvelope();
+        OMElement binaryElement = fac.createOMElement(BINARY_ELEMENT);
+        DataHandler dataHandler = new DataHandler(new StreamedBodyDataSource(streamedBody, response.getContentType()));
+        binaryElement.addChild(fac.createOMText(dataHandler, true));
+        envelope.getBody().addChild(binaryElement);
+        axis2MessageContext.setEnvelope(envelope);
+    }
+
     private OMElement getTextElement(String content) {
         OMFactory factory = OMAbstractFactory.getOMFactory();
         OMElement textElement = factory.createOMElement(TEXT_ELEMENT);
@@ -147,4 +246,49 @@ public class ODataPassThroughHandler extends AbstractSynapseHandler {
         return true;
     }
 
+    /**
+     * Data source of a streamed response body, which can be read only once.
+     */
+    private static class StreamedBodyDataSource implements DataSource {
+
+        private final InputStream body;
+        private final String contentType;
+
+        StreamedBodyDataSource(InputStream body, String contentType) {
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return body;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            throw new IOException("The OData response body is read only");
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public String getName() {
+            return "ODataResponse";
+        }
+    }
+
+    private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ODataResponseWriter-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -18,7 +18,6 @@
 
 package org.wso2.micro.integrator.dataservices.odata.endpoint;
 
-import org.apache.axis2.AxisFault;
 import org.apache.axis2.context.MessageContext;
 import org.apache.http.protocol.HTTP;
 import org.apache.synapse.transport.passthru.PassThroughConstants;
@@ -28,19 +27,45 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class ODataServletResponse implements HttpServletResponse {
 
+    /**
+     * Size of a JSON body kept in memory, beyond which the body is streamed to the client while it is written.
+     */
+    static final int STREAM_THRESHOLD = 64 * 1024;
+
+    /**
+     * Size of the chunks a streamed body is handed over to the reader in.
+     */
+    static final int STREAM_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * Number of chunks of a streamed body waiting for the reader, beyond which the writer blocks.
+     */
+    static final int STREAM_QUEUE_CAPACITY = 16;
+
+    private static final String JSON_CONTENT_TYPE = "application/json";
+
     private MessageContext axis2MessageContext;
     private final ByteArrayOutputStream content = new ByteArrayOutputStream(1024);
-    private final ServletOutputStream outputStream = new ResponseServletOutputStream(this.content);
+    private final ServletOutputStream outputStream = new ResponseServletOutputStream();
+    private final boolean streamable;
+    private final CountDownLatch bodyReady = new CountDownLatch(1);
+    private StreamedBody streamedBody;
+    private boolean streamEnded;
     private long contentLength = 0;
     private String contentType;
     private String characterEncoding = StandardCharsets.UTF_8.name();
@@ -50,7 +75,18 @@ public class ODataServletResponse implements HttpServletResponse {
     private boolean committed;
 
     ODataServletResponse(MessageContext messageContext) {
+        this(messageContext, false);
+    }
+
+    /**
+     * @param messageContext Axis2 message context of the request
+     * @param streamable     whether a large JSON body can be streamed to the client while it is written, in which
+     *                       case the body is written by another thread than the one reading it
+     * @see #awaitStreamedBody()
+     */
+    ODataServletResponse(MessageContext messageContext, boolean streamable) {
         this.axis2MessageContext =  messageContext;
+        this.streamable = streamable;
     }
 
     @Override
@@ -199,32 +235,175 @@ public class ODataServletResponse implements HttpServletResponse {
         this.committed = committed;
     }
 
-    private class ResponseServletOutputStream extends ServletOutputStream {
+    /**
+     * Waits until the body is either completely written, or being streamed as it is larger than the
+     * {@link #STREAM_THRESHOLD}.
+     *
+     * @return the body if it is streamed, which must be read until the end or closed, or null if the body is complete
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    InputStream awaitStreamedBody() throws InterruptedException {
+        bodyReady.await();
+        return streamedBody;
+    }
+
+    /**
+     * Marks the body as completely written. This must be called by the thread writing the response once it is done.
+     */
+    void complete() {
+        if (streamedBody != null) {
+            try {
+                endStreaming();
+            } catch (IOException ignore) {
+                // the reader has already closed the body
+            }
+        }
+        bodyReady.countDown();
+    }
+
+    /**
+     * Starts streaming the body, handing the buffered content over to the reader as the first chunk.
+     */
+    private void startStreaming() throws IOException {
+        streamedBody = new StreamedBody();
+        handOverContent();
+        setCommitted(true);
+        bodyReady.countDown();
+    }
+
+    /**
+     * Hands the content written since the previous chunk over to the reader, blocking while the reader has not
+     * taken the previous chunks.
+     */
+    private void handOverContent() throws IOException {
+        if (content.size() > 0) {
+            streamedBody.put(content.toByteArray());
+            content.reset();
+        }
+    }
+
+    private void endStreaming() throws IOException {
+        if (!streamEnded) {
+            streamEnded = true;
+            handOverContent();
+            streamedBody.put(StreamedBody.END_OF_BODY);
+        }
+    }
 
-        private final OutputStream targetStream;
+    /**
+     * Streamed body, which is handed over from the writer to the reader in chunks through a bounded queue.
+     */
+    private static class StreamedBody extends InputStream {
+
+        static final byte[] END_OF_BODY = new byte[0];
+
+        private static final long POLL_INTERVAL = 100;
+
+        private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(STREAM_QUEUE_CAPACITY);
+        private volatile boolean closed;
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        /**
+         * Called by the writer, to queue a chunk for the reader.
+         *
+         * @throws IOException if the reader has closed the body
+         */
+        void put(byte[] next) throws IOException {
+            try {
+                do {
+                    if (closed) {
+                        throw new IOException("The OData response body is closed by the reader");
+                    }
+                } while (!chunks.offer(next, POLL_INTERVAL, TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming the OData response body");
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == chunk.length) {
+                if (chunk == END_OF_BODY) {
+                    return -1;
+                }
+                try {
+                    chunk = chunks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while reading the OData response body");
+                }
+                position = 0;
+            }
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
 
-        ResponseServletOutputStream(OutputStream out) {
-            targetStream = out;
+        @Override
+        public void close() {
+            closed = true;
+            // releases the chunks, and the writer waiting for the space
+            chunks.clear();
         }
+    }
+
+    private class ResponseServletOutputStream extends ServletOutputStream {
 
         @Override
         public void write(int b) throws IOException {
-            targetStream.write(b);
-            super.flush();
-            targetStream.flush();
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (streamedBody != null) {
+                content.write(b, off, len);
+                if (content.size() >= STREAM_CHUNK_SIZE) {
+                    // blocks while the client has not yet received the previous chunks
+                    handOverContent();
+                }
+                return;
+            }
+            content.write(b, off, len);
             setCommittedIfBufferSizeExceeded();
+            if (streamable && content.size() > STREAM_THRESHOLD && contentType != null &&
+                contentType.contains(JSON_CONTENT_TYPE)) {
+                startStreaming();
+            }
         }
 
         @Override
         public void flush() throws IOException {
             super.flush();
             setCommitted(true);
+            if (streamedBody != null && !streamEnded) {
+                handOverContent();
+            }
         }
 
         @Override
         public void close() throws IOException {
             super.close();
-            this.targetStream.close();
+            if (streamedBody != null) {
+                endStreaming();
+            }
         }
 
     }
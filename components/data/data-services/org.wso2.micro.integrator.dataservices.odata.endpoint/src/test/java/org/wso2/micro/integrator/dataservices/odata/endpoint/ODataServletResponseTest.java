@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.dataservices.odata.endpoint;
+
+import org.apache.axis2.context.MessageContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tests the OData response streaming a large JSON body to a reader while it is written by another thread.
+ */
+public class ODataServletResponseTest {
+
+    private static final String JSON_CONTENT_TYPE = "application/json;odata.metadata=minimal";
+
+    @Test
+    public void testSmallBodyIsBuffered() throws Exception {
+        ODataServletResponse response = new ODataServletResponse(new MessageContext(), true);
+        response.addHeader("Content-Type", JSON_CONTENT_TYPE);
+        response.getOutputStream().write("{\"value\":[]}".getBytes(StandardCharsets.UTF_8));
+        response.complete();
+        Assert.assertNull(response.awaitStreamedBody());
+        Assert.assertEquals("{\"value\":[]}", response.getContentAsString());
+    }
+
+    @Test
+    public void testLargeJsonBodyIsStreamed() throws Exception {
+        final ODataServletResponse response = new ODataServletResponse(new MessageContext(), true);
+        response.addHeader("Content-Type", JSON_CONTENT_TYPE);
+        final byte[] body = createBody(10 * ODataServletResponse.STREAM_THRESHOLD);
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread writer = startWriter(response, body, written, new AtomicReference<IOException>());
+
+        InputStream streamedBody = response.awaitStreamedBody();
+        Assert.assertNotNull(streamedBody);
+        // the queue holds only a part of the body until it is read
+        Assert.assertFalse(written.await(200, TimeUnit.MILLISECONDS));
+        Assert.assertArrayEquals(body, readFully(streamedBody));
+        writer.join(10000);
+        Assert.assertEquals(0, written.getCount());
+        Assert.assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    public void testClosingStreamedBodyStopsWriter() throws Exception {
+        ODataServletResponse response = new ODataServletResponse(new MessageContext(), true);
+        response.addHeader("Content-Type", JSON_CONTENT_TYPE);
+        byte[] body = createBody(10 * ODataServletResponse.STREAM_THRESHOLD);
+        AtomicReference<IOException> error = new AtomicReference<>();
+        Thread writer = startWriter(response, body, new CountDownLatch(1), error);
+
+        InputStream streamedBody = response.awaitStreamedBody();
+        Assert.assertNotNull(streamedBody);
+        streamedBody.close();
+        writer.join(10000);
+        Assert.assertFalse(writer.isAlive());
+        Assert.assertNotNull(error.get());
+    }
+
+    @Test
+    public void testLargeBodyIsBufferedUnlessStreamable() throws Exception {
+        byte[] body = createBody(2 * ODataServletResponse.STREAM_THRESHOLD);
+
+        ODataServletResponse response = new ODataServletResponse(new MessageContext());
+        response.addHeader("Content-Type", JSON_CONTENT_TYPE);
+        response.getOutputStream().write(body);
+        response.complete();
+        Assert.assertNull(response.awaitStreamedBody());
+        Assert.assertEquals(new String(body, StandardCharsets.UTF_8), response.getContentAsString());
+
+        response = new ODataServletResponse(new MessageContext(), true);
+        response.addHeader("Content-Type", "application/xml");
+        response.getOutputStream().write(body);
+        response.complete();
+        Assert.assertNull(response.awaitStreamedBody());
+        Assert.assertEquals(new String(body, StandardCharsets.UTF_8), response.getContentAsString());
+    }
+
+    private static Thread startWriter(final ODataServletResponse response, final byte[] body,
+                                      final CountDownLatch written, final AtomicReference<IOException> error) {
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // written in chunks as the serializer does
+                    for (int offset = 0; offset < body.length; offset += 1024) {
+                        response.getOutputStream().write(body, offset, Math.min(1024, body.length - offset));
+                    }
+                    written.countDown();
+                } catch (IOException e) {
+                    error.set(e);
+                } finally {
+                    response.complete();
+                }
+            }
+        });
+        writer.start();
+        return writer;
+    }
+
+    private static byte[] createBody(int size) {
+        StringBuilder json = new StringBuilder("{\"value\":[");
+        for (int i = 0; json.length() < size; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"ID\":").append(i).append('}');
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
@@ -47,6 +47,7 @@ import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
 import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTableCache;
 import org.wso2.micro.integrator.dataservices.sql.driver.query.ColumnInfo;
 import org.wso2.micro.integrator.dataservices.sql.driver.query.ParamInfo;
 import org.wso2.micro.integrator.dataservices.sql.driver.query.QueryFactory;
@@ -66,6 +67,7 @@ public class TDriverUtil {
         driverProperties.add(Constants.DRIVER_PROPERTIES.PASSWORD);
         driverProperties.add(Constants.DRIVER_PROPERTIES.DATA_SOURCE_TYPE);
         driverProperties.add(Constants.DRIVER_PROPERTIES.MAX_COLUMNS);
+        driverProperties.add(Constants.DRIVER_PROPERTIES.STREAMING);
         driverProperties.add(Constants.GSPREAD_PROPERTIES.CLIENT_ID);
         driverProperties.add(Constants.GSPREAD_PROPERTIES.CLIENT_SECRET);
         driverProperties.add(Constants.GSPREAD_PROPERTIES.REFRESH_TOKEN);
@@ -228,6 +230,7 @@ public class TDriverUtil {
     public static void writeRecords(Workbook workbook, String filePath) throws SQLException {
         OutputStream out = null;
         PipedInputStream pin = null;
+        String dataSourcePath = filePath;
         try {
             /*
                 Security Comment :
@@ -298,6 +301,8 @@ public class TDriverUtil {
 
                 }
             }
+            /* the cached tables are dropped once the records are written, see DataTableCache */
+            DataTableCache.invalidate(dataSourcePath);
         }
     }
 
@@ -367,6 +372,19 @@ public class TDriverUtil {
 //        return ins;
     }
 
+    /**
+     * Returns the local file in the given path, which is resolved as in {@link #getInputStreamFromPath(String)}.
+     *
+     * @param path File path, URL or registry path
+     * @return the file, or null if the path does not refer to a local file
+     */
+    public static File getLocalFile(String path) {
+        if (path.startsWith("http://") || isRegistryPath(path)) {
+            return null;
+        }
+        return new File(path).getAbsoluteFile();
+    }
+
     public static boolean isRegistryPath(String path) {
         if (path.startsWith(CONF_REGISTRY_PATH_PREFIX) || path.startsWith(GOV_REGISTRY_PATH_PREFIX)) {
             return true;
@@ -17,6 +17,9 @@
  */
 package org.wso2.micro.integrator.dataservices.sql.driver;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,6 +39,7 @@ import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
+import org.wso2.micro.integrator.dataservices.sql.driver.util.ExcelStreamReader;
 
 public class TExcelConnection extends TConnection {
     private static final Log log = LogFactory.getLog(TExcelConnection.class);
@@ -57,10 +61,12 @@ public class TExcelConnection extends TConnection {
 
     private String filePath;
 
+    private boolean streaming;
+
     public TExcelConnection(Properties props) throws SQLException {
         super(props);
         filePath = (String) props.get(Constants.DRIVER_PROPERTIES.FILE_PATH);
-        this.workbook = this.createConnectionToExcelDocument(filePath);
+        streaming = Boolean.parseBoolean(props.getProperty(Constants.DRIVER_PROPERTIES.STREAMING));
     }
 
     /**
@@ -128,10 +134,65 @@ public class TExcelConnection extends TConnection {
         }
     }
 
-    public Workbook getWorkbook() {
+    /**
+     * Returns the workbook of the connection, which is read from the Excel document when it is first required,
+     * so that the queries served by the cached data tables do not read the document.
+     *
+     * @return Workbook of the Excel document
+     * @throws SQLException if the Excel document could not be read
+     */
+    public synchronized Workbook getWorkbook() throws SQLException {
+        if (workbook == null) {
+            workbook = this.createConnectionToExcelDocument(filePath);
+        }
         return workbook;
     }
 
+    /**
+     * @return true if the sheets are to be read row by row rather than by loading the workbook, see
+     * {@link #createStreamReader()}
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * Opens the Excel document to be read row by row, which is supported for XLSX documents only.
+     *
+     * @return Stream reader of the document, which must be closed, or null if the document is not an XLSX document
+     * @throws SQLException if the Excel document could not be read
+     */
+    public ExcelStreamReader createStreamReader() throws SQLException {
+        File file = TDriverUtil.getLocalFile(filePath);
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(file != null ? new FileInputStream(file) :
+                    TDriverUtil.getInputStreamFromPath(filePath));
+            if (!ExcelStreamReader.isXLSX(in)) {
+                return null;
+            }
+            if (file != null) {
+                return new ExcelStreamReader(file);
+            }
+            ExcelStreamReader reader = new ExcelStreamReader(in);
+            in = null;
+            return reader;
+        } catch (FileNotFoundException e) {
+            throw new SQLException("Could not locate the EXCEL datasource in the provided " +
+                                   "location", e);
+        } catch (IOException e) {
+            throw new SQLException("Error occurred while initializing the EXCEL datasource", e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignore) {
+
+                }
+            }
+        }
+    }
+
     public Statement createStatement(String sql) throws SQLException {
         return new TPreparedStatement(this, sql);
     }
@@ -97,6 +97,18 @@ public class TGSpreadConnection extends TConnection {
         return worksheetFeed;
     }
 
+    /**
+     * Reads the work sheet feed of the spreadsheet again, so that the work sheet entries reflect the latest
+     * updates of the work sheets.
+     *
+     * @return Work sheet feed of the spreadsheet
+     * @throws SQLException Is thrown if an error occurs while reading the work sheet feed
+     */
+    public WorksheetFeed refreshWorksheetFeed() throws SQLException {
+        this.worksheetFeed = this.extractWorkSheetFeed();
+        return this.worksheetFeed;
+    }
+
     public SpreadsheetFeed getSpreadSheetFeed() {
         return spreadSheetFeed;
     }
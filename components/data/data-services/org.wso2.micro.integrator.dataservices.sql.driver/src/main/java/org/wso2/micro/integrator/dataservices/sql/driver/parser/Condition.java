@@ -18,10 +18,12 @@
 package org.wso2.micro.integrator.dataservices.sql.driver.parser;
 
 import java.sql.SQLException;
+import java.util.BitSet;
 import java.util.Map;
 
 import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataRow;
 import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.IndexedDataTable;
 
 public class Condition {
 
@@ -54,6 +56,31 @@ public class Condition {
                 this.getRhs().process(dataTable));
     }
 
+    /**
+     * <p>Processes the condition on the given indexed table as in {@link #process(DataTable)}, where the
+     * conditions are evaluated to the positions of the matching rows without copying the rows.</p>
+     *
+     * @param dataTable Input data
+     * @return Positions of the rows matching the provided conditions
+     * @throws SQLException
+     */
+    public BitSet process(IndexedDataTable dataTable) throws SQLException {
+        if (this.getLhs() != null && this.getRhs() == null) {
+            return this.getLhs().process(dataTable);
+        } else if (this.getLhs() == null) {
+            return dataTable.findRows(this.getColumn(), this.getValue(), this.getOperator());
+        }
+        BitSet result = this.getLhs().process(dataTable);
+        if (Constants.OR.equals(this.getOperator())) {
+            result.or(this.getRhs().process(dataTable));
+        } else if (Constants.AND.equals(this.getOperator())) {
+            result.and(this.getRhs().process(dataTable));
+        } else if (this.getOperator() != null) {
+            result.clear();
+        }
+        return result;
+    }
+
     /**
      * <p>Applies the condition on each of the atomic condition which resides in a particular root
      * condition. For example, the leaf nodes of the binary tree that's built by parsing the
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.sql.driver.processor.reader;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wso2.micro.integrator.dataservices.sql.driver.TConnection;
+import org.wso2.micro.integrator.dataservices.sql.driver.TDriverUtil;
+
+/**
+ * Cache of the data tables read from the data sources, shared by all the connections, so that a data source is
+ * read again only when its version changes, i.e. the modification time of an Excel document.
+ * The cached tables are read only, see {@link IndexedDataTable}.
+ */
+public final class DataTableCache {
+
+    private static final char KEY_SEPARATOR = '\n';
+
+    private static final ConcurrentMap<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    /**
+     * Number of the invalidations done, used to drop the tables read while the data source was being modified.
+     */
+    private static final AtomicLong invalidationCount = new AtomicLong();
+
+    private DataTableCache() {
+    }
+
+    /**
+     * Creates the cache key of the given data source as read by the given connection, since the tables depend on the
+     * header properties of the connection.
+     *
+     * @param path       Path of the data source
+     * @param connection Connection reading the data source
+     * @return Cache key
+     */
+    public static String createKey(String path, TConnection connection) {
+        return path + KEY_SEPARATOR + connection.hasHeader() + KEY_SEPARATOR + connection.getMaxColumns();
+    }
+
+    /**
+     * Returns the version of the file in the given path, which is its modification time.
+     *
+     * @param path Path of the file
+     * @return Version of the file, or -1 if the path does not refer to a local file, which is not cached
+     */
+    public static long getFileVersion(String path) {
+        File file = path != null ? TDriverUtil.getLocalFile(path) : null;
+        long lastModified = file != null ? file.lastModified() : 0;
+        return lastModified > 0 ? lastModified : -1;
+    }
+
+    /**
+     * @return the number of the invalidations done, which is to be given when the read tables are cached
+     */
+    public static long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    /**
+     * Returns the tables cached for the given key.
+     *
+     * @param key     Cache key
+     * @param version Current version of the data source
+     * @return Cached tables by name, or null if the tables of the given version are not cached
+     */
+    public static Map<String, DataTable> get(String key, long version) {
+        CacheEntry entry = cache.get(key);
+        if (entry != null && entry.version == version) {
+            return entry.tables;
+        }
+        return null;
+    }
+
+    /**
+     * Caches the tables read from the given version of the data source, unless the data source was modified through
+     * the driver while they were being read.
+     *
+     * @param key               Cache key
+     * @param version           Version of the data source, taken before the tables were read
+     * @param invalidationCount Number of the invalidations, taken before the tables were read
+     * @param tables            Tables by name
+     */
+    public static void put(String key, long version, long invalidationCount, Map<String, DataTable> tables) {
+        cache.put(key, new CacheEntry(version, tables));
+        if (invalidationCount != DataTableCache.invalidationCount.get()) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Removes the tables of the data source in the given path from the cache, which is done when the data source is
+     * modified through the driver.
+     *
+     * @param path Path of the data source
+     */
+    public static void invalidate(String path) {
+        invalidationCount.incrementAndGet();
+        String prefix = path + KEY_SEPARATOR;
+        for (String key : cache.keySet()) {
+            if (key.startsWith(prefix)) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Tables read from a version of a data source.
+     */
+    private static class CacheEntry {
+
+        private final long version;
+
+        private final Map<String, DataTable> tables;
+
+        CacheEntry(long version, Map<String, DataTable> tables) {
+            this.version = version;
+            this.tables = tables;
+        }
+    }
+
+}
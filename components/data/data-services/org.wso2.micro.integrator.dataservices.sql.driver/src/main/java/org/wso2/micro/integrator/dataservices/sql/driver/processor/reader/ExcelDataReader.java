@@ -21,8 +21,10 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
@@ -32,6 +34,7 @@ import org.wso2.micro.integrator.dataservices.sql.driver.TConnection;
 import org.wso2.micro.integrator.dataservices.sql.driver.TExcelConnection;
 import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
 import org.wso2.micro.integrator.dataservices.sql.driver.query.ColumnInfo;
+import org.wso2.micro.integrator.dataservices.sql.driver.util.ExcelStreamReader;
 
 public class ExcelDataReader extends AbstractFixedDataReader {
 
@@ -40,13 +43,100 @@ public class ExcelDataReader extends AbstractFixedDataReader {
     }
 
     public void populateData() throws SQLException {
-        Workbook workbook = ((TExcelConnection) getConnection()).getWorkbook();
+        TExcelConnection connection = (TExcelConnection) getConnection();
+        String key = DataTableCache.createKey(connection.getPath(), connection);
+        /* the version is taken before the workbook is read, so that a modification done meanwhile is read later */
+        long version = DataTableCache.getFileVersion(connection.getPath());
+        long invalidationCount = DataTableCache.getInvalidationCount();
+        Map<String, DataTable> tables = version != -1 ? DataTableCache.get(key, version) : null;
+        if (tables == null) {
+            tables = this.readTables(connection);
+            if (version != -1) {
+                DataTableCache.put(key, version, invalidationCount, tables);
+            }
+        }
+        this.getData().putAll(tables);
+    }
+
+    /**
+     * Reads the sheets of the Excel document of the given connection into read only data tables, row by row in the
+     * streaming mode, or else by loading the workbook.
+     *
+     * @param connection Excel connection
+     * @return Data tables by sheet name
+     * @throws SQLException SQLException
+     */
+    private Map<String, DataTable> readTables(TExcelConnection connection) throws SQLException {
+        if (connection.isStreaming()) {
+            /* XLS documents can not be streamed, and are loaded as usual */
+            ExcelStreamReader reader = connection.createStreamReader();
+            if (reader != null) {
+                try {
+                    return this.readWorkbook(reader);
+                } finally {
+                    reader.close();
+                }
+            }
+        }
+        return this.readWorkbook(connection.getWorkbook());
+    }
+
+    /**
+     * Reads the sheets of the given XLSX document row by row into read only data tables, without loading the
+     * workbook.
+     *
+     * @param reader Stream reader of the XLSX document
+     * @return Data tables by sheet name
+     * @throws SQLException SQLException
+     */
+    private Map<String, DataTable> readWorkbook(ExcelStreamReader reader) throws SQLException {
+        Map<String, DataTable> tables = new HashMap<String, DataTable>();
+        for (String sheetName : reader.getSheetNames()) {
+            ExcelStreamReader.SheetReader sheet = reader.openSheet(sheetName);
+            ColumnInfo[] headers = null;
+            List<DataRow> rows = new ArrayList<DataRow>();
+            try {
+                while (sheet.next()) {
+                    if (sheet.getRowIndex() == 0) {
+                        headers = this.extractColumnHeaders(sheetName, sheet.getCells());
+                        continue;
+                    }
+                    /* the cells are numbered in their order as when the workbook is read */
+                    DataRow dataRow = new DataRow(sheet.getRowIndex() - 1);
+                    int cellIndex = 0;
+                    for (DataCell cell : sheet.getCells()) {
+                        dataRow.addCell(cellIndex + 1,
+                                new DataCell(cellIndex + 1, cell.getCellType(), cell.getCellValue()));
+                        cellIndex++;
+                    }
+                    rows.add(dataRow);
+                }
+            } finally {
+                sheet.close();
+            }
+            if (headers == null) {
+                headers = this.extractColumnHeaders(sheetName, null);
+            }
+            tables.put(sheetName, new IndexedDataTable(sheetName, headers, rows));
+        }
+        return tables;
+    }
+
+    /**
+     * Reads the sheets of the given workbook into read only data tables.
+     *
+     * @param workbook Workbook of the Excel document
+     * @return Data tables by sheet name
+     * @throws SQLException SQLException
+     */
+    private Map<String, DataTable> readWorkbook(Workbook workbook) throws SQLException {
+        Map<String, DataTable> tables = new HashMap<String, DataTable>();
         int noOfSheets = workbook.getNumberOfSheets();
         for (int i = 0; i < noOfSheets; i++) {
             Sheet sheet = workbook.getSheetAt(i);
             String sheetName = sheet.getSheetName();
             ColumnInfo[] headers = this.extractColumnHeaders(sheet);
-            DataTable dataTable = new FixedDataTable(sheetName, headers);
+            List<DataRow> rows = new ArrayList<DataRow>();
 
             Iterator<Row> rowItr = sheet.rowIterator();
             while (rowItr.hasNext()) {
@@ -62,11 +152,12 @@ public class ExcelDataReader extends AbstractFixedDataReader {
                         dataRow.addCell(dataCell.getColumnId(), dataCell);
                         cellIndex++;
                     }
-                    dataTable.addRow(dataRow);
+                    rows.add(dataRow);
                 }
             }
-            this.getData().put(dataTable.getTableName(), dataTable);
+            tables.put(sheetName, new IndexedDataTable(sheetName, headers, rows));
         }
+        return tables;
     }
 
     /**
@@ -98,6 +189,35 @@ public class ExcelDataReader extends AbstractFixedDataReader {
      * @throws SQLException SQLException
      */
     private ColumnInfo[] extractColumnHeaders(Sheet sheet) throws SQLException {
+        List<DataCell> headerCells = null;
+        // Retrieving the first row of the sheet as the header row.
+        Row row = sheet.getRow(0);
+        if (row != null) {
+            headerCells = new ArrayList<DataCell>();
+            Iterator<Cell> itr = row.cellIterator();
+            while (itr.hasNext()) {
+                Cell cell = itr.next();
+                if (cell != null) {
+                    int cellType = cell.getCellType();
+                    Object value = cellType == Cell.CELL_TYPE_STRING || cellType == Cell.CELL_TYPE_NUMERIC ?
+                            extractCellValue(cell) : null;
+                    headerCells.add(new DataCell(cell.getColumnIndex() + 1, cellType, value));
+                }
+            }
+        }
+        return this.extractColumnHeaders(sheet.getSheetName(), headerCells);
+    }
+
+    /**
+     * Extracts out the columns of an excel sheet from the cells of its first row
+     *
+     * @param sheetName   Name of the Excel sheet
+     * @param headerCells Cells of the first row, with their column indices as column ids, or null if there is no
+     *                    first row
+     * @return Array containing the column header data
+     * @throws SQLException SQLException
+     */
+    private ColumnInfo[] extractColumnHeaders(String sheetName, List<DataCell> headerCells) throws SQLException {
         List<ColumnInfo> headers = new ArrayList<ColumnInfo>();
 
         /* If hasHeader property is set to false, populate header map with column names following
@@ -105,34 +225,24 @@ public class ExcelDataReader extends AbstractFixedDataReader {
         if (!((TConnection)getConnection()).hasHeader()) {
             int maxColumns = ((TConnection)getConnection()).getMaxColumns();
             for (int i = 0; i < maxColumns; i++) {
-                headers.add(new ColumnInfo(i + 1, Constants.COLUMN + (i + 1), sheet.getSheetName(),
+                headers.add(new ColumnInfo(i + 1, Constants.COLUMN + (i + 1), sheetName,
                         -1, i + 1));
             }
             return headers.toArray(new ColumnInfo[headers.size()]);
         }
-        // Retrieving the first row of the sheet as the header row.
-        Row row = sheet.getRow(0);
-        if (row != null) {
-            Iterator<Cell> itr = row.cellIterator();
-            while (itr.hasNext()) {
-                Cell cell = itr.next();
-                if (cell != null) {
-                    int cellType = cell.getCellType();
-                    switch (cellType) {
-                        case Cell.CELL_TYPE_STRING:
-                            headers.add(new ColumnInfo(cell.getColumnIndex() + 1,
-                                    cell.getStringCellValue(), sheet.getSheetName(), Types.VARCHAR,
-                                    cell.getColumnIndex() + 1));
-                            break;
-                        case Cell.CELL_TYPE_NUMERIC:
-                            headers.add(new ColumnInfo(cell.getColumnIndex() + 1,
-                                    String.valueOf(cell.getNumericCellValue()),
-                                    sheet.getSheetName(), Types.INTEGER,
-                                    cell.getColumnIndex() + 1));
-                            break;
-                        default:
-                            throw new SQLException("Invalid column type");
-                    }
+        if (headerCells != null) {
+            for (DataCell cell : headerCells) {
+                switch (cell.getCellType()) {
+                    case Cell.CELL_TYPE_STRING:
+                        headers.add(new ColumnInfo(cell.getColumnId(), (String) cell.getCellValue(), sheetName,
+                                Types.VARCHAR, cell.getColumnId()));
+                        break;
+                    case Cell.CELL_TYPE_NUMERIC:
+                        headers.add(new ColumnInfo(cell.getColumnId(), String.valueOf(cell.getCellValue()),
+                                sheetName, Types.INTEGER, cell.getColumnId()));
+                        break;
+                    default:
+                        throw new SQLException("Invalid column type");
                 }
             }
         }
@@ -21,7 +21,9 @@ import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.google.gdata.data.spreadsheet.CellEntry;
@@ -41,50 +43,74 @@ public class GSpreadDataReader extends AbstractFixedDataReader {
     }
 
     public void populateData() throws SQLException {
-        int tmp = -1;
-
         TGSpreadConnection gsConnection = (TGSpreadConnection) getConnection();
-        WorksheetFeed workSheetFeed = gsConnection.getWorksheetFeed();
+        /* the work sheet feed is read again, since the cached tables are looked up by the update time of the
+           work sheets */
+        WorksheetFeed workSheetFeed = gsConnection.refreshWorksheetFeed();
         if (workSheetFeed == null) {
             throw new SQLException("Work sheet feed it not initialized properly and is null");
         }
         List<WorksheetEntry> workSheets = workSheetFeed.getEntries();
         for (WorksheetEntry workSheet : workSheets) {
-            DataRow dataRow = null;
-            CellFeed cellFeed = TDriverUtil.getGSpreadCellFeed((TGSpreadConnection) getConnection(), workSheet);
-
-            ColumnInfo[] headers = this.extractHeaders(workSheet);
-            DataTable result = new FixedDataTable(workSheet.getTitle().getPlainText(), headers);
-            for (CellEntry cell : cellFeed.getEntries()) {
-                int rowId = TDriverUtil.getRowIndex(cell.getId());
-                if (tmp != rowId && rowId != 1) {
-                    if (dataRow != null) {
-                        result.addRow(this.fillUpEmptyCells(dataRow, headers));
-                    }
-                    dataRow = new DataRow(rowId - 1);
-                    tmp = rowId;
+            /* the cells of a work sheet are read again only when the work sheet is updated */
+            String key = DataTableCache.createKey(workSheet.getId(), gsConnection);
+            long version = workSheet.getUpdated() != null ? workSheet.getUpdated().getValue() : -1;
+            long invalidationCount = DataTableCache.getInvalidationCount();
+            Map<String, DataTable> tables = version != -1 ? DataTableCache.get(key, version) : null;
+            if (tables == null) {
+                DataTable result = this.readWorkSheet(workSheet);
+                tables = Collections.singletonMap(result.getTableName(), result);
+                if (version != -1) {
+                    DataTableCache.put(key, version, invalidationCount, tables);
                 }
-                int columnId = TDriverUtil.getColumnIndex(cell.getId());
-                if (columnId > headers.length) {
-                    continue;
-                }
-                if (rowId != 1 && dataRow != null) {
-                    DataCell dataCell =
-                            new DataCell(TDriverUtil.getColumnIndex(cell.getId()),
-                                    cell.getContent().getType(),
-                                    cell.getTextContent().getContent().getPlainText());
+            }
+            this.getData().putAll(tables);
+        }
+    }
 
-                    dataRow.addCell(dataCell.getColumnId(), dataCell);
+    /**
+     * Reads the cells of the given work sheet into a read only data table.
+     *
+     * @param workSheet Work sheet to be read
+     * @return Data table of the work sheet
+     * @throws SQLException Is thrown if an error occurs while reading the work sheet cell feed
+     */
+    private DataTable readWorkSheet(WorksheetEntry workSheet) throws SQLException {
+        int tmp = -1;
+        DataRow dataRow = null;
+        CellFeed cellFeed = TDriverUtil.getGSpreadCellFeed((TGSpreadConnection) getConnection(), workSheet);
+
+        ColumnInfo[] headers = this.extractHeaders(workSheet);
+        List<DataRow> rows = new ArrayList<DataRow>();
+        for (CellEntry cell : cellFeed.getEntries()) {
+            int rowId = TDriverUtil.getRowIndex(cell.getId());
+            if (tmp != rowId && rowId != 1) {
+                if (dataRow != null) {
+                    rows.add(this.fillUpEmptyCells(dataRow, headers));
                 }
+                dataRow = new DataRow(rowId - 1);
+                tmp = rowId;
             }
-            /* adding the last row of the sheet */
-            if (dataRow != null) {
-                result.addRow(this.fillUpEmptyCells(dataRow, headers));
+            int columnId = TDriverUtil.getColumnIndex(cell.getId());
+            if (columnId > headers.length) {
+                continue;
+            }
+            if (rowId != 1 && dataRow != null) {
+                DataCell dataCell =
+                        new DataCell(TDriverUtil.getColumnIndex(cell.getId()),
+                                cell.getContent().getType(),
+                                cell.getTextContent().getContent().getPlainText());
+
+                dataRow.addCell(dataCell.getColumnId(), dataCell);
             }
-            this.getData().put(result.getTableName(), result);
         }
+        /* adding the last row of the sheet */
+        if (dataRow != null) {
+            rows.add(this.fillUpEmptyCells(dataRow, headers));
+        }
+        return new IndexedDataTable(workSheet.getTitle().getPlainText(), headers, rows);
     }
-    
+
     /**
      * Google gdata-client spreadsheet API only returns the non-empty cells that exist in the
      * spreadsheet document that is being queried. This method fills up the data rows with the
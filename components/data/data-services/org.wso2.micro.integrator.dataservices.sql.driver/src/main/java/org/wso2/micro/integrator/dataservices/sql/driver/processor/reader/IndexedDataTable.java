@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.sql.driver.processor.reader;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.wso2.micro.integrator.dataservices.sql.driver.parser.Constants;
+import org.wso2.micro.integrator.dataservices.sql.driver.query.ColumnInfo;
+
+/**
+ * Read only data table which keeps the cells of each column in an array, so that a table loaded once can be
+ * queried by many statements concurrently without locking or copying the rows.
+ * <p>
+ * Each column used in a condition is indexed when it is first queried: the cells holding numbers are kept sorted,
+ * for the equal, less than and greater than conditions on numbers, and the cells holding strings are hashed, for
+ * the equal conditions on strings. A condition is evaluated to the set of the positions of the matching rows.
+ */
+public class IndexedDataTable extends DataTable {
+
+    /**
+     * Row ids of the table in the ascending order.
+     */
+    private final int[] rowIds;
+
+    /**
+     * Cells of each column by column id, where a missing cell of a row is null.
+     */
+    private final Map<Integer, DataCell[]> columns;
+
+    private final ConcurrentMap<Integer, ColumnIndex> indexes = new ConcurrentHashMap<Integer, ColumnIndex>();
+
+    public IndexedDataTable(String tableName, ColumnInfo[] headers, Collection<DataRow> rows) {
+        super(tableName, headers);
+        List<DataRow> sortedRows = new ArrayList<DataRow>(rows);
+        Collections.sort(sortedRows, new Comparator<DataRow>() {
+            @Override
+            public int compare(DataRow row1, DataRow row2) {
+                return Integer.compare(row1.getRowId(), row2.getRowId());
+            }
+        });
+        this.rowIds = new int[sortedRows.size()];
+        Map<Integer, DataCell[]> columns = new TreeMap<Integer, DataCell[]>();
+        for (int i = 0; i < sortedRows.size(); i++) {
+            DataRow row = sortedRows.get(i);
+            this.rowIds[i] = row.getRowId();
+            for (Map.Entry<Integer, DataCell> cell : row.getCells().entrySet()) {
+                DataCell[] column = columns.get(cell.getKey());
+                if (column == null) {
+                    column = new DataCell[this.rowIds.length];
+                    columns.put(cell.getKey(), column);
+                }
+                column[i] = cell.getValue();
+            }
+        }
+        this.columns = Collections.unmodifiableMap(columns);
+    }
+
+    /**
+     * @return number of rows in the table
+     */
+    public int size() {
+        return this.rowIds.length;
+    }
+
+    /**
+     * Creates the row at the given position with the cells of the given columns, keyed by the ordinal of the
+     * column as expected by the result set.
+     *
+     * @param position Position of the row
+     * @param columns  Selected columns
+     * @return Row holding the selected cells
+     */
+    public DataRow getRow(int position, ColumnInfo[] columns) {
+        DataRow row = new DataRow(this.rowIds[position]);
+        for (ColumnInfo column : columns) {
+            DataCell[] cells = this.columns.get(column.getId());
+            row.addCell(column.getOrdinal(), cells != null ? cells[position] : null);
+        }
+        return row;
+    }
+
+    /**
+     * Finds the rows matching the given condition.
+     *
+     * @param column   Column name
+     * @param value    Value to compare with
+     * @param operator One of the equal, less than and greater than operators
+     * @return Positions of the matching rows
+     * @throws SQLException if the column does not exist
+     */
+    public BitSet findRows(String column, String value, String operator) throws SQLException {
+        ColumnInfo header = this.getHeader(column);
+        if (header == null) {
+            throw new SQLException("Column '" + column + "' does not exist");
+        }
+        ColumnIndex index = this.getIndex(header.getId());
+        BitSet result = new BitSet(this.rowIds.length);
+        Double number = parseNumber(value);
+        if (Constants.EQUAL.equals(operator)) {
+            if (number != null) {
+                index.addNumbers(result, index.lowerBound(number), index.upperBound(number));
+            } else {
+                int[] positions = index.strings.get(value);
+                if (positions != null) {
+                    for (int position : positions) {
+                        result.set(position);
+                    }
+                }
+            }
+        } else if (Constants.GREATER_THAN.equals(operator)) {
+            if (number != null) {
+                index.addNumbers(result, index.upperBound(number), index.numbers.length);
+            }
+        } else if (Constants.LESS_THAN.equals(operator)) {
+            if (number != null) {
+                index.addNumbers(result, 0, index.lowerBound(number));
+            }
+        } else {
+            throw new RuntimeException("Unsupported operator: " + operator);
+        }
+        return result;
+    }
+
+    @Override
+    public Map<Integer, DataRow> getRows() {
+        BitSet all = new BitSet(this.rowIds.length);
+        all.set(0, this.rowIds.length);
+        return this.getRows(all);
+    }
+
+    /**
+     * Creates the rows at the given positions with all their cells.
+     *
+     * @param positions Positions of the rows
+     * @return Rows by row id, in the ascending order of the row ids
+     */
+    public Map<Integer, DataRow> getRows(BitSet positions) {
+        Map<Integer, DataRow> rows = new LinkedHashMap<Integer, DataRow>();
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            DataRow row = new DataRow(this.rowIds[i]);
+            for (Map.Entry<Integer, DataCell[]> column : this.columns.entrySet()) {
+                DataCell cell = column.getValue()[i];
+                if (cell != null) {
+                    row.addCell(column.getKey(), cell);
+                }
+            }
+            rows.put(row.getRowId(), row);
+        }
+        return rows;
+    }
+
+    @Override
+    public Map<Integer, DataRow> applyCondition(String column, String value, String operator) throws SQLException {
+        return this.getRows(this.findRows(column, value, operator));
+    }
+
+    @Override
+    public void addRow(DataRow dataRow) throws SQLException {
+        throw new SQLException("Table '" + this.getTableName() + "' is read only");
+    }
+
+    @Override
+    public void updateRows(DataRow... dataRows) throws SQLException {
+        throw new SQLException("Table '" + this.getTableName() + "' is read only");
+    }
+
+    @Override
+    public void deleteRows(int... rowIds) throws SQLException {
+        throw new SQLException("Table '" + this.getTableName() + "' is read only");
+    }
+
+    private ColumnIndex getIndex(int columnId) {
+        ColumnIndex index = this.indexes.get(columnId);
+        if (index == null) {
+            /* concurrent statements may build the same index, where only one of them is kept */
+            DataCell[] cells = this.columns.get(columnId);
+            index = new ColumnIndex(cells != null ? cells : new DataCell[0]);
+            ColumnIndex existing = this.indexes.putIfAbsent(columnId, index);
+            if (existing != null) {
+                index = existing;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Parses the given value as in the conditions, where NaN is not comparable.
+     *
+     * @return the number, or null if the value is not a number
+     */
+    private static Double parseNumber(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            double number = Double.parseDouble(value.toString());
+            return Double.isNaN(number) ? null : number;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Index of the cells of a column.
+     */
+    private static class ColumnIndex {
+
+        /**
+         * Numbers of the cells in the ascending order.
+         */
+        private final double[] numbers;
+
+        /**
+         * Row positions of the numbers.
+         */
+        private final int[] numberPositions;
+
+        /**
+         * Row positions of the cells holding each string.
+         */
+        private final Map<String, int[]> strings;
+
+        ColumnIndex(DataCell[] cells) {
+            final List<Double> numbers = new ArrayList<Double>();
+            List<Integer> positions = new ArrayList<Integer>();
+            Map<String, List<Integer>> strings = new HashMap<String, List<Integer>>();
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] == null) {
+                    continue;
+                }
+                Object value = cells[i].getCellValue();
+                Double number = parseNumber(value);
+                if (number != null) {
+                    numbers.add(number);
+                    positions.add(i);
+                }
+                if (value instanceof String) {
+                    List<Integer> stringPositions = strings.get(value);
+                    if (stringPositions == null) {
+                        stringPositions = new ArrayList<Integer>();
+                        strings.put((String) value, stringPositions);
+                    }
+                    stringPositions.add(i);
+                }
+            }
+            Integer[] order = new Integer[numbers.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer i1, Integer i2) {
+                    return Double.compare(numbers.get(i1), numbers.get(i2));
+                }
+            });
+            this.numbers = new double[order.length];
+            this.numberPositions = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                this.numbers[i] = numbers.get(order[i]);
+                this.numberPositions[i] = positions.get(order[i]);
+            }
+            this.strings = new HashMap<String, int[]>(strings.size() * 2);
+            for (Map.Entry<String, List<Integer>> entry : strings.entrySet()) {
+                int[] stringPositions = new int[entry.getValue().size()];
+                for (int i = 0; i < stringPositions.length; i++) {
+                    stringPositions[i] = entry.getValue().get(i);
+                }
+                this.strings.put(entry.getKey(), stringPositions);
+            }
+        }
+
+        /**
+         * @return index of the first number which is not less than the given number
+         */
+        int lowerBound(double number) {
+            int low = 0;
+            int high = this.numbers.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.numbers[mid] < number) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * @return index of the first number which is greater than the given number
+         */
+        int upperBound(double number) {
+            int low = 0;
+            int high = this.numbers.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.numbers[mid] <= number) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void addNumbers(BitSet result, int from, int to) {
+            for (int i = from; i < to; i++) {
+                result.set(this.numberPositions[i]);
+            }
+        }
+    }
+
+}
@@ -21,7 +21,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -33,6 +35,7 @@ import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataRe
 import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataRow;
 import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataTable;
 import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.FixedDataTable;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.IndexedDataTable;
 import org.wso2.micro.integrator.dataservices.sql.driver.query.ColumnInfo;
 import org.wso2.micro.integrator.dataservices.sql.driver.query.ConditionalQuery;
 
@@ -69,11 +72,15 @@ public abstract class SelectQuery extends ConditionalQuery {
                 "such as INSERT, UPDATE and DELETE");
     }
 
-    public synchronized ResultSet executeSQL() throws SQLException {
+    public ResultSet executeSQL() throws SQLException {
         Map<Integer, DataRow> result;
         FixedDataTable table =
                 new FixedDataTable(getTargetTableName(), this.getTargetTable().getHeaders());
 
+        if (getTargetTable() instanceof IndexedDataTable) {
+            table.setData(this.selectRows((IndexedDataTable) getTargetTable()));
+            return new TResultSet(getStatement(), table, getTargetColumns());
+        }
         if (getCondition().getLhs() == null && getCondition().getRhs() == null) {
             result = getTargetTable().getRows();
         } else {
@@ -83,6 +90,30 @@ public abstract class SelectQuery extends ConditionalQuery {
         return new TResultSet(getStatement(), table, getTargetColumns());
     }
 
+    /**
+     * Selects the target columns of the rows matching the condition from the given indexed table, which is
+     * shared by the concurrent queries and therefore only read.
+     *
+     * @param dataTable Indexed table
+     * @return Selected rows by row id, in the order of the row ids
+     * @throws SQLException
+     */
+    private Map<Integer, DataRow> selectRows(IndexedDataTable dataTable) throws SQLException {
+        BitSet positions;
+        if (getCondition().getLhs() == null && getCondition().getRhs() == null) {
+            positions = new BitSet(dataTable.size());
+            positions.set(0, dataTable.size());
+        } else {
+            positions = getCondition().process(dataTable);
+        }
+        Map<Integer, DataRow> rows = new LinkedHashMap<Integer, DataRow>();
+        for (int i = positions.nextSetBit(0); i >= 0; i = positions.nextSetBit(i + 1)) {
+            DataRow row = dataTable.getRow(i, this.getTargetColumns());
+            rows.put(row.getRowId(), row);
+        }
+        return rows;
+    }
+
     private Map<Integer, DataRow> filterColumns(Map<Integer, DataRow> rows) throws SQLException {
         Map<Integer, DataRow> filteredData = new HashMap<Integer, DataRow>();
         for (Map.Entry<Integer, DataRow> entry : rows.entrySet()) {
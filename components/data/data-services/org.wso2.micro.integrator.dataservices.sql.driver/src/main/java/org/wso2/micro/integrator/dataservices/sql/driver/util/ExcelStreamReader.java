@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.dataservices.sql.driver.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.wso2.micro.integrator.dataservices.sql.driver.processor.reader.DataCell;
+import org.xml.sax.SAXException;
+
+/**
+ * Reads the sheets of an XLSX document row by row from the sheet XML, without loading the workbook, so that the
+ * memory used does not depend on the number of rows of a sheet and the first rows are available immediately.
+ * The cells are read as {@link DataCell}s with the same types and values as the cells of the workbook, except that
+ * the cached results of the formula cells are read as strings.
+ */
+public class ExcelStreamReader implements Closeable {
+
+    private static final Log log = LogFactory.getLog(ExcelStreamReader.class);
+
+    private static final XMLInputFactory xmlInputFactory = createXMLInputFactory();
+
+    private final OPCPackage pkg;
+
+    private final XSSFReader reader;
+
+    private final ReadOnlySharedStringsTable sharedStrings;
+
+    /**
+     * Opens the XLSX document in the given file, which is read from the file while the rows are read.
+     *
+     * @param file XLSX document
+     * @throws SQLException if the document could not be opened
+     */
+    public ExcelStreamReader(File file) throws SQLException {
+        try {
+            this.pkg = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException | RuntimeException e) {
+            throw new SQLException("Error occurred while opening the XLSX document '" + file.getPath() + "'", e);
+        }
+        this.reader = this.createReader();
+        this.sharedStrings = this.createSharedStrings();
+    }
+
+    /**
+     * Opens the XLSX document read from the given stream, which is read fully and closed.
+     *
+     * @param in XLSX document
+     * @throws SQLException if the document could not be opened
+     */
+    public ExcelStreamReader(InputStream in) throws SQLException {
+        try {
+            this.pkg = OPCPackage.open(in);
+        } catch (OpenXML4JException | IOException | RuntimeException e) {
+            throw new SQLException("Error occurred while opening the XLSX document", e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignore) {
+
+            }
+        }
+        this.reader = this.createReader();
+        this.sharedStrings = this.createSharedStrings();
+    }
+
+    /**
+     * Checks whether the given stream starts with an XLSX document, i.e. a zip archive, rather than an XLS document.
+     * The stream is reset to its start.
+     *
+     * @param in Stream supporting mark
+     * @return true if the stream is an XLSX document
+     * @throws IOException if the stream could not be read
+     */
+    public static boolean isXLSX(InputStream in) throws IOException {
+        byte[] header = new byte[4];
+        in.mark(header.length);
+        int length = 0;
+        try {
+            int count;
+            while (length < header.length && (count = in.read(header, length, header.length - length)) != -1) {
+                length += count;
+            }
+        } finally {
+            in.reset();
+        }
+        return length == header.length && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4;
+    }
+
+    /**
+     * @return names of the sheets in the order of the workbook
+     * @throws SQLException if the workbook could not be read
+     */
+    public List<String> getSheetNames() throws SQLException {
+        List<String> names = new ArrayList<String>();
+        XSSFReader.SheetIterator itr = this.getSheets();
+        while (itr.hasNext()) {
+            close(itr.next());
+            names.add(itr.getSheetName());
+        }
+        return names;
+    }
+
+    /**
+     * Opens the sheet with the given name to be read row by row.
+     *
+     * @param sheetName Sheet name
+     * @return Reader of the sheet, which must be closed, or null if the sheet does not exist
+     * @throws SQLException if the workbook could not be read
+     */
+    public SheetReader openSheet(String sheetName) throws SQLException {
+        XSSFReader.SheetIterator itr = this.getSheets();
+        while (itr.hasNext()) {
+            InputStream in = itr.next();
+            if (itr.getSheetName().equals(sheetName)) {
+                try {
+                    return new SheetReader(xmlInputFactory.createXMLStreamReader(in), in, this.sharedStrings);
+                } catch (XMLStreamException e) {
+                    close(in);
+                    throw new SQLException("Error occurred while reading the sheet '" + sheetName + "'", e);
+                }
+            }
+            close(in);
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        /* the package is only read, therefore it is reverted rather than saved */
+        this.pkg.revert();
+    }
+
+    private XSSFReader createReader() throws SQLException {
+        try {
+            return new XSSFReader(this.pkg);
+        } catch (OpenXML4JException | IOException e) {
+            this.pkg.revert();
+            throw new SQLException("Error occurred while reading the XLSX document", e);
+        }
+    }
+
+    private ReadOnlySharedStringsTable createSharedStrings() throws SQLException {
+        try {
+            return new ReadOnlySharedStringsTable(this.pkg);
+        } catch (IOException | SAXException e) {
+            this.pkg.revert();
+            throw new SQLException("Error occurred while reading the shared strings of the XLSX document", e);
+        }
+    }
+
+    private XSSFReader.SheetIterator getSheets() throws SQLException {
+        try {
+            return (XSSFReader.SheetIterator) this.reader.getSheetsData();
+        } catch (OpenXML4JException | IOException e) {
+            throw new SQLException("Error occurred while reading the sheets of the XLSX document", e);
+        }
+    }
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    private static void close(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Error occurred while closing the sheet stream", e);
+            }
+        }
+    }
+
+    /**
+     * Reader of the rows of a sheet, which reads the next row from the sheet XML when it is requested.
+     */
+    public static class SheetReader implements Closeable {
+
+        private final XMLStreamReader xml;
+
+        private final InputStream in;
+
+        private final ReadOnlySharedStringsTable sharedStrings;
+
+        private int rowIndex = -1;
+
+        private List<DataCell> cells;
+
+        SheetReader(XMLStreamReader xml, InputStream in, ReadOnlySharedStringsTable sharedStrings) {
+            this.xml = xml;
+            this.in = in;
+            this.sharedStrings = sharedStrings;
+        }
+
+        /**
+         * Reads the next row of the sheet. Rows without any cell are read too, but the rows missing in the sheet
+         * are skipped, therefore the row index of the next row may not be the next index.
+         *
+         * @return true if a row is read, or false at the end of the sheet
+         * @throws SQLException if the sheet could not be read
+         */
+        public boolean next() throws SQLException {
+            try {
+                while (this.xml.hasNext()) {
+                    if (this.xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(this.xml.getLocalName())) {
+                        String ref = this.xml.getAttributeValue(null, "r");
+                        this.rowIndex = ref != null ? Integer.parseInt(ref) - 1 : this.rowIndex + 1;
+                        this.cells = this.readCells();
+                        return true;
+                    }
+                }
+                this.cells = null;
+                return false;
+            } catch (XMLStreamException | RuntimeException e) {
+                throw new SQLException("Error occurred while reading the rows of the sheet", e);
+            }
+        }
+
+        /**
+         * @return zero based index of the current row
+         */
+        public int getRowIndex() {
+            return rowIndex;
+        }
+
+        /**
+         * @return cells of the current row in the order of the columns, where the column id of a cell is its one
+         * based column index, and the missing cells are skipped
+         */
+        public List<DataCell> getCells() {
+            return cells;
+        }
+
+        @Override
+        public void close() {
+            try {
+                this.xml.close();
+            } catch (XMLStreamException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Error occurred while closing the sheet reader", e);
+                }
+            }
+            ExcelStreamReader.close(this.in);
+        }
+
+        private List<DataCell> readCells() throws XMLStreamException {
+            List<DataCell> result = new ArrayList<DataCell>();
+            int columnIndex = -1;
+            while (this.xml.hasNext()) {
+                int event = this.xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT && "c".equals(this.xml.getLocalName())) {
+                    String ref = this.xml.getAttributeValue(null, "r");
+                    columnIndex = ref != null ? getColumnIndex(ref) : columnIndex + 1;
+                    result.add(this.readCell(columnIndex + 1, this.xml.getAttributeValue(null, "t")));
+                } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(this.xml.getLocalName())) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private DataCell readCell(int columnId, String type) throws XMLStreamException {
+            boolean formula = false;
+            String value = null;
+            StringBuilder inlineString = null;
+            while (this.xml.hasNext()) {
+                int event = this.xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = this.xml.getLocalName();
+                    if ("f".equals(name)) {
+                        formula = true;
+                        this.xml.getElementText();
+                    } else if ("v".equals(name)) {
+                        value = this.xml.getElementText();
+                    } else if ("t".equals(name)) {
+                        if (inlineString == null) {
+                            inlineString = new StringBuilder();
+                        }
+                        inlineString.append(this.xml.getElementText());
+                    } else if ("rPh".equals(name)) {
+                        /* phonetic runs are not a part of the string value */
+                        this.skipElement();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT && "c".equals(this.xml.getLocalName())) {
+                    break;
+                }
+            }
+            if (formula) {
+                return new DataCell(columnId, Cell.CELL_TYPE_FORMULA, value != null ? value : "");
+            } else if ("s".equals(type)) {
+                return new DataCell(columnId, Cell.CELL_TYPE_STRING,
+                        this.sharedStrings.getEntryAt(Integer.parseInt(value)));
+            } else if ("inlineStr".equals(type)) {
+                return new DataCell(columnId, Cell.CELL_TYPE_STRING,
+                        inlineString != null ? inlineString.toString() : "");
+            } else if ("str".equals(type)) {
+                return new DataCell(columnId, Cell.CELL_TYPE_STRING, value != null ? value : "");
+            } else if ("b".equals(type)) {
+                return new DataCell(columnId, Cell.CELL_TYPE_BOOLEAN, "1".equals(value));
+            } else if ("e".equals(type)) {
+                return new DataCell(columnId, Cell.CELL_TYPE_ERROR, value);
+            } else if (value == null || value.isEmpty()) {
+                return new DataCell(columnId, Cell.CELL_TYPE_BLANK, "");
+            }
+            return new DataCell(columnId, Cell.CELL_TYPE_NUMERIC, Double.parseDouble(value));
+        }
+
+        private void skipElement() throws XMLStreamException {
+            int depth = 1;
+            while (depth > 0) {
+                int event = this.xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        }
+
+        /**
+         * Returns the zero based column index of the given cell reference, e.g. 27 for "AB12".
+         */
+        private static int getColumnIndex(String ref) {
+            int index = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char c = ref.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                index = index * 26 + (c - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+
+}
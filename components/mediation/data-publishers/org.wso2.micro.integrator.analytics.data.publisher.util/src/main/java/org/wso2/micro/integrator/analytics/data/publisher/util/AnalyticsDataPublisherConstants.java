@@ -26,6 +26,16 @@ public class AnalyticsDataPublisherConstants {
     public static final String FLOW_STATISTIC_JMX_PUBLISHING = STAT_CONFIG_ELEMENT + ".JmxPublishingDisable";
     public static final String FLOW_STATISTIC_WORKER_COUNT = STAT_CONFIG_ELEMENT + ".StatWorkerCount";
     public static final int FLOW_STATISTIC_WORKER_COUNT_DEFAULT = 2;
+    public static final String FLOW_STATISTIC_QUEUE_SIZE = STAT_CONFIG_ELEMENT + ".StatEventQueueSize";
+    public static final int FLOW_STATISTIC_QUEUE_SIZE_DEFAULT = 10000;
+    public static final String FLOW_STATISTIC_BATCH_SIZE = STAT_CONFIG_ELEMENT + ".StatPublishBatchSize";
+    public static final int FLOW_STATISTIC_BATCH_SIZE_DEFAULT = 100;
+    // one of block, drop and sample, applied when the statistic event queue is full
+    public static final String FLOW_STATISTIC_OVERLOAD_POLICY = STAT_CONFIG_ELEMENT + ".StatOverloadPolicy";
+    public static final String FLOW_STATISTIC_OVERLOAD_POLICY_DEFAULT = "block";
+    // one in this many events is kept by the sample policy while the statistic event queue is nearly full
+    public static final String FLOW_STATISTIC_SAMPLING_RATE = STAT_CONFIG_ELEMENT + ".StatSamplingRate";
+    public static final int FLOW_STATISTIC_SAMPLING_RATE_DEFAULT = 10;
     public static final String FLOW_STATISTIC_ANALYTICS_PUBLISHING = STAT_CONFIG_ELEMENT + ".AnalyticPublishingDisable";
     public static final String STAT_OBSERVERS = STAT_CONFIG_ELEMENT + ".Observers";
     public static final String FLOW_STATISTIC_NODE_HOST_NAME = STAT_CONFIG_ELEMENT + ".NodeHostName";
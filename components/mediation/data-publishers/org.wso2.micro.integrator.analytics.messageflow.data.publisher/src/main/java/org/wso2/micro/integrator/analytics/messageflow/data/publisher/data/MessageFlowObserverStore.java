@@ -23,6 +23,7 @@ import org.apache.synapse.aspects.flow.statistics.publishing.PublishingFlow;
 import org.wso2.micro.integrator.analytics.messageflow.data.publisher.observer.MessageFlowObserver;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public class MessageFlowObserverStore {
@@ -64,6 +65,17 @@ public class MessageFlowObserverStore {
         observers.clear();
     }
 
+    public void notifyObservers(List<PublishingFlow> publishingFlows) {
+
+        for (MessageFlowObserver o : observers) {
+            try {
+                o.updateStatistics(publishingFlows);
+            } catch (Throwable t) {
+                log.error("Error occurred while notifying the statistics observer", t);
+            }
+        }
+    }
+
     public void notifyObservers(PublishingFlow publishingFlow) {
 
         for (MessageFlowObserver o : observers) {
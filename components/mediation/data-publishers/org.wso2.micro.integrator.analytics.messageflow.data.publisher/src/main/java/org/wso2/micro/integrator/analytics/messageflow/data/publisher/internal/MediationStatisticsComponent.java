@@ -36,7 +36,7 @@ import org.wso2.micro.integrator.analytics.messageflow.data.publisher.observer.M
 import org.wso2.micro.integrator.analytics.messageflow.data.publisher.observer.TenantInformation;
 import org.wso2.micro.integrator.analytics.messageflow.data.publisher.observer.jmx.JMXMediationFlowObserver;
 import org.wso2.micro.integrator.analytics.messageflow.data.publisher.services.MediationConfigReporterThread;
-import org.wso2.micro.integrator.analytics.messageflow.data.publisher.services.MessageFlowReporterThread;
+import org.wso2.micro.integrator.analytics.messageflow.data.publisher.services.MessageFlowReportingPipeline;
 import org.wso2.micro.integrator.core.services.Axis2ConfigurationContextService;
 import org.wso2.micro.integrator.core.services.CarbonServerConfigurationService;
 import org.wso2.micro.integrator.initializer.services.SynapseEnvironmentService;
@@ -44,7 +44,6 @@ import org.wso2.micro.integrator.initializer.services.SynapseRegistrationsServic
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 @Component(name = "org.wso2.micro.integrator.analytics.messageflow.data.publisher.internal.MediationStatisticsComponent",
         immediate = true)
@@ -52,13 +51,16 @@ public class MediationStatisticsComponent {
 
     private static final Log log = LogFactory.getLog(MediationStatisticsComponent.class);
 
+    private static final long PIPELINE_SHUTDOWN_TIMEOUT = 5000;
+
     private static boolean flowStatisticsEnabled;
 
     private boolean activated = false;
 
     private Map<Integer, MessageFlowObserverStore> stores = new HashMap<Integer, MessageFlowObserverStore>();
 
-    private Map<Integer, MessageFlowReporterThread> reporterThreads = new HashMap<Integer, MessageFlowReporterThread>();
+    private Map<Integer, MessageFlowReportingPipeline> reportingPipelines =
+            new HashMap<Integer, MessageFlowReportingPipeline>();
 
     private Map<Integer, MediationConfigReporterThread> configReporterThreads = new HashMap<Integer, MediationConfigReporterThread>();
 
@@ -98,7 +100,6 @@ public class MediationStatisticsComponent {
 
         int tenantId = Constants.SUPER_TENANT_ID;
         MessageFlowObserverStore observerStore = new MessageFlowObserverStore();
-        MessageFlowReporterThread reporterThread = null;
         CarbonServerConfigurationService serverConf = CarbonServerConfigurationService.getInstance();
         // Set a custom interval value if required
         String interval = serverConf
@@ -115,27 +116,32 @@ public class MediationStatisticsComponent {
                 delay = AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_IDLE_INTERVAL_DEFAULT;
             }
         }
-        String workerCountString = serverConf
-                .getFirstProperty(AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_COUNT);
-        int workerCount = AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_COUNT_DEFAULT;
-        if (workerCountString != null) {
+        int workerCount = getIntProperty(serverConf, AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_COUNT,
+                                         AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_COUNT_DEFAULT);
+        int queueSize = getIntProperty(serverConf, AnalyticsDataPublisherConstants.FLOW_STATISTIC_QUEUE_SIZE,
+                                       AnalyticsDataPublisherConstants.FLOW_STATISTIC_QUEUE_SIZE_DEFAULT);
+        int batchSize = getIntProperty(serverConf, AnalyticsDataPublisherConstants.FLOW_STATISTIC_BATCH_SIZE,
+                                       AnalyticsDataPublisherConstants.FLOW_STATISTIC_BATCH_SIZE_DEFAULT);
+        int samplingRate = getIntProperty(serverConf, AnalyticsDataPublisherConstants.FLOW_STATISTIC_SAMPLING_RATE,
+                                          AnalyticsDataPublisherConstants.FLOW_STATISTIC_SAMPLING_RATE_DEFAULT);
+        String overloadPolicyString = serverConf
+                .getFirstProperty(AnalyticsDataPublisherConstants.FLOW_STATISTIC_OVERLOAD_POLICY);
+        MessageFlowReportingPipeline.OverloadPolicy overloadPolicy = MessageFlowReportingPipeline.OverloadPolicy
+                .fromString(AnalyticsDataPublisherConstants.FLOW_STATISTIC_OVERLOAD_POLICY_DEFAULT);
+        if (overloadPolicyString != null) {
             try {
-                workerCount = Integer.parseInt(workerCountString);
-            } catch (NumberFormatException ignored) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Invalid StatisticWorkerCount. It will use default value - "
-                                      + AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_COUNT_DEFAULT);
-                }
-                workerCount = AnalyticsDataPublisherConstants.FLOW_STATISTIC_WORKER_COUNT_DEFAULT;
+                overloadPolicy = MessageFlowReportingPipeline.OverloadPolicy.fromString(overloadPolicyString);
+            } catch (IllegalArgumentException ignored) {
+                log.warn("Invalid StatOverloadPolicy " + overloadPolicyString + ". It will use default value - "
+                                 + AnalyticsDataPublisherConstants.FLOW_STATISTIC_OVERLOAD_POLICY_DEFAULT);
             }
         }
-        for (int i = 0; i < workerCount; i++) {
-            reporterThread = new MessageFlowReporterThread(synEnvService, observerStore);
-            reporterThread.setName("message-flow-reporter-" + i + "-tenant-" + tenantId);
-            reporterThread.setDelay(delay);
-            reporterThread.start();
-            reporterThreads.put(tenantId, reporterThread);
-        }
+        MessageFlowReportingPipeline reportingPipeline = new MessageFlowReportingPipeline(
+                synEnvService, observerStore, tenantId, workerCount, queueSize, batchSize, overloadPolicy,
+                samplingRate);
+        reportingPipeline.setIdleInterval(delay);
+        reportingPipeline.start();
+        reportingPipelines.put(tenantId, reportingPipeline);
         String disableJmxStr = serverConf
                 .getFirstProperty(AnalyticsDataPublisherConstants.FLOW_STATISTIC_JMX_PUBLISHING);
         boolean enableJmxPublishing = !Boolean.parseBoolean(disableJmxStr);
@@ -191,27 +197,9 @@ public class MediationStatisticsComponent {
     @Deactivate
     protected void deactivate(ComponentContext ctxt) {
 
-        Set<Map.Entry<Integer, MessageFlowReporterThread>> threadEntries = reporterThreads.entrySet();
-        for (Map.Entry<Integer, MessageFlowReporterThread> threadEntry : threadEntries) {
-            MessageFlowReporterThread reporterThread = threadEntry.getValue();
-            if (reporterThread != null && reporterThread.isAlive()) {
-                reporterThread.shutdown();
-                // This should wake up the thread if it is asleep
-                reporterThread.interrupt();
-                // Otherwise some of the collected data may not be sent to the observers
-                for (int i = 0; i < 50; i++) {
-                    if (!reporterThread.isAlive()) {
-                        break;
-                    }
-                    if (log.isDebugEnabled()) {
-                        log.debug("Waiting for the mediation tracer reporter thread to terminate");
-                    }
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException ignore) {
-                    }
-                }
-            }
+        for (MessageFlowReportingPipeline reportingPipeline : reportingPipelines.values()) {
+            // Otherwise some of the collected data may not be sent to the observers
+            reportingPipeline.shutdown(PIPELINE_SHUTDOWN_TIMEOUT);
         }
         // Stops config reporting threads
         for (MediationConfigReporterThread configReporterThread : configReporterThreads.values()) {
@@ -282,27 +270,48 @@ public class MediationStatisticsComponent {
 
         try {
             int tenantId = registrationsService.getTenantId();
-            MessageFlowReporterThread reporterThread = reporterThreads.get(tenantId);
-            if (reporterThread != null && reporterThread.isAlive()) {
-                reporterThread.shutdown();
-                // This should wake up the thread if it is asleep
-                reporterThread.interrupt();
+            MessageFlowReportingPipeline reportingPipeline = reportingPipelines.remove(tenantId);
+            if (reportingPipeline != null) {
                 // Otherwise some of the collected data may not be sent to the observers
-                while (reporterThread.isAlive()) {
-                    if (log.isDebugEnabled()) {
-                        log.debug("Waiting for the trace reporter thread to terminate");
-                    }
-                    try {
-                        Thread.sleep(100);
-                    } catch (InterruptedException ignore) {
-                    }
-                }
+                reportingPipeline.shutdown(PIPELINE_SHUTDOWN_TIMEOUT);
             }
         } catch (Throwable t) {
             log.error("Fatal error occurred at the osgi service method", t);
         }
     }
 
+    private int getIntProperty(CarbonServerConfigurationService serverConf, String name, int defaultValue) {
+
+        return getIntProperty(name, serverConf.getFirstProperty(name), defaultValue);
+    }
+
+    /**
+     * Parses a count of the statistics configuration, which has to be positive.
+     *
+     * @param name         name of the property
+     * @param value        configured value, or null if it is not configured
+     * @param defaultValue value used if the configured value is not a positive number
+     * @return the count to use
+     */
+    static int getIntProperty(String name, String value, int defaultValue) {
+
+        if (value != null) {
+            try {
+                int intValue = Integer.parseInt(value.trim());
+                if (intValue > 0) {
+                    return intValue;
+                }
+                log.warn("Invalid " + name + " " + value + ". It should be greater than zero, hence it will use "
+                                 + "default value - " + defaultValue);
+            } catch (NumberFormatException ignored) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Invalid " + name + ". It will use default value - " + defaultValue);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
     private void checkPublishingEnabled() {
 
         flowStatisticsEnabled = RuntimeStatisticCollector.isStatisticsEnabled();
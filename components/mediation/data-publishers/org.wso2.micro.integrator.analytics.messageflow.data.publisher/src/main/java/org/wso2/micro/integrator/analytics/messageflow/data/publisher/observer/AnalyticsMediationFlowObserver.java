@@ -22,6 +22,8 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.aspects.flow.statistics.publishing.PublishingFlow;
 import org.wso2.micro.integrator.analytics.messageflow.data.publisher.publish.StatisticsPublisher;
 
+import java.util.List;
+
 public class AnalyticsMediationFlowObserver implements MessageFlowObserver, TenantInformation {
 
     private static final Log log = LogFactory.getLog(AnalyticsMediationFlowObserver.class);
@@ -46,6 +48,15 @@ public class AnalyticsMediationFlowObserver implements MessageFlowObserver, Tena
         }
     }
 
+    @Override
+    public void updateStatistics(List<PublishingFlow> flows) {
+        try {
+            StatisticsPublisher.process(flows, tenantId);
+        } catch (Exception e) {
+            log.error("failed to update statics from DAS publisher", e);
+        }
+    }
+
     @Override
     public int getTenantId() {
         return tenantId;
@@ -20,6 +20,8 @@ package org.wso2.micro.integrator.analytics.messageflow.data.publisher.observer;
 
 import org.apache.synapse.aspects.flow.statistics.publishing.PublishingFlow;
 
+import java.util.List;
+
 /**
  * This interface can be used to register consumers into the MediationStatisticsStore
  * and retrieve statistics updates from the data store.
@@ -46,4 +48,16 @@ public interface MessageFlowObserver {
      */
     public void updateStatistics(PublishingFlow snapshot);
 
+    /**
+     * Receive a batch of statistics updates from the statistics store/provider. Observers which can publish the
+     * updates together should override this method, which passes the updates one by one by default.
+     *
+     * @param snapshots Latest updates, in the order they were received
+     */
+    public default void updateStatistics(List<PublishingFlow> snapshots) {
+        for (PublishingFlow snapshot : snapshots) {
+            updateStatistics(snapshot);
+        }
+    }
+
 }
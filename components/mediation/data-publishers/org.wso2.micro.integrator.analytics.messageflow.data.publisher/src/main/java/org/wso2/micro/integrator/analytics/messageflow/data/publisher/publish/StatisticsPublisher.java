@@ -26,6 +26,7 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.aspects.flow.statistics.publishing.PublishingFlow;
 import org.apache.synapse.aspects.flow.statistics.publishing.PublishingPayload;
 import org.apache.synapse.aspects.flow.statistics.publishing.PublishingPayloadEvent;
+import org.wso2.carbon.databridge.agent.DataPublisher;
 import org.wso2.carbon.databridge.commons.Event;
 import org.wso2.carbon.databridge.commons.utils.DataBridgeCommonsUtils;
 import org.wso2.micro.integrator.analytics.data.publisher.util.PublisherUtil;
@@ -35,6 +36,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.zip.GZIPOutputStream;
 import javax.xml.bind.DatatypeConverter;
@@ -88,6 +90,30 @@ public class StatisticsPublisher {
 
     }
 
+    /**
+     * Publishes a batch of message flows, looking up the data publisher and creating the meta data once for all the
+     * events of the batch.
+     *
+     * @param publishingFlows message flows to publish
+     * @param tenantId        tenant of the message flows
+     */
+    public static void process(List<PublishingFlow> publishingFlows, int tenantId) {
+        Object[] metaData = new Object[2];
+        addMetaData(metaData, tenantId);
+
+        DataPublisher dataPublisher = DataBridgePublisher.getDataPublisher();
+        long timestamp = System.currentTimeMillis();
+        for (PublishingFlow publishingFlow : publishingFlows) {
+            Object[] eventData = new Object[2];
+            addEventData(eventData, publishingFlow);
+            dataPublisher.publish(new Event(streamId, timestamp, metaData, null, eventData));
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Sent a batch of " + publishingFlows.size() + " message flows to analytic server");
+        }
+    }
+
     private static void addMetaData(Object[] metaDataValueList, int tenantId) {
 
         /* [0] -> compressed */
@@ -30,94 +30,81 @@ import org.apache.synapse.aspects.flow.statistics.log.templates.AbstractStatisti
 import org.apache.synapse.aspects.flow.statistics.publishing.PublishingFlow;
 import org.apache.synapse.aspects.flow.statistics.util.TracingDataCollectionHelper;
 import org.wso2.micro.integrator.analytics.messageflow.data.publisher.data.MessageFlowObserverStore;
-import org.wso2.micro.integrator.initializer.services.SynapseEnvironmentService;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
- * Worker which processes statistic events and publish to analytic server.
+ * Worker which processes statistic events taken by the {@link MessageFlowReportingPipeline} and publish them to
+ * analytic server in batches.
  */
 public class MessageFlowReporterThread extends Thread {
     public static final String IGNORE_ELEMENT = "IgnoreElement";
     public static final int DEFAULT_HASHCODE = 0;
     private static Log log = LogFactory.getLog(MessageFlowReporterThread.class);
 
-    private volatile boolean shutdownRequested = false;
+    private final MessageFlowReportingPipeline pipeline;
 
-    private MessageFlowObserverStore messageFlowObserverStore;
+    private final MessageFlowObserverStore messageFlowObserverStore;
 
-    /**
-     * The reference to the synapse environment service
-     */
-    private SynapseEnvironmentService synapseEnvironmentService;
+    private final int batchSize;
 
-    private long delay = 5000;
-
-    public MessageFlowReporterThread(SynapseEnvironmentService synEnvSvc,
-                                     MessageFlowObserverStore messageFlowObserverStore) {
-        this.synapseEnvironmentService = synEnvSvc;
+    public MessageFlowReporterThread(MessageFlowReportingPipeline pipeline,
+                                     MessageFlowObserverStore messageFlowObserverStore, int batchSize) {
+        this.pipeline = pipeline;
         this.messageFlowObserverStore = messageFlowObserverStore;
-    }
-
-    public void setDelay(long delay) {
-        if (log.isDebugEnabled()) {
-            log.debug("Mediation statistics reporter delay set to " + delay + " ms");
-        }
-        this.delay = delay;
-    }
-
-    private void delay() {
-        if (delay <= 0) {
-            return;
-        }
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException ignore) {
-
-        }
+        this.batchSize = Math.max(batchSize, 1);
     }
 
     public void run() {
-        StatisticsReportingEventHolder statisticsReportingEventHolder;
-        while (!shutdownRequested) {
+        List<MessageFlowReportingPipeline.PendingEvent> batch = new ArrayList<>(batchSize);
+        List<PublishingFlow> publishingFlows = new ArrayList<>(batchSize);
+        // Events already taken are published before stopping, otherwise they are lost
+        while (!pipeline.isShutdownRequested() || pipeline.isCollecting() || pipeline.hasPendingEvents()) {
             try {
-                statisticsReportingEventHolder = synapseEnvironmentService.getSynapseEnvironment().getMessageDataStore()
-                        .dequeue();
-                if (statisticsReportingEventHolder != null) {
-                    processAndPublishEventList(statisticsReportingEventHolder);
-                } else {
-                    delay();
+                pipeline.takeBatch(batch, batchSize);
+            } catch (InterruptedException ignore) {
+                // shutdown is checked by the loop
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            for (MessageFlowReportingPipeline.PendingEvent event : batch) {
+                try {
+                    publishingFlows.add(createPublishingFlow(event.eventHolder));
+                } catch (Exception exception) {//catching throwable since this shouldn't fail
+                    log.error("Error in mediation flow statistic data consumer while consuming data", exception);
                 }
-            } catch (Exception exception) {//catching throwable since this shouldn't fail
-                log.error("Error in mediation flow statistic data consumer while consuming data", exception);
             }
+            if (!publishingFlows.isEmpty()) {
+                messageFlowObserverStore.notifyObservers(publishingFlows);
+            }
+            pipeline.published(batch);
+            batch.clear();
+            publishingFlows.clear();
         }
     }
 
-    private void processAndPublishEventList(StatisticsReportingEventHolder statisticsReportingEventHolder) {
+    private PublishingFlow createPublishingFlow(StatisticsReportingEventHolder statisticsReportingEventHolder) {
+
+        List<StatisticsReportingEvent> events = statisticsReportingEventHolder.getEventList();
+        List<StatisticsReportingEvent> remainingEvents = new ArrayList<>(events.size());
 
-        List<StatisticsReportingEvent> remainingEvents = new ArrayList<>();
-        List<StatisticsLog> messageFlowLogs = new ArrayList<>();
+        // Sizing the logs up front, so that the log of each open event is set at its index without filling the gaps
+        int logCount = 0;
+        for (StatisticsReportingEvent event : events) {
+            if (event.getEventType() == AbstractStatisticEvent.EventType.STATISTICS_OPEN_EVENT) {
+                logCount = Math.max(logCount, event.getDataUnit().getCurrentIndex() + 1);
+            }
+        }
+        List<StatisticsLog> messageFlowLogs = new ArrayList<>(Collections.nCopies(logCount, (StatisticsLog) null));
 
-        for (StatisticsReportingEvent event : statisticsReportingEventHolder.getEventList()) {
+        for (StatisticsReportingEvent event : events) {
             if (event.getEventType() == AbstractStatisticEvent.EventType.STATISTICS_OPEN_EVENT) {
                 StatisticDataUnit statisticDataUnit = (StatisticDataUnit) event.getDataUnit();
                 StatisticsLog statisticsLog = new StatisticsLog(statisticDataUnit);
-
-                if (statisticDataUnit.getCurrentIndex() < messageFlowLogs.size()) {
-                    messageFlowLogs.set(statisticDataUnit.getCurrentIndex(), statisticsLog);
-                } else {
-
-                    // Filling the gaps, if messageFlowLogs size is less than current index given
-                    for (int i = messageFlowLogs.size(); i < statisticDataUnit.getCurrentIndex(); i++) {
-                        messageFlowLogs.add(null);
-                    }
-
-                    // After filling gaps, add the new statistic-data-unit
-                    messageFlowLogs.add(statisticDataUnit.getCurrentIndex(), statisticsLog);
-                }
+                messageFlowLogs.set(statisticDataUnit.getCurrentIndex(), statisticsLog);
 
                 if (statisticDataUnit.getParentList() != null && !statisticDataUnit.getParentList().isEmpty()) {
                     for (int parent : statisticDataUnit.getParentList()) {
@@ -214,9 +201,7 @@ public class MessageFlowReporterThread extends Thread {
             }
         }
 
-        PublishingFlow publishingFlow = TracingDataCollectionHelper.createPublishingFlow(messageFlowLogs);
-
-        messageFlowObserverStore.notifyObservers(publishingFlow);
+        return TracingDataCollectionHelper.createPublishingFlow(messageFlowLogs);
     }
 
     void updateParents(List<StatisticsLog> messageFlowLogs, int index, long endTime) {
@@ -267,11 +252,4 @@ public class MessageFlowReporterThread extends Thread {
 
     }
 
-    public void shutdown() {
-        if (log.isDebugEnabled()) {
-            log.debug("Statistics reporter thread is being stopped");
-        }
-        shutdownRequested = true;
-    }
-
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.analytics.messageflow.data.publisher.services;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.aspects.flow.statistics.log.StatisticsReportingEventHolder;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
+import org.wso2.micro.integrator.analytics.messageflow.data.publisher.data.MessageFlowObserverStore;
+import org.wso2.micro.integrator.initializer.services.SynapseEnvironmentService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline which takes the statistic events from the message data store of synapse and hands them over to the
+ * reporter threads through a bounded queue. The reporter threads build the message flows and publish them to the
+ * observers in batches.
+ * <p>
+ * When the reporter threads fall behind and the queue gets full, the overload policy decides whether the collector
+ * waits for the queue (block), drops the events (drop), or keeps only a sample of the events (sample), which the
+ * sample policy starts doing once the queue is three quarters full.
+ */
+public class MessageFlowReportingPipeline implements MessageFlowReportingPipelineMBean {
+
+    private static final Log log = LogFactory.getLog(MessageFlowReportingPipeline.class);
+
+    public static final String MBEAN_CATEGORY = "Mediation Flow Statistic Reporting";
+
+    public static final String MBEAN_ID = "MessageFlowReportingPipeline_";
+
+    private static final long MIN_IDLE_WAIT = 1;
+
+    /**
+     * Policies applied when the statistic events are taken faster than they are published.
+     */
+    public enum OverloadPolicy {
+        BLOCK, DROP, SAMPLE;
+
+        public static OverloadPolicy fromString(String policy) {
+            return valueOf(policy.trim().toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    private final SynapseEnvironmentService synapseEnvironmentService;
+
+    private final BlockingQueue<PendingEvent> queue;
+
+    private final int queueCapacity;
+
+    private final OverloadPolicy overloadPolicy;
+
+    private final int samplingRate;
+
+    private final int tenantId;
+
+    private final Thread collectorThread;
+
+    private final List<MessageFlowReporterThread> reporterThreads = new ArrayList<>();
+
+    private volatile boolean shutdownRequested = false;
+
+    /**
+     * Time by which the pipeline has to be stopped, until which an event taken is still handed over.
+     */
+    private volatile long shutdownDeadline;
+
+    private long idleInterval;
+
+    private long sampleCount;
+
+    private final LongAdder receivedCount = new LongAdder();
+
+    private final LongAdder publishedCount = new LongAdder();
+
+    private final LongAdder droppedCount = new LongAdder();
+
+    private final LongAdder sampledOutCount = new LongAdder();
+
+    private final LongAdder totalLatency = new LongAdder();
+
+    private final AtomicLong maxLatency = new AtomicLong();
+
+    /**
+     * Creates the pipeline and its threads, which are started by {@link #start()}.
+     *
+     * @param synEnvSvc                synapse environment service holding the message data store
+     * @param messageFlowObserverStore observers to which the message flows are published
+     * @param tenantId                 tenant of the synapse environment
+     * @param workerCount              number of the reporter threads
+     * @param queueCapacity            maximum number of the events waiting for the reporter threads
+     * @param batchSize                maximum number of the message flows published at once
+     * @param overloadPolicy           policy applied when the queue is full
+     * @param samplingRate             one in this many events is kept by the sample policy
+     */
+    public MessageFlowReportingPipeline(SynapseEnvironmentService synEnvSvc,
+                                        MessageFlowObserverStore messageFlowObserverStore, int tenantId,
+                                        int workerCount, int queueCapacity, int batchSize,
+                                        OverloadPolicy overloadPolicy, int samplingRate) {
+        this.synapseEnvironmentService = synEnvSvc;
+        this.tenantId = tenantId;
+        this.queueCapacity = queueCapacity;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.overloadPolicy = overloadPolicy;
+        this.samplingRate = Math.max(samplingRate, 1);
+        this.collectorThread = new Thread(this::collect, "message-flow-collector-tenant-" + tenantId);
+        for (int i = 0; i < workerCount; i++) {
+            MessageFlowReporterThread reporterThread = new MessageFlowReporterThread(this, messageFlowObserverStore,
+                                                                                     batchSize);
+            reporterThread.setName("message-flow-reporter-" + i + "-tenant-" + tenantId);
+            reporterThreads.add(reporterThread);
+        }
+    }
+
+    /**
+     * Sets the maximum time to wait before checking the message data store again, while it is empty.
+     *
+     * @param idleInterval idle interval in milliseconds
+     */
+    public void setIdleInterval(long idleInterval) {
+        if (log.isDebugEnabled()) {
+            log.debug("Mediation statistics reporter idle interval set to " + idleInterval + " ms");
+        }
+        this.idleInterval = idleInterval;
+    }
+
+    public void start() {
+        MBeanRegistrar.getInstance().registerMBean(this, MBEAN_CATEGORY, MBEAN_ID + tenantId);
+        for (MessageFlowReporterThread reporterThread : reporterThreads) {
+            reporterThread.start();
+        }
+        collectorThread.start();
+    }
+
+    /**
+     * Stops taking the statistic events, and waits for the reporter threads to publish the events already taken.
+     *
+     * @param timeout maximum time to wait in milliseconds
+     */
+    public void shutdown(long timeout) {
+        if (log.isDebugEnabled()) {
+            log.debug("Statistics reporting pipeline is being stopped");
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        shutdownDeadline = deadline;
+        shutdownRequested = true;
+        // This should wake up the threads if they are waiting
+        collectorThread.interrupt();
+        for (MessageFlowReporterThread reporterThread : reporterThreads) {
+            reporterThread.interrupt();
+        }
+        try {
+            collectorThread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            for (MessageFlowReporterThread reporterThread : reporterThreads) {
+                reporterThread.join(Math.max(deadline - System.currentTimeMillis(), 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        MBeanRegistrar.getInstance().unRegisterMBean(MBEAN_CATEGORY, MBEAN_ID + tenantId);
+    }
+
+    boolean isShutdownRequested() {
+        return shutdownRequested;
+    }
+
+    /**
+     * Takes a statistic event waiting for the reporter threads, along with the other events already waiting.
+     *
+     * @param batch     list to which the events are added
+     * @param batchSize maximum number of the events to take
+     * @throws InterruptedException if interrupted while waiting for an event
+     */
+    void takeBatch(List<PendingEvent> batch, int batchSize) throws InterruptedException {
+        PendingEvent event = queue.poll(Math.max(idleInterval, MIN_IDLE_WAIT), TimeUnit.MILLISECONDS);
+        if (event != null) {
+            batch.add(event);
+            queue.drainTo(batch, batchSize - 1);
+        }
+    }
+
+    /**
+     * @return true while the collector may still hand over an event it has taken
+     */
+    boolean isCollecting() {
+        return collectorThread.isAlive();
+    }
+
+    boolean hasPendingEvents() {
+        return !queue.isEmpty();
+    }
+
+    /**
+     * Records the events published by a reporter thread.
+     *
+     * @param batch published events
+     */
+    void published(List<PendingEvent> batch) {
+        long now = System.nanoTime();
+        for (PendingEvent event : batch) {
+            long latency = now - event.takenTime;
+            totalLatency.add(latency);
+            long max = maxLatency.get();
+            while (latency > max && !maxLatency.compareAndSet(max, latency)) {
+                max = maxLatency.get();
+            }
+        }
+        publishedCount.add(batch.size());
+    }
+
+    /**
+     * Takes the statistic events from the message data store, waiting longer each time it is found empty, up to the
+     * idle interval.
+     */
+    private void collect() {
+        long idleWait = MIN_IDLE_WAIT;
+        while (!shutdownRequested) {
+            try {
+                StatisticsReportingEventHolder statisticsReportingEventHolder =
+                        synapseEnvironmentService.getSynapseEnvironment().getMessageDataStore().dequeue();
+                if (statisticsReportingEventHolder != null) {
+                    idleWait = MIN_IDLE_WAIT;
+                    receivedCount.increment();
+                    handOver(new PendingEvent(statisticsReportingEventHolder, System.nanoTime()));
+                } else {
+                    Thread.sleep(idleWait);
+                    idleWait = Math.min(idleWait * 2, Math.max(idleInterval, MIN_IDLE_WAIT));
+                }
+            } catch (InterruptedException ignore) {
+                // shutdown is checked by the loop
+            } catch (Exception exception) {//catching throwable since this shouldn't fail
+                log.error("Error in mediation flow statistic data collector while consuming data", exception);
+            }
+        }
+    }
+
+    private void handOver(PendingEvent event) {
+        switch (overloadPolicy) {
+        case BLOCK:
+            put(event);
+            break;
+        case SAMPLE:
+            if (queue.remainingCapacity() < queueCapacity / 4 && sampleCount++ % samplingRate != 0) {
+                sampledOutCount.increment();
+                break;
+            }
+            offer(event);
+            break;
+        default:
+            offer(event);
+            break;
+        }
+    }
+
+    /**
+     * Waits for the queue to take the event. Once the pipeline is being stopped, the event is still handed over if the
+     * reporter threads make room for it before the pipeline has to be stopped.
+     */
+    private void put(PendingEvent event) {
+        while (!shutdownRequested) {
+            try {
+                queue.put(event);
+                return;
+            } catch (InterruptedException e) {
+                // shutdown is checked by the loop
+            }
+        }
+        try {
+            long timeout = shutdownDeadline - System.currentTimeMillis();
+            if (queue.offer(event, Math.max(timeout, 0), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedCount.increment();
+        log.warn("Statistic event of a message flow is dropped, since the statistics reporting was stopped while "
+                         + "the event queue was full");
+    }
+
+    private void offer(PendingEvent event) {
+        if (!queue.offer(event)) {
+            droppedCount.increment();
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    @Override
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    @Override
+    public long getSampledOutCount() {
+        return sampledOutCount.sum();
+    }
+
+    @Override
+    public double getAveragePublishLatency() {
+        long published = publishedCount.sum();
+        return published == 0 ? 0 : totalLatency.sum() / 1000000.0 / published;
+    }
+
+    @Override
+    public double getMaxPublishLatency() {
+        return maxLatency.get() / 1000000.0;
+    }
+
+    @Override
+    public void resetStatistics() {
+        receivedCount.reset();
+        publishedCount.reset();
+        droppedCount.reset();
+        sampledOutCount.reset();
+        totalLatency.reset();
+        maxLatency.set(0);
+    }
+
+    /**
+     * Statistic events of a message flow, along with the time at which they were taken from the message data store.
+     */
+    static class PendingEvent {
+
+        final StatisticsReportingEventHolder eventHolder;
+
+        final long takenTime;
+
+        PendingEvent(StatisticsReportingEventHolder eventHolder, long takenTime) {
+            this.eventHolder = eventHolder;
+            this.takenTime = takenTime;
+        }
+    }
+}
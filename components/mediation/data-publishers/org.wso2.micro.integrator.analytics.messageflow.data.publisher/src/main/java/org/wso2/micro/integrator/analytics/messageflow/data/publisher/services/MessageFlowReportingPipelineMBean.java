@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.analytics.messageflow.data.publisher.services;
+
+/**
+ * MBean interface to expose the state of the message flow statistic reporting pipeline using JMX.
+ */
+public interface MessageFlowReportingPipelineMBean {
+
+    /**
+     * @return Number of the statistic events waiting to be processed by the workers.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return Maximum number of the statistic events which can wait to be processed.
+     */
+    int getQueueCapacity();
+
+    /**
+     * @return Number of the statistic events taken from the message data store.
+     */
+    long getReceivedCount();
+
+    /**
+     * @return Number of the statistic events published to the observers.
+     */
+    long getPublishedCount();
+
+    /**
+     * @return Number of the statistic events dropped as the queue was full.
+     */
+    long getDroppedCount();
+
+    /**
+     * @return Number of the statistic events skipped by sampling as the queue was nearly full.
+     */
+    long getSampledOutCount();
+
+    /**
+     * @return Average time in milliseconds from taking a statistic event until it is published.
+     */
+    double getAveragePublishLatency();
+
+    /**
+     * @return Maximum time in milliseconds from taking a statistic event until it is published.
+     */
+    double getMaxPublishLatency();
+
+    /**
+     * Reset the counters and the latencies.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.analytics.messageflow.data.publisher.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the sizes of the statistics reporting pipeline read from the server configuration.
+ */
+public class MediationStatisticsComponentTest {
+
+    private static final String NAME = "StatEventQueueSize";
+
+    @Test
+    public void testValidValue() {
+        Assert.assertEquals(5, MediationStatisticsComponent.getIntProperty(NAME, "5", 10));
+        Assert.assertEquals(7, MediationStatisticsComponent.getIntProperty(NAME, " 7 ", 10));
+    }
+
+    @Test
+    public void testInvalidValueUsesDefault() {
+        // a queue or a pool of no size cannot be created
+        Assert.assertEquals(10, MediationStatisticsComponent.getIntProperty(NAME, "0", 10));
+        Assert.assertEquals(10, MediationStatisticsComponent.getIntProperty(NAME, "-3", 10));
+        Assert.assertEquals(10, MediationStatisticsComponent.getIntProperty(NAME, "abc", 10));
+        Assert.assertEquals(10, MediationStatisticsComponent.getIntProperty(NAME, null, 10));
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.analytics.messageflow.data.publisher.services;
+
+import org.apache.synapse.aspects.flow.statistics.log.StatisticsReportingEventHolder;
+import org.apache.synapse.aspects.flow.statistics.store.MessageDataStore;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.wso2.micro.integrator.analytics.messageflow.data.publisher.data.MessageFlowObserverStore;
+import org.wso2.micro.integrator.initializer.services.SynapseEnvironmentService;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests the statistic events handed over to the reporter threads under each overload policy, and while the pipeline
+ * is being stopped.
+ */
+public class MessageFlowReportingPipelineTest {
+
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Tenants of the pipelines, which are unique so that their MBeans do not clash.
+     */
+    private static final AtomicInteger TENANT_IDS = new AtomicInteger();
+
+    private final Queue<StatisticsReportingEventHolder> dataStore = new ConcurrentLinkedQueue<>();
+
+    private SynapseEnvironmentService synapseEnvironmentService;
+
+    private MessageFlowReportingPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        MessageDataStore messageDataStore = mock(MessageDataStore.class);
+        when(messageDataStore.dequeue()).thenAnswer(invocation -> dataStore.poll());
+        SynapseEnvironment synapseEnvironment = mock(SynapseEnvironment.class);
+        when(synapseEnvironment.getMessageDataStore()).thenReturn(messageDataStore);
+        synapseEnvironmentService = mock(SynapseEnvironmentService.class);
+        when(synapseEnvironmentService.getSynapseEnvironment()).thenReturn(synapseEnvironment);
+    }
+
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.shutdown(TIMEOUT);
+        }
+    }
+
+    @Test
+    public void testAllEventsPublishedWhenBlocking() throws Exception {
+        addEvents(200);
+        startPipeline(2, 4, 3, MessageFlowReportingPipeline.OverloadPolicy.BLOCK, 1);
+
+        waitUntil("the events to be published", () -> pipeline.getPublishedCount() == 200);
+        Assert.assertEquals(200, pipeline.getReceivedCount());
+        Assert.assertEquals(0, pipeline.getDroppedCount());
+        Assert.assertEquals(0, pipeline.getQueueDepth());
+    }
+
+    @Test
+    public void testDropPolicyDropsWhenQueueFull() throws Exception {
+        addEvents(10);
+        // without reporter threads the events stay in the queue
+        startPipeline(0, 4, 1, MessageFlowReportingPipeline.OverloadPolicy.DROP, 1);
+
+        waitUntil("the events to be taken", () -> pipeline.getReceivedCount() == 10);
+        Assert.assertEquals(4, pipeline.getQueueDepth());
+        Assert.assertEquals(6, pipeline.getDroppedCount());
+        Assert.assertEquals(0, pipeline.getSampledOutCount());
+    }
+
+    @Test
+    public void testSamplePolicySamplesWhenQueueNearlyFull() throws Exception {
+        addEvents(12);
+        startPipeline(0, 8, 1, MessageFlowReportingPipeline.OverloadPolicy.SAMPLE, 2);
+
+        waitUntil("the events to be taken", () -> pipeline.getReceivedCount() == 12);
+        // sampling starts once fewer than a quarter of the queue is left, and keeps one in two events
+        Assert.assertEquals(8, pipeline.getQueueDepth());
+        Assert.assertEquals(2, pipeline.getSampledOutCount());
+        Assert.assertEquals(2, pipeline.getDroppedCount());
+    }
+
+    @Test
+    public void testEventCountedAsDroppedWhenStoppedWhileBlocked() throws Exception {
+        addEvents(2);
+        startPipeline(0, 1, 1, MessageFlowReportingPipeline.OverloadPolicy.BLOCK, 1);
+        // the second event waits for the queue
+        waitUntil("the events to be taken", () -> pipeline.getReceivedCount() == 2);
+        Assert.assertEquals(1, pipeline.getQueueDepth());
+        Assert.assertEquals(0, pipeline.getDroppedCount());
+
+        MessageFlowReportingPipeline stopped = pipeline;
+        pipeline = null;
+        stopped.shutdown(200);
+        waitUntil("the waiting event to be dropped", () -> stopped.getDroppedCount() == 1);
+        Assert.assertEquals(1, stopped.getQueueDepth());
+    }
+
+    @Test
+    public void testEventHandedOverWhenStoppedWhileBlocked() throws Exception {
+        addEvents(50);
+        startPipeline(1, 1, 1, MessageFlowReportingPipeline.OverloadPolicy.BLOCK, 1);
+        waitUntil("the events to be taken", () -> pipeline.getReceivedCount() > 0);
+
+        MessageFlowReportingPipeline stopped = pipeline;
+        pipeline = null;
+        stopped.shutdown(TIMEOUT);
+        // the events taken before the shutdown are all published
+        Assert.assertEquals(0, stopped.getDroppedCount());
+        Assert.assertEquals(stopped.getReceivedCount(), stopped.getPublishedCount());
+    }
+
+    private void startPipeline(int workerCount, int queueCapacity, int batchSize,
+                               MessageFlowReportingPipeline.OverloadPolicy overloadPolicy, int samplingRate) {
+        pipeline = new MessageFlowReportingPipeline(synapseEnvironmentService, new MessageFlowObserverStore(),
+                                                    TENANT_IDS.incrementAndGet(), workerCount, queueCapacity, batchSize,
+                                                    overloadPolicy, samplingRate);
+        pipeline.setIdleInterval(10);
+        pipeline.start();
+    }
+
+    private void addEvents(int count) {
+        for (int i = 0; i < count; i++) {
+            dataStore.add(mock(StatisticsReportingEventHolder.class));
+        }
+    }
+
+    private static void waitUntil(String condition, Callable<Boolean> check) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!check.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Timed out waiting for " + condition);
+            }
+            Thread.sleep(10);
+        }
+    }
+}
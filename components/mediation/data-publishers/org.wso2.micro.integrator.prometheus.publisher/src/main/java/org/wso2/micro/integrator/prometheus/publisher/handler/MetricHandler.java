@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.prometheus.publisher.handler;
+
+import org.apache.synapse.AbstractSynapseHandler;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.rest.RESTConstants;
+import org.wso2.micro.integrator.prometheus.publisher.metrics.ArtifactType;
+import org.wso2.micro.integrator.prometheus.publisher.metrics.MetricsRegistry;
+import org.wso2.micro.integrator.prometheus.publisher.util.PrometheusPublisherConstants;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Synapse handler recording the request count, error count and latency of the proxy services, APIs, inbound
+ * endpoints and endpoints in the metrics registry, as the messages flow through them. A request is counted by an
+ * artifact as soon as the artifact is known, so that the requests which are not responded to are counted as well.
+ */
+public class MetricHandler extends AbstractSynapseHandler {
+
+    private final MetricsRegistry metricsRegistry = MetricsRegistry.getInstance();
+
+    @Override
+    public boolean handleRequestInFlow(MessageContext synCtx) {
+
+        if (synCtx.getProperty(PrometheusPublisherConstants.REQUEST_START_TIME) == null) {
+            synCtx.setProperty(PrometheusPublisherConstants.REQUEST_START_TIME, System.nanoTime());
+        }
+        countRequest(synCtx);
+        return true;
+    }
+
+    @Override
+    public boolean handleRequestOutFlow(MessageContext synCtx) {
+
+        // the API of the request is known only once it has been dispatched, after the request in flow
+        if (synCtx.getProperty(PrometheusPublisherConstants.REQUEST_START_TIME) != null) {
+            countRequest(synCtx);
+        }
+        synCtx.setProperty(PrometheusPublisherConstants.ENDPOINT_START_TIME, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public boolean handleResponseInFlow(MessageContext synCtx) {
+
+        Object startTime = synCtx.getProperty(PrometheusPublisherConstants.ENDPOINT_START_TIME);
+        Object endpointName = synCtx.getProperty(SynapseConstants.LAST_ENDPOINT);
+        if (startTime instanceof Long && endpointName != null) {
+            synCtx.getPropertyKeySet().remove(PrometheusPublisherConstants.ENDPOINT_START_TIME);
+            metricsRegistry.getMetrics(ArtifactType.ENDPOINT, endpointName.toString())
+                    .record(System.nanoTime() - (Long) startTime, isError(synCtx));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean handleResponseOutFlow(MessageContext synCtx) {
+
+        Object startTime = synCtx.getProperty(PrometheusPublisherConstants.REQUEST_START_TIME);
+        if (!(startTime instanceof Long)) {
+            return true;
+        }
+        countRequest(synCtx);
+        synCtx.getPropertyKeySet().remove(PrometheusPublisherConstants.REQUEST_START_TIME);
+        long latency = System.nanoTime() - (Long) startTime;
+        boolean isError = isError(synCtx);
+
+        Object proxyName = synCtx.getProperty(SynapseConstants.PROXY_SERVICE);
+        if (proxyName != null) {
+            metricsRegistry.getMetrics(ArtifactType.PROXY, proxyName.toString()).recordResponse(latency, isError);
+        }
+        Object apiName = synCtx.getProperty(RESTConstants.SYNAPSE_REST_API);
+        if (apiName != null) {
+            metricsRegistry.getMetrics(ArtifactType.API, apiName.toString()).recordResponse(latency, isError);
+        }
+        Object inboundEndpointName = synCtx.getProperty(SynapseConstants.INBOUND_ENDPOINT_NAME);
+        if (inboundEndpointName != null) {
+            metricsRegistry.getMetrics(ArtifactType.INBOUND_ENDPOINT, inboundEndpointName.toString())
+                    .recordResponse(latency, isError);
+        }
+        return true;
+    }
+
+    /**
+     * Counts the request in each of the proxy service, API and inbound endpoint of the message which has not counted
+     * it yet.
+     */
+    @SuppressWarnings("unchecked")
+    private void countRequest(MessageContext synCtx) {
+
+        Object counted = synCtx.getProperty(PrometheusPublisherConstants.COUNTED_ARTIFACTS);
+        Set<ArtifactType> countedArtifacts =
+                counted instanceof Set ? (Set<ArtifactType>) counted : EnumSet.noneOf(ArtifactType.class);
+        Set<ArtifactType> newlyCounted = EnumSet.noneOf(ArtifactType.class);
+        countRequest(ArtifactType.PROXY, synCtx.getProperty(SynapseConstants.PROXY_SERVICE), countedArtifacts,
+                     newlyCounted);
+        countRequest(ArtifactType.API, synCtx.getProperty(RESTConstants.SYNAPSE_REST_API), countedArtifacts,
+                     newlyCounted);
+        countRequest(ArtifactType.INBOUND_ENDPOINT, synCtx.getProperty(SynapseConstants.INBOUND_ENDPOINT_NAME),
+                     countedArtifacts, newlyCounted);
+        if (!newlyCounted.isEmpty()) {
+            // a new set is set rather than updating the existing one, as it may be shared with the cloned messages
+            newlyCounted.addAll(countedArtifacts);
+            synCtx.setProperty(PrometheusPublisherConstants.COUNTED_ARTIFACTS, newlyCounted);
+        }
+    }
+
+    private void countRequest(ArtifactType type, Object name, Set<ArtifactType> countedArtifacts,
+                              Set<ArtifactType> newlyCounted) {
+
+        if (name != null && !countedArtifacts.contains(type)) {
+            metricsRegistry.getMetrics(type, name.toString()).countRequest();
+            newlyCounted.add(type);
+        }
+    }
+
+    private boolean isError(MessageContext synCtx) {
+
+        return synCtx.isFaultResponse() || synCtx.getProperty(SynapseConstants.ERROR_CODE) != null;
+    }
+}
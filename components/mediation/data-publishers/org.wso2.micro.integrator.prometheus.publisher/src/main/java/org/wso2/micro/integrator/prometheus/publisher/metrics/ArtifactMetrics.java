@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.prometheus.publisher.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request count, error count and latency histogram of an artifact
+ */
+public class ArtifactMetrics {
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram latency = new Histogram();
+
+    /**
+     * Records a request served by the artifact
+     *
+     * @param nanos   Latency of the request in nanoseconds
+     * @param isError Whether the request failed
+     */
+    public void record(long nanos, boolean isError) {
+
+        countRequest();
+        recordResponse(nanos, isError);
+    }
+
+    /**
+     * Counts a request received by the artifact, whether or not a response is sent for it
+     */
+    public void countRequest() {
+
+        requests.increment();
+    }
+
+    /**
+     * Records the response to a request counted by {@link #countRequest()}
+     *
+     * @param nanos   Latency of the request in nanoseconds
+     * @param isError Whether the request failed
+     */
+    public void recordResponse(long nanos, boolean isError) {
+
+        if (isError) {
+            errors.increment();
+        }
+        latency.observe(nanos);
+    }
+
+    long getRequestCount() {
+
+        return requests.sum();
+    }
+
+    long getErrorCount() {
+
+        return errors.sum();
+    }
+
+    Histogram getLatency() {
+
+        return latency;
+    }
+}
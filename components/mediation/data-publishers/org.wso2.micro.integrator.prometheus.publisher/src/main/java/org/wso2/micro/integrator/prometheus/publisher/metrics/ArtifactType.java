@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.prometheus.publisher.metrics;
+
+/**
+ * Types of the artifacts for which the metrics are recorded, along with the prefix of their metric names and the
+ * label holding the artifact name
+ */
+public enum ArtifactType {
+
+    PROXY("wso2_integration_proxy", "service_name", "proxy service"),
+    API("wso2_integration_api", "api_name", "API"),
+    INBOUND_ENDPOINT("wso2_integration_inbound_endpoint", "inbound_endpoint_name", "inbound endpoint"),
+    ENDPOINT("wso2_integration_endpoint", "endpoint_name", "endpoint");
+
+    private final String metricPrefix;
+    private final String label;
+    private final String description;
+
+    ArtifactType(String metricPrefix, String label, String description) {
+
+        this.metricPrefix = metricPrefix;
+        this.label = label;
+        this.description = description;
+    }
+
+    String getMetricPrefix() {
+
+        return metricPrefix;
+    }
+
+    String getLabel() {
+
+        return label;
+    }
+
+    String getDescription() {
+
+        return description;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.prometheus.publisher.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock free histogram of latencies with fixed buckets, which is exposed as a Prometheus histogram so that the
+ * quantiles can be computed with histogram_quantile
+ */
+public class Histogram {
+
+    /**
+     * Upper bounds of the buckets in seconds, other than the +Inf bucket
+     */
+    static final double[] BUCKET_BOUNDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30
+    };
+
+    private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS.length];
+
+    static {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Number of the observations in each bucket, where the last one is the +Inf bucket
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    public Histogram() {
+
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records an observed latency
+     *
+     * @param nanos Latency in nanoseconds
+     */
+    public void observe(long nanos) {
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @return Number of the observations in each bucket, which are not cumulative
+     */
+    long[] getBucketCounts() {
+
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * @return Sum of the observations in seconds
+     */
+    double getSum() {
+
+        return sumNanos.sum() / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.prometheus.publisher.metrics;
+
+import org.wso2.micro.integrator.prometheus.publisher.util.PrometheusPublisherConstants;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the metrics recorded for the artifacts while they serve the requests, which writes them in the
+ * Prometheus text format on a scrape without querying the JMX MBeans
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private static final char NEW_LINE = '\n';
+
+    private final Map<ArtifactType, ConcurrentMap<String, ArtifactMetrics>> metrics =
+            new EnumMap<>(ArtifactType.class);
+
+    MetricsRegistry() {
+
+        for (ArtifactType type : ArtifactType.values()) {
+            metrics.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    public static MetricsRegistry getInstance() {
+
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the metrics of the given artifact, which are created when the artifact is first seen
+     *
+     * @param type Artifact type
+     * @param name Artifact name
+     * @return Metrics of the artifact
+     */
+    public ArtifactMetrics getMetrics(ArtifactType type, String name) {
+
+        ConcurrentMap<String, ArtifactMetrics> metricsOfType = metrics.get(type);
+        ArtifactMetrics artifactMetrics = metricsOfType.get(name);
+        if (artifactMetrics == null) {
+            artifactMetrics = metricsOfType.computeIfAbsent(name, key -> new ArtifactMetrics());
+        }
+        return artifactMetrics;
+    }
+
+    /**
+     * Writes all the recorded metrics in the Prometheus text format
+     *
+     * @param writer Writer of the scrape response
+     * @throws IOException if the metrics could not be written
+     */
+    public void write(Writer writer) throws IOException {
+
+        for (ArtifactType type : ArtifactType.values()) {
+            Map<String, ArtifactMetrics> metricsOfType = metrics.get(type);
+            if (metricsOfType.isEmpty()) {
+                continue;
+            }
+            String requestsName = type.getMetricPrefix() + "_requests_total";
+            writeHeader(writer, requestsName, "Total number of requests received by the " + type.getDescription(),
+                        "counter");
+            for (Map.Entry<String, ArtifactMetrics> entry : metricsOfType.entrySet()) {
+                writeSample(writer, requestsName, type.getLabel(), entry.getKey(), null,
+                            entry.getValue().getRequestCount());
+            }
+
+            String errorsName = type.getMetricPrefix() + "_errors_total";
+            writeHeader(writer, errorsName, "Total number of requests failed in the " + type.getDescription(),
+                        "counter");
+            for (Map.Entry<String, ArtifactMetrics> entry : metricsOfType.entrySet()) {
+                writeSample(writer, errorsName, type.getLabel(), entry.getKey(), null,
+                            entry.getValue().getErrorCount());
+            }
+
+            String latencyName = type.getMetricPrefix() + "_latency_seconds";
+            writeHeader(writer, latencyName, "Latency of the requests served by the " + type.getDescription(),
+                        "histogram");
+            for (Map.Entry<String, ArtifactMetrics> entry : metricsOfType.entrySet()) {
+                writeHistogram(writer, latencyName, type.getLabel(), entry.getKey(), entry.getValue().getLatency());
+            }
+        }
+    }
+
+    private void writeHistogram(Writer writer, String name, String label, String artifactName, Histogram histogram)
+            throws IOException {
+
+        long[] counts = histogram.getBucketCounts();
+        long cumulativeCount = 0;
+        String bucketName = name + "_bucket";
+        for (int i = 0; i < Histogram.BUCKET_BOUNDS.length; i++) {
+            cumulativeCount += counts[i];
+            writeSample(writer, bucketName, label, artifactName, Double.toString(Histogram.BUCKET_BOUNDS[i]),
+                        cumulativeCount);
+        }
+        cumulativeCount += counts[counts.length - 1];
+        writeSample(writer, bucketName, label, artifactName, "+Inf", cumulativeCount);
+        writeSample(writer, name + "_count", label, artifactName, null, cumulativeCount);
+
+        writer.write(name);
+        writer.write("_sum");
+        writeLabels(writer, label, artifactName, null);
+        writer.write(' ');
+        writer.write(Double.toString(histogram.getSum()));
+        writer.write(NEW_LINE);
+    }
+
+    private void writeHeader(Writer writer, String name, String help, String type) throws IOException {
+
+        writer.write(PrometheusPublisherConstants.PROMETHEUS_HELP_TAG);
+        writer.write(name);
+        writer.write(' ');
+        writer.write(help);
+        writer.write(NEW_LINE);
+        writer.write(PrometheusPublisherConstants.PROMETHEUS_TYPE_TAG);
+        writer.write(name);
+        writer.write(' ');
+        writer.write(type);
+        writer.write(NEW_LINE);
+    }
+
+    private void writeSample(Writer writer, String name, String label, String artifactName, String bucketBound,
+                             long value) throws IOException {
+
+        writer.write(name);
+        writeLabels(writer, label, artifactName, bucketBound);
+        writer.write(' ');
+        writer.write(Long.toString(value));
+        writer.write(NEW_LINE);
+    }
+
+    private void writeLabels(Writer writer, String label, String artifactName, String bucketBound)
+            throws IOException {
+
+        writer.write('{');
+        writer.write(label);
+        writer.write("=\"");
+        writeLabelValue(writer, artifactName);
+        writer.write('"');
+        if (bucketBound != null) {
+            writer.write(",le=\"");
+            writer.write(bucketBound);
+            writer.write('"');
+        }
+        writer.write('}');
+    }
+
+    private void writeLabelValue(Writer writer, String value) throws IOException {
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c == '\n') {
+                writer.write("\\n");
+            } else {
+                writer.write(c);
+            }
+        }
+    }
+}
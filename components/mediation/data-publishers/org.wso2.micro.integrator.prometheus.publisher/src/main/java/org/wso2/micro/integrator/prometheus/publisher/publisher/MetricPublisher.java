@@ -17,13 +17,21 @@
  */
 package org.wso2.micro.integrator.prometheus.publisher.publisher;
 
+import org.wso2.micro.integrator.prometheus.publisher.metrics.MetricsRegistry;
+import org.wso2.micro.integrator.prometheus.publisher.util.PrometheusPublisherConstants;
+
+import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 
 /**
- * Retrieves metric data from the single instance of MetricCollector
+ * Retrieves metric data from the metrics registry and the single instance of MetricCollector
  */
 public class MetricPublisher {
 
+    private final boolean jmxMetricsEnabled = Boolean.parseBoolean(
+            System.getProperty(PrometheusPublisherConstants.JMX_METRICS_ENABLED, "true"));
+
     /**
      * @return Metric data list
      */
@@ -31,4 +39,20 @@ public class MetricPublisher {
 
         return new MetricCollector().collect();
     }
+
+    /**
+     * Writes the metrics recorded for the artifacts, followed by the JMX metric data unless it is disabled
+     *
+     * @param writer Writer of the scrape response
+     * @throws IOException if the metrics could not be written
+     */
+    public void writeMetrics(Writer writer) throws IOException {
+
+        MetricsRegistry.getInstance().write(writer);
+        if (jmxMetricsEnabled) {
+            for (String metric : getMetrics()) {
+                writer.write(metric);
+            }
+        }
+    }
 }
@@ -28,4 +28,13 @@ public class PrometheusPublisherConstants {
 
     public static final String PROMETHEUS_HELP_TAG = "# HELP ";
     public static final String PROMETHEUS_TYPE_TAG = "# TYPE ";
+
+    // message context properties holding the time at which the request and the endpoint call started
+    public static final String REQUEST_START_TIME = "PROMETHEUS_REQUEST_START_TIME";
+    public static final String ENDPOINT_START_TIME = "PROMETHEUS_ENDPOINT_START_TIME";
+    // message context property holding the types of the artifacts which have counted the request
+    public static final String COUNTED_ARTIFACTS = "PROMETHEUS_COUNTED_ARTIFACTS";
+
+    // system property to disable publishing the attributes of the Synapse JMX MBeans along with the native metrics
+    public static final String JMX_METRICS_ENABLED = "prometheus.jmx.metrics.enabled";
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.prometheus.publisher.handler;
+
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.rest.RESTConstants;
+import org.junit.Assert;
+import org.junit.Test;
+import org.wso2.micro.integrator.prometheus.publisher.metrics.MetricsRegistry;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the metrics recorded by the handler as a message flows through the artifacts. The artifact names are unique
+ * to each test, since the handler records in the shared metrics registry.
+ */
+public class MetricHandlerTest {
+
+    private final MetricHandler handler = new MetricHandler();
+
+    @Test
+    public void testProxyRequest() throws Exception {
+
+        MessageContext synCtx = createMessageContext();
+        synCtx.setProperty(SynapseConstants.PROXY_SERVICE, "MetricHandlerTestProxy");
+        Assert.assertTrue(handler.handleRequestInFlow(synCtx));
+        Assert.assertTrue(handler.handleResponseOutFlow(synCtx));
+        // a response sent again, as by a fault sequence, is not counted twice
+        Assert.assertTrue(handler.handleResponseOutFlow(synCtx));
+
+        List<String> metrics = scrape();
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_proxy_requests_total{service_name=\"MetricHandlerTestProxy\"} 1"));
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_proxy_errors_total{service_name=\"MetricHandlerTestProxy\"} 0"));
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_proxy_latency_seconds_count{service_name=\"MetricHandlerTestProxy\"} 1"));
+    }
+
+    @Test
+    public void testFailedApiRequestThroughInboundEndpoint() throws Exception {
+
+        MessageContext synCtx = createMessageContext();
+        synCtx.setProperty(RESTConstants.SYNAPSE_REST_API, "MetricHandlerTestAPI");
+        synCtx.setProperty(SynapseConstants.INBOUND_ENDPOINT_NAME, "MetricHandlerTestInbound");
+        handler.handleRequestInFlow(synCtx);
+        synCtx.setProperty(SynapseConstants.ERROR_CODE, 101503);
+        handler.handleResponseOutFlow(synCtx);
+
+        List<String> metrics = scrape();
+        Assert.assertTrue(metrics.contains("wso2_integration_api_requests_total{api_name=\"MetricHandlerTestAPI\"} 1"));
+        Assert.assertTrue(metrics.contains("wso2_integration_api_errors_total{api_name=\"MetricHandlerTestAPI\"} 1"));
+        Assert.assertTrue(metrics.contains("wso2_integration_inbound_endpoint_errors_total"
+                                                   + "{inbound_endpoint_name=\"MetricHandlerTestInbound\"} 1"));
+    }
+
+    @Test
+    public void testRequestWithoutResponse() throws Exception {
+
+        MessageContext synCtx = createMessageContext();
+        synCtx.setProperty(SynapseConstants.INBOUND_ENDPOINT_NAME, "MetricHandlerTestOneWayInbound");
+        handler.handleRequestInFlow(synCtx);
+        // the API is dispatched after the request in flow, and the request is sent out without expecting a response
+        synCtx.setProperty(RESTConstants.SYNAPSE_REST_API, "MetricHandlerTestOneWayAPI");
+        handler.handleRequestOutFlow(synCtx);
+        handler.handleRequestOutFlow(synCtx);
+
+        List<String> metrics = scrape();
+        Assert.assertTrue(metrics.contains("wso2_integration_inbound_endpoint_requests_total"
+                                                   + "{inbound_endpoint_name=\"MetricHandlerTestOneWayInbound\"} 1"));
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_api_requests_total{api_name=\"MetricHandlerTestOneWayAPI\"} 1"));
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_api_latency_seconds_count{api_name=\"MetricHandlerTestOneWayAPI\"} 0"));
+
+        // the response, if one is sent later, is not counted as another request
+        handler.handleResponseOutFlow(synCtx);
+        metrics = scrape();
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_api_requests_total{api_name=\"MetricHandlerTestOneWayAPI\"} 1"));
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_api_latency_seconds_count{api_name=\"MetricHandlerTestOneWayAPI\"} 1"));
+    }
+
+    @Test
+    public void testEndpointCall() throws Exception {
+
+        MessageContext synCtx = createMessageContext();
+        handler.handleRequestInFlow(synCtx);
+        handler.handleRequestOutFlow(synCtx);
+        synCtx.setProperty(SynapseConstants.LAST_ENDPOINT, "MetricHandlerTestEndpoint");
+        handler.handleResponseInFlow(synCtx);
+        handler.handleResponseInFlow(synCtx);
+
+        List<String> metrics = scrape();
+        Assert.assertTrue(metrics.contains(
+                "wso2_integration_endpoint_requests_total{endpoint_name=\"MetricHandlerTestEndpoint\"} 1"));
+    }
+
+    @Test
+    public void testResponseWithoutRequest() throws Exception {
+
+        MessageContext synCtx = createMessageContext();
+        synCtx.setProperty(SynapseConstants.PROXY_SERVICE, "MetricHandlerTestUntimedProxy");
+        Assert.assertTrue(handler.handleResponseOutFlow(synCtx));
+        Assert.assertTrue(handler.handleResponseInFlow(synCtx));
+        for (String metric : scrape()) {
+            Assert.assertFalse(metric, metric.contains("MetricHandlerTestUntimedProxy"));
+        }
+    }
+
+    private static MessageContext createMessageContext() {
+
+        return new Axis2MessageContext(new org.apache.axis2.context.MessageContext(), new SynapseConfiguration(),
+                                       null);
+    }
+
+    private static List<String> scrape() throws Exception {
+
+        StringWriter writer = new StringWriter();
+        MetricsRegistry.getInstance().write(writer);
+        return Arrays.asList(writer.toString().split("\n"));
+    }
+}
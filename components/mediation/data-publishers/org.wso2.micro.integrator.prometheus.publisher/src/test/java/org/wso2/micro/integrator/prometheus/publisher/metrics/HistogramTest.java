@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.prometheus.publisher.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the buckets the latencies are counted in, which are upper bound inclusive as Prometheus expects
+ */
+public class HistogramTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBucketUpperBoundsInclusive() {
+
+        for (int i = 0; i < Histogram.BUCKET_BOUNDS.length; i++) {
+            long bound = Math.round(Histogram.BUCKET_BOUNDS[i] * SECOND);
+            Histogram histogram = new Histogram();
+            histogram.observe(bound);
+            histogram.observe(bound + 1);
+            histogram.observe(bound - 1);
+
+            // the bound and the latency just below it are in the bucket, the latency just above it in the next one
+            long[] expected = new long[Histogram.BUCKET_BOUNDS.length + 1];
+            expected[i] = 2;
+            expected[i + 1] = 1;
+            Assert.assertArrayEquals("le=" + Histogram.BUCKET_BOUNDS[i], expected, histogram.getBucketCounts());
+        }
+    }
+
+    @Test
+    public void testOutOfRangeLatencies() {
+
+        Histogram histogram = new Histogram();
+        histogram.observe(0);
+        // the clock may go back between the start and the end of a request
+        histogram.observe(-5);
+        histogram.observe(TimeUnit.MINUTES.toNanos(10));
+
+        long[] counts = histogram.getBucketCounts();
+        Assert.assertEquals(2, counts[0]);
+        Assert.assertEquals(1, counts[counts.length - 1]);
+        Assert.assertEquals(3, total(counts));
+    }
+
+    @Test
+    public void testSum() {
+
+        Histogram histogram = new Histogram();
+        Assert.assertEquals(0, histogram.getSum(), 0);
+        histogram.observe(SECOND + SECOND / 2);
+        histogram.observe(SECOND / 2);
+        histogram.observe(TimeUnit.MICROSECONDS.toNanos(250));
+        Assert.assertEquals(2.00025, histogram.getSum(), 1e-12);
+    }
+
+    @Test
+    public void testConcurrentObservations() throws Exception {
+
+        final Histogram histogram = new Histogram();
+        final long[] latencies = { 0, TimeUnit.MICROSECONDS.toNanos(700), TimeUnit.MILLISECONDS.toNanos(3),
+                TimeUnit.MILLISECONDS.toNanos(70), SECOND, TimeUnit.SECONDS.toNanos(45) };
+        final int threads = 8;
+        final int observations = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> observers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread observer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < observations; i++) {
+                        histogram.observe(latencies[i % latencies.length]);
+                    }
+                }
+            });
+            observer.start();
+            observers.add(observer);
+        }
+        start.countDown();
+        for (Thread observer : observers) {
+            observer.join();
+        }
+
+        Histogram expected = new Histogram();
+        long expectedSum = 0;
+        for (int i = 0; i < observations; i++) {
+            for (int t = 0; t < threads; t++) {
+                expected.observe(latencies[i % latencies.length]);
+            }
+            expectedSum += threads * latencies[i % latencies.length];
+        }
+        Assert.assertArrayEquals(expected.getBucketCounts(), histogram.getBucketCounts());
+        Assert.assertEquals(threads * observations, total(histogram.getBucketCounts()));
+        Assert.assertEquals(expectedSum / (double) SECOND, histogram.getSum(), 1e-6);
+    }
+
+    private static long total(long[] counts) {
+
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.prometheus.publisher.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests the metrics written in the Prometheus text format, and the metrics recorded by concurrent requests
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testExposition() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+        ArtifactMetrics metrics = registry.getMetrics(ArtifactType.PROXY, "StockQuoteProxy");
+        metrics.record(TimeUnit.MICROSECONDS.toNanos(500), false);
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(20), true);
+        metrics.record(TimeUnit.SECONDS.toNanos(40), false);
+
+        List<String> lines = Arrays.asList(write(registry).split("\n"));
+        Assert.assertEquals("# HELP wso2_integration_proxy_requests_total Total number of requests received by the "
+                                    + "proxy service", lines.get(0));
+        Assert.assertEquals("# TYPE wso2_integration_proxy_requests_total counter", lines.get(1));
+        Assert.assertTrue(lines.contains("wso2_integration_proxy_requests_total{service_name=\"StockQuoteProxy\"} 3"));
+        Assert.assertTrue(lines.contains("# TYPE wso2_integration_proxy_errors_total counter"));
+        Assert.assertTrue(lines.contains("wso2_integration_proxy_errors_total{service_name=\"StockQuoteProxy\"} 1"));
+        Assert.assertTrue(lines.contains("# TYPE wso2_integration_proxy_latency_seconds histogram"));
+
+        // the buckets are cumulative
+        String bucket = "wso2_integration_proxy_latency_seconds_bucket{service_name=\"StockQuoteProxy\",le=";
+        Assert.assertTrue(lines.contains(bucket + "\"0.001\"} 1"));
+        Assert.assertTrue(lines.contains(bucket + "\"0.01\"} 1"));
+        Assert.assertTrue(lines.contains(bucket + "\"0.025\"} 2"));
+        Assert.assertTrue(lines.contains(bucket + "\"30.0\"} 2"));
+        Assert.assertTrue(lines.contains(bucket + "\"+Inf\"} 3"));
+        Assert.assertEquals(Histogram.BUCKET_BOUNDS.length + 1, count(lines, bucket));
+        Assert.assertTrue(lines.contains(
+                "wso2_integration_proxy_latency_seconds_count{service_name=\"StockQuoteProxy\"} 3"));
+        String sum = "wso2_integration_proxy_latency_seconds_sum{service_name=\"StockQuoteProxy\"} ";
+        Assert.assertEquals(1, count(lines, sum));
+        for (String line : lines) {
+            if (line.startsWith(sum)) {
+                Assert.assertEquals(40.0205, Double.parseDouble(line.substring(sum.length())), 1e-9);
+            }
+        }
+
+        // the artifact types without metrics are not written
+        Assert.assertEquals(0, count(lines, "# HELP wso2_integration_api"));
+        Assert.assertEquals(0, count(lines, "wso2_integration_endpoint"));
+    }
+
+    @Test
+    public void testLabelValuesEscaped() throws Exception {
+
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.getMetrics(ArtifactType.API, "a\"b\\c\nd").record(1, false);
+        Assert.assertTrue(write(registry).contains(
+                "wso2_integration_api_requests_total{api_name=\"a\\\"b\\\\c\\nd\"} 1"));
+    }
+
+    @Test
+    public void testMetricsOfArtifact() {
+
+        MetricsRegistry registry = new MetricsRegistry();
+        ArtifactMetrics metrics = registry.getMetrics(ArtifactType.ENDPOINT, "StockQuoteEP");
+        Assert.assertSame(metrics, registry.getMetrics(ArtifactType.ENDPOINT, "StockQuoteEP"));
+        Assert.assertNotSame(metrics, registry.getMetrics(ArtifactType.INBOUND_ENDPOINT, "StockQuoteEP"));
+        Assert.assertNotSame(metrics, registry.getMetrics(ArtifactType.ENDPOINT, "OtherEP"));
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+
+        final MetricsRegistry registry = new MetricsRegistry();
+        final int threads = 8;
+        final int requests = 10000;
+        final Set<ArtifactMetrics> seen = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean recording = new AtomicBoolean(true);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final boolean isError = t % 2 == 0;
+            Thread client = new Thread(new Runnable() {
+                @Override
+                public void run() {
+
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < requests; i++) {
+                        // the metrics of the artifact are created by the first of the concurrent requests
+                        ArtifactMetrics metrics = registry.getMetrics(ArtifactType.API, "api" + (i % 10));
+                        seen.add(metrics);
+                        metrics.record(TimeUnit.MILLISECONDS.toNanos(i % 100), isError);
+                    }
+                }
+            });
+            client.start();
+            clients.add(client);
+        }
+
+        // scrapes while the requests are recorded
+        final List<String> scrapeErrors = new ArrayList<>();
+        Thread scraper = new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                while (recording.get()) {
+                    try {
+                        assertCumulative(Arrays.asList(write(registry).split("\n")));
+                    } catch (Throwable e) {
+                        scrapeErrors.add(String.valueOf(e));
+                        return;
+                    }
+                }
+            }
+        });
+        scraper.start();
+        start.countDown();
+        for (Thread client : clients) {
+            client.join();
+        }
+        recording.set(false);
+        scraper.join();
+        Assert.assertEquals(new ArrayList<String>(), scrapeErrors);
+
+        Assert.assertEquals(10, seen.size());
+        long total = 0;
+        for (int i = 0; i < 10; i++) {
+            ArtifactMetrics metrics = registry.getMetrics(ArtifactType.API, "api" + i);
+            Assert.assertTrue(seen.contains(metrics));
+            Assert.assertEquals(threads * requests / 10, metrics.getRequestCount());
+            Assert.assertEquals(threads / 2 * requests / 10, metrics.getErrorCount());
+            long observations = 0;
+            for (long count : metrics.getLatency().getBucketCounts()) {
+                observations += count;
+            }
+            Assert.assertEquals(metrics.getRequestCount(), observations);
+            total += metrics.getRequestCount();
+        }
+        Assert.assertEquals(threads * requests, total);
+    }
+
+    private static void assertCumulative(List<String> lines) {
+
+        String previousSeries = null;
+        long previousCount = 0;
+        for (String line : lines) {
+            if (!line.contains("_bucket{")) {
+                continue;
+            }
+            String series = line.substring(0, line.indexOf(",le="));
+            long count = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            if (series.equals(previousSeries)) {
+                Assert.assertTrue(line, count >= previousCount);
+            }
+            previousSeries = series;
+            previousCount = count;
+        }
+    }
+
+    private static String write(MetricsRegistry registry) throws IOException {
+
+        StringWriter writer = new StringWriter();
+        registry.write(writer);
+        return writer.toString();
+    }
+
+    private static int count(List<String> lines, String prefix) {
+
+        int count = 0;
+        for (String line : lines) {
+            if (line.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
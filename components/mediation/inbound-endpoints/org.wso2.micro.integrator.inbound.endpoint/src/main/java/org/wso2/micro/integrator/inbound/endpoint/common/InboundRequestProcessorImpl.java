@@ -28,11 +28,11 @@ import org.wso2.micro.integrator.inbound.endpoint.persistence.InboundEndpointsDa
 import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSTask;
 import org.wso2.micro.integrator.mediation.ntask.NTaskTaskManager;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.wso2.micro.integrator.inbound.endpoint.common.Constants.SUPER_TENANT_DOMAIN_NAME;
 
@@ -46,8 +46,12 @@ public abstract class InboundRequestProcessorImpl implements InboundRequestProce
     protected String name;
     protected boolean coordination;
 
-    private List<StartUpController> startUpControllersList = new ArrayList<>();
-    private HashMap<Thread, InboundRunner> inboundRunnersThreadsMap = new HashMap<>();
+    // the tasks and threads may be started and stopped by another thread while the processor is running, e.g. when
+    // the consumers of the processor are scaled
+    private List<StartUpController> startUpControllersList = new CopyOnWriteArrayList<>();
+    private Map<Thread, InboundRunner> inboundRunnersThreadsMap = new ConcurrentHashMap<>();
+    private Map<String, StartUpController> startUpControllersByPostfix = new ConcurrentHashMap<>();
+    private Map<String, Thread> inboundRunnerThreadsByPostfix = new ConcurrentHashMap<>();
     private static final Log log = LogFactory.getLog(InboundRequestProcessorImpl.class);
     private InboundEndpointsDataStore dataStore;
 
@@ -84,6 +88,7 @@ public abstract class InboundRequestProcessorImpl implements InboundRequestProce
                 startUpController.setTaskDescription(taskDescription);
                 startUpController.init(synapseEnvironment);
                 startUpControllersList.add(startUpController);
+                startUpControllersByPostfix.put(endpointPostfix, startUpController);
                 //register a listener to be notified when the local jms task is deleted
                 if (task instanceof JMSTask) {
                     TaskManager taskManagerImpl = synapseEnvironment.getTaskManager().getTaskManagerImpl();
@@ -98,15 +103,39 @@ public abstract class InboundRequestProcessorImpl implements InboundRequestProce
             }
         } else {
 
-            startInboundRunnerThread(task, SUPER_TENANT_DOMAIN_NAME, false);
+            Thread runningThread = startInboundRunnerThread(task, SUPER_TENANT_DOMAIN_NAME, false);
+            inboundRunnerThreadsByPostfix.put(endpointPostfix, runningThread);
         }
     }
 
-    private void startInboundRunnerThread(InboundTask task, String tenantDomain, boolean mgrOverride) {
+    private Thread startInboundRunnerThread(InboundTask task, String tenantDomain, boolean mgrOverride) {
         InboundRunner inboundRunner = new InboundRunner(task, interval, tenantDomain, mgrOverride);
         Thread runningThread = new Thread(inboundRunner);
         inboundRunnersThreadsMap.put(runningThread, inboundRunner);
         runningThread.start();
+        return runningThread;
+    }
+
+    /**
+     * Stop a single task or background thread started with the given endpoint postfix, leaving the others running.
+     * The running thread is not interrupted, hence an ongoing execution of the task completes.
+     *
+     * @param endpointPostfix
+     */
+    protected void stop(String endpointPostfix) {
+        StartUpController startUpController = startUpControllersByPostfix.remove(endpointPostfix);
+        if (startUpController != null) {
+            startUpControllersList.remove(startUpController);
+            startUpController.destroy();
+            return;
+        }
+        Thread thread = inboundRunnerThreadsByPostfix.remove(endpointPostfix);
+        if (thread != null) {
+            InboundRunner inboundRunner = inboundRunnersThreadsMap.remove(thread);
+            if (inboundRunner != null) {
+                inboundRunner.terminate();
+            }
+        }
     }
 
     /**
@@ -121,6 +150,7 @@ public abstract class InboundRequestProcessorImpl implements InboundRequestProce
                 sc.destroy();
             }
             startUpControllersList.clear();
+            startUpControllersByPostfix.clear();
         } else if (!inboundRunnersThreadsMap.isEmpty()) {
 
             Iterator itr = inboundRunnersThreadsMap.entrySet().iterator();
@@ -138,6 +168,7 @@ public abstract class InboundRequestProcessorImpl implements InboundRequestProce
                 }
             }
             inboundRunnersThreadsMap.clear();
+            inboundRunnerThreadsByPostfix.clear();
         }
     }
 
@@ -69,16 +69,27 @@ public class FileInjectHandler {
     }
 
     /**
-     * Inject the message to the sequence
+     * Inject the message to the sequence, with the transport headers set by {@link #setTransportHeaders(Map)}
      */
     public boolean invoke(Object object, String name) throws SynapseException {
+        return invoke(object, name, transportHeaders);
+    }
+
+    /**
+     * Inject the message to the sequence. The handler is shared by the threads processing the files of a directory,
+     * hence the transport headers of the file are passed with it.
+     *
+     * @param object           file to be injected
+     * @param name             name of the inbound endpoint
+     * @param transportHeaders transport headers of the file
+     */
+    public boolean invoke(Object object, String name, Map<String, Object> transportHeaders) throws SynapseException {
 
         ManagedDataSource dataSource = null;
-        ;
         FileObject file = (FileObject) object;
         InputStream in = null;
         try {
-            org.apache.synapse.MessageContext msgCtx = createMessageContext();
+            org.apache.synapse.MessageContext msgCtx = createMessageContext(transportHeaders);
             msgCtx.setProperty(SynapseConstants.INBOUND_ENDPOINT_NAME, name);
             msgCtx.setProperty(SynapseConstants.IS_INBOUND, true);
             InboundEndpoint inboundEndpoint = msgCtx.getConfiguration().getInboundEndpoint(name);
@@ -192,7 +203,10 @@ public class FileInjectHandler {
 
     /**
      * @param transportHeaders the transportHeaders to set
+     * @deprecated the headers are shared by the threads using the handler, use
+     * {@link #invoke(Object, String, Map)} instead
      */
+    @Deprecated
     public void setTransportHeaders(Map<String, Object> transportHeaders) {
         this.transportHeaders = transportHeaders;
     }
@@ -200,7 +214,7 @@ public class FileInjectHandler {
     /**
      * Create the initial message context for the file
      */
-    private org.apache.synapse.MessageContext createMessageContext() {
+    private org.apache.synapse.MessageContext createMessageContext(Map<String, Object> transportHeaders) {
 
         org.apache.synapse.MessageContext msgCtx = synapseEnvironment.createMessageContext();
         MessageContext axis2MsgCtx = ((org.apache.synapse.core.axis2.Axis2MessageContext) msgCtx)
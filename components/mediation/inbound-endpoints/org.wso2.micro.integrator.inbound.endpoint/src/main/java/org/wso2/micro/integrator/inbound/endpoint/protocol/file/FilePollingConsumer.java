@@ -34,14 +34,28 @@ import org.apache.synapse.commons.vfs.VFSConstants;
 import org.apache.synapse.commons.vfs.VFSParamDTO;
 import org.apache.synapse.commons.vfs.VFSUtils;
 import org.apache.synapse.core.SynapseEnvironment;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.PollingConstants;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * This class implement the processing logic related to inbound file protocol.
@@ -51,6 +65,20 @@ import java.util.Properties;
 public class FilePollingConsumer {
 
     private static final Log log = LogFactory.getLog(FilePollingConsumer.class);
+
+    /**
+     * Number of threads processing the files of a directory. The files are processed on the polling thread when this
+     * is not set or set to 1.
+     */
+    static final String FILE_PROCESSING_THREAD_COUNT = "transport.vfs.FileProcessingThreadCount";
+
+    /**
+     * Maximum number of the files locked and handed over to the processing threads, which have not been processed yet.
+     */
+    static final String MAX_IN_FLIGHT_FILES = "transport.vfs.MaxInFlightFiles";
+
+    private static final long WORKER_SHUTDOWN_TIMEOUT = 30000;
+
     private Properties vfsProperties;
     private boolean fileLock = true;
     private DefaultFileSystemManager fsManager = null;
@@ -75,6 +103,16 @@ public class FilePollingConsumer {
     private boolean distributedLock;
     private Long distributedLockTimeout;
     private FileSystemOptions fso;
+    private boolean sequential;
+    private int fileProcessingThreadCount;
+    private int maxInFlightFiles;
+    private ThreadPoolExecutor fileProcessingPool;
+    private Semaphore inFlightFiles;
+    /**
+     * Held by the polling cycles while they run, and by {@link #destroy()} while it closes the file system manager
+     */
+    private final ReadWriteLock pollingLock = new ReentrantReadWriteLock();
+    private volatile boolean destroyed;
 
     public FilePollingConsumer(Properties vfsProperties, String name, SynapseEnvironment synapseEnvironment,
                                long scanInterval) {
@@ -101,6 +139,13 @@ public class FilePollingConsumer {
             log.warn("Unable to set the sftp Options", e);
             fso = null;
         }
+        if (fileProcessingThreadCount > 1) {
+            fileProcessingPool = new ThreadPoolExecutor(fileProcessingThreadCount, fileProcessingThreadCount, 60,
+                                                        TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                                        new FileProcessingThreadFactory(name));
+            fileProcessingPool.allowCoreThreadTimeOut(true);
+            inFlightFiles = new Semaphore(maxInFlightFiles);
+        }
     }
 
     /**
@@ -119,7 +164,11 @@ public class FilePollingConsumer {
      * interval. Timestamp based check is done to avoid that.
      */
     public void execute() {
+        pollingLock.readLock().lock();
         try {
+            if (destroyed) {
+                return;
+            }
             if (log.isDebugEnabled()) {
                 log.debug("Start : File Inbound EP : " + name);
             }
@@ -138,6 +187,8 @@ public class FilePollingConsumer {
             }
         } catch (Exception e) {
             log.error("Error while reading file. " + e.getMessage(), e);
+        } finally {
+            pollingLock.readLock().unlock();
         }
     }
 
@@ -415,6 +466,30 @@ public class FilePollingConsumer {
                          e);
             }
         }
+
+        sequential = true;
+        if (vfsProperties.getProperty(PollingConstants.INBOUND_ENDPOINT_SEQUENTIAL) != null) {
+            sequential = Boolean.parseBoolean(vfsProperties.getProperty(PollingConstants.INBOUND_ENDPOINT_SEQUENTIAL));
+        }
+        fileProcessingThreadCount = 1;
+        if (vfsProperties.getProperty(FILE_PROCESSING_THREAD_COUNT) != null) {
+            try {
+                fileProcessingThreadCount = Integer.parseInt(vfsProperties.getProperty(FILE_PROCESSING_THREAD_COUNT));
+            } catch (NumberFormatException e) {
+                log.warn("Invalid param value for " + FILE_PROCESSING_THREAD_COUNT + " : " + vfsProperties
+                        .getProperty(FILE_PROCESSING_THREAD_COUNT) + ". Expected numeric value.");
+            }
+        }
+        maxInFlightFiles = fileProcessingThreadCount * 2;
+        if (vfsProperties.getProperty(MAX_IN_FLIGHT_FILES) != null) {
+            try {
+                maxInFlightFiles = Math.max(Integer.parseInt(vfsProperties.getProperty(MAX_IN_FLIGHT_FILES)),
+                                            fileProcessingThreadCount);
+            } catch (NumberFormatException e) {
+                log.warn("Invalid param value for " + MAX_IN_FLIGHT_FILES + " : " + vfsProperties
+                        .getProperty(MAX_IN_FLIGHT_FILES) + ". Expected numeric value.");
+            }
+        }
     }
 
     /**
@@ -438,7 +513,8 @@ public class FilePollingConsumer {
 
         // Sort the files
         String strSortParam = vfsProperties.getProperty(VFSConstants.FILE_SORT_PARAM);
-        if (strSortParam != null && !"NONE".equals(strSortParam)) {
+        boolean sorted = strSortParam != null && !"NONE".equals(strSortParam);
+        if (sorted) {
             log.debug("Start Sorting the files.");
             String strSortOrder = vfsProperties.getProperty(VFSConstants.FILE_SORT_ORDER);
             boolean bSortOrderAsscending = true;
@@ -466,13 +542,22 @@ public class FilePollingConsumer {
             log.debug("End Sorting the files.");
         }
 
+        // The files are handed over to the processing threads unless the sorted order has to be kept
+        boolean parallel = fileProcessingPool != null && injectHandler != null && !(sorted && sequential);
+        List<Future<Integer>> dispatchedFiles = parallel ? new ArrayList<Future<Integer>>() : null;
+
         for (FileObject child : children) {
+            // the rest of the files are left to be processed once the inbound endpoint is deployed again
+            if (destroyed) {
+                break;
+            }
             // skipping *.lock / *.fail file
             if (child.getName().getBaseName().endsWith(".lock") || child.getName().getBaseName().endsWith(".fail")) {
                 continue;
             }
             boolean isFailedRecord = VFSUtils.isFailRecord(fsManager, child, fso);
             boolean isReadyToRead = VFSUtils.isReadyToRead(child, waitTimeBeforeRead);
+            boolean dispatched = false;
 
             // child's file name matches the file name pattern or process all
             // files now we try to get the lock and process
@@ -483,60 +568,34 @@ public class FilePollingConsumer {
                     log.debug("Matching file : " + child.getName().getBaseName());
                 }
 
+                // the lock is taken on the polling thread, so that a file is handed over only once, and released
+                // by the thread which processed the file
                 if ((!fileLock || (fileLock && acquireLock(fsManager, child)))) {
-                    // process the file
-                    boolean runPostProcess = true;
-                    try {
-                        if (log.isDebugEnabled()) {
-                            log.debug("Processing file :" + VFSUtils.maskURLPassword(child.toString()));
+                    processCount++;
+                    if (parallel) {
+                        Future<Integer> dispatchedFile = dispatchFile(child);
+                        if (dispatchedFile == null) {
+                            break;
                         }
-                        processCount++;
-                        if (processFile(child) == null) {
-                            runPostProcess = false;
-                        } else {
+                        dispatchedFiles.add(dispatchedFile);
+                        dispatched = true;
+                    } else {
+                        int status = processLockedFile(child);
+                        if (status == 1) {
                             successCount++;
-                        }
-                        // tell moveOrDeleteAfterProcessing() file was success
-                        lastCycle = 1;
-                    } catch (Exception e) {
-                        if (e.getCause() instanceof FileNotFoundException) {
-                            log.warn("Error processing File URI : " + VFSUtils
-                                    .maskURLPassword(child.getName().toString())
-                                             + ". This can be due to file moved from another process.");
-                            runPostProcess = false;
-                        } else {
-                            log.error("Error processing File URI : " + VFSUtils
-                                    .maskURLPassword(child.getName().toString()), e);
+                        } else if (status > 1) {
                             failCount++;
-                            // tell moveOrDeleteAfterProcessing() file failed
-                            lastCycle = 2;
                         }
-
-                    }
-                    // skipping un-locking file if failed to do delete/move
-                    // after process
-                    boolean skipUnlock = false;
-                    if (runPostProcess) {
-                        try {
-                            moveOrDeleteAfterProcessing(child);
-                        } catch (SynapseException synapseException) {
-                            log.error("File object '" + VFSUtils.maskURLPassword(child.getURL().toString())
-                                              + "'cloud not be moved, will remain in \"locked\" state",
-                                      synapseException);
-                            skipUnlock = true;
-                            failCount++;
-                            lastCycle = 3;
-                            VFSUtils.markFailRecord(fsManager, child);
+                        // a file which was not injected is recorded as processed, and a file moved by another
+                        // process leaves the last cycle as it is
+                        if (status == 0) {
+                            lastCycle = 1;
+                        } else if (status > 0) {
+                            lastCycle = status;
+                        }
+                        if (injectHandler == null) {
+                            return child;
                         }
-                    }
-                    // if there is a failure or not we'll try to release the
-                    // lock
-                    if (fileLock && !skipUnlock) {
-                        // TODO: passing null to avoid build break. Fix properly
-                        VFSUtils.releaseLock(fsManager, child, fso);
-                    }
-                    if (injectHandler == null) {
-                        return child;
                     }
                 }
             } else if (log.isDebugEnabled() && strFilePattern != null && !child.getName().getBaseName()
@@ -565,10 +624,12 @@ public class FilePollingConsumer {
                 log.debug("File cannot be read as it has to wait for some time: " + child.getName().getBaseName());
             }
 
-            //close the file system after processing
-            try {
-                child.close();
-            } catch (Exception e) {
+            //close the file system after processing, unless it is being processed by another thread
+            if (!dispatched) {
+                try {
+                    child.close();
+                } catch (Exception e) {
+                }
             }
 
             // Manage throttling of file processing
@@ -585,6 +646,16 @@ public class FilePollingConsumer {
                 break;
             }
         }
+        if (dispatchedFiles != null) {
+            for (Future<Integer> dispatchedFile : dispatchedFiles) {
+                int status = awaitFile(dispatchedFile);
+                if (status == 1) {
+                    successCount++;
+                } else if (status > 1) {
+                    failCount++;
+                }
+            }
+        }
         if (failCount == 0 && successCount > 0) {
             lastCycle = 1;
         } else if (successCount == 0 && failCount > 0) {
@@ -595,6 +666,119 @@ public class FilePollingConsumer {
         return null;
     }
 
+    /**
+     * Process a file for which the lock has been acquired, do the post processing actions and release the lock
+     *
+     * @param child locked file
+     * @return 1 if the file was processed, 2 if the processing failed, 3 if the post processing failed, 0 if the
+     * file was not injected, or -1 if the file was moved by another process
+     */
+    private int processLockedFile(FileObject child) {
+        int status = 1;
+        boolean runPostProcess = true;
+        try {
+            if (log.isDebugEnabled()) {
+                log.debug("Processing file :" + VFSUtils.maskURLPassword(child.toString()));
+            }
+            if (processFile(child) == null) {
+                runPostProcess = false;
+                status = 0;
+            }
+        } catch (Exception e) {
+            if (e.getCause() instanceof FileNotFoundException) {
+                log.warn("Error processing File URI : " + VFSUtils.maskURLPassword(child.getName().toString())
+                                 + ". This can be due to file moved from another process.");
+                runPostProcess = false;
+                status = -1;
+            } else {
+                log.error("Error processing File URI : " + VFSUtils.maskURLPassword(child.getName().toString()), e);
+                status = 2;
+            }
+        }
+        // skipping un-locking file if failed to do delete/move
+        // after process
+        boolean skipUnlock = false;
+        if (runPostProcess) {
+            try {
+                moveOrDeleteAfterProcessing(child, status);
+            } catch (SynapseException synapseException) {
+                log.error("File object '" + VFSUtils.maskURLPassword(child.getName().getURI())
+                                  + "'cloud not be moved, will remain in \"locked\" state", synapseException);
+                skipUnlock = true;
+                status = 3;
+                VFSUtils.markFailRecord(fsManager, child);
+            }
+        }
+        // if there is a failure or not we'll try to release the
+        // lock
+        if (fileLock && !skipUnlock) {
+            VFSUtils.releaseLock(fsManager, child, fso);
+        }
+        return status;
+    }
+
+    /**
+     * Hand over a locked file to the processing threads, waiting while the maximum number of files are in flight
+     *
+     * @param child locked file
+     * @return result of the processing, or null if the file could not be handed over
+     */
+    private Future<Integer> dispatchFile(final FileObject child) {
+        try {
+            inFlightFiles.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            releaseUndispatchedFile(child);
+            return null;
+        }
+        try {
+            return fileProcessingPool.submit(() -> {
+                try {
+                    return processLockedFile(child);
+                } finally {
+                    try {
+                        child.close();
+                    } catch (Exception e) {
+                    }
+                    inFlightFiles.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlightFiles.release();
+            log.warn("File processing threads of the inbound endpoint " + name + " are stopped. File : " + VFSUtils
+                    .maskURLPassword(child.getName().getURI()) + " will be processed in a later cycle.");
+            releaseUndispatchedFile(child);
+            return null;
+        }
+    }
+
+    private void releaseUndispatchedFile(FileObject child) {
+        if (fileLock) {
+            VFSUtils.releaseLock(fsManager, child, fso);
+        }
+        try {
+            child.close();
+        } catch (Exception e) {
+        }
+    }
+
+    /**
+     * Wait until a file handed over to the processing threads is processed
+     *
+     * @param dispatchedFile result of the processing
+     * @return status returned by {@link #processLockedFile(FileObject)}
+     */
+    private int awaitFile(Future<Integer> dispatchedFile) {
+        try {
+            return dispatchedFile.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("Error while processing a file of the inbound endpoint " + name, e.getCause());
+        }
+        return 2;
+    }
+
     /**
      * Check if the file/folder exists before proceeding and retrying
      */
@@ -696,9 +880,8 @@ public class FilePollingConsumer {
                     log.warn("Unable to set file length or last modified date header.", e);
                 }
 
-                injectHandler.setTransportHeaders(transportHeaders);
-                // injectHandler
-                if (!injectHandler.invoke(file, name)) {
+                // the headers are passed with the file, as the handler is shared by the file processing threads
+                if (!injectHandler.invoke(file, name, transportHeaders)) {
                     return null;
                 }
             }
@@ -716,10 +899,21 @@ public class FilePollingConsumer {
      * @throws synapseException
      */
     private void moveOrDeleteAfterProcessing(FileObject fileObject) throws SynapseException {
+        moveOrDeleteAfterProcessing(fileObject, lastCycle);
+    }
+
+    /**
+     * Do the post processing actions for the given processing status
+     *
+     * @param fileObject
+     * @param status     1 if the file was processed, 2 if the processing failed
+     * @throws synapseException
+     */
+    private void moveOrDeleteAfterProcessing(FileObject fileObject, int status) throws SynapseException {
 
         String moveToDirectoryURI = null;
         try {
-            switch (lastCycle) {
+            switch (status) {
             case 1:
                 if ("MOVE".equals(vfsProperties.getProperty(VFSConstants.TRANSPORT_FILE_ACTION_AFTER_PROCESS))) {
                     moveToDirectoryURI = vfsProperties.getProperty(VFSConstants.TRANSPORT_FILE_MOVE_AFTER_PROCESS);
@@ -892,7 +1086,52 @@ public class FilePollingConsumer {
         return vfsProperties;
     }
 
-    void destroy() {
+    /**
+     * Stop the file processing threads and close the file system manager, once the running polling cycle, if any,
+     * has stopped.
+     */
+    public void destroy() {
+        destroyed = true;
+        pollingLock.writeLock().lock();
+        try {
+            closeFileSystem();
+        } finally {
+            pollingLock.writeLock().unlock();
+        }
+    }
+
+    private void closeFileSystem() {
+        if (fileProcessingPool != null) {
+            fileProcessingPool.shutdown();
+            try {
+                if (!fileProcessingPool.awaitTermination(WORKER_SHUTDOWN_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warn("File processing threads of the inbound endpoint " + name + " did not stop in "
+                                     + WORKER_SHUTDOWN_TIMEOUT + " ms.");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         fsManager.close();
     }
+
+    /**
+     * Thread factory naming the file processing threads after the inbound endpoint
+     */
+    private static class FileProcessingThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+
+        FileProcessingThreadFactory(String endpointName) {
+            namePrefix = "file-inbound-" + endpointName + "-worker-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
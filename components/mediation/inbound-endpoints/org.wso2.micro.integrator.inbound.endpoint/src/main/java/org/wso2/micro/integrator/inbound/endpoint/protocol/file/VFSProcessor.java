@@ -106,4 +106,15 @@ public class VFSProcessor extends InboundRequestProcessorImpl implements TaskSta
             destroy();
         }
     }
+
+    /**
+     * Stop the polling task and the file processing threads of the inbound endpoint.
+     */
+    @Override
+    public void destroy() {
+        super.destroy();
+        if (fileScanner != null) {
+            fileScanner.destroy();
+        }
+    }
 }
@@ -43,10 +43,17 @@ public class HL7Codec {
     public static final int WRITE_TRAILER = 6;
     public static final int WRITE_COMPLETE = 7;
 
+    private static final int INITIAL_FRAME_BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_RETAINED_FRAME_BUFFER_SIZE = 64 * 1024;
+
     private CharsetDecoder charsetDecoder;
 
     private volatile int state;
 
+    private ByteBuffer frameBuffer;
+    private int scanPosition = 1;
+    private int frameLength = -1;
+
     private int responseReadPosition = 0;
     private byte[] responseBytes = null;
 
@@ -60,64 +67,141 @@ public class HL7Codec {
         setCharsetDecoder(charsetDecoder);
     }
 
-    public int decode(ByteBuffer dst, MLLPContext context) throws IOException, MLLProtocolException, HL7Exception {
+    /**
+     * Appends the bytes read from the connection to the frame buffer, and scans the bytes appended since the last
+     * call for the MLLP trailer. The bytes following the trailer are kept for the next message of the connection.
+     *
+     * @param dst bytes read from the connection
+     * @return 0 once the bytes are buffered, or -1 if a complete frame is already waiting to be processed
+     */
+    public int decode(ByteBuffer dst, MLLPContext context) throws MLLProtocolException {
 
         if (this.state >= READ_COMPLETE || dst.position() < 0) {
             return -1;
         }
 
-        if (this.state == READ_HEADER) {
-            if (dst.get(0) == MLLPConstants.HL7_HEADER[0]) {
-                dst.position(1);
-                this.state = READ_CONTENT;
+        append(dst);
+        scanFrame();
+        return 0;
+    }
+
+    /**
+     * @return whether bytes of a following message were received along with the current frame
+     */
+    public boolean hasBufferedInput() {
+        return frameBuffer != null && frameBuffer.position() > 0;
+    }
+
+    /**
+     * Scans the bytes already buffered for a complete frame, without reading from the connection.
+     */
+    public void decodeBufferedInput() throws MLLProtocolException {
+        if (this.state < READ_COMPLETE) {
+            scanFrame();
+        }
+    }
+
+    /**
+     * Parses the complete frame into the HL7 message of the context. The frame content is turned into a String once,
+     * as required by the HL7 parsers.
+     */
+    public void parse(MLLPContext context) throws HL7Exception {
+        String message = getFrameContent();
+        try {
+            if (context.isPreProcess()) {
+                context.setHl7Message(HL7MessageUtils.parse(message, context.getPreProcessParser()));
             } else {
-                throw new MLLProtocolException("Could not find header in incoming message.");
+                context.setHl7Message(HL7MessageUtils.parse(message, context.isValidateMessage()));
             }
+        } catch (HL7Exception e) {
+            log.error("Error while parsing request message: " + message);
+            throw e;
         }
+    }
 
-        if (this.state == READ_CONTENT) {
+    /**
+     * @return the content of the complete frame, or of the bytes received so far if the frame is not complete
+     */
+    public String getFrameContent() {
+        if (frameBuffer == null) {
+            return "";
+        }
+        int end = frameLength > -1 ? frameLength : frameBuffer.position();
+        return end <= 1 ? "" : new String(frameBuffer.array(), 1, end - 1, charsetDecoder.charset());
+    }
 
-            int trailerIndex = findTrailer(dst);
+    /**
+     * Discards the current frame, keeping the bytes of the following message if any, and prepares the codec to read
+     * the next message.
+     */
+    public void reset() {
+        this.state = READ_HEADER;
+        this.scanPosition = 1;
+        if (frameBuffer == null) {
+            return;
+        }
+        if (frameLength > -1) {
+            int consumed = frameLength + MLLPConstants.HL7_TRAILER.length;
+            frameBuffer.flip();
+            frameBuffer.position(consumed);
+            frameBuffer.compact();
+        } else {
+            frameBuffer.clear();
+        }
+        frameLength = -1;
+        if (frameBuffer.capacity() > MAX_RETAINED_FRAME_BUFFER_SIZE
+                && frameBuffer.position() <= INITIAL_FRAME_BUFFER_SIZE) {
+            ByteBuffer buffer = ByteBuffer.allocate(INITIAL_FRAME_BUFFER_SIZE);
+            frameBuffer.flip();
+            buffer.put(frameBuffer);
+            frameBuffer = buffer;
+        }
+    }
 
-            if (trailerIndex > -1) {
-                dst.limit(trailerIndex);
-                this.state = READ_TRAILER;
+    private void append(ByteBuffer src) {
+        if (frameBuffer == null) {
+            frameBuffer = ByteBuffer.allocate(Math.max(INITIAL_FRAME_BUFFER_SIZE, src.remaining()));
+        } else if (frameBuffer.remaining() < src.remaining()) {
+            int capacity = frameBuffer.capacity();
+            while (capacity - frameBuffer.position() < src.remaining()) {
+                capacity *= 2;
             }
+            ByteBuffer buffer = ByteBuffer.allocate(capacity);
+            frameBuffer.flip();
+            buffer.put(frameBuffer);
+            frameBuffer = buffer;
+        }
+        frameBuffer.put(src);
+    }
 
-            context.getRequestBuffer().append(charsetDecoder.decode(dst).toString());
+    private void scanFrame() throws MLLProtocolException {
+        int end = frameBuffer == null ? 0 : frameBuffer.position();
+        if (end == 0) {
+            return;
         }
+        byte[] bytes = frameBuffer.array();
 
-        if (this.state == READ_TRAILER) {
-            this.state = READ_COMPLETE;
-            try {
-                if (context.isPreProcess()) {
-                    context.setHl7Message(HL7MessageUtils.parse(context.getRequestBuffer().toString(),
-                                                                context.getPreProcessParser()));
-                } else {
-                    context.setHl7Message(
-                            HL7MessageUtils.parse(context.getRequestBuffer().toString(), context.isValidateMessage()));
-                }
-                context.getRequestBuffer().setLength(0);
-            } catch (HL7Exception e) {
-                log.error("Error while parsing request message: " + context.getRequestBuffer());
-                throw e;
+        if (this.state == READ_HEADER) {
+            if (bytes[0] == MLLPConstants.HL7_HEADER[0]) {
+                this.state = READ_CONTENT;
+                this.scanPosition = 1;
+            } else {
+                throw new MLLProtocolException("Could not find header in incoming message.");
             }
         }
 
-        return 0;
-
-    }
-
-    private int findTrailer(ByteBuffer dst) {
-        for (int i = 0; i < dst.limit(); i++) {
-            if (dst.get(i) == MLLPConstants.HL7_TRAILER[0]) {
-                if (dst.get(i + 1) == MLLPConstants.HL7_TRAILER[1]) {
-                    return i - 1;
+        if (this.state == READ_CONTENT) {
+            // only the bytes appended since the last scan are checked, along with the last byte of the previous
+            // scan in case the trailer was split between two reads
+            for (int i = scanPosition; i < end - 1; i++) {
+                if (bytes[i] == MLLPConstants.HL7_TRAILER[0] && bytes[i + 1] == MLLPConstants.HL7_TRAILER[1]) {
+                    frameLength = i;
+                    this.state = READ_COMPLETE;
+                    return;
                 }
             }
+            scanPosition = Math.max(end - 1, 1);
         }
-
-        return -1;
     }
 
     public int encode(ByteBuffer outBuf, MLLPContext context) throws HL7Exception, IOException {
@@ -29,12 +29,12 @@ import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.codec.HL7Codec;
 import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.core.MLLPConstants;
 
 import java.nio.charset.CharsetDecoder;
+import java.util.concurrent.CompletableFuture;
 
 public class MLLPContext {
     private static final Log log = LogFactory.getLog(MLLPContext.class);
 
     private IOSession session;
-    private StringBuffer requestBuffer;
     private StringBuffer responseBuffer;
     private Message hl7Message;
     private volatile HL7Codec codec;
@@ -53,6 +53,9 @@ public class MLLPContext {
     private Parser preProcessorParser = null;
     private BufferFactory bufferFactory;
 
+    // completes once the messages received so far on the connection are processed, when the order is preserved
+    private volatile CompletableFuture<?> lastProcessingTask = CompletableFuture.completedFuture(null);
+
     public MLLPContext(IOSession session, CharsetDecoder decoder, boolean autoAck, boolean validateMessage,
                        Parser preProcessorParser, BufferFactory bufferFactory) {
         this.session = session;
@@ -62,7 +65,6 @@ public class MLLPContext {
         this.preProcessorParser = preProcessorParser;
         this.bufferFactory = bufferFactory;
         this.expiry = MLLPConstants.DEFAULT_HL7_TIMEOUT;
-        this.requestBuffer = new StringBuffer();
         this.responseBuffer = new StringBuffer();
 
         if (preProcessorParser == null) {
@@ -75,10 +77,6 @@ public class MLLPContext {
         return codec;
     }
 
-    public StringBuffer getRequestBuffer() {
-        return this.requestBuffer;
-    }
-
     public StringBuffer getResponseBuffer() {
         return responseBuffer;
     }
@@ -185,11 +183,18 @@ public class MLLPContext {
         this.messageId = messageId;
     }
 
+    public CompletableFuture<?> getLastProcessingTask() {
+        return lastProcessingTask;
+    }
+
+    public void setLastProcessingTask(CompletableFuture<?> lastProcessingTask) {
+        this.lastProcessingTask = lastProcessingTask;
+    }
+
     public void reset() {
         // Resets MLLP Context and HL7Codec to default states.
         this.responseBuffer.setLength(0);
-        this.requestBuffer.setLength(0);
-        this.getCodec().setState(HL7Codec.READ_HEADER);
+        this.getCodec().reset();
         this.setNackMode(false);
     }
 }
\ No newline at end of file
@@ -52,6 +52,7 @@ public class HL7Processor implements InboundResponseSender {
     private String onErrorSequence;
 
     private boolean autoAck = true;
+    private boolean preserveOrder;
     private int timeOut;
 
     public HL7Processor(Map<String, Object> parameters) {
@@ -66,9 +67,61 @@ public class HL7Processor implements InboundResponseSender {
         }
 
         timeOut = HL7MessageUtils.getInt(MLLPConstants.PARAM_HL7_TIMEOUT, params);
+        preserveOrder = HL7MessageUtils.getBoolean(MLLPConstants.PARAM_HL7_PRESERVE_ORDER, params);
 
     }
 
+    /**
+     * Parses the frame received on a connection and processes the message on the worker pool, so that the I/O
+     * reactor is not held by the parsing. When the message order is preserved, the messages received on a
+     * connection are parsed and injected one after another.
+     *
+     * @param mllpContext context of the connection, holding the complete frame
+     */
+    public void processFrame(final MLLPContext mllpContext) {
+        if (preserveOrder) {
+            mllpContext.setLastProcessingTask(mllpContext.getLastProcessingTask().handleAsync((result, e) -> {
+                parseAndProcess(mllpContext);
+                return null;
+            }, executorService));
+        } else {
+            executorService.execute(() -> parseAndProcess(mllpContext));
+        }
+    }
+
+    private void parseAndProcess(MLLPContext mllpContext) {
+        try {
+            mllpContext.getCodec().parse(mllpContext);
+        } catch (HL7Exception e) {
+            if (mllpContext.isAutoAck()) {
+                mllpContext.setNackMode(true);
+                mllpContext.setHl7Message(HL7MessageUtils.createDefaultNack(e.getMessage()));
+                mllpContext.requestOutput();
+            } else {
+                processError(mllpContext, e);
+            }
+            return;
+        }
+
+        CallableTask task;
+        try {
+            // the message context is created before the ACK is requested, since the connection goes on with the next
+            // message once the ACK is written, replacing the message of the context
+            task = prepareRequest(mllpContext);
+        } catch (Exception e) {
+            log.error("Error while processing the HL7 message.", e);
+            handleException(mllpContext, "Error while processing the HL7 message.");
+            return;
+        }
+        if (task == null) {
+            return;
+        }
+        if (mllpContext.isAutoAck()) {
+            mllpContext.requestOutput();
+        }
+        inject(task);
+    }
+
     /**
      * HL7 Request Processing logic
      *
@@ -76,6 +129,20 @@ public class HL7Processor implements InboundResponseSender {
      * @throws Exception - catch any generic exceptions or else I/O Reactor may shutdown.
      */
     public void processRequest(final MLLPContext mllpContext) throws Exception {
+        CallableTask task = prepareRequest(mllpContext);
+        if (task != null) {
+            inject(task);
+        }
+    }
+
+    /**
+     * Creates the message context of the HL7 message held by the MLLP context, and the task injecting it to the
+     * inbound sequence. The MLLP context is not used by the task.
+     *
+     * @param mllpContext context of the connection, holding the parsed message
+     * @return the task injecting the message, or null if the failure has already been handled
+     */
+    private CallableTask prepareRequest(final MLLPContext mllpContext) throws Exception {
         mllpContext.setRequestTime(System.currentTimeMillis());
 
         // Prepare Synapse Context for message injection
@@ -84,10 +151,10 @@ public class HL7Processor implements InboundResponseSender {
             synCtx = HL7MessageUtils.createSynapseMessageContext(mllpContext.getHl7Message(), params);
         } catch (HL7Exception e) {
             handleException(mllpContext, e.getMessage());
-            return;
+            return null;
         } catch (AxisFault e) {
             handleException(mllpContext, e.getMessage());
-            return;
+            return null;
         }
 
         mllpContext.setMessageId(synCtx.getMessageID());
@@ -110,7 +177,7 @@ public class HL7Processor implements InboundResponseSender {
         if (injectSeq == null) {
             log.error("Could not find inbound sequence '" + inSequence + "'.");
             handleException(mllpContext, "Could not find inbound sequence.");
-            return;
+            return null;
         } else if (!injectSeq.isInitialized()) {
             injectSeq.init(synCtx.getEnvironment());
         }
@@ -121,9 +188,20 @@ public class HL7Processor implements InboundResponseSender {
                     .schedule(new TimeoutHandler(mllpContext, synCtx.getMessageID()), timeOut, TimeUnit.MILLISECONDS);
         }
 
-        CallableTask task = new CallableTask(synCtx, injectSeq);
+        return new CallableTask(synCtx, injectSeq);
+    }
 
-        executorService.submit(task);
+    private void inject(CallableTask task) {
+        if (preserveOrder) {
+            // injected on the thread processing the frames of the connection, so that the next message waits
+            try {
+                task.call();
+            } catch (Exception e) {
+                log.error("Error while injecting the HL7 message.", e);
+            }
+        } else {
+            executorService.submit(task);
+        }
 
     }
 
@@ -133,9 +211,9 @@ public class HL7Processor implements InboundResponseSender {
         // Prepare Synapse Context for message injection
         MessageContext synCtx;
         try {
-            if (mllpContext.getRequestBuffer() != null) {
-                synCtx = HL7MessageUtils.
-                        createErrorMessageContext(mllpContext.getRequestBuffer().toString(), ex, params);
+            String rawMessage = mllpContext.getCodec().getFrameContent();
+            if (!rawMessage.isEmpty()) {
+                synCtx = HL7MessageUtils.createErrorMessageContext(rawMessage, ex, params);
             } else {
                 synCtx = HL7MessageUtils.
                         createErrorMessageContext("The message received is not parseable", ex, params);
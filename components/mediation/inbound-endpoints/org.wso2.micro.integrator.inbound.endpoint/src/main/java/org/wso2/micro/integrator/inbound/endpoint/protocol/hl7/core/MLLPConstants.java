@@ -59,6 +59,8 @@ public class MLLPConstants {
 
     public final static String PARAM_HL7_PASS_THROUGH_INVALID_MESSAGES = "inbound.hl7.PassThroughInvalidMessages";
 
+    public final static String PARAM_HL7_PRESERVE_ORDER = "inbound.hl7.PreserveMessageOrder";
+
     public final static String HL7_ID_GENERATOR = "hl7_id_generator";
 
     public final static String HL7_INBOUND_MSG_ID = "HL7_INBOUND_MSG_ID";
@@ -21,6 +21,7 @@ package org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.core;
 import ca.uhn.hl7v2.HL7Exception;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.http.nio.reactor.EventMask;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.IOSession;
 import org.apache.synapse.transport.passthru.util.BufferFactory;
@@ -28,7 +29,6 @@ import org.apache.synapse.transport.passthru.util.ControlledByteBuffer;
 import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.codec.HL7Codec;
 import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.context.MLLPContext;
 import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.context.MLLPContextFactory;
-import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.util.HL7MessageUtils;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -72,8 +72,9 @@ public class MLLPSourceHandler implements IOEventDispatch {
 
         inputBuffer.clear();
         try {
-            int read;
-            while ((read = ch.read(inputBuffer.getByteBuffer())) > 0) {
+            int read = 0;
+            while (!mllpContext.getCodec().isReadComplete()
+                    && (read = ch.read(inputBuffer.getByteBuffer())) > 0) {
                 inputBuffer.flip();
                 try {
                     mllpContext.getCodec().decode(inputBuffer.getByteBuffer(), mllpContext);
@@ -81,33 +82,12 @@ public class MLLPSourceHandler implements IOEventDispatch {
                     handleException(session, mllpContext, e);
                     clearInputBuffers(mllpContext);
                     return;
-                } catch (HL7Exception e) {
-                    handleException(session, mllpContext, e);
-                    if (mllpContext.isAutoAck()) {
-                        mllpContext.setNackMode(true);
-                        mllpContext.setHl7Message(HL7MessageUtils.createDefaultNack(e.getMessage()));
-                        mllpContext.requestOutput();
-                    } else {
-                        hl7Processor.processError(mllpContext, e);
-                    }
-                    return;
-                } catch (IOException e) {
-                    shutdownConnection(session, mllpContext, e);
-                    return;
                 }
+                inputBuffer.clear();
             }
 
             if (mllpContext.getCodec().isReadComplete()) {
-                if (mllpContext.isAutoAck()) {
-                    mllpContext.requestOutput();
-                    bufferFactory.release(inputBuffer);
-                    inputBuffer = bufferFactory.getBuffer();
-                }
-                try {
-                    hl7Processor.processRequest(mllpContext);
-                } catch (Exception e) {
-                    shutdownConnection(session, mllpContext, e);
-                }
+                processFrame(session, mllpContext);
             }
 
             if (read < 0) {
@@ -121,6 +101,32 @@ public class MLLPSourceHandler implements IOEventDispatch {
 
     }
 
+    /**
+     * Hands over the complete frame to the processor. Reading from the connection is suspended until the response
+     * is written, and the bytes of the next message already received are kept by the codec meanwhile.
+     */
+    private void processFrame(IOSession session, MLLPContext mllpContext) {
+        session.clearEvent(EventMask.READ);
+        try {
+            hl7Processor.processFrame(mllpContext);
+        } catch (Exception e) {
+            shutdownConnection(session, mllpContext, e);
+        }
+    }
+
+    private void processBufferedInput(IOSession session, MLLPContext mllpContext) {
+        try {
+            mllpContext.getCodec().decodeBufferedInput();
+        } catch (MLLProtocolException e) {
+            handleException(session, mllpContext, e);
+            clearInputBuffers(mllpContext);
+            return;
+        }
+        if (mllpContext.getCodec().isReadComplete()) {
+            processFrame(session, mllpContext);
+        }
+    }
+
     private void clearInputBuffers(MLLPContext context) {
         bufferFactory.release(inputBuffer);
         inputBuffer = bufferFactory.getBuffer();
@@ -172,6 +178,9 @@ public class MLLPSourceHandler implements IOEventDispatch {
                 mllpContext.setMessageId("RESPONDED");
                 mllpContext.reset();
                 mllpContext.requestInput();
+                if (mllpContext.getCodec().hasBufferedInput()) {
+                    processBufferedInput(session, mllpContext);
+                }
             }
         }
 
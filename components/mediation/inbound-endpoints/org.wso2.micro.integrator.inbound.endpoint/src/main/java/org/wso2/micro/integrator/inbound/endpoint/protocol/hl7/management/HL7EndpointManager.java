@@ -168,6 +168,10 @@ public class HL7EndpointManager extends AbstractInboundEndpointManager {
             params.getProperties().setProperty(MLLPConstants.PARAM_HL7_VALIDATE, "true");
         }
 
+        if (params.getProperties().getProperty(MLLPConstants.PARAM_HL7_PRESERVE_ORDER) == null) {
+            params.getProperties().setProperty(MLLPConstants.PARAM_HL7_PRESERVE_ORDER, "false");
+        }
+
         if (params.getProperties().getProperty(MLLPConstants.PARAM_HL7_BUILD_RAW_MESSAGE) == null) {
             params.getProperties().setProperty(MLLPConstants.PARAM_HL7_BUILD_RAW_MESSAGE, "false");
         } else {
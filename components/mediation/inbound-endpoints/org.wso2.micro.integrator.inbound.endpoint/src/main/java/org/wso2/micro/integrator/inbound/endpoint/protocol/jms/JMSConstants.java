@@ -245,4 +245,46 @@ public class JMSConstants {
 
     public static final String JMS_SPEC_VERSION_2_0 = "2.0";
 
+    /**
+     * Elastic scaling of the concurrent consumers of queues. The number of consumers is kept between the minimum
+     * and the maximum, and scaling is enabled when the maximum is greater than the minimum.
+     */
+    public static final String JMS_MIN_CONCURRENT_CONSUMERS = "concurrent.consumers.min";
+
+    public static final String JMS_MAX_CONCURRENT_CONSUMERS = "concurrent.consumers.max";
+
+    /**
+     * The interval in milliseconds between two scaling evaluations.
+     */
+    public static final String JMS_CONSUMER_SCALING_INTERVAL = "concurrent.consumers.scaling.interval";
+
+    /**
+     * The minimum time in milliseconds between two scaling decisions.
+     */
+    public static final String JMS_CONSUMER_SCALING_COOLDOWN = "concurrent.consumers.scaling.cooldown";
+
+    /**
+     * The ratio of receive calls returning a message, in an evaluation interval, above which a consumer is added.
+     */
+    public static final String JMS_CONSUMER_SCALING_BUSY_RATIO = "concurrent.consumers.scaling.busyRatio";
+
+    /**
+     * The age in milliseconds of the received messages above which a consumer is added if the age keeps growing.
+     * Disabled by default.
+     */
+    public static final String JMS_CONSUMER_SCALING_MAX_MESSAGE_AGE = "concurrent.consumers.scaling.maxMessageAge";
+
+    /**
+     * The number of consecutive evaluation intervals without any message after which a consumer is retired.
+     */
+    public static final String JMS_CONSUMER_SCALING_IDLE_INTERVALS = "concurrent.consumers.scaling.idleIntervals";
+
+    public static final long DEFAULT_JMS_CONSUMER_SCALING_INTERVAL = 5000;
+
+    public static final long DEFAULT_JMS_CONSUMER_SCALING_COOLDOWN = 30000;
+
+    public static final double DEFAULT_JMS_CONSUMER_SCALING_BUSY_RATIO = 0.9;
+
+    public static final int DEFAULT_JMS_CONSUMER_SCALING_IDLE_INTERVALS = 6;
+
 }
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.micro.integrator.inbound.endpoint.protocol.jms;
+
+import org.apache.synapse.SynapseException;
+
+import java.util.Properties;
+
+/**
+ * Decides the number of polling consumers of a JMS inbound endpoint from the activity reported by the consumers.
+ * <p>
+ * The consumers report each received message and each receive call which did not return a message, i.e. each time
+ * a consumer caught up with the destination. A consumer is added when, in an evaluation interval, the ratio of the
+ * receive calls returning a message reaches the busy ratio, or when the age of the received messages exceeds the
+ * configured maximum and keeps growing. A consumer is retired after the configured number of consecutive intervals
+ * without any message. No decision is made within the cool-down period of the previous one.
+ */
+public class JMSConsumerScaler {
+
+    private final int minConsumers;
+    private final int maxConsumers;
+    private final long cooldown;
+    private final double busyRatio;
+    private final long maxMessageAge;
+    private final int idleIntervals;
+
+    /* activity in the current evaluation interval */
+    private long receivedMessages;
+    private long emptyReceives;
+    private long maxAgeInInterval;
+
+    private long previousMaxAge;
+    private int consecutiveIdleIntervals;
+    private long lastDecisionTime = -1;
+
+    /* metrics */
+    private long scaleUpCount;
+    private long scaleDownCount;
+    private Decision lastDecision;
+
+    public JMSConsumerScaler(int minConsumers, int maxConsumers, long cooldown, double busyRatio,
+                             long maxMessageAge, int idleIntervals) {
+        if (minConsumers < 1 || maxConsumers < minConsumers) {
+            throw new SynapseException("Invalid concurrent consumer range [" + minConsumers + ", " + maxConsumers
+                                               + "] for elastic scaling");
+        }
+        this.minConsumers = minConsumers;
+        this.maxConsumers = maxConsumers;
+        this.cooldown = cooldown;
+        this.busyRatio = busyRatio;
+        this.maxMessageAge = maxMessageAge;
+        this.idleIntervals = idleIntervals;
+    }
+
+    /**
+     * Creates a scaler from the inbound endpoint parameters, if elastic scaling is enabled.
+     *
+     * @param jmsProperties       the inbound endpoint parameters
+     * @param concurrentConsumers the configured number of concurrent consumers
+     * @return the scaler, or null if the maximum number of consumers is not greater than the minimum
+     */
+    public static JMSConsumerScaler create(Properties jmsProperties, int concurrentConsumers) {
+        String maxConsumers = jmsProperties.getProperty(JMSConstants.JMS_MAX_CONCURRENT_CONSUMERS);
+        if (maxConsumers == null) {
+            return null;
+        }
+        int min = getInt(jmsProperties, JMSConstants.JMS_MIN_CONCURRENT_CONSUMERS, 1);
+        int max = getInt(jmsProperties, JMSConstants.JMS_MAX_CONCURRENT_CONSUMERS, concurrentConsumers);
+        if (max <= min) {
+            return null;
+        }
+        return new JMSConsumerScaler(min, max,
+                getLong(jmsProperties, JMSConstants.JMS_CONSUMER_SCALING_COOLDOWN,
+                        JMSConstants.DEFAULT_JMS_CONSUMER_SCALING_COOLDOWN),
+                getDouble(jmsProperties, JMSConstants.JMS_CONSUMER_SCALING_BUSY_RATIO,
+                          JMSConstants.DEFAULT_JMS_CONSUMER_SCALING_BUSY_RATIO),
+                getLong(jmsProperties, JMSConstants.JMS_CONSUMER_SCALING_MAX_MESSAGE_AGE, -1),
+                getInt(jmsProperties, JMSConstants.JMS_CONSUMER_SCALING_IDLE_INTERVALS,
+                       JMSConstants.DEFAULT_JMS_CONSUMER_SCALING_IDLE_INTERVALS));
+    }
+
+    /**
+     * Reports a message received by a consumer.
+     *
+     * @param age the time in milliseconds since the message was sent, or -1 if it is not known
+     */
+    public synchronized void messageReceived(long age) {
+        receivedMessages++;
+        if (age > maxAgeInInterval) {
+            maxAgeInInterval = age;
+        }
+    }
+
+    /**
+     * Reports a receive call of a consumer which did not return a message.
+     */
+    public synchronized void emptyReceive() {
+        emptyReceives++;
+    }
+
+    /**
+     * Evaluates the activity reported since the previous evaluation and decides the number of consumers.
+     *
+     * @param currentConsumers the number of running consumers
+     * @param currentTime      the current time in milliseconds
+     * @return the decision, whose target equals the current number of consumers if no change is needed
+     */
+    public synchronized Decision evaluate(int currentConsumers, long currentTime) {
+        long messages = receivedMessages;
+        long receives = receivedMessages + emptyReceives;
+        long maxAge = maxAgeInInterval;
+        receivedMessages = 0;
+        emptyReceives = 0;
+        maxAgeInInterval = 0;
+
+        boolean ageGrowing = maxMessageAge > 0 && maxAge > maxMessageAge && maxAge > previousMaxAge;
+        previousMaxAge = maxAge;
+        if (messages == 0) {
+            consecutiveIdleIntervals++;
+        } else {
+            consecutiveIdleIntervals = 0;
+        }
+
+        Decision decision;
+        if (currentConsumers < minConsumers) {
+            decision = new Decision(currentConsumers, minConsumers, "below the minimum number of consumers");
+        } else if (currentConsumers > maxConsumers) {
+            decision = new Decision(currentConsumers, maxConsumers, "above the maximum number of consumers");
+        } else if (lastDecisionTime >= 0 && currentTime - lastDecisionTime < cooldown) {
+            return new Decision(currentConsumers, currentConsumers, "cooling down");
+        } else if (currentConsumers < maxConsumers && receives > 0 && (double) messages / receives >= busyRatio) {
+            decision = new Decision(currentConsumers, currentConsumers + 1,
+                                    messages + " of " + receives + " receives returned a message");
+        } else if (currentConsumers < maxConsumers && ageGrowing) {
+            decision = new Decision(currentConsumers, currentConsumers + 1,
+                                    "message age grew to " + maxAge + " ms");
+        } else if (currentConsumers > minConsumers && consecutiveIdleIntervals >= idleIntervals) {
+            consecutiveIdleIntervals = 0;
+            decision = new Decision(currentConsumers, currentConsumers - 1,
+                                    "no messages for " + idleIntervals + " intervals");
+        } else {
+            return new Decision(currentConsumers, currentConsumers, "no change required");
+        }
+        lastDecisionTime = currentTime;
+        if (decision.isScaleUp()) {
+            scaleUpCount++;
+        } else {
+            scaleDownCount++;
+        }
+        lastDecision = decision;
+        return decision;
+    }
+
+    public int getMinConsumers() {
+        return minConsumers;
+    }
+
+    public int getMaxConsumers() {
+        return maxConsumers;
+    }
+
+    public synchronized long getScaleUpCount() {
+        return scaleUpCount;
+    }
+
+    public synchronized long getScaleDownCount() {
+        return scaleDownCount;
+    }
+
+    /**
+     * @return the last decision which changed the number of consumers, or null if there was none
+     */
+    public synchronized Decision getLastDecision() {
+        return lastDecision;
+    }
+
+    private static int getInt(Properties properties, String name, int defaultValue) {
+        String value = properties.getProperty(name);
+        try {
+            return value != null ? Integer.parseInt(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new SynapseException("Invalid numeric value for " + name + " : " + value, e);
+        }
+    }
+
+    private static long getLong(Properties properties, String name, long defaultValue) {
+        String value = properties.getProperty(name);
+        try {
+            return value != null ? Long.parseLong(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new SynapseException("Invalid numeric value for " + name + " : " + value, e);
+        }
+    }
+
+    private static double getDouble(Properties properties, String name, double defaultValue) {
+        String value = properties.getProperty(name);
+        try {
+            return value != null ? Double.parseDouble(value.trim()) : defaultValue;
+        } catch (NumberFormatException e) {
+            throw new SynapseException("Invalid numeric value for " + name + " : " + value, e);
+        }
+    }
+
+    /**
+     * A scaling decision.
+     */
+    public static class Decision {
+
+        private final int currentConsumers;
+        private final int targetConsumers;
+        private final String reason;
+
+        Decision(int currentConsumers, int targetConsumers, String reason) {
+            this.currentConsumers = currentConsumers;
+            this.targetConsumers = targetConsumers;
+            this.reason = reason;
+        }
+
+        public int getCurrentConsumers() {
+            return currentConsumers;
+        }
+
+        public int getTargetConsumers() {
+            return targetConsumers;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public boolean isScaleUp() {
+            return targetConsumers > currentConsumers;
+        }
+
+        public boolean isScaleDown() {
+            return targetConsumers < currentConsumers;
+        }
+    }
+}
@@ -73,6 +73,12 @@ public class JMSPollingConsumer {
     // This will create a new subscription
     private boolean resetConnectionAfterPollingSuspension = false;
 
+    // reports the activity of this consumer when the consumers of the inbound endpoint are scaled elastically
+    private JMSConsumerScaler consumerScaler;
+    // a retired consumer stops polling and releases its resources once the ongoing poll completes
+    private volatile boolean retired = false;
+    private boolean polling = false;
+
     public JMSPollingConsumer(Properties jmsProperties, long scanInterval, String name) {
         this.jmsConnectionFactory = new CachedJMSConnectionFactory(jmsProperties);
         strUserName = jmsProperties.getProperty(JMSConstants.PARAM_JMS_USERNAME);
@@ -165,6 +171,48 @@ public class JMSPollingConsumer {
         this.injectHandler = injectHandler;
     }
 
+    /**
+     * Register the scaler to which the received messages and the empty receives are reported
+     *
+     * @param consumerScaler
+     */
+    public void setConsumerScaler(JMSConsumerScaler consumerScaler) {
+        this.consumerScaler = consumerScaler;
+    }
+
+    /**
+     * Stops this consumer from polling. The JMS resources are released immediately if the consumer is not polling,
+     * otherwise after the message being processed.
+     */
+    public void retire() {
+        synchronized (this) {
+            retired = true;
+            if (polling) {
+                return;
+            }
+        }
+        destroy();
+    }
+
+    private synchronized boolean startPolling() {
+        if (retired) {
+            return false;
+        }
+        polling = true;
+        return true;
+    }
+
+    private void endPolling() {
+        boolean destroy;
+        synchronized (this) {
+            polling = false;
+            destroy = retired;
+        }
+        if (destroy) {
+            destroy();
+        }
+    }
+
     /**
      * This will be called by the task scheduler. If a cycle execution takes
      * more than the schedule interval, tasks will call this method ignoring the
@@ -200,7 +248,13 @@ public class JMSPollingConsumer {
 
             if (lastRanTime == null || ((lastRanTime + (scanInterval)) <= currentTime)) {
                 lastRanTime = currentTime;
-                poll();
+                if (startPolling()) {
+                    try {
+                        poll();
+                    } finally {
+                        endPolling();
+                    }
+                }
             } else if (logger.isDebugEnabled()) {
                 logger.debug("Skip cycle since concurrent rate is higher than the scan interval : JMS Inbound EP ");
             }
@@ -272,6 +326,7 @@ public class JMSPollingConsumer {
                 return null;
             }
             Message msg = receiveMessage(messageConsumer);
+            reportReceive(msg);
             if (msg == null) {
                 logger.debug("Inbound JMS Endpoint. No JMS message received.");
                 return null;
@@ -362,7 +417,12 @@ public class JMSPollingConsumer {
                 } else {
                     return msg;
                 }
+                if (retired) {
+                    logger.debug("Stopped polling since the consumer is retired.");
+                    break;
+                }
                 msg = receiveMessage(messageConsumer);
+                reportReceive(msg);
             }
 
         } catch (JMSException e) {
@@ -431,6 +491,21 @@ public class JMSPollingConsumer {
         }
     }
 
+    /**
+     * Reports the result of a receive call to the scaler, with the time the message spent in the destination.
+     */
+    private void reportReceive(Message msg) throws JMSException {
+        if (consumerScaler == null) {
+            return;
+        }
+        if (msg == null) {
+            consumerScaler.emptyReceive();
+        } else {
+            long timestamp = msg.getJMSTimestamp();
+            consumerScaler.messageReceived(timestamp > 0 ? System.currentTimeMillis() - timestamp : -1);
+        }
+    }
+
     private Message receiveMessage(MessageConsumer messageConsumer) throws JMSException {
         Message msg = null;
         if (iReceiveTimeout == null) {
@@ -30,6 +30,9 @@ import org.wso2.micro.integrator.inbound.endpoint.protocol.PollingConstants;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class JMSProcessor extends InboundRequestProcessorImpl implements TaskStartupObserver, InboundTaskProcessor {
 
@@ -43,6 +46,9 @@ public class JMSProcessor extends InboundRequestProcessorImpl implements TaskSta
     private String injectingSeq;
     private String onErrorSeq;
     private int concurrentConsumers;
+    private JMSConsumerScaler consumerScaler;
+    private long scalingInterval = JMSConstants.DEFAULT_JMS_CONSUMER_SCALING_INTERVAL;
+    private ScheduledExecutorService scalingExecutor;
 
     public JMSProcessor(InboundProcessorParams params) {
         this.name = params.getName();
@@ -74,6 +80,7 @@ public class JMSProcessor extends InboundRequestProcessorImpl implements TaskSta
             }
             this.concurrentConsumers = Integer.parseInt(concurrentConsumers);
         }
+        initConsumerScaler();
         this.injectingSeq = params.getInjectingSeq();
         this.onErrorSeq = params.getOnErrorSeq();
         this.synapseEnvironment = params.getSynapseEnvironment();
@@ -85,12 +92,124 @@ public class JMSProcessor extends InboundRequestProcessorImpl implements TaskSta
      */
     public void init() {
         log.info("Initializing inbound JMS listener for inbound endpoint " + name);
-        for (int consumers = 0; consumers < concurrentConsumers; consumers++) {
-            JMSPollingConsumer jmsPollingConsumer = new JMSPollingConsumer(jmsProperties, interval, name);
-            jmsPollingConsumer.registerHandler(
-                    new JMSInjectHandler(injectingSeq, onErrorSeq, sequential, synapseEnvironment, jmsProperties));
-            pollingConsumers.add(jmsPollingConsumer);
-            start(jmsPollingConsumer, consumers);
+        synchronized (pollingConsumers) {
+            for (int consumers = 0; consumers < concurrentConsumers; consumers++) {
+                addPollingConsumer();
+            }
+        }
+        if (consumerScaler != null) {
+            scalingExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "jms-consumer-scaler-" + name);
+                thread.setDaemon(true);
+                return thread;
+            });
+            scalingExecutor.scheduleWithFixedDelay(this::scaleConsumers, scalingInterval, scalingInterval,
+                                                   TimeUnit.MILLISECONDS);
+            log.info("Elastic scaling enabled for inbound endpoint " + name + " with "
+                             + consumerScaler.getMinConsumers() + " to " + consumerScaler.getMaxConsumers()
+                             + " consumers");
+        }
+    }
+
+    /**
+     * Reads the elastic scaling parameters. Scaling is only applied to queues, since each additional consumer of a
+     * topic would receive its own copy of the messages.
+     */
+    private void initConsumerScaler() {
+        JMSConsumerScaler scaler = JMSConsumerScaler.create(jmsProperties, concurrentConsumers);
+        if (scaler == null) {
+            return;
+        }
+        if (JMSConstants.DESTINATION_TYPE_TOPIC.equalsIgnoreCase(
+                jmsProperties.getProperty(JMSConstants.DESTINATION_TYPE))) {
+            log.warn("Elastic consumer scaling is not supported for topics. Using " + concurrentConsumers
+                             + " concurrent consumers for inbound endpoint " + name);
+            return;
+        }
+        String scalingIntervalParam = jmsProperties.getProperty(JMSConstants.JMS_CONSUMER_SCALING_INTERVAL);
+        if (scalingIntervalParam != null) {
+            try {
+                this.scalingInterval = Long.parseLong(scalingIntervalParam);
+            } catch (NumberFormatException nfe) {
+                throw new SynapseException("Invalid numeric value for consumer scaling interval.", nfe);
+            }
+            if (scalingInterval <= 0) {
+                throw new SynapseException("Consumer scaling interval should be greater than 0");
+            }
+        }
+        this.concurrentConsumers = Math.min(Math.max(concurrentConsumers, scaler.getMinConsumers()),
+                                            scaler.getMaxConsumers());
+        this.consumerScaler = scaler;
+    }
+
+    /**
+     * Creates a polling consumer and starts its task. The task is identified by the index of the consumer, hence
+     * consumers are always added and removed at the end of the list.
+     */
+    private void addPollingConsumer() {
+        JMSPollingConsumer jmsPollingConsumer = new JMSPollingConsumer(jmsProperties, interval, name);
+        jmsPollingConsumer.registerHandler(
+                new JMSInjectHandler(injectingSeq, onErrorSeq, sequential, synapseEnvironment, jmsProperties));
+        jmsPollingConsumer.setConsumerScaler(consumerScaler);
+        int consumer = pollingConsumers.size();
+        pollingConsumers.add(jmsPollingConsumer);
+        start(jmsPollingConsumer, consumer);
+    }
+
+    /**
+     * Stops the task of the last polling consumer. The consumer completes the message it is processing, if any,
+     * before releasing its resources.
+     */
+    private void removePollingConsumer() {
+        int consumer = pollingConsumers.size() - 1;
+        JMSPollingConsumer jmsPollingConsumer = pollingConsumers.remove(consumer);
+        stop(ENDPOINT_POSTFIX + consumer);
+        jmsPollingConsumer.retire();
+    }
+
+    private void scaleConsumers() {
+        try {
+            synchronized (pollingConsumers) {
+                if (scalingExecutor.isShutdown()) {
+                    // the processor was destroyed while waiting for the consumers
+                    return;
+                }
+                JMSConsumerScaler.Decision decision = consumerScaler
+                        .evaluate(pollingConsumers.size(), System.currentTimeMillis());
+                if (!decision.isScaleUp() && !decision.isScaleDown()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Keeping " + decision.getCurrentConsumers() + " consumers for inbound endpoint "
+                                          + name + " : " + decision.getReason());
+                    }
+                    return;
+                }
+                log.info("Scaling consumers of inbound endpoint " + name + " from " + decision.getCurrentConsumers()
+                                 + " to " + decision.getTargetConsumers() + " : " + decision.getReason());
+                while (pollingConsumers.size() < decision.getTargetConsumers()) {
+                    addPollingConsumer();
+                }
+                while (pollingConsumers.size() > decision.getTargetConsumers()) {
+                    removePollingConsumer();
+                }
+            }
+        } catch (Throwable e) {
+            log.error("Error while scaling the consumers of inbound endpoint " + name, e);
+        }
+    }
+
+    /**
+     * @return the elastic consumer scaler, or null if elastic scaling is not enabled
+     */
+    public JMSConsumerScaler getConsumerScaler() {
+        return consumerScaler;
+    }
+
+    /**
+     * @return the number of running polling consumers
+     */
+    public int getConsumerCount() {
+        synchronized (pollingConsumers) {
+            return pollingConsumers.size();
         }
     }
 
@@ -99,10 +218,16 @@ public class JMSProcessor extends InboundRequestProcessorImpl implements TaskSta
      * undeployed/redeployed or when server stop
      */
     public void destroy() {
-        for (JMSPollingConsumer pollingConsumer : pollingConsumers) {
-            pollingConsumer.destroy();
+        if (scalingExecutor != null) {
+            scalingExecutor.shutdownNow();
+        }
+        // the scaler adds and stops the tasks while holding the same lock
+        synchronized (pollingConsumers) {
+            for (JMSPollingConsumer pollingConsumer : pollingConsumers) {
+                pollingConsumer.destroy();
+            }
+            super.destroy();
         }
-        super.destroy();
     }
 
     /**
@@ -55,9 +55,13 @@ public class JMSTask extends InboundTask implements LocalTaskActionListener {
         logger.debug("Initializing.");
     }
 
+    /**
+     * Retires the polling consumer, hence a message being processed when the task is stopped, e.g. when the consumers
+     * are scaled down, is completed before the JMS resources are released.
+     */
     public void destroy() {
         logger.debug("Destroying JMS Task.");
-        jmsPollingConsumer.destroy();
+        jmsPollingConsumer.retire();
     }
 
     /**
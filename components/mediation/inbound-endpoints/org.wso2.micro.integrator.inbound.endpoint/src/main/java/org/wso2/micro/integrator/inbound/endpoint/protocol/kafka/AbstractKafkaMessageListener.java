@@ -35,12 +35,12 @@ public abstract class AbstractKafkaMessageListener {
     protected static final Log log = LogFactory.getLog(KAFKAMessageListener.class.getName());
 
     /**
-     * the consumer types are high level and simple,high level is used for kafka high level configuration
-     * and simple is used for kafka low level configuration
+     * the consumer types are high level, simple and partitioned,high level is used for kafka high level configuration,
+     * simple is used for kafka low level configuration and partitioned is used for the kafka consumer API
      */
     public static enum CONSUMER_TYPE {
 
-        HIGHLEVEL("highlevel"), SIMPLE("simple");
+        HIGHLEVEL("highlevel"), SIMPLE("simple"), PARTITIONED("partitioned");
         String name;
 
         private CONSUMER_TYPE(String name) {
@@ -56,6 +56,36 @@ public class KAFKAConstants {
 
     public static final String CONSUMER_TIMEOUT = "consumer.timeout.ms";
 
+    public static final String ENABLE_AUTO_COMMIT = "enable.auto.commit";
+
+    public static final String POLL_TIMEOUT = "poll.timeout.ms";
+
+    public static final String COMMIT_BATCH_SIZE = "commit.batch.size";
+
+    public static final String COMMIT_INTERVAL = "commit.interval.ms";
+
+    public static final String MAX_QUEUED_RECORDS_PER_PARTITION = "max.queued.records.per.partition";
+
+    public static final String LAG_UPDATE_INTERVAL = "lag.update.interval.ms";
+
+    public static final String MAX_RETRY_COUNT = "max.retry.count";
+
+    public static final String RETRY_INTERVAL = "retry.interval.ms";
+
+    public static final long DEFAULT_POLL_TIMEOUT = 100;
+
+    public static final int DEFAULT_COMMIT_BATCH_SIZE = 100;
+
+    public static final long DEFAULT_COMMIT_INTERVAL = 1000;
+
+    public static final int DEFAULT_MAX_QUEUED_RECORDS_PER_PARTITION = 500;
+
+    public static final long DEFAULT_LAG_UPDATE_INTERVAL = 5000;
+
+    public static final int DEFAULT_MAX_RETRY_COUNT = 3;
+
+    public static final long DEFAULT_RETRY_INTERVAL = 2000;
+
     public static final int SO_TIMEOUT = 100000;
 
     public static final int BUFFER_SIZE = 64 * 1024;
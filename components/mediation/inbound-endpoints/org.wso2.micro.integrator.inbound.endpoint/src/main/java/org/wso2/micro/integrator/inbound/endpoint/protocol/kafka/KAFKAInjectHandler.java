@@ -61,6 +61,9 @@ public class KAFKAInjectHandler implements InjectHandler {
     /**
      * Determine the message builder to use, set the message payload to the message context and
      * inject the message to the sequence
+     *
+     * @return false if the sequence is not found or the mediation failed, which is only known when the message is
+     * injected sequentially
      */
     public boolean invoke(Object object, String name) {
         byte[] msg = (byte[]) object;
@@ -125,9 +128,12 @@ public class KAFKAInjectHandler implements InjectHandler {
                 seq.init(synapseEnvironment);
             }
             seq.setErrorHandler(onErrorSeq);
-            synapseEnvironment.injectInbound(msgCtx, seq, sequential);
+            if (!synapseEnvironment.injectInbound(msgCtx, seq, sequential)) {
+                return false;
+            }
         } else {
             log.error("Sequence: " + injectingSeq + " not found");
+            return false;
         }
 
         return true;
@@ -81,10 +81,15 @@ public class KAFKAPollingConsumer {
                 } else if (kafkaProperties.getProperty(KAFKAConstants.CONSUMER_TYPE)
                         .equalsIgnoreCase(AbstractKafkaMessageListener.CONSUMER_TYPE.SIMPLE.getName())) {
                     messageListener = new SimpleKafkaMessageListener(kafkaProperties, injectHandler);
+                    //Start a listener mediating the partitions in parallel
+                } else if (kafkaProperties.getProperty(KAFKAConstants.CONSUMER_TYPE)
+                        .equalsIgnoreCase(AbstractKafkaMessageListener.CONSUMER_TYPE.PARTITIONED.getName())) {
+                    messageListener = new PartitionedKafkaMessageListener(threadCount, topics, kafkaProperties,
+                                                                          injectHandler, name);
                 }
             } catch (Exception e) {
-                log.error("The consumer type should be high level or simple." + e.getMessage(), e);
-                throw new SynapseException("The consumer type should be high level or simple", e);
+                log.error("The consumer type should be high level, simple or partitioned." + e.getMessage(), e);
+                throw new SynapseException("The consumer type should be high level, simple or partitioned", e);
             }
         }
     }
@@ -64,6 +64,14 @@ public class KAFKAProcessor extends InboundRequestProcessorImpl implements TaskS
                 throw new SynapseException("The sequential value should be true or false", e);
             }
         }
+        if (!sequential && AbstractKafkaMessageListener.CONSUMER_TYPE.PARTITIONED.getName()
+                .equalsIgnoreCase(kafkaProperties.getProperty(KAFKAConstants.CONSUMER_TYPE))) {
+            // the offsets are committed once the records are mediated, hence the mediation should complete upon
+            // injection
+            log.warn("The records of the " + AbstractKafkaMessageListener.CONSUMER_TYPE.PARTITIONED.getName()
+                             + " consumer of the inbound " + name + " are injected sequentially");
+            this.sequential = true;
+        }
         this.coordination = true;
         String inboundCoordination = kafkaProperties.getProperty(PollingConstants.INBOUND_COORDINATION);
         if (inboundCoordination != null) {
@@ -130,6 +138,9 @@ public class KAFKAProcessor extends InboundRequestProcessorImpl implements TaskS
                 pollingConsumer.messageListener.consumerConnector.shutdown();
                 log.info("Shutdown the kafka consumer connector");
             }
+            if (pollingConsumer != null && pollingConsumer.messageListener != null) {
+                pollingConsumer.messageListener.destroy();
+            }
         } catch (Exception e) {
             log.error("Error while shutdown the consumer connector" + e.getMessage(), e);
         }
@@ -0,0 +1,727 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.inbound.endpoint.protocol.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.synapse.SynapseException;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Kafka message listener which consumes the records with the Kafka consumer API instead of the ZooKeeper based
+ * consumer connector. A poll thread fetches the records, and hands the records of each partition over to the worker
+ * of that partition. The workers share a pool of thread.count threads, and each worker mediates the records of its
+ * partition one at a time in the offset order. Hence the partitions are mediated in parallel, while the records
+ * having the same key are mediated in the order they were produced.
+ * <p>
+ * The offset after the last mediated record of each partition is committed once commit.batch.size records are
+ * mediated, or commit.interval.ms elapsed since the last commit. A record which fails mediation is consumed again
+ * after retry.interval.ms, together with the records after it in the partition, and it is skipped once it failed
+ * max.retry.count retries. The records are injected sequentially, so that a failure is known before the offset is
+ * committed. A partition is paused while its worker holds max.queued.records.per.partition records, and resumed once
+ * the worker caught up with half of them.
+ * <p>
+ * When partitions are revoked by a rebalance, their workers stop after the record being mediated, and the mediated
+ * records are committed before the partitions are handed over to the new owner.
+ */
+public class PartitionedKafkaMessageListener extends AbstractKafkaMessageListener
+        implements PartitionedKafkaMessageListenerMBean {
+
+    public static final String MBEAN_CATEGORY = "KafkaInboundConsumer";
+
+    private static final long REVOKE_TIMEOUT = 10000;
+
+    private static final long SHUTDOWN_TIMEOUT = 30000;
+
+    private static final int MAX_RECORDS_PER_RUN = 100;
+
+    private final String name;
+
+    private final Pattern topicPattern;
+
+    private final long pollTimeout;
+
+    private final int commitBatchSize;
+
+    private final long commitInterval;
+
+    private final int maxQueuedRecords;
+
+    private final long lagUpdateInterval;
+
+    /**
+     * Retries of a failed record before it is skipped, or a negative value to retry until the mediation succeeds.
+     */
+    private final int maxRetryCount;
+
+    private final long retryInterval;
+
+    private final ExecutorService workerPool;
+
+    private final ConcurrentHashMap<TopicPartition, PartitionWorker> workers = new ConcurrentHashMap<>();
+
+    private final Set<TopicPartition> pausedPartitions = ConcurrentHashMap.newKeySet();
+
+    private final ConcurrentHashMap<String, Long> partitionLag = new ConcurrentHashMap<>();
+
+    private final AtomicInteger uncommittedRecords = new AtomicInteger();
+
+    private final LongAdder failedRecords = new LongAdder();
+
+    private final LongAdder skippedRecords = new LongAdder();
+
+    private volatile Consumer<byte[], byte[]> consumer;
+
+    private volatile boolean running;
+
+    private volatile int assignedPartitions;
+
+    private Thread pollThread;
+
+    private boolean destroyed;
+
+    private long lastCommitTime;
+
+    private long lastLagUpdateTime;
+
+    public PartitionedKafkaMessageListener(int threadCount, List<String> topics, Properties kafkaProperties,
+                                           InjectHandler injectHandler, String name) {
+        this.threadCount = threadCount;
+        this.kafkaProperties = kafkaProperties;
+        this.injectHandler = injectHandler;
+        this.name = name;
+        if (topics != null) {
+            this.topics = new ArrayList<>(topics.size());
+            for (String topic : topics) {
+                this.topics.add(topic.trim());
+            }
+        }
+        String topicFilter = kafkaProperties.getProperty(KAFKAConstants.TOPIC_FILTER);
+        if (this.topics == null || this.topics.isEmpty()) {
+            if (topicFilter == null || topicFilter.trim().isEmpty()) {
+                throw new SynapseException("Topics or a topic filter should be given for the Kafka inbound " + name);
+            }
+            String fromWhiteList = kafkaProperties.getProperty(KAFKAConstants.FILTER_FROM_WHITE_LIST);
+            if (fromWhiteList != null && !fromWhiteList.isEmpty() && !Boolean.parseBoolean(fromWhiteList)) {
+                throw new SynapseException("Only white list topic filters are supported by the "
+                                                   + CONSUMER_TYPE.PARTITIONED.getName() + " consumer type");
+            }
+            // same form as the white list of the consumer connector
+            this.topicPattern = Pattern.compile(topicFilter.trim().replace(',', '|').replace(" ", ""));
+        } else {
+            this.topicPattern = null;
+        }
+        this.pollTimeout = getLongProperty(KAFKAConstants.POLL_TIMEOUT, KAFKAConstants.DEFAULT_POLL_TIMEOUT);
+        this.commitBatchSize = (int) getLongProperty(KAFKAConstants.COMMIT_BATCH_SIZE,
+                                                     KAFKAConstants.DEFAULT_COMMIT_BATCH_SIZE);
+        this.commitInterval = getLongProperty(KAFKAConstants.COMMIT_INTERVAL, KAFKAConstants.DEFAULT_COMMIT_INTERVAL);
+        this.maxQueuedRecords = Math.max((int) getLongProperty(KAFKAConstants.MAX_QUEUED_RECORDS_PER_PARTITION,
+                KAFKAConstants.DEFAULT_MAX_QUEUED_RECORDS_PER_PARTITION), 1);
+        this.lagUpdateInterval = getLongProperty(KAFKAConstants.LAG_UPDATE_INTERVAL,
+                                                 KAFKAConstants.DEFAULT_LAG_UPDATE_INTERVAL);
+        this.maxRetryCount = (int) getLongProperty(KAFKAConstants.MAX_RETRY_COUNT,
+                                                   KAFKAConstants.DEFAULT_MAX_RETRY_COUNT);
+        this.retryInterval = getLongProperty(KAFKAConstants.RETRY_INTERVAL, KAFKAConstants.DEFAULT_RETRY_INTERVAL);
+        this.workerPool = Executors.newFixedThreadPool(threadCount, new KafkaWorkerThreadFactory(name));
+        MBeanRegistrar.getInstance().registerMBean(this, MBEAN_CATEGORY, name);
+    }
+
+    /**
+     * Start the poll thread, unless it is running. The poll thread is started again by the inbound task if it stopped
+     * upon an error.
+     */
+    @Override
+    public synchronized boolean createKafkaConsumerConnector() throws Exception {
+        if (destroyed) {
+            return false;
+        }
+        if (pollThread == null || !pollThread.isAlive()) {
+            start();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        log.info("Starting KAFKA consumer of the inbound " + name + "...");
+        running = true;
+        pollThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "kafka-inbound-" + name + "-poller");
+        pollThread.setDaemon(true);
+        pollThread.start();
+    }
+
+    /**
+     * Stop the poll thread after committing the mediated records, and stop the workers.
+     */
+    @Override
+    public void destroy() {
+        Thread thread;
+        synchronized (this) {
+            destroyed = true;
+            running = false;
+            thread = pollThread;
+        }
+        Consumer<byte[], byte[]> kafkaConsumer = consumer;
+        if (kafkaConsumer != null) {
+            kafkaConsumer.wakeup();
+        }
+        if (thread != null) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workerPool.shutdown();
+        MBeanRegistrar.getInstance().unRegisterMBean(MBEAN_CATEGORY, name);
+    }
+
+    /**
+     * The records are injected by the workers as they are polled, hence there is nothing to inject by the task.
+     */
+    @Override
+    public void injectMessageToESB(String name) {
+        log.debug("Records of the partitioned consumer are injected by the partition workers");
+    }
+
+    @Override
+    public boolean hasNext() {
+        return false;
+    }
+
+    /**
+     * Create the Kafka consumer. The consumer is only used by the poll thread.
+     */
+    protected Consumer<byte[], byte[]> createConsumer(Properties properties) {
+        return new KafkaConsumer<>(properties, new ByteArrayDeserializer(), new ByteArrayDeserializer());
+    }
+
+    private void consume() {
+        try {
+            Properties properties = new Properties();
+            properties.putAll(kafkaProperties);
+            // the offsets are committed once the records are mediated
+            properties.put(KAFKAConstants.ENABLE_AUTO_COMMIT, "false");
+            consumer = createConsumer(properties);
+            subscribe();
+        } catch (Exception e) {
+            log.error("Error while creating the Kafka consumer of the inbound " + name + "." + e.getMessage(), e);
+            closeConsumer();
+            return;
+        }
+        log.info("Kafka consumer of the inbound " + name + " is started");
+        try {
+            while (running) {
+                ConsumerRecords<byte[], byte[]> records = consumer.poll(pollTimeout);
+                for (TopicPartition partition : records.partitions()) {
+                    workers.computeIfAbsent(partition, PartitionWorker::new).enqueue(records.records(partition));
+                }
+                long now = System.currentTimeMillis();
+                updatePausedPartitions(now);
+                if (uncommittedRecords.get() >= commitBatchSize || now - lastCommitTime >= commitInterval) {
+                    uncommittedRecords.set(0);
+                    commitOffsets(workers.values(), false);
+                    lastCommitTime = now;
+                }
+                if (now - lastLagUpdateTime >= lagUpdateInterval) {
+                    updateLag();
+                    lastLagUpdateTime = now;
+                }
+            }
+        } catch (WakeupException e) {
+            if (running) {
+                log.error("Kafka consumer of the inbound " + name + " is woken up unexpectedly", e);
+            }
+        } catch (Exception e) {
+            log.error("Error while consuming the Kafka records of the inbound " + name + "." + e.getMessage(), e);
+        } finally {
+            try {
+                releasePartitions(new ArrayList<>(workers.keySet()));
+            } catch (Exception e) {
+                log.error("Error while releasing the partitions of the inbound " + name, e);
+            }
+            closeConsumer();
+        }
+    }
+
+    private void subscribe() {
+        ConsumerRebalanceListener rebalanceListener = new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Partitions " + partitions + " of the inbound " + name + " are revoked");
+                }
+                releasePartitions(partitions);
+                assignedPartitions = 0;
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Partitions " + partitions + " are assigned to the inbound " + name);
+                }
+                assignedPartitions = partitions.size();
+            }
+        };
+        if (topicPattern != null) {
+            consumer.subscribe(topicPattern, rebalanceListener);
+        } else {
+            consumer.subscribe(topics, rebalanceListener);
+        }
+    }
+
+    private void closeConsumer() {
+        Consumer<byte[], byte[]> kafkaConsumer = consumer;
+        consumer = null;
+        assignedPartitions = 0;
+        pausedPartitions.clear();
+        partitionLag.clear();
+        if (kafkaConsumer != null) {
+            try {
+                kafkaConsumer.close();
+                log.info("Kafka consumer of the inbound " + name + " is closed");
+            } catch (Exception e) {
+                log.error("Error while closing the Kafka consumer of the inbound " + name, e);
+            }
+        }
+    }
+
+    /**
+     * Consume the failed records again once the retry delay elapses, and pause the partitions whose workers are
+     * saturated until they catch up.
+     */
+    private void updatePausedPartitions(long now) {
+        List<TopicPartition> pause = new ArrayList<>();
+        List<TopicPartition> resume = new ArrayList<>();
+        for (PartitionWorker worker : workers.values()) {
+            TopicPartition partition = worker.partition;
+            long failedOffset = worker.failedOffset;
+            if (failedOffset >= 0) {
+                consumer.seek(partition, failedOffset);
+                worker.retry(now + retryInterval);
+            }
+            int queuedRecords = worker.queuedRecords.get();
+            if (!pausedPartitions.contains(partition)) {
+                if (queuedRecords >= maxQueuedRecords || now < worker.retryTime) {
+                    pause.add(partition);
+                }
+            } else if (queuedRecords <= maxQueuedRecords / 2 && now >= worker.retryTime) {
+                resume.add(partition);
+            }
+        }
+        if (!pause.isEmpty()) {
+            consumer.pause(pause);
+            pausedPartitions.addAll(pause);
+            if (log.isDebugEnabled()) {
+                log.debug("Partitions " + pause + " of the inbound " + name + " are paused");
+            }
+        }
+        if (!resume.isEmpty()) {
+            consumer.resume(resume);
+            pausedPartitions.removeAll(resume);
+            if (log.isDebugEnabled()) {
+                log.debug("Partitions " + resume + " of the inbound " + name + " are resumed");
+            }
+        }
+    }
+
+    /**
+     * Commit the offset after the last mediated record of the partitions of the given workers.
+     *
+     * @param partitionWorkers workers whose partitions are committed
+     * @param sync             whether to wait for the commit, as the partitions are being released
+     */
+    private void commitOffsets(Collection<PartitionWorker> partitionWorkers, boolean sync) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (PartitionWorker worker : partitionWorkers) {
+            long offset = worker.nextOffset;
+            if (offset > worker.committedOffset) {
+                offsets.put(worker.partition, new OffsetAndMetadata(offset));
+                worker.committedOffset = offset;
+            }
+        }
+        if (offsets.isEmpty()) {
+            return;
+        }
+        if (sync) {
+            consumer.commitSync(offsets);
+            return;
+        }
+        consumer.commitAsync(offsets, (committedOffsets, e) -> {
+            if (e == null) {
+                return;
+            }
+            log.warn("Error while committing the offsets " + committedOffsets + " of the inbound " + name, e);
+            // commit the offsets again with the next batch
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : committedOffsets.entrySet()) {
+                PartitionWorker worker = workers.get(entry.getKey());
+                if (worker != null && worker.committedOffset == entry.getValue().offset()) {
+                    worker.committedOffset = -1;
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop the workers of the given partitions, and commit the records mediated by them. A record still being
+     * mediated after the revoke timeout is consumed again by the new owner of the partition.
+     */
+    private void releasePartitions(Collection<TopicPartition> partitions) {
+        List<PartitionWorker> released = new ArrayList<>();
+        for (TopicPartition partition : partitions) {
+            PartitionWorker worker = workers.get(partition);
+            if (worker != null) {
+                worker.stop();
+                released.add(worker);
+            }
+        }
+        long deadline = System.currentTimeMillis() + REVOKE_TIMEOUT;
+        for (PartitionWorker worker : released) {
+            if (!worker.awaitIdle(deadline)) {
+                log.warn("Record of the partition " + worker.partition + " of the inbound " + name
+                                 + " is still being mediated, and it will be consumed again");
+            }
+        }
+        try {
+            commitOffsets(released, true);
+        } catch (KafkaException e) {
+            log.warn("Error while committing the offsets of the released partitions " + partitions
+                             + " of the inbound " + name + ", the records after the last commit will be consumed again",
+                     e);
+        }
+        for (TopicPartition partition : partitions) {
+            workers.remove(partition);
+            pausedPartitions.remove(partition);
+            partitionLag.remove(partition.toString());
+        }
+    }
+
+    private void updateLag() {
+        Set<TopicPartition> assignment = consumer.assignment();
+        if (assignment.isEmpty()) {
+            return;
+        }
+        try {
+            for (Map.Entry<TopicPartition, Long> entry : consumer.endOffsets(assignment).entrySet()) {
+                PartitionWorker worker = workers.get(entry.getKey());
+                long offset = worker != null && worker.nextOffset >= 0 ?
+                        worker.nextOffset : consumer.position(entry.getKey());
+                partitionLag.put(entry.getKey().toString(), Math.max(entry.getValue() - offset, 0));
+            }
+        } catch (KafkaException e) {
+            log.warn("Error while updating the lag of the partitions of the inbound " + name, e);
+        }
+    }
+
+    private long getLongProperty(String key, long defaultValue) {
+        String value = kafkaProperties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException nfe) {
+            log.error("Invalid numeric value for " + key + "." + nfe.getMessage(), nfe);
+            throw new SynapseException("Invalid numeric value for " + key, nfe);
+        }
+    }
+
+    @Override
+    public int getAssignedPartitions() {
+        return assignedPartitions;
+    }
+
+    @Override
+    public int getPausedPartitions() {
+        return pausedPartitions.size();
+    }
+
+    @Override
+    public int getQueuedRecords() {
+        int queuedRecords = 0;
+        for (PartitionWorker worker : workers.values()) {
+            queuedRecords += worker.queuedRecords.get();
+        }
+        return queuedRecords;
+    }
+
+    @Override
+    public long getFailedRecords() {
+        return failedRecords.sum();
+    }
+
+    @Override
+    public long getSkippedRecords() {
+        return skippedRecords.sum();
+    }
+
+    @Override
+    public long getTotalLag() {
+        long totalLag = 0;
+        for (Long lag : partitionLag.values()) {
+            totalLag += lag;
+        }
+        return totalLag;
+    }
+
+    @Override
+    public Map<String, Long> getPartitionLag() {
+        return new HashMap<>(partitionLag);
+    }
+
+    /**
+     * Mediates the records of a partition one at a time, on the worker pool. The records are queued by the poll
+     * thread, and the worker runs while there are queued records.
+     */
+    private class PartitionWorker implements Runnable {
+
+        final TopicPartition partition;
+
+        final AtomicInteger queuedRecords = new AtomicInteger();
+
+        private final Queue<ConsumerRecord<byte[], byte[]>> records = new ConcurrentLinkedQueue<>();
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Offset after the last mediated record, which is the offset to commit.
+         */
+        volatile long nextOffset = -1;
+
+        /**
+         * Offset of the record which failed mediation, until the poll thread seeks back to it.
+         */
+        volatile long failedOffset = -1;
+
+        private volatile boolean stopped;
+
+        /**
+         * Offset of the last record which failed mediation, and the number of times it is retried. Used by the
+         * worker only, which runs on one thread at a time.
+         */
+        private long retriedOffset = -1;
+
+        private int retries;
+
+        /**
+         * Used by the poll thread only.
+         */
+        long committedOffset = -1;
+
+        long retryTime;
+
+        PartitionWorker(TopicPartition partition) {
+            this.partition = partition;
+        }
+
+        void enqueue(List<ConsumerRecord<byte[], byte[]>> partitionRecords) {
+            if (stopped || failedOffset >= 0 || partitionRecords.isEmpty()) {
+                // records after a failed record are consumed again once the poll thread seeks back
+                return;
+            }
+            if (nextOffset < 0) {
+                nextOffset = partitionRecords.get(0).offset();
+            }
+            queuedRecords.addAndGet(partitionRecords.size());
+            records.addAll(partitionRecords);
+            schedule();
+        }
+
+        /**
+         * Accept the records again, after the poll thread seeks back to the failed record.
+         */
+        void retry(long retryTime) {
+            clear();
+            this.retryTime = retryTime;
+            failedOffset = -1;
+        }
+
+        void stop() {
+            stopped = true;
+            clear();
+        }
+
+        /**
+         * Wait until the record being mediated, if any, is complete.
+         *
+         * @param deadline time in milliseconds to wait until
+         * @return whether the worker is idle
+         */
+        synchronized boolean awaitIdle(long deadline) {
+            long remaining;
+            try {
+                while (scheduled.get() && (remaining = deadline - System.currentTimeMillis()) > 0) {
+                    wait(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return !scheduled.get();
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < MAX_RECORDS_PER_RUN; i++) {
+                    if (stopped || failedOffset >= 0) {
+                        clear();
+                        break;
+                    }
+                    ConsumerRecord<byte[], byte[]> record = records.poll();
+                    if (record == null) {
+                        break;
+                    }
+                    queuedRecords.decrementAndGet();
+                    if (!mediate(record) && retry(record)) {
+                        failedOffset = record.offset();
+                        clear();
+                        break;
+                    }
+                    nextOffset = record.offset() + 1;
+                    uncommittedRecords.incrementAndGet();
+                }
+            } finally {
+                synchronized (this) {
+                    scheduled.set(false);
+                    notifyAll();
+                }
+            }
+            // let the other partitions use the thread, before mediating the rest of the records
+            if (!stopped && !records.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private boolean mediate(ConsumerRecord<byte[], byte[]> record) {
+            if (record.value() == null) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Skipping the record " + record.offset() + " of the partition " + partition
+                                      + " without a value");
+                }
+                return true;
+            }
+            try {
+                if (injectHandler.invoke(record.value(), name)) {
+                    return true;
+                }
+                log.error("Mediation of the record " + record.offset() + " of the partition " + partition
+                                  + " of the inbound " + name + " failed");
+            } catch (Exception e) {         //we need to handle any exception upon injecting to mediation
+                log.error("Error while mediating the record " + record.offset() + " of the partition " + partition
+                                  + " of the inbound " + name, e);
+            }
+            return false;
+        }
+
+        /**
+         * Count the failed mediation of the record, and decide whether it is consumed again.
+         *
+         * @return whether the record is consumed again, or false if it is skipped as the retries are exhausted
+         */
+        private boolean retry(ConsumerRecord<byte[], byte[]> record) {
+            failedRecords.increment();
+            if (record.offset() != retriedOffset) {
+                retriedOffset = record.offset();
+                retries = 0;
+            }
+            if (maxRetryCount >= 0 && retries >= maxRetryCount) {
+                skippedRecords.increment();
+                log.error("Skipping the record " + record.offset() + " of the partition " + partition
+                                  + " of the inbound " + name + ", as it failed mediation after " + retries
+                                  + " retries");
+                return false;
+            }
+            retries++;
+            log.warn("Record " + record.offset() + " of the partition " + partition + " of the inbound " + name
+                             + " will be consumed again in " + retryInterval + " ms, retry " + retries
+                             + (maxRetryCount >= 0 ? " of " + maxRetryCount : ""));
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    workerPool.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    log.warn("Worker pool of the inbound " + name + " is shut down, records of the partition "
+                                     + partition + " are not mediated");
+                }
+            }
+        }
+
+        private void clear() {
+            while (records.poll() != null) {
+                queuedRecords.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Thread factory naming the worker threads after the inbound endpoint
+     */
+    private static class KafkaWorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+        private final String namePrefix;
+
+        KafkaWorkerThreadFactory(String endpointName) {
+            namePrefix = "kafka-inbound-" + endpointName + "-worker-";
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, namePrefix + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
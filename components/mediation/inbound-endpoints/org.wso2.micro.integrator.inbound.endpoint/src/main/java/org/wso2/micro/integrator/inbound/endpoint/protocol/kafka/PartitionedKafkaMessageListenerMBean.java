@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.inbound.endpoint.protocol.kafka;
+
+import java.util.Map;
+
+/**
+ * MBean interface to expose the state of a partitioned Kafka inbound consumer using JMX.
+ */
+public interface PartitionedKafkaMessageListenerMBean {
+
+    /**
+     * @return Number of the partitions assigned to the consumer.
+     */
+    int getAssignedPartitions();
+
+    /**
+     * @return Number of the assigned partitions which are paused, as their workers are saturated or retrying.
+     */
+    int getPausedPartitions();
+
+    /**
+     * @return Number of the fetched records waiting to be mediated.
+     */
+    int getQueuedRecords();
+
+    /**
+     * @return Number of the failed mediations of records, including the retries.
+     */
+    long getFailedRecords();
+
+    /**
+     * @return Number of the records which are skipped, as they failed mediation after the max retry count.
+     */
+    long getSkippedRecords();
+
+    /**
+     * @return Number of the records in the assigned partitions which are not mediated yet, as of the last lag update.
+     */
+    long getTotalLag();
+
+    /**
+     * @return Records not mediated yet as of the last lag update, by the partition in the topic-partition form.
+     */
+    Map<String, Long> getPartitionLag();
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Consumer which mediates the messages delivered on a channel, in the order of delivery. The successfully mediated
+ * messages are acknowledged together once the acknowledgement batch is complete, or once the oldest of them waited
+ * for the batch timeout. A message which failed is requeued, after acknowledging the messages delivered before it.
+ */
+public class RabbitMQChannelConsumer extends DefaultConsumer {
+
+    private static final Log log = LogFactory.getLog(RabbitMQChannelConsumer.class);
+
+    private static final long MEDIATION_ERROR_DELAY = 2000;
+
+    private final String inboundName;
+
+    private final RabbitMQInjectHandler injectHandler;
+
+    private final String defaultContentType;
+
+    private final boolean autoAck;
+
+    private final int ackBatchSize;
+
+    private final RabbitMQPrefetchTuner prefetchTuner;
+
+    private long pendingAckTag = -1;
+
+    private int pendingAckCount;
+
+    private long firstPendingAckTime;
+
+    /**
+     * @param channel            channel on which the messages are consumed
+     * @param inboundName        name of the inbound endpoint
+     * @param injectHandler      handler which mediates the messages
+     * @param defaultContentType content type of the messages delivered without one
+     * @param autoAck            whether the broker considers the messages acknowledged once delivered
+     * @param ackBatchSize       number of the messages acknowledged together
+     * @param prefetchTuner      tuner of the prefetch count of the channel, or null to keep the prefetch count
+     */
+    public RabbitMQChannelConsumer(Channel channel, String inboundName, RabbitMQInjectHandler injectHandler,
+                                   String defaultContentType, boolean autoAck, int ackBatchSize,
+                                   RabbitMQPrefetchTuner prefetchTuner) {
+        super(channel);
+        this.inboundName = inboundName;
+        this.injectHandler = injectHandler;
+        this.defaultContentType = defaultContentType;
+        this.autoAck = autoAck;
+        this.ackBatchSize = Math.max(ackBatchSize, 1);
+        this.prefetchTuner = prefetchTuner;
+    }
+
+    @Override
+    public void handleDelivery(String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+        RabbitMQMessage message = createMessage(envelope, properties, body);
+        boolean successful = false;
+        boolean mediationError = false;
+        long startTime = System.nanoTime();
+        try {
+            successful = injectHandler.invoke(message, inboundName);
+        } catch (Exception e) {         //we need to handle any exception upon injecting to mediation
+            mediationError = true;
+            log.error("Error while mediating message", e);
+        }
+
+        if (!autoAck) {
+            if (successful) {
+                acknowledge(envelope.getDeliveryTag());
+            } else {
+                requeue(envelope.getDeliveryTag());
+            }
+            if (prefetchTuner != null) {
+                updatePrefetchCount(System.nanoTime() - startTime);
+            }
+        }
+
+        /*
+         * Upon a mediation error, re-try with a fixed delay. Consuming messages cannot be given up
+         * as there is no way for the user to start the consumer back
+         */
+        if (mediationError) {
+            try {
+                Thread.sleep(MEDIATION_ERROR_DELAY);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Acknowledges the successfully mediated messages, if the oldest of them waited for the given time.
+     *
+     * @param maxWaitTime time in milliseconds a message can wait to be acknowledged
+     */
+    public synchronized void flushAcknowledgements(long maxWaitTime) {
+        if (pendingAckCount > 0 && System.currentTimeMillis() - firstPendingAckTime >= maxWaitTime) {
+            flushAcknowledgements();
+        }
+    }
+
+    /**
+     * Acknowledges the successfully mediated messages which are waiting for the batch to complete.
+     */
+    public synchronized void flushAcknowledgements() {
+        if (pendingAckCount == 0) {
+            return;
+        }
+        try {
+            getChannel().basicAck(pendingAckTag, true);
+        } catch (IOException | ShutdownSignalException e) {
+            log.error("Error while acknowledging the messages of the inbound " + inboundName, e);
+        } finally {
+            pendingAckCount = 0;
+        }
+    }
+
+    private synchronized void acknowledge(long deliveryTag) {
+        if (pendingAckCount == 0) {
+            firstPendingAckTime = System.currentTimeMillis();
+        }
+        pendingAckTag = deliveryTag;
+        if (++pendingAckCount >= ackBatchSize) {
+            flushAcknowledgements();
+        }
+    }
+
+    private synchronized void requeue(long deliveryTag) {
+        flushAcknowledgements();
+        try {
+            getChannel().basicNack(deliveryTag, false, true);
+        } catch (IOException | ShutdownSignalException e) {
+            log.error("Error while requeueing the message of the inbound " + inboundName, e);
+        }
+    }
+
+    private void updatePrefetchCount(long processingTime) {
+        int prefetchCount = prefetchTuner.record(processingTime);
+        if (prefetchCount > 0) {
+            try {
+                // applied to the channel, as the prefetch count of a consumer can not be changed once it is started
+                getChannel().basicQos(prefetchCount, true);
+                if (log.isDebugEnabled()) {
+                    log.debug("Prefetch count of the inbound " + inboundName + " is set to " + prefetchCount);
+                }
+            } catch (IOException | ShutdownSignalException e) {
+                log.error("Error while setting the prefetch count of the inbound " + inboundName, e);
+            }
+        }
+    }
+
+    private RabbitMQMessage createMessage(Envelope envelope, AMQP.BasicProperties properties, byte[] body) {
+        RabbitMQMessage message = new RabbitMQMessage();
+        Map<String, Object> headers = properties.getHeaders();
+        message.setBody(body);
+        message.setDeliveryTag(envelope.getDeliveryTag());
+        message.setReplyTo(properties.getReplyTo());
+        message.setMessageId(properties.getMessageId());
+
+        // Content type is as set in delivered message. If not, from inbound parameters.
+        String contentType = properties.getContentType();
+        if (contentType == null) {
+            contentType = defaultContentType;
+        }
+        message.setContentType(contentType);
+
+        message.setContentEncoding(properties.getContentEncoding());
+        message.setCorrelationId(properties.getCorrelationId());
+        if (headers != null) {
+            message.setHeaders(headers);
+            if (headers.get(RabbitMQConstants.SOAP_ACTION) != null) {
+                message.setSoapAction(headers.get(RabbitMQConstants.SOAP_ACTION).toString());
+            }
+        }
+        return message;
+    }
+}
@@ -18,22 +18,24 @@
 
 package org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq;
 
-import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
-import com.rabbitmq.client.ConsumerCancelledException;
-import com.rabbitmq.client.QueueingConsumer;
 import com.rabbitmq.client.ShutdownSignalException;
-import org.apache.axiom.om.OMException;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.IOException;
 import java.util.Hashtable;
-import java.util.Map;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+/**
+ * Consumes the messages of a queue through one or more channels, each having a push based consumer which mediates
+ * the messages delivered on the channel. The thread executing the consumer waits for the consumers to stop, to
+ * reconnect to the broker, and flushes the acknowledgements of the consumers which are idle meanwhile.
+ */
 public class RabbitMQConnectionConsumer {
     private static final Log log = LogFactory.getLog(RabbitMQConnectionConsumer.class);
     private RabbitMQConnectionFactory rabbitMQConnectionFactory;
@@ -49,16 +51,22 @@ public class RabbitMQConnectionConsumer {
     private volatile int workerState = STATE_STOPPED;
     private String inboundName;
     private Connection connection = null;
-    private Channel channel = null;
     private boolean autoAck = false;
-    private QueueingConsumer queueingConsumer;
+    private final List<RabbitMQChannelConsumer> channelConsumers = new CopyOnWriteArrayList<>();
     private String queueName, routeKey, exchangeName;
     private Hashtable<String, String> rabbitMQProps = new Hashtable<>();
     private RabbitMQInjectHandler injectHandler;
     private String consumerTagString;
 
+    private int consumerCount;
+    private int ackBatchSize;
+    private int ackBatchTimeout;
+
+    private final Object consumerStateLock = new Object();
+    private boolean consumerStopped = false;
+    private ShutdownSignalException shutdownSignal;
+
     private volatile boolean connected = false;
-    private volatile boolean idle = false;
 
     public RabbitMQConnectionConsumer(RabbitMQConnectionFactory rabbitMQConnectionFactory,
                                       Properties rabbitMQProperties, RabbitMQInjectHandler injectHandler) {
@@ -68,6 +76,12 @@ public class RabbitMQConnectionConsumer {
         for (final String propertyName : rabbitMQProperties.stringPropertyNames()) {
             this.rabbitMQProps.put(propertyName, rabbitMQProperties.getProperty(propertyName));
         }
+        this.consumerCount = getIntProperty(RabbitMQConstants.CONSUMER_COUNT,
+                                            RabbitMQConstants.DEFAULT_CONSUMER_COUNT);
+        this.ackBatchSize = getIntProperty(RabbitMQConstants.CONSUMER_ACK_BATCH_SIZE,
+                                           RabbitMQConstants.DEFAULT_ACK_BATCH_SIZE);
+        this.ackBatchTimeout = getIntProperty(RabbitMQConstants.CONSUMER_ACK_BATCH_TIMEOUT,
+                                              RabbitMQConstants.DEFAULT_ACK_BATCH_TIMEOUT);
     }
 
     public void execute() {
@@ -77,19 +91,16 @@ public class RabbitMQConnectionConsumer {
             initConsumer();
 
             while (workerState == STATE_STARTED) {
-                try {
-                    startConsumer();
-                } catch (ShutdownSignalException sse) {
-                    if (!sse.isInitiatedByApplication()) {
-                        log.error("RabbitMQ Listener of the inbound " + inboundName + " was disconnected", sse);
-                        waitForConnection();
-                    }
-                } catch (OMException e) {
-                    log.error("Invalid Message Format while consuming the message", e);
-                } catch (IOException e) {
-                    log.error("RabbitMQ Listener of the inbound " + inboundName + " was disconnected", e);
-                    waitForConnection();
+                if (!awaitConsumerStop()) {
+                    continue;
+                }
+                if (shutdownSignal != null) {
+                    log.error("RabbitMQ Listener of the inbound " + inboundName + " was disconnected",
+                              shutdownSignal);
+                } else {
+                    log.warn("RabbitMQ consumer of the inbound " + inboundName + " was cancelled by the broker");
                 }
+                waitForConnection();
             }
         } catch (IOException e) {
             handleException("Error initializing consumer for inbound " + inboundName, e);
@@ -99,6 +110,42 @@ public class RabbitMQConnectionConsumer {
         }
     }
 
+    /**
+     * Waits until a consumer is stopped by the broker or the connection, for at most the acknowledgement batch
+     * timeout, and then acknowledges the messages which waited for the timeout.
+     *
+     * @return whether a consumer was stopped
+     */
+    private boolean awaitConsumerStop() {
+        synchronized (consumerStateLock) {
+            if (!consumerStopped && isActive()) {
+                try {
+                    consumerStateLock.wait(ackBatchTimeout);
+                } catch (InterruptedException ignore) {
+                    // state of the consumers is checked by the caller
+                }
+            }
+            if (consumerStopped && isActive()) {
+                return true;
+            }
+        }
+        if (!isActive()) {
+            return false;
+        }
+        for (RabbitMQChannelConsumer channelConsumer : channelConsumers) {
+            channelConsumer.flushAcknowledgements(ackBatchTimeout);
+        }
+        return false;
+    }
+
+    private void consumerStopped(ShutdownSignalException signal) {
+        synchronized (consumerStateLock) {
+            consumerStopped = true;
+            shutdownSignal = signal;
+            consumerStateLock.notifyAll();
+        }
+    }
+
     private void waitForConnection() throws IOException {
         int retryInterval = rabbitMQConnectionFactory.getRetryInterval();
         int retryCountMax = rabbitMQConnectionFactory.getRetryCount();
@@ -126,98 +173,9 @@ public class RabbitMQConnectionConsumer {
     }
 
     /**
-     * Used to start message consuming messages. This method is called in startup and when
-     * connection is re-connected. This method will request for the connection and create
-     * channel, queues, exchanges and bind queues to exchanges before consuming messages
-     *
-     * @throws ShutdownSignalException
-     * @throws IOException
-     */
-    private void startConsumer() throws ShutdownSignalException, IOException {
-        connection = getConnection();
-        if (channel == null || !channel.isOpen()) {
-            channel = connection.createChannel();
-            log.debug("Channel is not open. Creating a new channel for inbound " + inboundName);
-        }
-
-        //unable to connect to the queue
-        if (queueingConsumer == null) {
-            workerState = STATE_STOPPED;
-            return;
-        }
-
-        while (isActive()) {
-            try {
-                if (!channel.isOpen()) {
-                    channel = queueingConsumer.getChannel();
-                }
-                channel.txSelect();
-            } catch (IOException e) {
-                log.error("Error while starting transaction", e);
-                continue;
-            }
-
-            boolean successful = false;
-            boolean mediationError = false;
-
-            RabbitMQMessage message = null;
-            try {
-                message = getConsumerDelivery(queueingConsumer);
-            } catch (InterruptedException e) {
-                log.error("Error while consuming message", e);
-                continue;
-            }
-
-            if (message != null) {
-                idle = false;
-                try {
-                    successful = injectHandler.invoke(message, inboundName);
-                } catch (Exception e) {         //we need to handle any exception upon injecting to mediation
-                    successful = false;
-                    mediationError = true;
-                    log.error("Error while mediating message", e);
-                } finally {
-                    if (successful) {
-                        try {
-                            if (!autoAck) {
-                                channel.basicAck(message.getDeliveryTag(), false);
-                            }
-                            channel.txCommit();
-                        } catch (IOException e) {
-                            log.error("Error while committing transaction", e);
-                        }
-                    } else {
-                        try {
-                            channel.txRollback();
-                            // According to the spec, rollback doesn't automatically redeliver unacked messages.
-                            // We need to call recover explicitly.
-                            channel.basicRecover();
-                        } catch (IOException e) {
-                            log.error("Error while trying to roll back transaction", e);
-                        }
-                    }
-
-                    /*
-                     * Upon a mediation error, re-try with a fixed delay. Polling messages cannot be given up
-                     * as there is no way for the user to start the polling task back
-                     */
-                    if (mediationError) {
-                        try {
-                            Thread.sleep(2000);
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        }
-                    }
-                }
-            } else {
-                idle = true;
-            }
-        }
-
-    }
-
-    /**
-     * Create a queue consumer using the properties from inbound listener configuration
+     * Create the queue consumers using the properties from inbound listener configuration. This method is called in
+     * startup and when connection is re-connected. This method will request for the connection and create
+     * channels, queues, exchanges and bind queues to exchanges before consuming messages
      *
      * @throws IOException on error
      */
@@ -226,7 +184,7 @@ public class RabbitMQConnectionConsumer {
             log.debug("Initializing consumer for inbound " + inboundName);
         }
         connection = getConnection();
-        channel = connection.createChannel();
+        closeChannels();
         queueName = rabbitMQProperties.getProperty(RabbitMQConstants.QUEUE_NAME);
         routeKey = rabbitMQProperties.getProperty(RabbitMQConstants.QUEUE_ROUTING_KEY);
         exchangeName = rabbitMQProperties.getProperty(RabbitMQConstants.EXCHANGE_NAME);
@@ -260,97 +218,117 @@ public class RabbitMQConnectionConsumer {
             //declaring exchange
             RabbitMQUtils.declareExchange(connection, exchangeName, rabbitMQProps);
 
-            if (!channel.isOpen()) {
-                channel = connection.createChannel();
-                if (log.isDebugEnabled()) {
-                    log.debug("Channel is not open. Creating a new channel for inbound " + inboundName);
-                }
+            Channel channel = connection.createChannel();
+            try {
+                channel.queueBind(queueName, exchangeName, routeKey);
+            } finally {
+                closeChannel(channel);
             }
-            channel.queueBind(queueName, exchangeName, routeKey);
             log.debug("Bind queue '" + queueName + "' to exchange '" + exchangeName + "' with route key '" + routeKey
                               + "'");
         }
 
-        if (!channel.isOpen()) {
-            channel = connection.createChannel();
-            log.debug("Channel is not open. Creating a new channel for inbound " + inboundName);
-        }
-
         // set QoS parameter for the channel before it is assigned to the consumer
-        String qos = rabbitMQProperties.getProperty(RabbitMQConstants.CONSUMER_QOS);
-        if (qos != null && !qos.isEmpty()) {
+        int qos = -1;
+        String qosValue = rabbitMQProperties.getProperty(RabbitMQConstants.CONSUMER_QOS);
+        if (qosValue != null && !qosValue.isEmpty()) {
             try {
-                channel.basicQos(Integer.parseInt(qos));
+                qos = Integer.parseInt(qosValue);
             } catch (NumberFormatException e) {
-                log.warn("Unable to parse given QoS value, " + qos + " as an integer. Therefore using channel "
+                log.warn("Unable to parse given QoS value, " + qosValue + " as an integer. Therefore using channel "
                                  + "without QoS.");
             }
         }
+        boolean autoQos = !autoAck && qos < 0
+                && Boolean.parseBoolean(rabbitMQProperties.getProperty(RabbitMQConstants.CONSUMER_QOS_AUTO));
+        // messages waiting for the acknowledgement batch are counted by the broker, so the batch can not be larger
+        int consumerAckBatchSize = qos > 0 ? Math.min(ackBatchSize, qos) : ackBatchSize;
+
+        String configuredConsumerTag = rabbitMQProperties.getProperty(RabbitMQConstants.CONSUMER_TAG);
+        for (int i = 0; i < consumerCount; i++) {
+            Channel channel = connection.createChannel();
+            RabbitMQPrefetchTuner prefetchTuner = null;
+            if (autoQos) {
+                prefetchTuner = new RabbitMQPrefetchTuner(
+                        2 * consumerAckBatchSize,
+                        getIntProperty(RabbitMQConstants.CONSUMER_QOS_MAX, RabbitMQConstants.DEFAULT_CONSUMER_QOS_MAX),
+                        getIntProperty(RabbitMQConstants.CONSUMER_QOS_BUFFER_TIME,
+                                       RabbitMQConstants.DEFAULT_CONSUMER_QOS_BUFFER_TIME), consumerAckBatchSize);
+                channel.basicQos(prefetchTuner.getPrefetchCount(), true);
+            } else if (qos >= 0) {
+                channel.basicQos(qos);
+            }
 
-        queueingConsumer = new QueueingConsumer(channel);
+            RabbitMQChannelConsumer channelConsumer = new RabbitMQChannelConsumer(
+                    channel, inboundName, injectHandler,
+                    rabbitMQProperties.getProperty(RabbitMQConstants.CONTENT_TYPE), autoAck, consumerAckBatchSize,
+                    prefetchTuner) {
+                @Override
+                public void handleShutdownSignal(String consumerTag, ShutdownSignalException sig) {
+                    if (!sig.isInitiatedByApplication()) {
+                        consumerStopped(sig);
+                    }
+                }
 
-        consumerTagString = rabbitMQProperties.getProperty(RabbitMQConstants.CONSUMER_TAG);
-        if (consumerTagString != null) {
-            channel.basicConsume(queueName, autoAck, consumerTagString, queueingConsumer);
-            log.debug("Start consuming queue '" + queueName + "' with consumer tag '" + consumerTagString
-                              + "' for inbound " + inboundName);
-        } else {
-            consumerTagString = channel.basicConsume(queueName, autoAck, queueingConsumer);
+                @Override
+                public void handleCancel(String consumerTag) {
+                    consumerStopped(null);
+                }
+            };
+            channelConsumers.add(channelConsumer);
+
+            if (configuredConsumerTag != null) {
+                // consumer tags are scoped to a channel, hence each channel can use the configured tag
+                consumerTagString = configuredConsumerTag;
+                channel.basicConsume(queueName, autoAck, consumerTagString, channelConsumer);
+            } else {
+                consumerTagString = channel.basicConsume(queueName, autoAck, channelConsumer);
+            }
             log.debug("Start consuming queue '" + queueName + "' with consumer tag '" + consumerTagString
                               + "' for inbound " + inboundName);
         }
+
+        synchronized (consumerStateLock) {
+            consumerStopped = false;
+            shutdownSignal = null;
+        }
     }
 
     /**
-     * Returns the delivery from the consumer
-     *
-     * @param consumer the consumer to get the delivery
-     * @return RabbitMQMessage consumed by the consumer
-     * @throws InterruptedException on error
+     * Closes the channels of the previous consumers, after acknowledging the messages they mediated.
      */
-    private RabbitMQMessage getConsumerDelivery(QueueingConsumer consumer)
-            throws InterruptedException, ShutdownSignalException {
-        RabbitMQMessage message = new RabbitMQMessage();
-        QueueingConsumer.Delivery delivery = null;
-        try {
-            log.debug("Waiting for next delivery from queue for inbound " + inboundName);
-            delivery = consumer.nextDelivery();
-        } catch (ShutdownSignalException e) {
-            return null;
-        } catch (InterruptedException e) {
-            return null;
-        } catch (ConsumerCancelledException e) {
-            return null;
+    private void closeChannels() {
+        for (RabbitMQChannelConsumer channelConsumer : channelConsumers) {
+            if (channelConsumer.getChannel().isOpen()) {
+                channelConsumer.flushAcknowledgements();
+                closeChannel(channelConsumer.getChannel());
+            }
         }
+        channelConsumers.clear();
+    }
 
-        if (delivery != null) {
-            AMQP.BasicProperties properties = delivery.getProperties();
-            Map<String, Object> headers = properties.getHeaders();
-            message.setBody(delivery.getBody());
-            message.setDeliveryTag(delivery.getEnvelope().getDeliveryTag());
-            message.setReplyTo(properties.getReplyTo());
-            message.setMessageId(properties.getMessageId());
-
-            // Content type is as set in delivered message. If not, from inbound parameters.
-            String contentType = properties.getContentType();
-            if (contentType == null) {
-                contentType = rabbitMQProperties.getProperty(RabbitMQConstants.CONTENT_TYPE);
-            }
-            message.setContentType(contentType);
-
-            message.setContentEncoding(properties.getContentEncoding());
-            message.setCorrelationId(properties.getCorrelationId());
-            if (headers != null) {
-                message.setHeaders(headers);
-                if (headers.get(RabbitMQConstants.SOAP_ACTION) != null) {
-                    message.setSoapAction(headers.get(RabbitMQConstants.SOAP_ACTION).toString());
-                }
+    private void closeChannel(Channel channel) {
+        try {
+            if (channel.isOpen()) {
+                channel.close();
             }
-        } else {
-            log.debug("Queue delivery item is null for inbound " + inboundName);
-            return null;
+        } catch (Exception e) {
+            log.debug("Error while closing the channel of the inbound " + inboundName, e);
+        }
+    }
+
+    private int getIntProperty(String name, int defaultValue) {
+        String value = rabbitMQProperties.getProperty(name);
+        if (StringUtils.isEmpty(value)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Unable to parse given " + name + " value, " + value + " as an integer. Therefore using the "
+                             + "default value " + defaultValue + ".");
+            return defaultValue;
         }
-        return message;
     }
 
     private void closeConnection() {
@@ -403,6 +381,12 @@ public class RabbitMQConnectionConsumer {
 
     protected void requestShutdown() {
         workerState = STATE_SHUTTING_DOWN;
+        synchronized (consumerStateLock) {
+            consumerStateLock.notifyAll();
+        }
+        for (RabbitMQChannelConsumer channelConsumer : channelConsumers) {
+            channelConsumer.flushAcknowledgements();
+        }
         closeConnection();
     }
 
@@ -411,4 +395,4 @@ public class RabbitMQConnectionConsumer {
         throw new RabbitMQException(msg, e);
     }
 
-}
\ No newline at end of file
+}
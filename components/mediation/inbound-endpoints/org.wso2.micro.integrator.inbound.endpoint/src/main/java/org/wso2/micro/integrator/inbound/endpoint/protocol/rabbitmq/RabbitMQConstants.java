@@ -79,7 +79,13 @@ public class RabbitMQConstants {
     public static final String QUEUE_DELIVERY_MODE = "rabbitmq.queue.delivery.mode"; // 1=NonPersistent , 2=Persistent
 
     public static final String CONSUMER_QOS = "rabbitmq.channel.consumer.qos";
+    public static final String CONSUMER_QOS_AUTO = "rabbitmq.channel.consumer.qos.auto";
+    public static final String CONSUMER_QOS_MAX = "rabbitmq.channel.consumer.qos.max";
+    public static final String CONSUMER_QOS_BUFFER_TIME = "rabbitmq.channel.consumer.qos.buffer.time";
     public static final String CONSUMER_TAG = "rabbitmq.consumer.tag";
+    public static final String CONSUMER_COUNT = "rabbitmq.consumer.count";
+    public static final String CONSUMER_ACK_BATCH_SIZE = "rabbitmq.consumer.ack.batch.size";
+    public static final String CONSUMER_ACK_BATCH_TIMEOUT = "rabbitmq.consumer.ack.batch.timeout";
 
     public static final String DEFAULT_CONTENT_TYPE = "text/plain";
     public static final int DEFAULT_RETRY_INTERVAL = 30000;
@@ -87,6 +93,11 @@ public class RabbitMQConstants {
     public static final int DEFAULT_THREAD_COUNT = 20;
     public static final int DEFAULT_DELIVERY_MODE = 2; //Default is persistent
     public static final int DEFAULT_REPLY_TO_TIMEOUT = 30000;
+    public static final int DEFAULT_CONSUMER_COUNT = 1;
+    public static final int DEFAULT_ACK_BATCH_SIZE = 1;
+    public static final int DEFAULT_ACK_BATCH_TIMEOUT = 1000;
+    public static final int DEFAULT_CONSUMER_QOS_MAX = 1000;
+    public static final int DEFAULT_CONSUMER_QOS_BUFFER_TIME = 1000;
 }
 
 
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tunes the prefetch count of a consumer from the observed processing time of the messages, so that the consumer
+ * holds the messages waiting to be acknowledged, plus about the buffer time worth of messages to process while the
+ * broker delivers the next ones.
+ * <p>
+ * The tuner is used by the delivery thread of a single channel, hence it is not thread safe.
+ */
+public class RabbitMQPrefetchTuner {
+
+    private static final double SMOOTHING_FACTOR = 0.2;
+
+    private static final double CHANGE_THRESHOLD = 0.2;
+
+    private final int minPrefetchCount;
+
+    private final int maxPrefetchCount;
+
+    private final long bufferTime;
+
+    private final int sampleSize;
+
+    private double averageProcessingTime = -1;
+
+    private int samples;
+
+    private int prefetchCount;
+
+    /**
+     * @param minPrefetchCount minimum prefetch count, which covers the messages waiting to be acknowledged
+     * @param maxPrefetchCount maximum prefetch count
+     * @param bufferTime       processing time in milliseconds worth of messages to prefetch
+     * @param sampleSize       number of the messages processed between two evaluations of the prefetch count
+     */
+    public RabbitMQPrefetchTuner(int minPrefetchCount, int maxPrefetchCount, long bufferTime, int sampleSize) {
+        this.minPrefetchCount = Math.max(minPrefetchCount, 1);
+        this.maxPrefetchCount = Math.max(maxPrefetchCount, this.minPrefetchCount);
+        this.bufferTime = TimeUnit.MILLISECONDS.toNanos(bufferTime);
+        this.sampleSize = Math.max(sampleSize, 1);
+        this.prefetchCount = this.maxPrefetchCount;
+    }
+
+    /**
+     * @return prefetch count to use until the processing time is observed
+     */
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    /**
+     * Records the processing time of a message, and evaluates the prefetch count once the sample is complete.
+     *
+     * @param processingTime processing time of the message in nanoseconds
+     * @return the new prefetch count, or -1 if the prefetch count is not changed
+     */
+    public int record(long processingTime) {
+        if (averageProcessingTime < 0) {
+            averageProcessingTime = processingTime;
+        } else {
+            averageProcessingTime += SMOOTHING_FACTOR * (processingTime - averageProcessingTime);
+        }
+        if (++samples < sampleSize) {
+            return -1;
+        }
+        samples = 0;
+
+        long bufferedMessages = (long) Math.ceil(bufferTime / Math.max(averageProcessingTime, 1));
+        int target = (int) Math.min(minPrefetchCount + bufferedMessages, maxPrefetchCount);
+        if (Math.abs(target - prefetchCount) <= prefetchCount * CHANGE_THRESHOLD) {
+            return -1;
+        }
+        prefetchCount = target;
+        return prefetchCount;
+    }
+}
@@ -21,13 +21,24 @@ package org.wso2.micro.integrator.inbound.endpoint.protocol.websocket;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 
 public class InboundWebsocketChannelContext {
 
+    /**
+     * Action taken by the broadcasts when the write buffer of a subscriber is above the high water mark. The frames are
+     * queued anyway by default, as the subscribers got every frame before the write buffer was checked.
+     */
+    public enum SlowConsumerPolicy {
+        NONE, DROP, DISCONNECT
+    }
+
     private ChannelHandlerContext ctx;
     private String channelIdentifier;
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.NONE;
 
     public InboundWebsocketChannelContext(ChannelHandlerContext ctx) {
         this.ctx = ctx;
@@ -48,6 +59,25 @@ public class InboundWebsocketChannelContext {
         return channelIdentifier;
     }
 
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        if (slowConsumerPolicy != null) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+        }
+    }
+
+    /**
+     * Whether a frame already encoded in the RFC 6455 wire format can be written to the channel as it is, which is
+     * the case once the handshake has installed the frame encoder, unless a custom pipeline handler may expect frames.
+     */
+    public boolean acceptsEncodedFrames() {
+        ChannelPipeline pipeline = ctx.pipeline();
+        return pipeline.get(WebSocket08FrameEncoder.class) != null && pipeline.get("pipelineHandler") == null;
+    }
+
     public void addCloseListener(final ChannelHandlerContext targetCtx) {
         ChannelFuture closeFuture = ctx.channel().closeFuture();
         closeFuture.addListener(new ChannelFutureListener() {
@@ -32,6 +32,7 @@ import org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.ssl.Inbound
 import org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.ssl.SSLHandlerFactory;
 
 import java.util.ArrayList;
+import java.util.Locale;
 
 public class InboundWebsocketChannelInitializer extends ChannelInitializer<SocketChannel> {
     private static final Logger log = LoggerFactory.getLogger(InboundWebsocketChannelInitializer.class);
@@ -44,6 +45,10 @@ public class InboundWebsocketChannelInitializer extends ChannelInitializer<Socke
     private boolean dispatchToCustomSequence;
     private ArrayList<AbstractSubprotocolHandler> subprotocolHandlers;
     private int portOffset;
+    private InboundWebsocketChannelContext.SlowConsumerPolicy slowConsumerPolicy =
+            InboundWebsocketChannelContext.SlowConsumerPolicy.NONE;
+    private int writeBufferHighWaterMark = InboundWebsocketConstants.WEBSOCKET_DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK;
+    private int writeBufferLowWaterMark = InboundWebsocketConstants.WEBSOCKET_DEFAULT_WRITE_BUFFER_LOW_WATER_MARK;
 
     public InboundWebsocketChannelInitializer() {
     }
@@ -76,9 +81,60 @@ public class InboundWebsocketChannelInitializer extends ChannelInitializer<Socke
         this.subprotocolHandlers = subprotocolHandlers;
     }
 
+    public void setSlowConsumerPolicy(String slowConsumerPolicy) {
+        if (slowConsumerPolicy == null || slowConsumerPolicy.trim().isEmpty()) {
+            return;
+        }
+        try {
+            this.slowConsumerPolicy = InboundWebsocketChannelContext.SlowConsumerPolicy
+                    .valueOf(slowConsumerPolicy.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid value " + slowConsumerPolicy + " for " + InboundWebsocketConstants
+                    .WEBSOCKET_SLOW_CONSUMER_POLICY + ". Expected none, drop or disconnect. Using the default policy "
+                             + this.slowConsumerPolicy);
+        }
+    }
+
+    /**
+     * Set the write buffer size above which a subscriber is considered slow by the broadcasts, and the size below
+     * which it is considered to have caught up.
+     */
+    public void setWriteBufferWaterMarks(String highWaterMark, String lowWaterMark) {
+        int high = writeBufferHighWaterMark;
+        int low = writeBufferLowWaterMark;
+        try {
+            if (highWaterMark != null) {
+                high = Integer.parseInt(highWaterMark.trim());
+            }
+            if (lowWaterMark != null) {
+                low = Integer.parseInt(lowWaterMark.trim());
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Invalid write buffer water marks " + highWaterMark + " and " + lowWaterMark
+                             + ". Using the default water marks");
+            return;
+        }
+        if (low < 0 || low > high) {
+            log.warn("Write buffer low water mark " + low + " should not exceed the high water mark " + high
+                             + ". Using the default water marks");
+            return;
+        }
+        this.writeBufferHighWaterMark = high;
+        this.writeBufferLowWaterMark = low;
+    }
+
     @Override
     protected void initChannel(SocketChannel websocketChannel) throws Exception {
 
+        // the water marks are validated against each other, hence the order of setting them depends on the defaults
+        if (writeBufferHighWaterMark >= websocketChannel.config().getWriteBufferLowWaterMark()) {
+            websocketChannel.config().setWriteBufferHighWaterMark(writeBufferHighWaterMark);
+            websocketChannel.config().setWriteBufferLowWaterMark(writeBufferLowWaterMark);
+        } else {
+            websocketChannel.config().setWriteBufferLowWaterMark(writeBufferLowWaterMark);
+            websocketChannel.config().setWriteBufferHighWaterMark(writeBufferHighWaterMark);
+        }
+
         if (sslConfiguration != null) {
             SslHandler sslHandler = new SSLHandlerFactory(sslConfiguration).create();
             websocketChannel.pipeline().addLast("ssl", sslHandler);
@@ -92,6 +148,7 @@ public class InboundWebsocketChannelInitializer extends ChannelInitializer<Socke
         sourceHandler.setClientBroadcastLevel(clientBroadcastLevel);
         sourceHandler.setDispatchToCustomSequence(dispatchToCustomSequence);
         sourceHandler.setPortOffset(portOffset);
+        sourceHandler.setSlowConsumerPolicy(slowConsumerPolicy);
         if (outflowDispatchSequence != null)
             sourceHandler.setOutflowDispatchSequence(outflowDispatchSequence);
         if (outflowErrorSequence != null)
@@ -32,6 +32,9 @@ public class InboundWebsocketConfiguration {
     private String pipelineHandler;
     private String dispatchToCustomSequence;
     private final boolean usePortOffset;
+    private String slowConsumerPolicy;
+    private String writeBufferHighWaterMark;
+    private String writeBufferLowWaterMark;
 
     private InboundWebsocketConfiguration(InboundWebsocketConfigurationBuilder builder) {
         this.port = builder.port;
@@ -46,6 +49,9 @@ public class InboundWebsocketConfiguration {
         this.pipelineHandler = builder.pipelineHandler;
         this.dispatchToCustomSequence = builder.dispatchToCustomSequence;
         this.usePortOffset = builder.usePortOffset;
+        this.slowConsumerPolicy = builder.slowConsumerPolicy;
+        this.writeBufferHighWaterMark = builder.writeBufferHighWaterMark;
+        this.writeBufferLowWaterMark = builder.writeBufferLowWaterMark;
     }
 
     public int getPort() {
@@ -96,6 +102,18 @@ public class InboundWebsocketConfiguration {
         return usePortOffset;
     }
 
+    public String getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public String getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public String getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
     public static class InboundWebsocketConfigurationBuilder {
         private final int port;
         private final String name;
@@ -109,6 +127,9 @@ public class InboundWebsocketConfiguration {
         private String pipelineHandler;
         private String dispatchToCustomSequence;
         private boolean usePortOffset = false;
+        private String slowConsumerPolicy;
+        private String writeBufferHighWaterMark;
+        private String writeBufferLowWaterMark;
 
         public InboundWebsocketConfigurationBuilder(int port, String name) {
             this.port = port;
@@ -168,6 +189,21 @@ public class InboundWebsocketConfiguration {
             this.usePortOffset = usePortOffset;
             return this;
         }
+
+        public InboundWebsocketConfigurationBuilder slowConsumerPolicy(String slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+            return this;
+        }
+
+        public InboundWebsocketConfigurationBuilder writeBufferHighWaterMark(String writeBufferHighWaterMark) {
+            this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+            return this;
+        }
+
+        public InboundWebsocketConfigurationBuilder writeBufferLowWaterMark(String writeBufferLowWaterMark) {
+            this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+            return this;
+        }
     }
 
 }
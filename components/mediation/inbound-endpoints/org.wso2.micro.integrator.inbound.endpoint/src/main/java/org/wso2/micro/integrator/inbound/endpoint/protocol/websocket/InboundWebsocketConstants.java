@@ -77,4 +77,10 @@ public class InboundWebsocketConstants {
 
     public static final String INBOUND_PIPELINE_HANDLER_CLASS = "ws.pipeline.handler.class";
     public static final String CUSTOM_SEQUENCE = "dispatch.custom.sequence";
+
+    public static final String WEBSOCKET_SLOW_CONSUMER_POLICY = "ws.slow.consumer.policy";
+    public static final String WEBSOCKET_WRITE_BUFFER_HIGH_WATER_MARK = "ws.write.buffer.high.water.mark";
+    public static final String WEBSOCKET_WRITE_BUFFER_LOW_WATER_MARK = "ws.write.buffer.low.water.mark";
+    public static final int WEBSOCKET_DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 1024 * 1024;
+    public static final int WEBSOCKET_DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 512 * 1024;
 }
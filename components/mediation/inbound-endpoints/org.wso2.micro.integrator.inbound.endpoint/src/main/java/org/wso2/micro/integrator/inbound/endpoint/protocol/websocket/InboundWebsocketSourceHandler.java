@@ -97,6 +97,7 @@ public class InboundWebsocketSourceHandler extends ChannelInboundHandlerAdapter
     private ArrayList<AbstractSubprotocolHandler> subprotocolHandlers;
     private String defaultContentType;
     private int portOffset;
+    private InboundWebsocketChannelContext.SlowConsumerPolicy slowConsumerPolicy;
 
     static {
         contentTypes.add("application/xml");
@@ -118,6 +119,7 @@ public class InboundWebsocketSourceHandler extends ChannelInboundHandlerAdapter
     public void channelActive(final ChannelHandlerContext ctx) throws Exception {
         this.isSSLEnabled = ctx.channel().pipeline().get("ssl") != null;
         this.wrappedContext = new InboundWebsocketChannelContext(ctx);
+        this.wrappedContext.setSlowConsumerPolicy(slowConsumerPolicy);
         this.port = ((InetSocketAddress) ctx.channel().localAddress()).getPort() - portOffset;
         this.responseSender = new InboundWebsocketResponseSender(this);
         WebsocketEndpointManager.getInstance().setSourceHandler(this);
@@ -145,7 +147,7 @@ public class InboundWebsocketSourceHandler extends ChannelInboundHandlerAdapter
             handleException("Endpoint not found for port : " + port + "" + " tenant domain : " + tenantDomain);
         }
         WebsocketSubscriberPathManager.getInstance()
-                .addChannelContext(endpointName, subscriberPath.getPath(), wrappedContext);
+                .removeChannelContext(endpointName, subscriberPath.getPath(), wrappedContext);
         MessageContext synCtx = getSynapseMessageContext(tenantDomain);
         InboundEndpoint endpoint = synCtx.getConfiguration().getInboundEndpoint(endpointName);
         synCtx.setProperty(InboundWebsocketConstants.CONNECTION_TERMINATE, new Boolean(true));
@@ -563,4 +565,8 @@ public class InboundWebsocketSourceHandler extends ChannelInboundHandlerAdapter
         this.portOffset = portOffset;
     }
 
+    public void setSlowConsumerPolicy(InboundWebsocketChannelContext.SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
 }
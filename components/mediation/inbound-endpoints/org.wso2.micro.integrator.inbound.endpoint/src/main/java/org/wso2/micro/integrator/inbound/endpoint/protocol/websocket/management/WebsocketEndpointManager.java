@@ -143,6 +143,8 @@ public class WebsocketEndpointManager extends AbstractInboundEndpointManager {
         handler.setPipelineHandler(PipelineHandlerBuilderUtil.stringToPipelineHandlers(config.getPipelineHandler()));
         handler.setDispatchToCustomSequence(config.getDispatchToCustomSequence());
         handler.setPortOffset(PersistenceUtils.getPortOffset(params.getProperties()));
+        handler.setSlowConsumerPolicy(config.getSlowConsumerPolicy());
+        handler.setWriteBufferWaterMarks(config.getWriteBufferHighWaterMark(), config.getWriteBufferLowWaterMark());
         bootstrap.childHandler(handler);
         try {
             bootstrap.bind(new InetSocketAddress(port)).sync();
@@ -178,6 +180,8 @@ public class WebsocketEndpointManager extends AbstractInboundEndpointManager {
         handler.setPipelineHandler(PipelineHandlerBuilderUtil.stringToPipelineHandlers(config.getPipelineHandler()));
         handler.setDispatchToCustomSequence(config.getDispatchToCustomSequence());
         handler.setPortOffset(PersistenceUtils.getPortOffset(params.getProperties()));
+        handler.setSlowConsumerPolicy(config.getSlowConsumerPolicy());
+        handler.setWriteBufferWaterMarks(config.getWriteBufferHighWaterMark(), config.getWriteBufferLowWaterMark());
         bootstrap.childHandler(handler);
         try {
             bootstrap.bind(new InetSocketAddress(port)).sync();
@@ -254,6 +258,12 @@ public class WebsocketEndpointManager extends AbstractInboundEndpointManager {
                 .dispatchToCustomSequence(params.getProperties().getProperty(InboundWebsocketConstants.CUSTOM_SEQUENCE))
                 .usePortOffset(Boolean.valueOf(
                         params.getProperties().getProperty(InboundWebsocketConstants.WEBSOCKET_USE_PORT_OFFSET)))
+                .slowConsumerPolicy(
+                        params.getProperties().getProperty(InboundWebsocketConstants.WEBSOCKET_SLOW_CONSUMER_POLICY))
+                .writeBufferHighWaterMark(params.getProperties().getProperty(
+                        InboundWebsocketConstants.WEBSOCKET_WRITE_BUFFER_HIGH_WATER_MARK))
+                .writeBufferLowWaterMark(params.getProperties().getProperty(
+                        InboundWebsocketConstants.WEBSOCKET_WRITE_BUFFER_LOW_WATER_MARK))
                 .build();
     }
 
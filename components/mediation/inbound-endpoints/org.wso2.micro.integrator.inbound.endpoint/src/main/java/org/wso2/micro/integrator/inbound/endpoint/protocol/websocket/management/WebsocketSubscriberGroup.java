@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.management;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.InboundWebsocketChannelContext;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Subscribers of a subscriber path, grouped by the event loop of their channels. A broadcast is handed over to each
+ * event loop as a single task, which writes the frame to the subscribers of that event loop and flushes them once,
+ * after the broadcasts already queued on the event loop are written.
+ * <p>
+ * Text and binary frames are encoded once per broadcast, and the encoded buffer is shared by all the subscribers.
+ */
+class WebsocketSubscriberGroup {
+
+    private static final Log log = LogFactory.getLog(WebsocketSubscriberGroup.class);
+
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_BINARY = 0x2;
+    private static final int COPY_THRESHOLD = 1024;
+
+    private final ConcurrentHashMap<EventLoop, EventLoopSubscribers> subscribersByEventLoop =
+            new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    boolean add(InboundWebsocketChannelContext context) {
+        EventLoop eventLoop = context.getChannelHandlerContext().channel().eventLoop();
+        EventLoopSubscribers subscribers = subscribersByEventLoop.computeIfAbsent(eventLoop,
+                                                                                  EventLoopSubscribers::new);
+        if (subscribers.contexts.putIfAbsent(context.getChannelIdentifier(), context) == null) {
+            size.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    boolean remove(InboundWebsocketChannelContext context) {
+        EventLoopSubscribers subscribers = subscribersByEventLoop
+                .get(context.getChannelHandlerContext().channel().eventLoop());
+        if (subscribers != null && subscribers.contexts.remove(context.getChannelIdentifier()) != null) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    List<InboundWebsocketChannelContext> getSubscribers() {
+        List<InboundWebsocketChannelContext> contexts = new ArrayList<>(size.get());
+        for (EventLoopSubscribers subscribers : subscribersByEventLoop.values()) {
+            contexts.addAll(subscribers.contexts.values());
+        }
+        return contexts;
+    }
+
+    /**
+     * Write the frame to all the subscribers except the given one, without waiting for the writes.
+     *
+     * @param frame                     frame to write, which is released once handed over to the event loops
+     * @param excludedChannelIdentifier channel to which the frame is not written, or null
+     */
+    void broadcast(WebSocketFrame frame, String excludedChannelIdentifier) {
+        boolean dataFrame = frame.isFinalFragment() && (frame instanceof TextWebSocketFrame
+                || frame instanceof BinaryWebSocketFrame);
+        ByteBuf encodedFrame = dataFrame ? encode(frame) : null;
+        try {
+            for (EventLoopSubscribers subscribers : subscribersByEventLoop.values()) {
+                if (!subscribers.contexts.isEmpty()) {
+                    subscribers.dispatch(frame.retain(), encodedFrame == null ? null : encodedFrame.retain(),
+                                         dataFrame, excludedChannelIdentifier);
+                }
+            }
+        } finally {
+            ReferenceCountUtil.release(encodedFrame);
+            frame.release();
+        }
+    }
+
+    /**
+     * Encode an unfragmented frame in the RFC 6455 wire format, as sent by a server without masking.
+     */
+    static ByteBuf encode(WebSocketFrame frame) {
+        ByteBuf content = frame.content();
+        int length = content.readableBytes();
+        int opcode = frame instanceof TextWebSocketFrame ? OPCODE_TEXT : OPCODE_BINARY;
+        int headerLength = length <= 125 ? 2 : (length <= 0xFFFF ? 4 : 10);
+        ByteBuf header = Unpooled.buffer(length < COPY_THRESHOLD ? headerLength + length : headerLength);
+        header.writeByte(0x80 | (frame.rsv() & 0x7) << 4 | opcode);
+        if (length <= 125) {
+            header.writeByte(length);
+        } else if (length <= 0xFFFF) {
+            header.writeByte(126);
+            header.writeShort(length);
+        } else {
+            header.writeByte(127);
+            header.writeLong(length);
+        }
+        if (length < COPY_THRESHOLD) {
+            header.writeBytes(content, content.readerIndex(), length);
+            return header;
+        }
+        return Unpooled.wrappedBuffer(header, content.duplicate().retain());
+    }
+
+    /**
+     * Subscribers whose channels are served by the same event loop. The channels waiting for a flush are only
+     * accessed by the event loop.
+     */
+    private static class EventLoopSubscribers implements Runnable {
+
+        final ConcurrentHashMap<String, InboundWebsocketChannelContext> contexts = new ConcurrentHashMap<>();
+
+        private final EventLoop eventLoop;
+
+        private final Set<Channel> unflushedChannels = new HashSet<>();
+
+        private boolean flushScheduled;
+
+        EventLoopSubscribers(EventLoop eventLoop) {
+            this.eventLoop = eventLoop;
+        }
+
+        void dispatch(final WebSocketFrame frame, final ByteBuf encodedFrame, final boolean dataFrame,
+                      final String excludedChannelIdentifier) {
+            try {
+                eventLoop.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            write(frame, encodedFrame, dataFrame, excludedChannelIdentifier);
+                        } catch (Exception e) {
+                            log.error("Error while broadcasting the frame to the subscribers", e);
+                        } finally {
+                            ReferenceCountUtil.release(frame);
+                            ReferenceCountUtil.release(encodedFrame);
+                        }
+                    }
+                });
+            } catch (RuntimeException e) {
+                ReferenceCountUtil.release(frame);
+                ReferenceCountUtil.release(encodedFrame);
+                log.error("Unable to hand over the broadcast to the event loop", e);
+            }
+        }
+
+        private void write(WebSocketFrame frame, ByteBuf encodedFrame, boolean dataFrame,
+                           String excludedChannelIdentifier) {
+            for (InboundWebsocketChannelContext context : contexts.values()) {
+                if (context.getChannelIdentifier().equals(excludedChannelIdentifier)) {
+                    continue;
+                }
+                Channel channel = context.getChannelHandlerContext().channel();
+                if (!channel.isActive()) {
+                    continue;
+                }
+                if (dataFrame && !channel.isWritable() && isSlowConsumerSkipped(context, channel)) {
+                    continue;
+                }
+                if (encodedFrame != null && context.acceptsEncodedFrames()) {
+                    channel.write(encodedFrame.duplicate().retain());
+                } else {
+                    channel.write(frame.duplicate().retain());
+                }
+                unflushedChannels.add(channel);
+            }
+            if (!flushScheduled && !unflushedChannels.isEmpty()) {
+                flushScheduled = true;
+                eventLoop.execute(this);
+            }
+        }
+
+        private boolean isSlowConsumerSkipped(InboundWebsocketChannelContext context, Channel channel) {
+            switch (context.getSlowConsumerPolicy()) {
+            case DROP:
+                if (log.isDebugEnabled()) {
+                    log.debug("Dropping the broadcast frame for the slow subscriber on context id : " + channel);
+                }
+                return true;
+            case DISCONNECT:
+                log.warn("Disconnecting the slow subscriber on context id : " + channel);
+                channel.close();
+                return true;
+            default:
+                return false;
+            }
+        }
+
+        /**
+         * Flush the channels written by the broadcasts since the last flush.
+         */
+        @Override
+        public void run() {
+            flushScheduled = false;
+            for (Channel channel : unflushedChannels) {
+                channel.flush();
+            }
+            unflushedChannels.clear();
+        }
+    }
+}
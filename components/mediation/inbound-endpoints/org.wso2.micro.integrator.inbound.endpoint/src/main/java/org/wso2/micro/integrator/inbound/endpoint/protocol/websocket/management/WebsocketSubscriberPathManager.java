@@ -18,91 +18,98 @@
 
 package org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.management;
 
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
 import org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.InboundWebsocketChannelContext;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Registry of the channels subscribed to the subscriber paths of the inbound endpoints. The subscribers are added and
+ * removed atomically, hence a broadcast never blocks a subscription, and a channel is removed once it is closed.
+ */
 public class WebsocketSubscriberPathManager {
 
-    private static WebsocketSubscriberPathManager instance = null;
+    private static final WebsocketSubscriberPathManager instance = new WebsocketSubscriberPathManager();
 
-    private ConcurrentHashMap<String, ConcurrentHashMap<String, List<InboundWebsocketChannelContext>>> inboundSubscriberPathMap = new ConcurrentHashMap<String, ConcurrentHashMap<String, List<InboundWebsocketChannelContext>>>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, WebsocketSubscriberGroup>>
+            inboundSubscriberPathMap = new ConcurrentHashMap<>();
 
     public static WebsocketSubscriberPathManager getInstance() {
-        if (instance == null) {
-            instance = new WebsocketSubscriberPathManager();
-        }
         return instance;
     }
 
-    public void addChannelContext(String inboundName, String subscriberPath, InboundWebsocketChannelContext ctx) {
-        ConcurrentHashMap<String, List<InboundWebsocketChannelContext>> subscriberPathMap = inboundSubscriberPathMap
-                .get(inboundName);
-        if (subscriberPathMap == null) {
-            subscriberPathMap = new ConcurrentHashMap<String, List<InboundWebsocketChannelContext>>();
-            ArrayList<InboundWebsocketChannelContext> listContext = new ArrayList<InboundWebsocketChannelContext>();
-            listContext.add(ctx);
-            subscriberPathMap.put(subscriberPath, listContext);
-            inboundSubscriberPathMap.put(inboundName, subscriberPathMap);
-        } else {
-            List<InboundWebsocketChannelContext> listContext = subscriberPathMap.get(subscriberPath);
-            if (listContext == null) {
-                listContext = new ArrayList<InboundWebsocketChannelContext>();
-                listContext.add(ctx);
-                subscriberPathMap.put(subscriberPath, listContext);
-            } else {
-                listContext.add(ctx);
+    public void addChannelContext(final String inboundName, final String subscriberPath,
+                                  final InboundWebsocketChannelContext ctx) {
+        final boolean[] added = new boolean[1];
+        inboundSubscriberPathMap.compute(inboundName, (name, subscriberPathMap) -> {
+            if (subscriberPathMap == null) {
+                subscriberPathMap = new ConcurrentHashMap<>();
             }
+            added[0] = subscriberPathMap.computeIfAbsent(subscriberPath, path -> new WebsocketSubscriberGroup())
+                    .add(ctx);
+            return subscriberPathMap;
+        });
+        if (added[0]) {
+            ctx.getChannelHandlerContext().channel().closeFuture().addListener(new ChannelFutureListener() {
+                @Override
+                public void operationComplete(ChannelFuture future) {
+                    removeChannelContext(inboundName, subscriberPath, ctx);
+                }
+            });
         }
     }
 
-    public void removeChannelContext(String inboundName, String subscriberPath, InboundWebsocketChannelContext ctx) {
-        ConcurrentHashMap<String, List<InboundWebsocketChannelContext>> subscriberPathMap = inboundSubscriberPathMap
-                .get(inboundName);
-        List<InboundWebsocketChannelContext> listContext = subscriberPathMap.get(subscriberPath);
-        for (Object context : listContext.toArray()) {
-            if (((InboundWebsocketChannelContext) context).getChannelIdentifier().equals(ctx.getChannelIdentifier())) {
-                listContext.remove(context);
-                break;
-            }
-        }
-        if (listContext.isEmpty()) {
-            listContext.clear();
-            subscriberPathMap.remove(subscriberPath);
-        }
-        if (subscriberPathMap.isEmpty()) {
-            subscriberPathMap.clear();
-            inboundSubscriberPathMap.remove(inboundName);
-        }
+    public void removeChannelContext(String inboundName, final String subscriberPath,
+                                     final InboundWebsocketChannelContext ctx) {
+        inboundSubscriberPathMap.computeIfPresent(inboundName, (name, subscriberPathMap) -> {
+            subscriberPathMap.computeIfPresent(subscriberPath, (path, group) -> {
+                group.remove(ctx);
+                return group.isEmpty() ? null : group;
+            });
+            return subscriberPathMap.isEmpty() ? null : subscriberPathMap;
+        });
     }
 
+    /**
+     * @return a snapshot of the channels subscribed to the subscriber path
+     */
     public List<InboundWebsocketChannelContext> getSubscriberPathChannelContextList(String inboundName,
                                                                                     String subscriberPath) {
-        return inboundSubscriberPathMap.get(inboundName).get(subscriberPath);
+        WebsocketSubscriberGroup group = getSubscriberGroup(inboundName, subscriberPath);
+        if (group == null) {
+            return Collections.emptyList();
+        }
+        return group.getSubscribers();
     }
 
     public void broadcastOnSubscriberPath(WebSocketFrame frame, String inboundName, String subscriberPath) {
-        List<InboundWebsocketChannelContext> contextList = getSubscriberPathChannelContextList(inboundName,
-                                                                                               subscriberPath);
-        for (InboundWebsocketChannelContext context : contextList) {
-            WebSocketFrame duplicatedFrame = frame.duplicate();
-            context.writeToChannel(duplicatedFrame);
-        }
+        broadcast(frame, inboundName, subscriberPath, null);
     }
 
     public void exclusiveBroadcastOnSubscriberPath(WebSocketFrame frame, String inboundName, String subscriberPath,
                                                    InboundWebsocketChannelContext ctx) {
-        List<InboundWebsocketChannelContext> contextList = getSubscriberPathChannelContextList(inboundName,
-                                                                                               subscriberPath);
-        for (InboundWebsocketChannelContext context : contextList) {
-            if (!context.getChannelIdentifier().equals(ctx.getChannelIdentifier())) {
-                WebSocketFrame duplicatedFrame = frame.duplicate();
-                context.writeToChannel(duplicatedFrame);
-            }
+        broadcast(frame, inboundName, subscriberPath, ctx.getChannelIdentifier());
+    }
+
+    private void broadcast(WebSocketFrame frame, String inboundName, String subscriberPath,
+                           String excludedChannelIdentifier) {
+        WebsocketSubscriberGroup group = getSubscriberGroup(inboundName, subscriberPath);
+        if (group == null) {
+            ReferenceCountUtil.release(frame);
+            return;
         }
+        group.broadcast(frame, excludedChannelIdentifier);
+    }
+
+    private WebsocketSubscriberGroup getSubscriberGroup(String inboundName, String subscriberPath) {
+        ConcurrentHashMap<String, WebsocketSubscriberGroup> subscriberPathMap = inboundSubscriberPathMap
+                .get(inboundName);
+        return subscriberPathMap == null ? null : subscriberPathMap.get(subscriberPath);
     }
 
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package endpoint.protocol.file.tests;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.commons.vfs.VFSConstants;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.inbound.InboundEndpoint;
+import org.apache.synapse.mediators.base.SequenceMediator;
+import org.junit.Test;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.file.FileInjectHandler;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.file.FilePollingConsumer;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class FilePollingConsumerTest extends TestCase {
+
+    private static final String INBOUND_EP_NAME = "testFileConsumer";
+
+    private static final String SEQUENCE_NAME = "testFileSequence";
+
+    private static final int FILE_COUNT = 40;
+
+    private Path directory;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("file-polling-consumer");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Test that each message injected by the file processing threads carries the transport headers of its own file
+     */
+    @Test
+    public void testTransportHeadersOfParallelFiles() throws Exception {
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String fileName = "file" + i + ".dat";
+            Files.write(directory.resolve(fileName), ("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/"
+                    + "soap/envelope/\"><soapenv:Body><file>" + fileName + "</file></soapenv:Body></soapenv:Envelope>")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        Properties vfsProperties = new Properties();
+        vfsProperties.setProperty(VFSConstants.TRANSPORT_FILE_FILE_URI, directory.toUri().toString());
+        vfsProperties.setProperty(VFSConstants.TRANSPORT_FILE_LOCKING, VFSConstants.TRANSPORT_FILE_LOCKING_DISABLED);
+        vfsProperties.setProperty("transport.vfs.FileProcessingThreadCount", "4");
+
+        MediationEnvironment environment = new MediationEnvironment();
+        FilePollingConsumer consumer = new FilePollingConsumer(vfsProperties, INBOUND_EP_NAME,
+                                                               environment.synapseEnvironment, 1000);
+        consumer.registerHandler(new FileInjectHandler(SEQUENCE_NAME, null, false, environment.synapseEnvironment,
+                                                       vfsProperties));
+        consumer.poll();
+
+        Assert.assertEquals(Collections.emptyList(), environment.mismatches);
+        Assert.assertEquals("Each file is injected once", FILE_COUNT, environment.injectedFiles.size());
+        Assert.assertEquals("Processed files are deleted", 0, directory.toFile().list().length);
+    }
+
+    /**
+     * Test that the file system manager is not closed by destroying the consumer while a polling cycle is running,
+     * and that the cycle stops processing the files once the consumer is destroyed
+     */
+    @Test
+    public void testDestroyWaitsForPollingCycle() throws Exception {
+        for (int i = 0; i < FILE_COUNT; i++) {
+            String fileName = "file" + i + ".dat";
+            Files.write(directory.resolve(fileName), ("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/"
+                    + "soap/envelope/\"><soapenv:Body><file>" + fileName + "</file></soapenv:Body></soapenv:Envelope>")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        Properties vfsProperties = new Properties();
+        vfsProperties.setProperty(VFSConstants.TRANSPORT_FILE_FILE_URI, directory.toUri().toString());
+        vfsProperties.setProperty(VFSConstants.TRANSPORT_FILE_LOCKING, VFSConstants.TRANSPORT_FILE_LOCKING_DISABLED);
+
+        final MediationEnvironment environment = new MediationEnvironment();
+        environment.injectReleased = new CountDownLatch(1);
+        final FilePollingConsumer consumer = new FilePollingConsumer(vfsProperties, INBOUND_EP_NAME,
+                                                                     environment.synapseEnvironment, 1000);
+        consumer.registerHandler(new FileInjectHandler(SEQUENCE_NAME, null, true, environment.synapseEnvironment,
+                                                       vfsProperties));
+        Thread polling = new Thread(consumer::execute);
+        polling.start();
+        Assert.assertTrue("File not injected", environment.injectStarted.await(10, TimeUnit.SECONDS));
+
+        Thread destroying = new Thread(consumer::destroy);
+        destroying.start();
+        destroying.join(500);
+        Assert.assertTrue("Consumer destroyed while a file is being processed", destroying.isAlive());
+
+        environment.injectReleased.countDown();
+        destroying.join(10000);
+        polling.join(10000);
+        Assert.assertFalse("Consumer not destroyed after the polling cycle", destroying.isAlive());
+        Assert.assertFalse(polling.isAlive());
+        Assert.assertEquals(Collections.emptyList(), environment.mismatches);
+        Assert.assertEquals("Files processed after the consumer was destroyed", 1, environment.injectedFiles.size());
+        Assert.assertEquals("File being processed is not deleted", FILE_COUNT - 1, directory.toFile().list().length);
+
+        // a cycle started after the consumer was destroyed does not poll the directory
+        consumer.execute();
+        Assert.assertEquals(1, environment.injectedFiles.size());
+    }
+
+    /**
+     * Stand-in for the synapse environment, which records the file each message is read from, and reports the
+     * messages whose transport headers belong to another file.
+     */
+    private static class MediationEnvironment {
+
+        final Map<String, Boolean> injectedFiles = new ConcurrentHashMap<>();
+
+        final List<String> mismatches = Collections.synchronizedList(new ArrayList<String>());
+
+        final CountDownLatch injectStarted = new CountDownLatch(1);
+
+        /**
+         * Holds the injected messages until it is counted down, if set
+         */
+        volatile CountDownLatch injectReleased;
+
+        final SynapseConfiguration configuration = new SynapseConfiguration();
+
+        final SynapseEnvironment synapseEnvironment = (SynapseEnvironment) Proxy.newProxyInstance(
+                SynapseEnvironment.class.getClassLoader(), new Class[] { SynapseEnvironment.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "createMessageContext":
+                        return new Axis2MessageContext(new org.apache.axis2.context.MessageContext(), configuration,
+                                                       (SynapseEnvironment) proxy);
+                    case "getSynapseConfiguration":
+                        return configuration;
+                    case "injectInbound":
+                        inject((MessageContext) args[0]);
+                        return true;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "MediationEnvironment";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        MediationEnvironment() {
+            InboundEndpoint inboundEndpoint = new InboundEndpoint();
+            inboundEndpoint.setName(INBOUND_EP_NAME);
+            configuration.addInboundEndpoint(INBOUND_EP_NAME, inboundEndpoint);
+            configuration.addSequence(SEQUENCE_NAME, new SequenceMediator() {
+                @Override
+                public boolean isInitialized() {
+                    return true;
+                }
+            });
+        }
+
+        private void inject(MessageContext synCtx) throws InterruptedException {
+            injectStarted.countDown();
+            if (injectReleased != null) {
+                injectReleased.await();
+            }
+            // overlaps the processing of the files
+            Thread.sleep(5);
+            String fileName = ((OMElement) synCtx.getEnvelope().getBody().getFirstElement()).getText();
+            Map headers = (Map) ((Axis2MessageContext) synCtx).getAxis2MessageContext()
+                    .getProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+            if (!fileName.equals(headers.get(VFSConstants.FILE_NAME))
+                    || !String.valueOf(headers.get(VFSConstants.FILE_PATH)).endsWith("/" + fileName)
+                    || !String.valueOf(headers.get(VFSConstants.FILE_URI)).endsWith("/" + fileName)) {
+                mismatches.add(fileName + " injected with headers " + headers);
+            }
+            if (injectedFiles.put(fileName, true) != null) {
+                mismatches.add(fileName + " injected twice");
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package endpoint.protocol.jms.tests;
+
+import endpoint.protocol.jms.JMSBrokerController;
+import endpoint.protocol.jms.JMSTestsUtils;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.apache.axiom.om.OMElement;
+import org.apache.synapse.MessageContext;
+import org.apache.synapse.config.SynapseConfiguration;
+import org.apache.synapse.core.SynapseEnvironment;
+import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.inbound.InboundEndpoint;
+import org.apache.synapse.inbound.InboundProcessorParams;
+import org.apache.synapse.mediators.base.SequenceMediator;
+import org.junit.Test;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.PollingConstants;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSConstants;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSConsumerScaler;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSInjectHandler;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSPollingConsumer;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSProcessor;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.jms.JMSTask;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.jms.Queue;
+
+public class JMSConsumerScalerTest extends TestCase {
+
+    private static final String PROVIDER_URL = "tcp://127.0.0.1:61616";
+    private static final String INBOUND_EP_NAME = "testScaling";
+    private static final long INTERVAL = 1000;
+    private static final long COOLDOWN = 30000;
+    private static final String SEQUENCE_NAME = "testScalingSequence";
+    private static final long TIMEOUT = 20000;
+
+    /**
+     * Test adding a consumer when most of the receive calls return a message
+     */
+    @Test
+    public void testScaleUpWhenBusy() {
+        JMSConsumerScaler scaler = new JMSConsumerScaler(1, 4, COOLDOWN, 0.9, -1, 3);
+        for (int i = 0; i < 10; i++) {
+            scaler.messageReceived(-1);
+        }
+        JMSConsumerScaler.Decision decision = scaler.evaluate(1, 0);
+        Assert.assertTrue("Consumers are not scaled up", decision.isScaleUp());
+        Assert.assertEquals(2, decision.getTargetConsumers());
+        Assert.assertEquals(1, scaler.getScaleUpCount());
+        Assert.assertSame(decision, scaler.getLastDecision());
+    }
+
+    /**
+     * Test that no decision is made within the cool-down period of the previous decision
+     */
+    @Test
+    public void testCooldown() {
+        JMSConsumerScaler scaler = new JMSConsumerScaler(1, 4, COOLDOWN, 0.9, -1, 3);
+        scaler.messageReceived(-1);
+        Assert.assertTrue(scaler.evaluate(1, 0).isScaleUp());
+        scaler.messageReceived(-1);
+        JMSConsumerScaler.Decision decision = scaler.evaluate(2, COOLDOWN - 1);
+        Assert.assertFalse("Consumers are scaled within the cool-down period", decision.isScaleUp());
+        scaler.messageReceived(-1);
+        Assert.assertTrue(scaler.evaluate(2, COOLDOWN).isScaleUp());
+        Assert.assertEquals(2, scaler.getScaleUpCount());
+    }
+
+    /**
+     * Test adding a consumer when the age of the received messages exceeds the limit and keeps growing
+     */
+    @Test
+    public void testScaleUpOnGrowingMessageAge() {
+        JMSConsumerScaler scaler = new JMSConsumerScaler(1, 4, 0, 0.9, 1000, 3);
+        scaler.messageReceived(1500);
+        scaler.emptyReceive();
+        Assert.assertTrue(scaler.evaluate(1, 0).isScaleUp());
+        scaler.messageReceived(1200);
+        scaler.emptyReceive();
+        Assert.assertFalse("Consumers are scaled up while the message age is decreasing",
+                           scaler.evaluate(2, 1).isScaleUp());
+    }
+
+    /**
+     * Test retiring a consumer after the configured number of idle intervals, but not below the minimum
+     */
+    @Test
+    public void testScaleDownWhenIdle() {
+        JMSConsumerScaler scaler = new JMSConsumerScaler(1, 4, 0, 0.9, -1, 3);
+        scaler.emptyReceive();
+        Assert.assertFalse(scaler.evaluate(2, 0).isScaleDown());
+        Assert.assertFalse(scaler.evaluate(2, 1).isScaleDown());
+        JMSConsumerScaler.Decision decision = scaler.evaluate(2, 2);
+        Assert.assertTrue("Consumers are not scaled down", decision.isScaleDown());
+        Assert.assertEquals(1, decision.getTargetConsumers());
+        for (int i = 3; i < 10; i++) {
+            Assert.assertFalse("Consumers are scaled below the minimum", scaler.evaluate(1, i).isScaleDown());
+        }
+        Assert.assertEquals(1, scaler.getScaleDownCount());
+    }
+
+    /**
+     * Test keeping the number of consumers within the configured range
+     */
+    @Test
+    public void testClampToRange() {
+        JMSConsumerScaler scaler = new JMSConsumerScaler(2, 4, COOLDOWN, 0.9, -1, 3);
+        Assert.assertEquals(2, scaler.evaluate(1, 0).getTargetConsumers());
+        Assert.assertEquals(4, scaler.evaluate(6, 1).getTargetConsumers());
+    }
+
+    /**
+     * Test creating the scaler from the inbound endpoint parameters
+     */
+    @Test
+    public void testCreateFromProperties() {
+        Properties properties = new Properties();
+        Assert.assertNull("Scaling is enabled without a maximum", JMSConsumerScaler.create(properties, 2));
+        properties.setProperty(JMSConstants.JMS_MIN_CONCURRENT_CONSUMERS, "2");
+        properties.setProperty(JMSConstants.JMS_MAX_CONCURRENT_CONSUMERS, "2");
+        Assert.assertNull("Scaling is enabled for an empty range", JMSConsumerScaler.create(properties, 2));
+        properties.setProperty(JMSConstants.JMS_MAX_CONCURRENT_CONSUMERS, "5");
+        JMSConsumerScaler scaler = JMSConsumerScaler.create(properties, 2);
+        Assert.assertNotNull(scaler);
+        Assert.assertEquals(2, scaler.getMinConsumers());
+        Assert.assertEquals(5, scaler.getMaxConsumers());
+    }
+
+    /**
+     * Test that a polling consumer reports a backlog to the scaler
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testScaleUpOnQueueBacklog() throws Exception {
+        String queueName = "testScalingQueue";
+        Properties jmsProperties = JMSTestsUtils.getJMSPropertiesForDestination(queueName, PROVIDER_URL, true);
+        JMSBrokerController brokerController = new JMSBrokerController(PROVIDER_URL, jmsProperties);
+        JMSConsumerScaler scaler = new JMSConsumerScaler(1, 4, COOLDOWN, 0.9, -1, 3);
+        try {
+            brokerController.startProcess();
+            brokerController.connect(queueName, true);
+            for (int i = 0; i < 5; i++) {
+                brokerController.pushMessage("<msg>" + i + "</msg>");
+            }
+            JMSPollingConsumer jmsPollingConsumer = new JMSPollingConsumer(jmsProperties, INTERVAL, INBOUND_EP_NAME);
+            jmsPollingConsumer.setConsumerScaler(scaler);
+            for (int i = 0; i < 5; i++) {
+                Assert.assertNotNull("Received message is null",
+                                     JMSTestsUtils.pollMessagesFromDestination(jmsPollingConsumer));
+            }
+            JMSConsumerScaler.Decision decision = scaler.evaluate(1, System.currentTimeMillis());
+            Assert.assertTrue("Consumers are not scaled up for the backlog", decision.isScaleUp());
+        } finally {
+            brokerController.disconnect();
+            brokerController.stopProcess();
+        }
+    }
+
+    /**
+     * Test that deleting the task of a consumer, e.g. when the consumers are scaled down with coordination, lets the
+     * consumer complete the message it is processing instead of closing its session
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTaskDeletionCompletesInFlightMessage() throws Exception {
+        String queueName = "testTaskDeletionQueue";
+        Properties jmsProperties = getTransactedProperties(queueName);
+        JMSBrokerController brokerController = new JMSBrokerController(
+                PROVIDER_URL, JMSTestsUtils.getJMSPropertiesForDestination(queueName, PROVIDER_URL, true));
+        try {
+            brokerController.startProcess();
+            Queue queue = brokerController.connect(queueName, true);
+            brokerController.pushMessage("<msg>0</msg>");
+
+            CountDownLatch received = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger invocations = new AtomicInteger();
+            JMSPollingConsumer jmsPollingConsumer = new JMSPollingConsumer(jmsProperties, INTERVAL, INBOUND_EP_NAME);
+            jmsPollingConsumer.registerHandler(new JMSInjectHandler(SEQUENCE_NAME, null, true, null, jmsProperties) {
+                @Override
+                public boolean invoke(Object object, String name) {
+                    invocations.incrementAndGet();
+                    received.countDown();
+                    try {
+                        return release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+            });
+            Thread pollingThread = new Thread(jmsPollingConsumer::execute);
+            pollingThread.start();
+            Assert.assertTrue("Message is not received", received.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+            new JMSTask(jmsPollingConsumer, INTERVAL).notifyLocalTaskDeletion(INBOUND_EP_NAME);
+            release.countDown();
+            pollingThread.join(TIMEOUT);
+
+            Assert.assertEquals("Message is processed more than once", 1, invocations.get());
+            Assert.assertNull("In-flight message is rolled back", brokerController.receiveMessage(queue));
+        } finally {
+            brokerController.disconnect();
+            brokerController.stopProcess();
+        }
+    }
+
+    /**
+     * Test that the processor adds a consumer for a backlog and retires it when idle, while the message the retired
+     * consumer is processing is completed
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testProcessorScalesConsumers() throws Exception {
+        String queueName = "testProcessorScalingQueue";
+        Properties jmsProperties = getTransactedProperties(queueName);
+        jmsProperties.setProperty(PollingConstants.INBOUND_COORDINATION, "false");
+        jmsProperties.setProperty(PollingConstants.INBOUND_ENDPOINT_INTERVAL, "100");
+        jmsProperties.setProperty(JMSConstants.JMS_MIN_CONCURRENT_CONSUMERS, "1");
+        jmsProperties.setProperty(JMSConstants.JMS_MAX_CONCURRENT_CONSUMERS, "2");
+        jmsProperties.setProperty(JMSConstants.JMS_CONSUMER_SCALING_INTERVAL, "500");
+        jmsProperties.setProperty(JMSConstants.JMS_CONSUMER_SCALING_COOLDOWN, "0");
+        jmsProperties.setProperty(JMSConstants.JMS_CONSUMER_SCALING_IDLE_INTERVALS, "2");
+        JMSBrokerController brokerController = new JMSBrokerController(
+                PROVIDER_URL, JMSTestsUtils.getJMSPropertiesForDestination(queueName, PROVIDER_URL, true));
+        MediationEnvironment environment = new MediationEnvironment();
+        JMSProcessor processor = null;
+        try {
+            brokerController.startProcess();
+            Queue queue = brokerController.connect(queueName, true);
+            // the first consumer holds the first message, hence the second one is only received by an added consumer
+            brokerController.pushMessage(createMessage("first"));
+            brokerController.pushMessage(createMessage("second"));
+
+            InboundProcessorParams params = new InboundProcessorParams();
+            params.setName(INBOUND_EP_NAME);
+            params.setProperties(jmsProperties);
+            params.setInjectingSeq(SEQUENCE_NAME);
+            params.setSynapseEnvironment(environment.synapseEnvironment);
+            processor = new JMSProcessor(params);
+            processor.init();
+            JMSProcessor jmsProcessor = processor;
+            Assert.assertEquals(1, jmsProcessor.getConsumerCount());
+
+            await("Consumers are not scaled up", () -> jmsProcessor.getConsumerScaler().getScaleUpCount() == 1);
+            await("Added consumer does not receive a message", () -> environment.injections.size() == 2);
+            await("Consumers are not scaled down", () -> jmsProcessor.getConsumerScaler().getScaleDownCount() == 1);
+            Assert.assertEquals(1, jmsProcessor.getConsumerCount());
+
+            environment.release.countDown();
+            await("In-flight messages are not completed", () -> environment.completions.get() == 2);
+            processor.destroy();
+            processor = null;
+
+            Assert.assertEquals(Integer.valueOf(1), environment.injections.get("first"));
+            Assert.assertEquals("Message of the retired consumer is processed more than once", Integer.valueOf(1),
+                                environment.injections.get("second"));
+            Assert.assertNull("Message of the retired consumer is rolled back", brokerController.receiveMessage(queue));
+        } finally {
+            environment.release.countDown();
+            if (processor != null) {
+                processor.destroy();
+            }
+            brokerController.disconnect();
+            brokerController.stopProcess();
+        }
+    }
+
+    /**
+     * Properties of a transacted consumer, which commits a message only after it is processed. Messages are not
+     * prefetched, hence they are received by the consumer which is free.
+     */
+    private static Properties getTransactedProperties(String queueName) {
+        Properties jmsProperties = JMSTestsUtils.getJMSPropertiesForDestination(queueName, PROVIDER_URL, true);
+        jmsProperties.setProperty(JMSConstants.PROVIDER_URL, PROVIDER_URL + "?jms.prefetchPolicy.all=0");
+        jmsProperties.setProperty(JMSConstants.SESSION_TRANSACTED, "true");
+        jmsProperties.setProperty(JMSConstants.RECEIVER_TIMEOUT, "500");
+        return jmsProperties;
+    }
+
+    private static String createMessage(String content) {
+        return "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\"><soapenv:Body><msg>"
+                + content + "</msg></soapenv:Body></soapenv:Envelope>";
+    }
+
+    private static void await(String message, Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail(message);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    /**
+     * Stand-in for the synapse environment, which holds the injected messages until they are released.
+     */
+    private static class MediationEnvironment {
+
+        final Map<String, Integer> injections = new ConcurrentHashMap<>();
+
+        final AtomicInteger completions = new AtomicInteger();
+
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final SynapseConfiguration configuration = new SynapseConfiguration();
+
+        final SynapseEnvironment synapseEnvironment = (SynapseEnvironment) Proxy.newProxyInstance(
+                SynapseEnvironment.class.getClassLoader(), new Class[] { SynapseEnvironment.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "createMessageContext":
+                        return new Axis2MessageContext(new org.apache.axis2.context.MessageContext(), configuration,
+                                                       (SynapseEnvironment) proxy);
+                    case "getSynapseConfiguration":
+                        return configuration;
+                    case "injectInbound":
+                        return inject((MessageContext) args[0]);
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "MediationEnvironment";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+
+        MediationEnvironment() {
+            InboundEndpoint inboundEndpoint = new InboundEndpoint();
+            inboundEndpoint.setName(INBOUND_EP_NAME);
+            configuration.addInboundEndpoint(INBOUND_EP_NAME, inboundEndpoint);
+            configuration.addSequence(SEQUENCE_NAME, new SequenceMediator() {
+                @Override
+                public boolean isInitialized() {
+                    return true;
+                }
+            });
+        }
+
+        private boolean inject(MessageContext synCtx) throws InterruptedException {
+            String content = ((OMElement) synCtx.getEnvelope().getBody().getFirstElement()).getText();
+            injections.merge(content, 1, Integer::sum);
+            boolean released = release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+            completions.incrementAndGet();
+            return released;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package endpoint.protocol.kafka.tests;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetCommitCallback;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.kafka.InjectHandler;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.kafka.KAFKAConstants;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.kafka.PartitionedKafkaMessageListener;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the offset commits, retries and rebalance handling of the partitioned Kafka consumer, against a mock consumer
+ * given through the createConsumer hook.
+ */
+public class PartitionedKafkaMessageListenerTest extends TestCase {
+
+    private static final String TOPIC = "test";
+
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+    private static final long TIMEOUT = 10000;
+
+    private RecordingInjectHandler injectHandler;
+
+    private TestConsumer consumer;
+
+    private PartitionedKafkaMessageListener listener;
+
+    @Override
+    protected void setUp() throws Exception {
+        injectHandler = new RecordingInjectHandler();
+        consumer = new TestConsumer(injectHandler, PARTITION_0, PARTITION_1);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (listener != null) {
+            listener.destroy();
+        }
+    }
+
+    /**
+     * Test that the offsets are committed in batches once the records are mediated, and that all the mediated records
+     * are committed upon shutdown
+     */
+    @Test
+    public void testCommitAfterMediation() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(KAFKAConstants.COMMIT_BATCH_SIZE, "10");
+        properties.setProperty(KAFKAConstants.COMMIT_INTERVAL, "60000");
+        startListener("testKafkaCommit", properties);
+
+        consumer.send(PARTITION_0, 25);
+        consumer.send(PARTITION_1, 15);
+        waitFor("Records are not mediated", () -> injectHandler.mediatedCount(PARTITION_0) == 25
+                && injectHandler.mediatedCount(PARTITION_1) == 15);
+        waitFor("A batch of records is not committed", () -> consumer.committedOffset(PARTITION_0) >= 10);
+
+        stopListener();
+        Assert.assertEquals(25L, consumer.committedOffset(PARTITION_0));
+        Assert.assertEquals(15L, consumer.committedOffset(PARTITION_1));
+        Assert.assertFalse("An offset is committed before its record is mediated", consumer.earlyCommit);
+        Assert.assertEquals(offsets(0, 25), injectHandler.mediated(PARTITION_0));
+        Assert.assertEquals(offsets(0, 15), injectHandler.mediated(PARTITION_1));
+    }
+
+    /**
+     * Test that a record failing mediation is consumed again along with the records after it, and that it is skipped
+     * once the retries are exhausted
+     */
+    @Test
+    public void testFailedRecordRetriedAndSkipped() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(KAFKAConstants.MAX_RETRY_COUNT, "2");
+        properties.setProperty(KAFKAConstants.RETRY_INTERVAL, "50");
+        properties.setProperty(KAFKAConstants.COMMIT_INTERVAL, "60000");
+        injectHandler.failingRecord = value(PARTITION_0, 3);
+        startListener("testKafkaRetry", properties);
+
+        consumer.send(PARTITION_0, 6);
+        waitFor("Records after the skipped record are not mediated",
+                () -> injectHandler.mediatedCount(PARTITION_0) == 5);
+
+        Assert.assertEquals(Arrays.asList(0L, 1L, 2L, 4L, 5L), injectHandler.mediated(PARTITION_0));
+        Assert.assertEquals(3, injectHandler.attempts(value(PARTITION_0, 3)));
+        Assert.assertEquals(1, injectHandler.attempts(value(PARTITION_0, 2)));
+        Assert.assertEquals(1, injectHandler.attempts(value(PARTITION_0, 4)));
+        Assert.assertEquals(3L, listener.getFailedRecords());
+        Assert.assertEquals(1L, listener.getSkippedRecords());
+
+        stopListener();
+        Assert.assertEquals(6L, consumer.committedOffset(PARTITION_0));
+        Assert.assertFalse("An offset is committed before its record is mediated", consumer.earlyCommit);
+    }
+
+    /**
+     * Test that the revoked partitions are committed once their records in flight are mediated, before they are handed
+     * over, and that the partitions assigned again are consumed by new workers
+     */
+    @Test
+    public void testRevokedPartitionsCommittedBeforeHandover() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(KAFKAConstants.COMMIT_INTERVAL, "60000");
+        injectHandler.blockingRecord = value(PARTITION_1, 2);
+        startListener("testKafkaRebalance", properties);
+
+        consumer.send(PARTITION_0, 5);
+        consumer.send(PARTITION_1, 5);
+        waitFor("Records are not mediated", () -> injectHandler.mediatedCount(PARTITION_0) == 5);
+        Assert.assertTrue(injectHandler.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        CountDownLatch rebalanced = new CountDownLatch(1);
+        consumer.schedulePollTask(() -> {
+            consumer.rebalanceListener.onPartitionsRevoked(Arrays.asList(PARTITION_0, PARTITION_1));
+            consumer.rebalance(Collections.singletonList(PARTITION_0));
+            consumer.rebalanceListener.onPartitionsAssigned(Collections.singletonList(PARTITION_0));
+            rebalanced.countDown();
+        });
+        // the record in flight completes while the partitions are being revoked
+        Thread.sleep(200);
+        Assert.assertEquals(1, rebalanced.getCount());
+        injectHandler.release.countDown();
+        Assert.assertTrue(rebalanced.await(TIMEOUT, TimeUnit.MILLISECONDS));
+
+        Assert.assertEquals(5L, (long) consumer.syncCommitted.get(PARTITION_0));
+        Assert.assertEquals(3L, (long) consumer.syncCommitted.get(PARTITION_1));
+        Assert.assertEquals(offsets(0, 3), injectHandler.mediated(PARTITION_1));
+        Assert.assertEquals(1, listener.getAssignedPartitions());
+
+        consumer.send(PARTITION_0, 3);
+        waitFor("Records of the assigned partition are not mediated",
+                () -> injectHandler.mediatedCount(PARTITION_0) == 8);
+        stopListener();
+        Assert.assertEquals(8L, (long) consumer.syncCommitted.get(PARTITION_0));
+        Assert.assertEquals(offsets(0, 8), injectHandler.mediated(PARTITION_0));
+        Assert.assertFalse("An offset is committed before its record is mediated", consumer.earlyCommit);
+    }
+
+    private void startListener(String name, Properties properties) throws Exception {
+        listener = new PartitionedKafkaMessageListener(2, Collections.singletonList(TOPIC), properties, injectHandler,
+                                                       name) {
+            @Override
+            protected Consumer<byte[], byte[]> createConsumer(Properties properties) {
+                return consumer;
+            }
+        };
+        Assert.assertTrue(listener.createKafkaConsumerConnector());
+    }
+
+    private void stopListener() {
+        listener.destroy();
+        listener = null;
+    }
+
+    private static void waitFor(String message, Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail(message);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static List<Long> offsets(long from, long to) {
+        List<Long> offsets = new ArrayList<>();
+        for (long offset = from; offset < to; offset++) {
+            offsets.add(offset);
+        }
+        return offsets;
+    }
+
+    private static String value(TopicPartition partition, long offset) {
+        return partition + ":" + offset;
+    }
+
+    /**
+     * Inject handler recording the mediated records, which fails or blocks on the given records.
+     */
+    private static class RecordingInjectHandler implements InjectHandler {
+
+        private final Map<TopicPartition, List<Long>> mediated = new ConcurrentHashMap<>();
+
+        private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        private volatile String failingRecord;
+
+        private volatile String blockingRecord;
+
+        @Override
+        public boolean invoke(Object object, String name) {
+            String value = new String((byte[]) object, StandardCharsets.UTF_8);
+            attempts.computeIfAbsent(value, key -> new AtomicInteger()).incrementAndGet();
+            if (value.equals(blockingRecord)) {
+                blocked.countDown();
+                try {
+                    release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (value.equals(failingRecord)) {
+                return false;
+            }
+            int separator = value.lastIndexOf(':');
+            String partition = value.substring(0, separator);
+            TopicPartition topicPartition = new TopicPartition(TOPIC,
+                    Integer.parseInt(partition.substring(partition.lastIndexOf('-') + 1)));
+            mediated.computeIfAbsent(topicPartition, key -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(Long.parseLong(value.substring(separator + 1)));
+            return true;
+        }
+
+        int mediatedCount(TopicPartition partition) {
+            List<Long> offsets = mediated.get(partition);
+            return offsets == null ? 0 : offsets.size();
+        }
+
+        List<Long> mediated(TopicPartition partition) {
+            List<Long> offsets = mediated.get(partition);
+            if (offsets == null) {
+                return Collections.emptyList();
+            }
+            synchronized (offsets) {
+                return new ArrayList<>(offsets);
+            }
+        }
+
+        int attempts(String value) {
+            AtomicInteger count = attempts.get(value);
+            return count == null ? 0 : count.get();
+        }
+    }
+
+    /**
+     * Mock consumer assigning the given partitions upon subscription, which returns the records sent to a partition
+     * from its fetch position, so that seeking back consumes the records again. The committed offsets are recorded,
+     * as the mock consumer can not be queried once closed.
+     */
+    private static class TestConsumer extends MockConsumer<byte[], byte[]> {
+
+        private final RecordingInjectHandler injectHandler;
+
+        private final List<TopicPartition> partitions;
+
+        private final Map<TopicPartition, List<ConsumerRecord<byte[], byte[]>>> records = new HashMap<>();
+
+        private final Map<TopicPartition, Long> fetchOffsets = new HashMap<>();
+
+        private final Map<TopicPartition, Long> committed = new ConcurrentHashMap<>();
+
+        private final Map<TopicPartition, Long> syncCommitted = new ConcurrentHashMap<>();
+
+        private volatile ConsumerRebalanceListener rebalanceListener;
+
+        private volatile boolean earlyCommit;
+
+        TestConsumer(RecordingInjectHandler injectHandler, TopicPartition... partitions) {
+            super(OffsetResetStrategy.EARLIEST);
+            this.injectHandler = injectHandler;
+            this.partitions = Arrays.asList(partitions);
+            Map<TopicPartition, Long> offsets = new HashMap<>();
+            for (TopicPartition partition : partitions) {
+                offsets.put(partition, 0L);
+                records.put(partition, new ArrayList<>());
+            }
+            updateBeginningOffsets(offsets);
+            updateEndOffsets(offsets);
+        }
+
+        synchronized void send(TopicPartition partition, int count) {
+            List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.get(partition);
+            for (int i = 0; i < count; i++) {
+                long offset = partitionRecords.size();
+                partitionRecords.add(new ConsumerRecord<>(partition.topic(), partition.partition(), offset,
+                        null, value(partition, offset).getBytes(StandardCharsets.UTF_8)));
+            }
+            updateEndOffsets(Collections.singletonMap(partition, (long) partitionRecords.size()));
+        }
+
+        long committedOffset(TopicPartition partition) {
+            Long offset = committed.get(partition);
+            return offset == null ? -1 : offset;
+        }
+
+        @Override
+        public synchronized void subscribe(Collection<String> topics, ConsumerRebalanceListener listener) {
+            super.subscribe(topics, listener);
+            rebalanceListener = listener;
+            rebalance(partitions);
+            listener.onPartitionsAssigned(partitions);
+        }
+
+        @Override
+        public ConsumerRecords<byte[], byte[]> poll(long timeout) {
+            try {
+                // the mock consumer does not wait for records
+                Thread.sleep(Math.min(timeout, 10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                Set<TopicPartition> paused = paused();
+                for (TopicPartition partition : assignment()) {
+                    if (paused.contains(partition)) {
+                        continue;
+                    }
+                    List<ConsumerRecord<byte[], byte[]>> partitionRecords = records.get(partition);
+                    Long fetchOffset = fetchOffsets.get(partition);
+                    for (int i = fetchOffset == null ? 0 : fetchOffset.intValue(); i < partitionRecords.size(); i++) {
+                        addRecord(partitionRecords.get(i));
+                    }
+                    fetchOffsets.put(partition, (long) partitionRecords.size());
+                }
+                return super.poll(timeout);
+            }
+        }
+
+        @Override
+        public synchronized void seek(TopicPartition partition, long offset) {
+            super.seek(partition, offset);
+            fetchOffsets.put(partition, offset);
+        }
+
+        @Override
+        public synchronized void commitSync(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            record(offsets);
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet()) {
+                syncCommitted.put(entry.getKey(), entry.getValue().offset());
+            }
+            super.commitSync(offsets);
+        }
+
+        @Override
+        public synchronized void commitAsync(Map<TopicPartition, OffsetAndMetadata> offsets,
+                                             OffsetCommitCallback callback) {
+            record(offsets);
+            super.commitAsync(offsets, callback);
+        }
+
+        private void record(Map<TopicPartition, OffsetAndMetadata> offsets) {
+            for (Map.Entry<TopicPartition, OffsetAndMetadata> entry : offsets.entrySet()) {
+                long offset = entry.getValue().offset();
+                // the records skipped after failing mediation are not recorded by the inject handler
+                List<Long> mediated = injectHandler.mediated(entry.getKey());
+                if (offset > 0 && !mediated.contains(offset - 1) && !isSkipped(entry.getKey(), offset - 1)) {
+                    earlyCommit = true;
+                }
+                committed.put(entry.getKey(), offset);
+            }
+        }
+
+        private boolean isSkipped(TopicPartition partition, long offset) {
+            String value = value(partition, offset);
+            return value.equals(injectHandler.failingRecord) && injectHandler.attempts(value) > 0;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package endpoint.protocol.rabbitmq.tests;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq.RabbitMQChannelConsumer;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq.RabbitMQInjectHandler;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq.RabbitMQMessage;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.rabbitmq.RabbitMQPrefetchTuner;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class RabbitMQChannelConsumerTest extends TestCase {
+
+    private static final String INBOUND_EP_NAME = "testRabbitMQConsumer";
+
+    /**
+     * Test acknowledging the mediated messages in batches, and flushing the incomplete batch
+     */
+    @Test
+    public void testBatchedAcknowledgement() throws Exception {
+        BrokerChannel broker = new BrokerChannel();
+        RabbitMQChannelConsumer consumer = new RabbitMQChannelConsumer(broker.channel, INBOUND_EP_NAME,
+                                                                       new InjectHandler(), "text/plain", false, 3,
+                                                                       null);
+        for (long tag = 1; tag <= 7; tag++) {
+            deliver(consumer, tag);
+        }
+        Assert.assertEquals(Arrays.asList("ack 3 multiple", "ack 6 multiple"), broker.calls);
+
+        consumer.flushAcknowledgements(TimeUnit.HOURS.toMillis(1));
+        Assert.assertEquals("Batch is flushed before the timeout", 2, broker.calls.size());
+        consumer.flushAcknowledgements();
+        Assert.assertEquals("ack 7 multiple", broker.calls.get(2));
+        consumer.flushAcknowledgements();
+        Assert.assertEquals("Acknowledgement is sent twice", 3, broker.calls.size());
+    }
+
+    /**
+     * Test that a failed message is requeued after acknowledging the messages delivered before it
+     */
+    @Test
+    public void testRequeueFailedMessage() throws Exception {
+        BrokerChannel broker = new BrokerChannel();
+        RabbitMQChannelConsumer consumer = new RabbitMQChannelConsumer(broker.channel, INBOUND_EP_NAME,
+                                                                       new InjectHandler(3), "text/plain", false, 5,
+                                                                       null);
+        for (long tag = 1; tag <= 4; tag++) {
+            deliver(consumer, tag);
+        }
+        consumer.flushAcknowledgements();
+        Assert.assertEquals(Arrays.asList("ack 2 multiple", "nack 3 requeue", "ack 4 multiple"), broker.calls);
+    }
+
+    /**
+     * Test that nothing is acknowledged when the broker acknowledges the messages on delivery
+     */
+    @Test
+    public void testAutoAck() throws Exception {
+        BrokerChannel broker = new BrokerChannel();
+        RabbitMQChannelConsumer consumer = new RabbitMQChannelConsumer(broker.channel, INBOUND_EP_NAME,
+                                                                       new InjectHandler(2), "text/plain", true, 1,
+                                                                       null);
+        for (long tag = 1; tag <= 3; tag++) {
+            deliver(consumer, tag);
+        }
+        consumer.flushAcknowledgements();
+        Assert.assertTrue("Messages are acknowledged with auto ack", broker.calls.isEmpty());
+    }
+
+    /**
+     * Test tuning the prefetch count of the channel from the processing time of the messages
+     */
+    @Test
+    public void testPrefetchTuning() throws Exception {
+        RabbitMQPrefetchTuner tuner = new RabbitMQPrefetchTuner(10, 1000, 1000, 5);
+        Assert.assertEquals(1000, tuner.getPrefetchCount());
+        long processingTime = TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(-1, tuner.record(processingTime));
+        }
+        // 1000 ms worth of messages taking 10 ms each, plus the messages waiting to be acknowledged
+        Assert.assertEquals(110, tuner.record(processingTime));
+        for (int i = 0; i < 5; i++) {
+            Assert.assertEquals("Prefetch count is changed without a change in processing time", -1,
+                                tuner.record(processingTime));
+        }
+
+        BrokerChannel broker = new BrokerChannel();
+        RabbitMQChannelConsumer consumer = new RabbitMQChannelConsumer(
+                broker.channel, INBOUND_EP_NAME, new InjectHandler(), "text/plain", false, 1,
+                new RabbitMQPrefetchTuner(1, 5, TimeUnit.HOURS.toMillis(1), 1));
+        deliver(consumer, 1);
+        Assert.assertEquals(Arrays.asList("ack 1 multiple"), broker.calls);
+        broker.calls.clear();
+
+        consumer = new RabbitMQChannelConsumer(broker.channel, INBOUND_EP_NAME, new InjectHandler(), "text/plain",
+                                               false, 1, new RabbitMQPrefetchTuner(1, 5, 0, 1));
+        deliver(consumer, 2);
+        Assert.assertEquals(Arrays.asList("ack 2 multiple", "qos 1 global"), broker.calls);
+    }
+
+    private void deliver(RabbitMQChannelConsumer consumer, long deliveryTag) {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder().messageId("msg-" + deliveryTag)
+                .build();
+        consumer.handleDelivery("consumer", new Envelope(deliveryTag, false, "", "queue"), properties,
+                                ("message " + deliveryTag).getBytes());
+    }
+
+    /**
+     * Stand-in for a broker channel, which records the acknowledgements and the QoS changes.
+     */
+    private static class BrokerChannel {
+
+        final List<String> calls = new ArrayList<>();
+
+        final Channel channel = (Channel) Proxy.newProxyInstance(
+                Channel.class.getClassLoader(), new Class[] { Channel.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "basicAck":
+                        calls.add("ack " + args[0] + ((Boolean) args[1] ? " multiple" : ""));
+                        return null;
+                    case "basicNack":
+                        calls.add("nack " + args[0] + ((Boolean) args[2] ? " requeue" : ""));
+                        return null;
+                    case "basicQos":
+                        calls.add("qos " + args[0] + (args.length > 1 && (Boolean) args[1] ? " global" : ""));
+                        return null;
+                    case "isOpen":
+                        return true;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "BrokerChannel";
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Inject handler which fails the given deliveries, instead of mediating the messages.
+     */
+    private static class InjectHandler extends RabbitMQInjectHandler {
+
+        private final Set<Long> failedDeliveryTags;
+
+        InjectHandler(Long... failedDeliveryTags) {
+            super(null, null, true, null);
+            this.failedDeliveryTags = new HashSet<>(Arrays.asList(failedDeliveryTags));
+        }
+
+        InjectHandler(long failedDeliveryTag) {
+            this(new Long[] { failedDeliveryTag });
+        }
+
+        @Override
+        public boolean invoke(RabbitMQMessage message, String inboundName) {
+            return !failedDeliveryTags.contains(message.getDeliveryTag());
+        }
+    }
+}
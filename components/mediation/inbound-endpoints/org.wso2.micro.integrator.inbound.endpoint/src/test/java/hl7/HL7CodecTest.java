@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package hl7;
+
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.codec.HL7Codec;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.hl7.core.MLLProtocolException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tests the MLLP framing of the HL7 codec, for frames split across reads and several frames read at once.
+ */
+public class HL7CodecTest extends TestCase {
+
+    private static final String MESSAGE_1 = "MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20190101000000||ADT^A01|MSG00001|P|2.5\r"
+            + "PID|1||12345\r";
+    private static final String MESSAGE_2 = "MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20190101000001||ADT^A01|MSG00002|P|2.5\r"
+            + "PID|1||54321\r";
+    private static final String MESSAGE_3 = "MSH|^~\\&|SENDER|FAC|RECEIVER|FAC|20190101000002||ADT^A08|MSG00003|P|2.5\r"
+            + "PID|1||67890\r";
+
+    @Test
+    public void testFrameInOneRead() throws Exception {
+        HL7Codec codec = new HL7Codec();
+        byte[] frame = frame(MESSAGE_1);
+
+        Assert.assertEquals(0, codec.decode(ByteBuffer.wrap(frame), null));
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_1, codec.getFrameContent());
+        codec.reset();
+        Assert.assertFalse(codec.hasBufferedInput());
+    }
+
+    @Test
+    public void testTrailerSplitAcrossReads() throws Exception {
+        byte[] frame = frame(MESSAGE_1);
+        // the first read ends with the first byte of the trailer
+        int split = frame.length - 1;
+        HL7Codec codec = new HL7Codec();
+
+        codec.decode(ByteBuffer.wrap(frame, 0, split), null);
+        Assert.assertFalse(codec.isReadComplete());
+        codec.decode(ByteBuffer.wrap(frame, split, frame.length - split), null);
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_1, codec.getFrameContent());
+    }
+
+    @Test
+    public void testFrameSplitAtEveryPosition() throws Exception {
+        byte[] frame = frame(MESSAGE_1);
+        for (int split = 1; split < frame.length; split++) {
+            HL7Codec codec = new HL7Codec();
+            codec.decode(ByteBuffer.wrap(frame, 0, split), null);
+            Assert.assertFalse("Complete after " + split + " bytes", codec.isReadComplete());
+            codec.decode(ByteBuffer.wrap(frame, split, frame.length - split), null);
+            Assert.assertTrue("Not complete when split at " + split, codec.isReadComplete());
+            Assert.assertEquals(MESSAGE_1, codec.getFrameContent());
+        }
+    }
+
+    @Test
+    public void testFrameReadByteByByte() throws Exception {
+        byte[] frame = frame(MESSAGE_1);
+        HL7Codec codec = new HL7Codec();
+        for (int i = 0; i < frame.length; i++) {
+            Assert.assertFalse(codec.isReadComplete());
+            codec.decode(ByteBuffer.wrap(frame, i, 1), null);
+        }
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_1, codec.getFrameContent());
+    }
+
+    @Test
+    public void testSeveralFramesInOneRead() throws Exception {
+        byte[] frames = concat(frame(MESSAGE_1), frame(MESSAGE_2), frame(MESSAGE_3));
+        HL7Codec codec = new HL7Codec();
+
+        codec.decode(ByteBuffer.wrap(frames), null);
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_1, codec.getFrameContent());
+        // no more bytes are accepted until the frame is processed
+        Assert.assertEquals(-1, codec.decode(ByteBuffer.wrap(frame(MESSAGE_1)), null));
+
+        codec.reset();
+        Assert.assertTrue(codec.hasBufferedInput());
+        codec.decodeBufferedInput();
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_2, codec.getFrameContent());
+
+        codec.reset();
+        Assert.assertTrue(codec.hasBufferedInput());
+        codec.decodeBufferedInput();
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_3, codec.getFrameContent());
+
+        codec.reset();
+        Assert.assertFalse(codec.hasBufferedInput());
+    }
+
+    @Test
+    public void testNextFrameSplitAcrossReads() throws Exception {
+        byte[] second = frame(MESSAGE_2);
+        // the second frame ends within the trailer of the first read
+        int split = second.length - 1;
+        byte[] firstRead = concat(frame(MESSAGE_1), Arrays.copyOf(second, split));
+        HL7Codec codec = new HL7Codec();
+
+        codec.decode(ByteBuffer.wrap(firstRead), null);
+        Assert.assertEquals(MESSAGE_1, codec.getFrameContent());
+        codec.reset();
+        Assert.assertTrue(codec.hasBufferedInput());
+        codec.decodeBufferedInput();
+        Assert.assertFalse(codec.isReadComplete());
+
+        codec.decode(ByteBuffer.wrap(second, split, second.length - split), null);
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_2, codec.getFrameContent());
+    }
+
+    @Test
+    public void testLargeFrameFollowedBySmallFrame() throws Exception {
+        StringBuilder large = new StringBuilder(MESSAGE_1);
+        while (large.length() < 200 * 1024) {
+            large.append("NTE|1||").append(large.length()).append('\r');
+        }
+        String largeMessage = large.toString();
+        byte[] frames = concat(frame(largeMessage), frame(MESSAGE_2));
+        HL7Codec codec = new HL7Codec();
+
+        int offset = 0;
+        while (!codec.isReadComplete()) {
+            int length = Math.min(4096, frames.length - offset);
+            codec.decode(ByteBuffer.wrap(frames, offset, length), null);
+            offset += length;
+        }
+        Assert.assertEquals(largeMessage, codec.getFrameContent());
+
+        // the rest of the read and of the connection holds the small frame
+        codec.reset();
+        codec.decodeBufferedInput();
+        if (offset < frames.length) {
+            codec.decode(ByteBuffer.wrap(frames, offset, frames.length - offset), null);
+        }
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(MESSAGE_2, codec.getFrameContent());
+    }
+
+    @Test
+    public void testContentWithEndBlockWithoutCarriageReturn() throws Exception {
+        String message = MESSAGE_2 + MllpTestConstants.END_BYTE1 + "NTE|1\r";
+        HL7Codec codec = new HL7Codec();
+
+        codec.decode(ByteBuffer.wrap(frame(message)), null);
+        Assert.assertTrue(codec.isReadComplete());
+        Assert.assertEquals(message, codec.getFrameContent());
+    }
+
+    @Test
+    public void testMissingHeader() throws Exception {
+        HL7Codec codec = new HL7Codec();
+        try {
+            codec.decode(ByteBuffer.wrap(MESSAGE_1.getBytes(StandardCharsets.UTF_8)), null);
+            Assert.fail("The frame without header was accepted.");
+        } catch (MLLProtocolException e) {
+            // expected
+        }
+    }
+
+    private static byte[] frame(String message) {
+        return (MllpTestConstants.START_BYTE + message + MllpTestConstants.END_BYTE1 + MllpTestConstants.END_BYTE2)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+}
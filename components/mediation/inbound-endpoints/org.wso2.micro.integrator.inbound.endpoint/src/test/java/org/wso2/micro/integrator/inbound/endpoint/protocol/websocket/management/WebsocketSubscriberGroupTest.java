@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.management;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.channel.local.LocalAddress;
+import io.netty.channel.local.LocalChannel;
+import io.netty.channel.local.LocalEventLoopGroup;
+import io.netty.channel.local.LocalServerChannel;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocket08FrameEncoder;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.ReferenceCountUtil;
+import junit.framework.Assert;
+import junit.framework.TestCase;
+import org.junit.Test;
+import org.wso2.micro.integrator.inbound.endpoint.protocol.websocket.InboundWebsocketChannelContext;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WebsocketSubscriberGroupTest extends TestCase {
+
+    private static final long TIMEOUT = 10000;
+
+    /**
+     * Test that the frames encoded once per broadcast are the frames written by the Netty server frame encoder
+     */
+    @Test
+    public void testEncodeAsFrameEncoder() throws Exception {
+        // the lengths around the 7, 16 and 64 bit length encodings, and the threshold above which the content is
+        // not copied
+        for (int length : new int[] { 0, 1, 125, 126, 127, 1023, 1024, 65535, 65536, 70000 }) {
+            for (int rsv : new int[] { 0, 4 }) {
+                byte[] payload = new byte[length];
+                for (int i = 0; i < length; i++) {
+                    payload[i] = (byte) ('a' + i % 26);
+                }
+                assertEncodedAsFrameEncoder(new TextWebSocketFrame(true, rsv, Unpooled.wrappedBuffer(payload)));
+                assertEncodedAsFrameEncoder(new BinaryWebSocketFrame(true, rsv, Unpooled.wrappedBuffer(payload)));
+            }
+        }
+    }
+
+    /**
+     * Test that the subscribers present throughout the broadcasts get every frame, while other channels subscribe and
+     * unsubscribe concurrently
+     */
+    @Test
+    public void testConcurrentSubscriptionsDuringBroadcast() throws Exception {
+        EventLoopGroup group = new LocalEventLoopGroup(4);
+        final ConcurrentHashMap<SocketAddress, AtomicInteger> received = new ConcurrentHashMap<>();
+        LocalAddress address = new LocalAddress("WebsocketSubscriberGroupTest");
+        List<Channel> channels = new ArrayList<>();
+        try {
+            channels.add(new ServerBootstrap().group(group).channel(LocalServerChannel.class)
+                                 .childHandler(new ChannelInitializer<LocalChannel>() {
+                                     @Override
+                                     protected void initChannel(LocalChannel ch) {
+                                         ch.pipeline().addLast(new ChannelInboundHandlerAdapter() {
+                                             @Override
+                                             public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                                                 received.computeIfAbsent(ctx.channel().remoteAddress(),
+                                                                          key -> new AtomicInteger()).incrementAndGet();
+                                                 ReferenceCountUtil.release(msg);
+                                             }
+                                         });
+                                     }
+                                 }).bind(address).sync().channel());
+
+            final WebsocketSubscriberGroup subscribers = new WebsocketSubscriberGroup();
+            List<InboundWebsocketChannelContext> stable = new ArrayList<>();
+            final List<InboundWebsocketChannelContext> transients = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                // half of the channels get the encoded frames
+                InboundWebsocketChannelContext context = connect(group, address, i % 2 == 0, channels);
+                Assert.assertTrue(subscribers.add(context));
+                stable.add(context);
+                transients.add(connect(group, address, i % 2 == 0, channels));
+            }
+
+            final int broadcasts = 500;
+            final CountDownLatch done = new CountDownLatch(1);
+            final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+            Thread subscriber = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (done.getCount() > 0) {
+                            for (InboundWebsocketChannelContext context : transients) {
+                                subscribers.add(context);
+                            }
+                            for (InboundWebsocketChannelContext context : transients) {
+                                subscribers.remove(context);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        errors.add(String.valueOf(e));
+                    }
+                }
+            });
+            subscriber.start();
+            List<WebSocketFrame> frames = new ArrayList<>();
+            try {
+                for (int i = 0; i < broadcasts; i++) {
+                    WebSocketFrame frame = new TextWebSocketFrame("message " + i);
+                    frames.add(frame);
+                    subscribers.broadcast(frame, null);
+                }
+            } finally {
+                done.countDown();
+                subscriber.join();
+            }
+            Assert.assertEquals(Collections.emptyList(), errors);
+
+            for (InboundWebsocketChannelContext context : stable) {
+                SocketAddress subscriberAddress = context.getChannelHandlerContext().channel().localAddress();
+                long deadline = System.currentTimeMillis() + TIMEOUT;
+                while (count(received, subscriberAddress) < broadcasts && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals("Frames received by " + subscriberAddress, broadcasts,
+                                    count(received, subscriberAddress));
+            }
+            Assert.assertEquals(new HashSet<>(stable), new HashSet<>(subscribers.getSubscribers()));
+            // the frames written to the channels which unsubscribed may still be delivered
+            long deadline = System.currentTimeMillis() + TIMEOUT;
+            for (WebSocketFrame frame : frames) {
+                while (frame.refCnt() > 0 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals("Frame not released after the broadcast", 0, frame.refCnt());
+            }
+        } finally {
+            for (Channel channel : channels) {
+                channel.close().sync();
+            }
+            group.shutdownGracefully().sync();
+        }
+    }
+
+    private static InboundWebsocketChannelContext connect(EventLoopGroup group, LocalAddress address,
+                                                          final boolean encoder, List<Channel> channels)
+            throws InterruptedException {
+        Channel channel = new Bootstrap().group(group).channel(LocalChannel.class)
+                .handler(new ChannelInitializer<LocalChannel>() {
+                    @Override
+                    protected void initChannel(LocalChannel ch) {
+                        if (encoder) {
+                            ch.pipeline().addLast(new WebSocket08FrameEncoder(false));
+                        }
+                        ch.pipeline().addLast("subscriber", new ChannelInboundHandlerAdapter());
+                    }
+                }).connect(address).sync().channel();
+        channels.add(channel);
+        return new InboundWebsocketChannelContext(channel.pipeline().context("subscriber"));
+    }
+
+    private static int count(ConcurrentHashMap<SocketAddress, AtomicInteger> received, SocketAddress address) {
+        AtomicInteger count = received.get(address);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void assertEncodedAsFrameEncoder(WebSocketFrame frame) {
+        String description = frame.getClass().getSimpleName() + " of " + frame.content().readableBytes()
+                + " bytes with rsv " + frame.rsv();
+        ByteBuf encoded = WebsocketSubscriberGroup.encode(frame);
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel(new WebSocket08FrameEncoder(false));
+            // the encoder releases the frame
+            Assert.assertTrue(channel.writeOutbound(frame));
+            ByteBuf expected = Unpooled.buffer();
+            Object buffer;
+            while ((buffer = channel.readOutbound()) != null) {
+                expected.writeBytes((ByteBuf) buffer);
+                ReferenceCountUtil.release(buffer);
+            }
+            channel.finish();
+            Assert.assertTrue(description, Arrays.equals(toBytes(expected), toBytes(encoded)));
+        } finally {
+            encoded.release();
+        }
+        Assert.assertEquals(description + " not released", 0, frame.refCnt());
+    }
+
+    private static byte[] toBytes(ByteBuf buffer) {
+        byte[] bytes = new byte[buffer.readableBytes()];
+        buffer.getBytes(buffer.readerIndex(), bytes);
+        return bytes;
+    }
+}
@@ -34,15 +34,16 @@ import java.util.regex.Pattern;
  */
 public class CachableResponse implements Serializable {
     /**
-     * This holds the reference to the response for json
+     * This holds the reference to the response for json. It is volatile as it is published by the request fetching
+     * the response, and read by the requests served from the cache
      */
-    private byte[] responsePayload = null;
+    private volatile byte[] responsePayload = null;
 
     /**
      * The response is stored as a SOAPEnvelope (This cannot be used if supporting a cluster because SOAPEnvelope is not
      * serializable)
      */
-    private SOAPEnvelope responseEnvelope = null;
+    private volatile SOAPEnvelope responseEnvelope = null;
 
     /**
      * This holds the hash value of the request payload which is calculated form the specified DigestGenerator, and is
@@ -59,7 +60,7 @@ public class CachableResponse implements Serializable {
     /**
      * This holds the HTTP Header Properties of the response.
      */
-    private ConcurrentHashMap<String, Object> headerProperties;
+    private volatile ConcurrentHashMap<String, Object> headerProperties;
 
     /**
      * The HTTP status code number of the response
@@ -116,6 +117,27 @@ public class CachableResponse implements Serializable {
      */
     private boolean addAgeHeaderEnabled;
 
+    /**
+     * The time at which a request started fetching this response from the backend when request coalescing is enabled.
+     * Zero when no request is in flight. This is local to the node, hence it is not serialized.
+     */
+    private transient long inFlightSince;
+
+    /**
+     * The time at which the response was stored in the cache.
+     */
+    private long cachedTime;
+
+    /**
+     * This specifies whether non-json responses are stored as serialized bytes instead of envelope clones.
+     */
+    private boolean serializedStorageEnabled;
+
+    /**
+     * This specifies whether serialized responses are gzip compressed.
+     */
+    private boolean compressionEnabled;
+
     /**
      * Sets the responsePayload and the headerProperties to null
      */
@@ -124,6 +146,108 @@ public class CachableResponse implements Serializable {
         headerProperties = null;
     }
 
+    /**
+     * Creates an empty entry with the same caching criteria as this entry, to collect the response of a background
+     * refresh while this entry is still being served. The new entry replaces this entry in the cache only once the
+     * refreshed response is stored in it, hence this entry is never changed by the refresh.
+     *
+     * @return the entry to collect the refreshed response
+     */
+    CachableResponse createRefreshEntry() {
+        CachableResponse refreshEntry = new CachableResponse();
+        refreshEntry.setRequestHash(requestHash);
+        refreshEntry.setTimeout(timeout);
+        refreshEntry.setHttpMethod(httpMethod);
+        refreshEntry.setProtocolType(protocolType);
+        refreshEntry.setResponseCodePattern(responseCodePattern);
+        refreshEntry.setHTTPMethodsToCache(hTTPMethodsToCache);
+        refreshEntry.setMaxMessageSize(maxMessageSize);
+        refreshEntry.setCacheControlEnabled(cacheControlEnabled);
+        refreshEntry.setAddAgeHeaderEnabled(addAgeHeaderEnabled);
+        refreshEntry.setSerializedStorageEnabled(serializedStorageEnabled);
+        refreshEntry.setCompressionEnabled(compressionEnabled);
+        return refreshEntry;
+    }
+
+    /**
+     * @return whether a response has been collected for this entry
+     */
+    public boolean isResponseAvailable() {
+        return responsePayload != null || responseEnvelope != null;
+    }
+
+    /**
+     * @return the number of bytes held by the cached payload, which is used to weigh this entry in the cache
+     */
+    public int getWeight() {
+        return responsePayload != null ? responsePayload.length : 0;
+    }
+
+    /**
+     * Tries to make the caller the leader which fetches this response from the backend. Leadership is granted if no
+     * other request is in flight or if the in-flight request has not completed within the given wait time.
+     *
+     * @param maxWaitTime maximum time in milliseconds a leader is allowed to take to fetch the response
+     * @return true if the caller became the leader, false if it should wait for the in-flight request
+     */
+    synchronized boolean claimLeadership(long maxWaitTime) {
+        long now = System.currentTimeMillis();
+        if (inFlightSince == 0 || now - inFlightSince > maxWaitTime) {
+            inFlightSince = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits until the in-flight request completes or the given wait time elapses.
+     *
+     * @param maxWaitTime maximum time in milliseconds to wait
+     * @return true if the in-flight request completed within the wait time, false otherwise
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    synchronized boolean awaitInFlightResponse(long maxWaitTime) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + maxWaitTime;
+        while (inFlightSince != 0 && !isResponseAvailable()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the collected response to the requests reading this entry. The response is written after the
+     * properties describing it, so that a request which finds the response available also sees its properties.
+     *
+     * @param payload          the response payload as bytes, or null if the response is kept as an envelope
+     * @param envelope         the response envelope, or null if the response is kept as bytes
+     * @param json             whether the response is json or not
+     * @param headerProperties HTTP Header Properties of the response
+     */
+    synchronized void publishResponse(byte[] payload, SOAPEnvelope envelope, boolean json,
+                                      Map<String, Object> headerProperties) {
+        this.json = json;
+        this.headerProperties = (ConcurrentHashMap<String, Object>) headerProperties;
+        if (payload != null) {
+            this.responseEnvelope = null;
+            this.responsePayload = payload;
+        } else {
+            this.responsePayload = null;
+            this.responseEnvelope = envelope;
+        }
+    }
+
+    /**
+     * Marks the in-flight request as completed and wakes up the requests waiting for it.
+     */
+    synchronized void releaseWaitingRequests() {
+        inFlightSince = 0;
+        notifyAll();
+    }
+
     /**
      * This method gives the cached response payload for json as a byte array
      *
@@ -394,4 +518,54 @@ public class CachableResponse implements Serializable {
         this.addAgeHeaderEnabled = addAgeHeaderEnabled;
     }
 
+    /**
+     * @return the time at which the response was stored in the cache
+     */
+    public long getCachedTime() {
+        return cachedTime;
+    }
+
+    /**
+     * @param cachedTime the time at which the response was stored in the cache
+     */
+    public void setCachedTime(long cachedTime) {
+        this.cachedTime = cachedTime;
+    }
+
+    /**
+     * This method returns whether non-json responses are stored as serialized bytes.
+     *
+     * @return whether serialized storage is enabled or not.
+     */
+    public boolean isSerializedStorageEnabled() {
+        return serializedStorageEnabled;
+    }
+
+    /**
+     * This method sets whether non-json responses are stored as serialized bytes.
+     *
+     * @param serializedStorageEnabled whether serialized storage is enabled or not.
+     */
+    public void setSerializedStorageEnabled(boolean serializedStorageEnabled) {
+        this.serializedStorageEnabled = serializedStorageEnabled;
+    }
+
+    /**
+     * This method returns whether serialized responses are gzip compressed.
+     *
+     * @return whether compression is enabled or not.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * This method sets whether serialized responses are gzip compressed.
+     *
+     * @param compressionEnabled whether compression is enabled or not.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
 }
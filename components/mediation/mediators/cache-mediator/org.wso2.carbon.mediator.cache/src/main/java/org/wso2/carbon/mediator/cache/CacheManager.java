@@ -18,9 +18,14 @@
 package org.wso2.carbon.mediator.cache;
 
 import com.google.common.cache.LoadingCache;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * There would be two instances of the cache mediator in a single mediation flow. Hence it must be possible for the
@@ -28,11 +33,45 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class CacheManager {
 
+    private static final Log log = LogFactory.getLog(CacheManager.class);
+
     /**
      * Maps the id with the relevant LoadingCache
      */
     private Map<String, LoadingCache<String, CachableResponse>> cacheMap = new ConcurrentHashMap<>();
 
+    /**
+     * Maps the id with the relevant off-heap tier, if the cache of the id has one
+     */
+    private Map<String, OffHeapCacheTier> offHeapTierMap = new ConcurrentHashMap<>();
+
+    /**
+     * The store which shares the responses of the distributed caches with the other nodes, created when it is first
+     * used.
+     */
+    private DistributedCacheProvider distributedCacheProvider;
+
+    /**
+     * Ids of the deployed mediators which share their responses through the distributed cache provider. The provider
+     * is destroyed once the last of them is undeployed.
+     */
+    private final Set<String> distributedCacheUsers = new HashSet<>();
+
+    /**
+     * Number of cache misses which fetched the response from the backend on behalf of coalesced requests.
+     */
+    private final AtomicLong coalescingLeaders = new AtomicLong();
+
+    /**
+     * Number of cache misses which waited for the response of an in-flight request with the same request hash.
+     */
+    private final AtomicLong coalescingFollowers = new AtomicLong();
+
+    /**
+     * Number of coalesced requests which stopped waiting since the in-flight request did not complete in time.
+     */
+    private final AtomicLong coalescingTimeouts = new AtomicLong();
+
     /**
      * @param id the id of the mediator
      * @return the relevant cache of the mediator
@@ -58,6 +97,10 @@ public class CacheManager {
      */
     void remove(String id) {
         cacheMap.remove(id);
+        OffHeapCacheTier offHeapTier = offHeapTierMap.remove(id);
+        if (offHeapTier != null) {
+            offHeapTier.clear();
+        }
     }
 
     /**
@@ -65,6 +108,191 @@ public class CacheManager {
      */
     void clean() {
         cacheMap.clear();
+        for (OffHeapCacheTier offHeapTier : offHeapTierMap.values()) {
+            offHeapTier.clear();
+        }
+        offHeapTierMap.clear();
+    }
+
+    /**
+     * Clears the CacheManager together with the distributed caches, and the CacheManagers of the other nodes through
+     * the invalidation broadcast of the distributed cache provider, if it is in use.
+     */
+    void invalidateAll() {
+        clean();
+        DistributedCacheProvider provider;
+        synchronized (this) {
+            provider = distributedCacheProvider;
+        }
+        if (provider != null) {
+            provider.invalidateAll();
+        }
+    }
+
+    /**
+     * Returns the distributed cache provider of the node, creating the implementation specified by the
+     * {@link CachingConstants#DISTRIBUTED_CACHE_PROVIDER_PROPERTY} system property when it is first requested.
+     *
+     * @return the distributed cache provider
+     * @throws CachingException if the provider cannot be created or initialized
+     */
+    synchronized DistributedCacheProvider getDistributedCacheProvider() throws CachingException {
+        if (distributedCacheProvider == null) {
+            if (distributedCacheUsers.isEmpty()) {
+                throw new CachingException("There is no distributed mediator cache deployed");
+            }
+            String className = System.getProperty(CachingConstants.DISTRIBUTED_CACHE_PROVIDER_PROPERTY,
+                                                  HazelcastCacheProvider.class.getName());
+            DistributedCacheProvider provider;
+            try {
+                provider = (DistributedCacheProvider) Class.forName(className).newInstance();
+                provider.init(System.getProperties());
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException |
+                    ClassCastException e) {
+                throw new CachingException("Unable to create the distributed cache provider : " + className, e);
+            } catch (LinkageError e) {
+                // the Hazelcast bundle is optional, hence the reference provider cannot be loaded without it
+                throw new CachingException("Unable to load the distributed cache provider : " + className
+                        + ". Make sure the libraries it depends on are installed", e);
+            }
+            setDistributedCacheProvider(provider);
+            log.info("Mediator responses are shared through the distributed cache provider : " + className);
+        }
+        return distributedCacheProvider;
+    }
+
+    /**
+     * Sets the distributed cache provider of the node, which clears the CacheManager when any node invalidates the
+     * cache.
+     *
+     * @param provider an initialized distributed cache provider
+     */
+    synchronized void setDistributedCacheProvider(DistributedCacheProvider provider) {
+        provider.addInvalidationListener(new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation() {
+                clean();
+            }
+        });
+        distributedCacheProvider = provider;
+    }
+
+    /**
+     * Registers a deployed mediator which shares its responses through the distributed cache provider.
+     *
+     * @param id the id of the cache mediator
+     */
+    synchronized void registerDistributedCache(String id) {
+        distributedCacheUsers.add(id);
+    }
+
+    /**
+     * Releases the distributed cache provider on behalf of an undeployed mediator, destroying the provider if no other
+     * deployed mediator uses it.
+     *
+     * @param id the id of the cache mediator
+     */
+    synchronized void releaseDistributedCache(String id) {
+        if (distributedCacheUsers.remove(id) && distributedCacheUsers.isEmpty() && distributedCacheProvider != null) {
+            distributedCacheProvider.destroy();
+            distributedCacheProvider = null;
+            log.info("Destroyed the distributed cache provider since no distributed mediator cache is deployed");
+        }
+    }
+
+    /**
+     * @param id the id of the mediator
+     * @return the off-heap tier of the mediator cache or null if it does not have one
+     */
+    OffHeapCacheTier getOffHeapTier(String id) {
+        return offHeapTierMap.get(id);
+    }
+
+    /**
+     * Insert id and the off-heap tier of its cache to the CacheManager
+     *
+     * @param id          the id of the cache mediator
+     * @param offHeapTier the off-heap tier related to the id
+     */
+    void putOffHeapTier(String id, OffHeapCacheTier offHeapTier) {
+        offHeapTierMap.put(id, offHeapTier);
+    }
+
+    /**
+     * @return number of hits in the off-heap tiers since they were last invalidated
+     */
+    long getOffHeapHitCount() {
+        long count = 0;
+        for (OffHeapCacheTier offHeapTier : offHeapTierMap.values()) {
+            count += offHeapTier.getHitCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of misses in the off-heap tiers since they were last invalidated
+     */
+    long getOffHeapMissCount() {
+        long count = 0;
+        for (OffHeapCacheTier offHeapTier : offHeapTierMap.values()) {
+            count += offHeapTier.getMissCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of evictions from the off-heap tiers since they were last invalidated
+     */
+    long getOffHeapEvictionCount() {
+        long count = 0;
+        for (OffHeapCacheTier offHeapTier : offHeapTierMap.values()) {
+            count += offHeapTier.getEvictionCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return number of bytes held by the off-heap tiers
+     */
+    long getOffHeapSizeInBytes() {
+        long size = 0;
+        for (OffHeapCacheTier offHeapTier : offHeapTierMap.values()) {
+            size += offHeapTier.getSizeInBytes();
+        }
+        return size;
+    }
+
+    void incrementCoalescingLeaders() {
+        coalescingLeaders.incrementAndGet();
+    }
+
+    void incrementCoalescingFollowers() {
+        coalescingFollowers.incrementAndGet();
+    }
+
+    void incrementCoalescingTimeouts() {
+        coalescingTimeouts.incrementAndGet();
+    }
+
+    /**
+     * @return number of cache misses which fetched the response from the backend on behalf of coalesced requests
+     */
+    long getCoalescingLeaderCount() {
+        return coalescingLeaders.get();
+    }
+
+    /**
+     * @return number of cache misses which waited for an in-flight request with the same request hash
+     */
+    long getCoalescingFollowerCount() {
+        return coalescingFollowers.get();
+    }
+
+    /**
+     * @return number of coalesced requests which timed out waiting for the in-flight request
+     */
+    long getCoalescingTimeoutCount() {
+        return coalescingTimeouts.get();
     }
 
 }
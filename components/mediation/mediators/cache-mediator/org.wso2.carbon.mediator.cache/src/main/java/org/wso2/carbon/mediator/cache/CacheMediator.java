@@ -20,14 +20,21 @@ package org.wso2.carbon.mediator.cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMXMLBuilderFactory;
 import org.apache.axiom.soap.SOAPEnvelope;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.Constants;
 import org.apache.axis2.context.ConfigurationContext;
+import org.apache.synapse.FaultHandler;
 import org.apache.synapse.ManagedLifecycle;
 import org.apache.synapse.Mediator;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseConstants;
 import org.apache.synapse.SynapseException;
 import org.apache.synapse.SynapseLog;
 import org.apache.synapse.commons.json.JsonUtil;
@@ -41,12 +48,16 @@ import org.apache.synapse.mediators.AbstractMediator;
 import org.apache.synapse.mediators.base.SequenceMediator;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
 import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.apache.synapse.transport.passthru.util.RelayUtils;
 import org.apache.synapse.util.FixedByteArrayOutputStream;
 import org.apache.synapse.util.MessageHelper;
 import org.wso2.carbon.mediator.cache.digest.DigestGenerator;
 import org.wso2.carbon.mediator.cache.util.HttpCachingFilter;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.text.ParseException;
 import java.util.Map;
 import java.util.Set;
@@ -56,6 +67,8 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
@@ -155,6 +168,80 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
      */
     private boolean addAgeHeaderEnabled = CachingConstants.DEFAULT_ADD_AGE_HEADER;
 
+    /**
+     * This specifies whether concurrent cache misses for the same request hash should wait for a single backend call
+     * instead of each going to the backend.
+     */
+    private boolean requestCoalescingEnabled = CachingConstants.DEFAULT_REQUEST_COALESCING;
+
+    /**
+     * The maximum time in milliseconds a coalesced request waits for the in-flight response. This also bounds the
+     * time a background refresh of a cached response is given before another request may start one.
+     */
+    private long coalescingMaxWaitTime = CachingConstants.DEFAULT_COALESCING_MAX_WAIT_TIME;
+
+    /**
+     * This specifies whether the responses are shared with the other nodes of the cluster through the distributed
+     * cache provider.
+     */
+    private boolean distributedCacheEnabled = false;
+
+    /**
+     * The name of the distributed cache the responses are shared through, which is the id of the cache unless it is
+     * specified. Mediators of the nodes using the same name share their responses.
+     */
+    private String distributedCacheName;
+
+    /**
+     * The way non-json responses are stored in the cache, either as envelope clones or serialized bytes.
+     */
+    private String storageType = CachingConstants.ENVELOPE_STORAGE;
+
+    /**
+     * This specifies whether serialized responses are gzip compressed.
+     */
+    private boolean compressionEnabled = false;
+
+    /**
+     * The maximum number of payload bytes kept in the cache. If this is -1 then the cache is bounded by
+     * inMemoryCacheSize instead.
+     */
+    private long maxSizeInBytes = CachingConstants.DEFAULT_SIZE;
+
+    /**
+     * The maximum number of bytes kept in the off-heap tier of the cache. If this is -1 then the cache has no off-heap
+     * tier.
+     */
+    private long offHeapSizeInBytes = CachingConstants.DEFAULT_SIZE;
+
+    /**
+     * The number of reads after which a response in the off-heap tier is promoted to the on-heap cache.
+     */
+    private int promotionThreshold = CachingConstants.DEFAULT_PROMOTION_THRESHOLD;
+
+    /**
+     * The time in seconds a response is kept in the cache after the timeout elapses, during which it is served while
+     * a single request refreshes it from the backend.
+     */
+    private long staleWhileRevalidateWindow = 0;
+
+    /**
+     * The time in seconds before the timeout elapses, at which a request refreshes the response from the backend
+     * while it is still served from the cache.
+     */
+    private long refreshAheadTime = 0;
+
+    /**
+     * Weighs the cache entries by the size of the cached payload.
+     */
+    private static final Weigher<String, CachableResponse> PAYLOAD_WEIGHER =
+            new Weigher<String, CachableResponse>() {
+                @Override
+                public int weigh(String requestHash, CachableResponse response) {
+                    return response.getWeight();
+                }
+            };
+
     /**
      * Variable to represent NOT_MODIFIED status code.
      */
@@ -199,6 +286,9 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
             onCacheHitSequence.init(se);
         }
         exposeInvalidator(se.createMessageContext());
+        if (distributedCacheEnabled) {
+            cacheManager.registerDistributedCache(id);
+        }
     }
 
     /**
@@ -209,6 +299,9 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
             onCacheHitSequence.destroy();
         }
         cacheManager.remove(id);
+        if (distributedCacheEnabled) {
+            cacheManager.releaseDistributedCache(id);
+        }
     }
 
     /**
@@ -238,7 +331,7 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         boolean result = true;
         try {
             if (synCtx.isResponse()) {
-                processResponseMessage(synCtx, cfgCtx, synLog);
+                result = processResponseMessage(synCtx, cfgCtx, synLog);
             } else {
                 result = processRequestMessage(synCtx, synLog);
             }
@@ -288,7 +381,7 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         if (synLog.isTraceOrDebugEnabled()) {
             synLog.traceOrDebug("Generated request hash : " + requestHash);
         }
-        CachableResponse cachedResponse = getMediatorCache().get(requestHash);
+        CachableResponse cachedResponse = lookupCachedResponse(requestHash, synCtx);
         synCtx.setProperty(CachingConstants.CACHED_OBJECT, cachedResponse);
         //This is used to store the http method of the request.
         String httpMethod = (String) msgCtx.getProperty(Constants.Configuration.HTTP_METHOD);
@@ -299,16 +392,41 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         cachedResponse.setMaxMessageSize(maxMessageSize);
         cachedResponse.setCacheControlEnabled(cacheControlEnabled);
         cachedResponse.setAddAgeHeaderEnabled(addAgeHeaderEnabled);
-        if (cachedResponse.getResponsePayload() != null || cachedResponse.getResponseEnvelope() != null) {
+        cachedResponse.setSerializedStorageEnabled(isSerializedStorageEnabled());
+        cachedResponse.setCompressionEnabled(compressionEnabled);
+        if (maxSizeInBytes > -1 || isRefreshEnabled()) {
+            // the collector puts the filled response back in to this cache, so that it is weighed by its size and
+            // its expiry restarts when it is refreshed
+            synCtx.setProperty(CachingConstants.MEDIATOR_CACHE_ID, id);
+        }
+        if (distributedCacheEnabled) {
+            // the collector shares the filled response with the other nodes through this distributed cache
+            synCtx.setProperty(CachingConstants.DISTRIBUTED_CACHE_NAME, distributedCacheName);
+        }
+        if (requestCoalescingEnabled && !cachedResponse.isResponseAvailable()) {
+            coalesceRequest(synCtx, synLog, cachedResponse);
+        }
+        if (cachedResponse.isResponseAvailable()) {
             // get the response from the cache and attach to the context and change the
             // direction of the message
             if (synLog.isTraceOrDebugEnabled()) {
                 synLog.traceOrDebug("Cache-hit for message ID : " + synCtx.getMessageID());
             }
-            //Validate the response based on max-age and no-cache headers.
-            if (CachingConstants.HTTP_PROTOCOL_TYPE.equals(getProtocolType())
-                    && cachedResponse.isCacheControlEnabled() &&
-                    HttpCachingFilter.isValidCacheEntry(cachedResponse, synCtx)) {
+            boolean honorCacheControl = CachingConstants.HTTP_PROTOCOL_TYPE.equals(getProtocolType())
+                    && cachedResponse.isCacheControlEnabled();
+            boolean refresh;
+            if (honorCacheControl && HttpCachingFilter.isStaleWhileRevalidate(cachedResponse)) {
+                refresh = true;
+            } else if (honorCacheControl && HttpCachingFilter.isValidCacheEntry(cachedResponse, synCtx)) {
+                //Validate the response based on max-age and no-cache headers.
+                keepInCache(requestHash, cachedResponse);
+                return true;
+            } else {
+                refresh = isRefreshDue(cachedResponse);
+            }
+            // only a single request refreshes the response, the others are served from the cache meanwhile
+            if (refresh && cachedResponse.claimLeadership(coalescingMaxWaitTime)) {
+                serveStaleResponse(synCtx, synLog, cachedResponse);
                 return true;
             }
             // mark as a response and replace envelope from cache
@@ -319,6 +437,176 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         return true;
     }
 
+    /**
+     * Looks up the cached response of the request hash in the on-heap cache and then in the off-heap tier if the cache
+     * has one, unless the on-heap cache holds the response. An empty on-heap entry, which is created for a cache miss,
+     * does not hide a response of the off-heap tier. A response found in the off-heap tier is put back in to the
+     * on-heap cache once it is promoted. If the
+     * cache is distributed, a response which is not available locally is looked up in the distributed cache, and put
+     * in to the on-heap cache if it is found there.
+     *
+     * @param requestHash the request hash
+     * @param synCtx      incoming request message
+     * @return the cached response, or a new empty entry created in the on-heap cache if there is none
+     * @throws ExecutionException if the on-heap cache entry cannot be created
+     */
+    CachableResponse lookupCachedResponse(String requestHash, MessageContext synCtx)
+            throws ExecutionException {
+        LoadingCache<String, CachableResponse> cache = getMediatorCache();
+        if (distributedCacheEnabled) {
+            CachableResponse localResponse = cache.getIfPresent(requestHash);
+            if (localResponse == null || !localResponse.isResponseAvailable()) {
+                CachableResponse sharedResponse = getDistributedCacheProvider(synCtx).get(distributedCacheName,
+                                                                                          requestHash);
+                if (sharedResponse != null) {
+                    // keep the shared response locally, so that it is not fetched from the cluster for every request
+                    cache.put(requestHash, sharedResponse);
+                    return sharedResponse;
+                }
+            }
+        }
+        OffHeapCacheTier offHeapTier = cacheManager.getOffHeapTier(id);
+        if (offHeapTier == null) {
+            return cache.get(requestHash);
+        }
+        CachableResponse cachedResponse = cache.getIfPresent(requestHash);
+        if (cachedResponse == null || !cachedResponse.isResponseAvailable()) {
+            try {
+                OffHeapCacheTier.Lookup lookup = offHeapTier.get(requestHash);
+                if (lookup != null) {
+                    if (lookup.isPromoted()) {
+                        cache.put(requestHash, lookup.getResponse());
+                    }
+                    return lookup.getResponse();
+                }
+            } catch (IOException e) {
+                handleException("Error reading the response from the off-heap cache : " + id, e, synCtx);
+            }
+            if (cachedResponse == null) {
+                cachedResponse = cache.get(requestHash);
+            }
+        }
+        return cachedResponse;
+    }
+
+    /**
+     * @param synCtx the current message
+     * @return the distributed cache provider of the node
+     */
+    private DistributedCacheProvider getDistributedCacheProvider(MessageContext synCtx) {
+        try {
+            return cacheManager.getDistributedCacheProvider();
+        } catch (CachingException e) {
+            handleException("Unable to access the distributed cache : " + distributedCacheName, e, synCtx);
+        }
+        return null; // never executes
+    }
+
+    /**
+     * Makes sure the given response is the one kept in the cache, so that the response collected for this request
+     * updates the cache. This is not the case for a copy read from the off-heap tier.
+     *
+     * @param requestHash    the request hash
+     * @param cachedResponse the cached response
+     */
+    private void keepInCache(String requestHash, CachableResponse cachedResponse) {
+        LoadingCache<String, CachableResponse> cache = getMediatorCache();
+        if (cache.getIfPresent(requestHash) != cachedResponse) {
+            cache.put(requestHash, cachedResponse);
+        }
+    }
+
+    /**
+     * @return whether cached responses are refreshed in the background before or after they expire
+     */
+    private boolean isRefreshEnabled() {
+        return staleWhileRevalidateWindow > 0 || refreshAheadTime > 0;
+    }
+
+    /**
+     * Checks whether the cached response is within the refresh-ahead time before its timeout, or has passed its
+     * timeout and is within the stale-while-revalidate window.
+     *
+     * @param cachedResponse the cached response
+     * @return whether the cached response needs to be refreshed
+     */
+    private boolean isRefreshDue(CachableResponse cachedResponse) {
+        if (!isRefreshEnabled()) {
+            return false;
+        }
+        long refreshTime = cachedResponse.getCachedTime() + (timeout - refreshAheadTime) * 1000;
+        return refreshTime <= System.currentTimeMillis();
+    }
+
+    /**
+     * Sends the cached response back to the client using a clone of the request, and marks the request to continue
+     * through the rest of the sequence to the backend to refresh the cached response. The refreshed response is
+     * collected in a new entry, which replaces the cached response only if the refreshed response gets cached, so
+     * the cached response is never changed while it is being served. Neither the collector nor a fault on the way
+     * sends anything back to the client, which has already been served.
+     *
+     * @param synCtx         incoming request message
+     * @param synLog         the Synapse log to use
+     * @param cachedResponse the cached response to be served
+     */
+    private void serveStaleResponse(MessageContext synCtx, SynapseLog synLog, CachableResponse cachedResponse) {
+        MessageContext staleCtx = null;
+        try {
+            staleCtx = MessageHelper.cloneMessageContext(synCtx);
+        } catch (AxisFault e) {
+            handleException("Error cloning the request to serve the cached response : " + id, e, synCtx);
+        }
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Serving the cached response for message ID : " + synCtx.getMessageID()
+                    + " while refreshing request hash : " + cachedResponse.getRequestHash());
+        }
+        staleCtx.setResponse(true);
+        replaceEnvelopeWithCachedResponse(staleCtx, synLog, ((Axis2MessageContext) staleCtx).getAxis2MessageContext(),
+                cachedResponse);
+        synCtx.setProperty(CachingConstants.BACKGROUND_REFRESH, Boolean.TRUE);
+        synCtx.setProperty(CachingConstants.CACHED_OBJECT, cachedResponse.createRefreshEntry());
+        synCtx.setProperty(CachingConstants.STALE_OBJECT, cachedResponse);
+        // the collector swaps the refreshed response in to this cache
+        synCtx.setProperty(CachingConstants.MEDIATOR_CACHE_ID, id);
+        synCtx.pushFaultHandler(new RefreshFaultHandler(cachedResponse));
+    }
+
+    /**
+     * Makes the first cache miss for a request hash the leader which goes to the backend, while the subsequent
+     * concurrent misses wait until the collector stores the response of the leader or the maximum wait time elapses.
+     *
+     * @param synCtx         incoming request message
+     * @param synLog         the Synapse log to use
+     * @param cachedResponse the cache entry of the request hash
+     */
+    private void coalesceRequest(MessageContext synCtx, SynapseLog synLog, CachableResponse cachedResponse) {
+        if (cachedResponse.claimLeadership(coalescingMaxWaitTime)) {
+            cacheManager.incrementCoalescingLeaders();
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Message ID : " + synCtx.getMessageID() + " fetches the response for request "
+                        + "hash : " + cachedResponse.getRequestHash());
+            }
+            return;
+        }
+        cacheManager.incrementCoalescingFollowers();
+        if (synLog.isTraceOrDebugEnabled()) {
+            synLog.traceOrDebug("Message ID : " + synCtx.getMessageID() + " waits for the in-flight response of "
+                    + "request hash : " + cachedResponse.getRequestHash());
+        }
+        try {
+            if (!cachedResponse.awaitInFlightResponse(coalescingMaxWaitTime)) {
+                cacheManager.incrementCoalescingTimeouts();
+                if (synLog.isTraceOrDebugEnabled()) {
+                    synLog.traceOrDebug("Timed out waiting for the in-flight response of request hash : "
+                            + cachedResponse.getRequestHash());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            synLog.traceOrDebug("Interrupted while waiting for the in-flight response");
+        }
+    }
+
     /**
      * This method returns the existing cached response.
      * @param synCtx Message context.
@@ -339,11 +627,15 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
                 }
                 msgCtx.getEnvelope().getBody().addChild(response);
 
-            } else {
+            } else if (cachedResponse.getResponseEnvelope() != null) {
                 msgCtx.setEnvelope(MessageHelper.cloneSOAPEnvelope(cachedResponse.getResponseEnvelope()));
+            } else {
+                msgCtx.setEnvelope(buildEnvelope(cachedResponse));
             }
         } catch (AxisFault e) {
             handleException("Error creating response OM from cache : " + id, synCtx);
+        } catch (IOException e) {
+            handleException("Error reading the serialized response from cache : " + id, e, synCtx);
         }
         if (CachingConstants.HTTP_PROTOCOL_TYPE.equals(getProtocolType())) {
             if (cachedResponse.getStatusCode() != null) {
@@ -403,6 +695,56 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         }
     }
 
+    /**
+     * Builds the response envelope from the serialized bytes of the cached response. The envelope is built on demand
+     * while it is being read, hence a cache hit which is sent back as it is streams the bytes without building the
+     * whole tree.
+     *
+     * @param cachedResponse cached response holding the serialized envelope
+     * @return the response envelope
+     * @throws IOException if the compressed bytes cannot be read
+     */
+    private SOAPEnvelope buildEnvelope(CachableResponse cachedResponse) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(cachedResponse.getResponsePayload());
+        if (cachedResponse.isCompressionEnabled()) {
+            inputStream = new GZIPInputStream(inputStream);
+        }
+        return OMXMLBuilderFactory.createSOAPModelBuilder(inputStream, null).getSOAPEnvelope();
+    }
+
+    /**
+     * Serializes the response envelope, compressing it if required. If a maximum message size is specified the
+     * serialized (and compressed) bytes are bounded by it.
+     *
+     * @param synCtx   the current message (response)
+     * @param synLog   the Synapse log to use
+     * @param response the cache entry of the request hash
+     * @return the serialized envelope or null if it exceeds the maximum message size
+     */
+    private byte[] serializeEnvelope(MessageContext synCtx, SynapseLog synLog, CachableResponse response) {
+        ByteArrayOutputStream baos;
+        if (response.getMaxMessageSize() > -1) {
+            baos = new FixedByteArrayOutputStream(response.getMaxMessageSize());
+        } else {
+            baos = new ByteArrayOutputStream();
+        }
+        try {
+            if (response.isCompressionEnabled()) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(baos);
+                synCtx.getEnvelope().serialize(gzipOutputStream);
+                gzipOutputStream.finish();
+            } else {
+                synCtx.getEnvelope().serialize(baos);
+            }
+            return baos.toByteArray();
+        } catch (XMLStreamException | IOException e) {
+            handleException("Error in serializing the response to be cached", e, synCtx);
+        } catch (SynapseException syne) {
+            synLog.traceOrDebug("Message size exceeds the upper bound for caching, request will not be cached");
+        }
+        return null;
+    }
+
     /**
      * Process a response message through this cache mediator. This finds the Cache used, and updates it for the
      * corresponding request hash
@@ -410,149 +752,218 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
      * @param synLog the Synapse log to use
      * @param synCtx the current message (response)
      * @param cfgCtx the abstract context in which the cache will be kept
+     * @return should this mediator terminate further processing?
      */
-    @SuppressWarnings("unchecked")
-    private void processResponseMessage(MessageContext synCtx, ConfigurationContext cfgCtx, SynapseLog synLog) {
+    private boolean processResponseMessage(MessageContext synCtx, ConfigurationContext cfgCtx, SynapseLog synLog) {
         if (!collector) {
             handleException("Response messages cannot be handled in a non collector cache", synCtx);
         }
         org.apache.axis2.context.MessageContext msgCtx = ((Axis2MessageContext) synCtx).getAxis2MessageContext();
         CachableResponse response = (CachableResponse) synCtx.getProperty(CachingConstants.CACHED_OBJECT);
+        boolean backgroundRefresh = Boolean.TRUE.equals(synCtx.getProperty(CachingConstants.BACKGROUND_REFRESH));
 
         if (response != null) {
-            boolean toCache = true;
-            if (CachingConstants.HTTP_PROTOCOL_TYPE.equals(response.getProtocolType())) {
-                Object httpStatus = msgCtx.getProperty(NhttpConstants.HTTP_SC);
-                String statusCode = null;
-                //Honor no-store header if cacheControlEnabled.
-                // If "no-store" header presents in the response, returned response can not be cached.
-                if (response.isCacheControlEnabled() && HttpCachingFilter.isNoStore(msgCtx)) {
-                    response.clean();
-                    return;
-                }
-                //Need to check the data type of HTTP_SC to avoid classcast exceptions.
-                if (httpStatus instanceof String) {
-                    statusCode = ((String) httpStatus).trim();
-                } else if (httpStatus != null) {
-                    statusCode = String.valueOf(httpStatus);
+            try {
+                collectResponse(synCtx, synLog, msgCtx, response, backgroundRefresh);
+            } finally {
+                // wake up the requests coalesced on this response, whether it got cached or not
+                response.releaseWaitingRequests();
+                CachableResponse staleResponse =
+                        (CachableResponse) synCtx.getProperty(CachingConstants.STALE_OBJECT);
+                if (staleResponse != null) {
+                    // let another request refresh the stale response, if the refreshed one did not get cached
+                    staleResponse.releaseWaitingRequests();
                 }
+            }
+        } else {
+            synLog.auditWarn("A response message without a valid mapping to the " +
+                    "request hash found. Unable to store the response in cache");
+        }
 
-                if (statusCode != null) {
-                    //If status code is SC_NOT_MODIFIED then return the cached response.
-                    if (statusCode.equals(SC_NOT_MODIFIED)) {
+        if (backgroundRefresh) {
+            // the client has already been served from the cache, hence the response is consumed and dropped
+            try {
+                RelayUtils.buildMessage(msgCtx);
+            } catch (IOException | XMLStreamException e) {
+                synLog.auditWarn("Error occurred while consuming the refreshed response : " + e.getMessage());
+            }
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Refreshed the cached response for message ID : " + synCtx.getMessageID());
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stores the response message in the given cache entry if it satisfies the caching criteria.
+     *
+     * @param synCtx            the current message (response)
+     * @param synLog            the Synapse log to use
+     * @param msgCtx            the Axis2 message context of the response
+     * @param response          the cache entry of the request hash
+     * @param backgroundRefresh whether the client has already been served with the stale cached response
+     */
+    @SuppressWarnings("unchecked")
+    private void collectResponse(MessageContext synCtx, SynapseLog synLog,
+                                 org.apache.axis2.context.MessageContext msgCtx, CachableResponse response,
+                                 boolean backgroundRefresh) {
+        boolean toCache = true;
+        if (CachingConstants.HTTP_PROTOCOL_TYPE.equals(response.getProtocolType())) {
+            Object httpStatus = msgCtx.getProperty(NhttpConstants.HTTP_SC);
+            String statusCode = null;
+            //Honor no-store header if cacheControlEnabled.
+            // If "no-store" header presents in the response, returned response can not be cached.
+            if (response.isCacheControlEnabled() && HttpCachingFilter.isNoStore(msgCtx)) {
+                response.clean();
+                return;
+            }
+            //Need to check the data type of HTTP_SC to avoid classcast exceptions.
+            if (httpStatus instanceof String) {
+                statusCode = ((String) httpStatus).trim();
+            } else if (httpStatus != null) {
+                statusCode = String.valueOf(httpStatus);
+            }
+
+            if (statusCode != null) {
+                //If status code is SC_NOT_MODIFIED then return the cached response.
+                if (statusCode.equals(SC_NOT_MODIFIED)) {
+                    if (!backgroundRefresh) {
                         replaceEnvelopeWithCachedResponse(synCtx, synLog, msgCtx, response);
-                        return;
-                    }
-                    // Now create matcher object.
-                    Matcher m = response.getResponseCodePattern().matcher(statusCode);
-                    if (m.matches()) {
-                        response.setStatusCode(statusCode);
-                        response.setStatusReason((String) msgCtx.getProperty(PassThroughConstants.HTTP_SC_DESC));
-                    } else {
-                        toCache = false;
                     }
+                    return;
                 }
-
-                if (toCache) {
+                // Now create matcher object.
+                Matcher m = response.getResponseCodePattern().matcher(statusCode);
+                if (m.matches()) {
+                    response.setStatusCode(statusCode);
+                    response.setStatusReason((String) msgCtx.getProperty(PassThroughConstants.HTTP_SC_DESC));
+                } else {
                     toCache = false;
-                    String httpMethod = response.getHttpMethod();
-                    for (String method : response.getHTTPMethodsToCache()) {
-                        if (method.equals("*") || method.equals(httpMethod)) {
-                            toCache = true;
-                            break;
-                        }
-                    }
                 }
             }
-            if (toCache) {
 
-                String contentType = ((String) msgCtx.getProperty(Constants.Configuration.CONTENT_TYPE));
-                if (contentType != null) {
-                    contentType = contentType.split(";")[0];
+            if (toCache) {
+                toCache = false;
+                String httpMethod = response.getHttpMethod();
+                for (String method : response.getHTTPMethodsToCache()) {
+                    if (method.equals("*") || method.equals(httpMethod)) {
+                        toCache = true;
+                        break;
+                    }
                 }
+            }
+        }
+        if (toCache) {
+
+            String contentType = ((String) msgCtx.getProperty(Constants.Configuration.CONTENT_TYPE));
+            if (contentType != null) {
+                contentType = contentType.split(";")[0];
+            }
 
-                if (contentType != null && contentType.equals(jsonContentType)) {
-                    byte[] responsePayload = JsonUtil.jsonPayloadToByteArray(msgCtx);
-                    if (response.getMaxMessageSize() > -1 &&
-                            responsePayload.length > response.getMaxMessageSize()) {
+            // the response is published to the entry only once its properties are set, as the entry is read
+            // concurrently by the requests served from the cache
+            byte[] responsePayload = null;
+            SOAPEnvelope responseEnvelope = null;
+            boolean json = false;
+            if (contentType != null && contentType.equals(jsonContentType)) {
+                responsePayload = JsonUtil.jsonPayloadToByteArray(msgCtx);
+                if (response.getMaxMessageSize() > -1 &&
+                        responsePayload.length > response.getMaxMessageSize()) {
+                    synLog.traceOrDebug(
+                            "Message size exceeds the upper bound for caching, request will not be cached");
+                    return;
+                }
+                json = true;
+            } else if (response.isSerializedStorageEnabled()) {
+                responsePayload = serializeEnvelope(synCtx, synLog, response);
+                if (responsePayload == null) {
+                    return;
+                }
+            } else {
+                SOAPEnvelope clonedEnvelope = MessageHelper.cloneSOAPEnvelope(synCtx.getEnvelope());
+                if (response.getMaxMessageSize() > -1) {
+                    FixedByteArrayOutputStream fbaos = new FixedByteArrayOutputStream(
+                            response.getMaxMessageSize());
+                    try {
+                        clonedEnvelope.serialize(fbaos);
+                    } catch (XMLStreamException e) {
+                        handleException("Error in checking the message size", e, synCtx);
+                    } catch (SynapseException syne) {
                         synLog.traceOrDebug(
                                 "Message size exceeds the upper bound for caching, request will not be cached");
                         return;
-                    }
-                    response.setResponsePayload(responsePayload);
-                    response.setResponseEnvelope(null);
-                    response.setJson(true);
-                } else {
-                    SOAPEnvelope clonedEnvelope = MessageHelper.cloneSOAPEnvelope(synCtx.getEnvelope());
-                    if (response.getMaxMessageSize() > -1) {
-                        FixedByteArrayOutputStream fbaos = new FixedByteArrayOutputStream(
-                                response.getMaxMessageSize());
+                    } finally {
                         try {
-                            clonedEnvelope.serialize(fbaos);
-                        } catch (XMLStreamException e) {
-                            handleException("Error in checking the message size", e, synCtx);
-                        } catch (SynapseException syne) {
-                            synLog.traceOrDebug(
-                                    "Message size exceeds the upper bound for caching, request will not be cached");
-                            return;
-                        } finally {
-                            try {
-                                fbaos.close();
-                            } catch (IOException e) {
-                                handleException("Error occurred while closing the FixedByteArrayOutputStream ", e,
-                                        synCtx);
-                            }
+                            fbaos.close();
+                        } catch (IOException e) {
+                            handleException("Error occurred while closing the FixedByteArrayOutputStream ", e,
+                                    synCtx);
                         }
                     }
-
-                    response.setResponsePayload(null);
-                    response.setResponseEnvelope(clonedEnvelope);
-                    response.setJson(false);
-
                 }
 
-                if (synLog.isTraceOrDebugEnabled()) {
-                    synLog.traceOrDebug("Storing the response message into the cache with ID : "
-                            + id + " for request hash : " + response.getRequestHash());
-                }//remove
-                if (synLog.isTraceOrDebugEnabled()) {
-                    synLog.traceOrDebug(
-                            "Storing the response for the message with ID : " + synCtx.getMessageID() + " " +
-                                    "with request hash ID : " + response.getRequestHash() + " in the cache");
-                }
+                responseEnvelope = clonedEnvelope;
+            }
 
-                Map<String, String> headers =
-                        (Map<String, String>) msgCtx.getProperty(
-                                org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
-                String messageType = (String) msgCtx.getProperty(Constants.Configuration.MESSAGE_TYPE);
-                ConcurrentHashMap<String, Object> headerProperties = new ConcurrentHashMap<>();
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug("Storing the response message into the cache with ID : "
+                        + id + " for request hash : " + response.getRequestHash());
+            }//remove
+            if (synLog.isTraceOrDebugEnabled()) {
+                synLog.traceOrDebug(
+                        "Storing the response for the message with ID : " + synCtx.getMessageID() + " " +
+                                "with request hash ID : " + response.getRequestHash() + " in the cache");
+            }
 
-                //Store the response fetched time.
-                if (response.isCacheControlEnabled() || response.isAddAgeHeaderEnabled()) {
-                    try {
-                        HttpCachingFilter.setResponseCachedTime(headers, response);
-                    } catch (ParseException e) {
-                        synLog.auditWarn("Error occurred while parsing the date." + e.getMessage());
-                    }
+            Map<String, String> headers =
+                    (Map<String, String>) msgCtx.getProperty(
+                            org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS);
+            String messageType = (String) msgCtx.getProperty(Constants.Configuration.MESSAGE_TYPE);
+            ConcurrentHashMap<String, Object> headerProperties = new ConcurrentHashMap<>();
+
+            //Store the response fetched time.
+            if (response.isCacheControlEnabled() || response.isAddAgeHeaderEnabled()) {
+                try {
+                    HttpCachingFilter.setResponseCachedTime(headers, response);
+                } catch (ParseException e) {
+                    synLog.auditWarn("Error occurred while parsing the date." + e.getMessage());
                 }
-                //Individually copying All TRANSPORT_HEADERS to headerProperties Map instead putting whole
-                //TRANSPORT_HEADERS map as single Key/Value pair to fix hazelcast serialization issue.
-                for (Map.Entry<String, String> entry : headers.entrySet()) {
-                    headerProperties.put(entry.getKey(), entry.getValue());
+            }
+            //Individually copying All TRANSPORT_HEADERS to headerProperties Map instead putting whole
+            //TRANSPORT_HEADERS map as single Key/Value pair to fix hazelcast serialization issue.
+            for (Map.Entry<String, String> entry : headers.entrySet()) {
+                headerProperties.put(entry.getKey(), entry.getValue());
+            }
+            headerProperties.put(Constants.Configuration.MESSAGE_TYPE, messageType);
+            headerProperties.put(CachingConstants.CACHE_KEY, response.getRequestHash());
+            response.setCachedTime(System.currentTimeMillis());
+            response.publishResponse(responsePayload, responseEnvelope, json, headerProperties);
+            msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, headerProperties);
+
+            String cacheId = (String) synCtx.getProperty(CachingConstants.MEDIATOR_CACHE_ID);
+            if (cacheId != null) {
+                LoadingCache<String, CachableResponse> cache = cacheManager.get(cacheId);
+                if (cache != null) {
+                    // re-insert the filled response so that the cache weighs it by its payload size
+                    cache.put(response.getRequestHash(), response);
                 }
-                headerProperties.put(Constants.Configuration.MESSAGE_TYPE, messageType);
-                headerProperties.put(CachingConstants.CACHE_KEY, response.getRequestHash());
-                response.setHeaderProperties(headerProperties);
-                msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, headerProperties);
+            }
 
-            } else {
-                response.clean();
+            String sharedCacheName = (String) synCtx.getProperty(CachingConstants.DISTRIBUTED_CACHE_NAME);
+            if (sharedCacheName != null) {
+                try {
+                    cacheManager.getDistributedCacheProvider().put(sharedCacheName, response.getRequestHash(),
+                                                                   response, response.getTimeout());
+                } catch (CachingException e) {
+                    synLog.auditWarn("Unable to share the response through the distributed cache : "
+                            + sharedCacheName + " " + e.getMessage());
+                }
             }
+
         } else {
-            synLog.auditWarn("A response message without a valid mapping to the " +
-                    "request hash found. Unable to store the response in cache");
+            response.clean();
         }
-
     }
 
     /**
@@ -563,24 +974,43 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
     public LoadingCache<String, CachableResponse> getMediatorCache() {
         LoadingCache<String, CachableResponse> cache = cacheManager.get(id);
         if (cache == null) {
-            if (inMemoryCacheSize > -1) {
-                cache = CacheBuilder.newBuilder().expireAfterWrite(timeout,
-                        TimeUnit.SECONDS).maximumSize(inMemoryCacheSize)
-                        .build(new CacheLoader<String, CachableResponse>() {
-                            @Override
-                            public CachableResponse load(String requestHash) throws Exception {
-                                return cacheNewResponse(requestHash);
+            CacheLoader<String, CachableResponse> loader = new CacheLoader<String, CachableResponse>() {
+                @Override
+                public CachableResponse load(String requestHash) throws Exception {
+                    return cacheNewResponse(requestHash);
+                }
+            };
+            // stale responses are kept for the stale-while-revalidate window after the timeout
+            long expiryTime = timeout + staleWhileRevalidateWindow;
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().expireAfterWrite(expiryTime,
+                    TimeUnit.SECONDS);
+            if (offHeapSizeInBytes > -1 && maxSizeInBytes < 0 && inMemoryCacheSize < 0) {
+                log.warn("The off-heap cache of the cache : " + id + " is not used, as the responses are moved to it "
+                                 + "only when the on-heap cache exceeds its maxSize or maxSizeInBytes");
+            } else if (offHeapSizeInBytes > -1) {
+                final OffHeapCacheTier offHeapTier = new OffHeapCacheTier(offHeapSizeInBytes, expiryTime,
+                                                                          promotionThreshold);
+                cacheManager.putOffHeapTier(id, offHeapTier);
+                // responses evicted due to the size bound of the on-heap cache are demoted to the off-heap tier
+                builder.removalListener(new RemovalListener<String, CachableResponse>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<String, CachableResponse> notification) {
+                        if (notification.getCause() == RemovalCause.SIZE && notification.getValue() != null) {
+                            try {
+                                offHeapTier.put(notification.getKey(), notification.getValue());
+                            } catch (IOException e) {
+                                log.warn("Unable to move the response to the off-heap cache : " + id, e);
                             }
-                        });
+                        }
+                    }
+                });
+            }
+            if (maxSizeInBytes > -1) {
+                cache = builder.maximumWeight(maxSizeInBytes).weigher(PAYLOAD_WEIGHER).build(loader);
+            } else if (inMemoryCacheSize > -1) {
+                cache = builder.maximumSize(inMemoryCacheSize).build(loader);
             } else {
-                cache = CacheBuilder.newBuilder().expireAfterWrite(timeout,
-                        TimeUnit.SECONDS).build(
-                        new CacheLoader<String, CachableResponse>() {
-                            @Override
-                            public CachableResponse load(String requestHash) throws Exception {
-                                return cacheNewResponse(requestHash);
-                            }
-                        });
+                cache = builder.build(loader);
             }
             cacheManager.put(id, cache);
         }
@@ -874,6 +1304,218 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
         this.addAgeHeaderEnabled = addAgeHeaderEnabled;
     }
 
+    /**
+     * This method gives the way non-json responses are stored in the cache.
+     *
+     * @return either envelope or serialized.
+     */
+    public String getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * This method sets the way non-json responses are stored in the cache.
+     *
+     * @param storageType either envelope or serialized.
+     */
+    public void setStorageType(String storageType) {
+        this.storageType = storageType;
+    }
+
+    /**
+     * This method returns whether non-json responses are stored as serialized bytes. This is always the case when the
+     * cache is bounded by bytes, since an envelope clone cannot be weighed, and when the responses are shared with the
+     * other nodes, since an envelope cannot be serialized.
+     *
+     * @return whether serialized storage is enabled or not.
+     */
+    public boolean isSerializedStorageEnabled() {
+        return CachingConstants.SERIALIZED_STORAGE.equals(storageType) || maxSizeInBytes > -1 ||
+                distributedCacheEnabled;
+    }
+
+    /**
+     * This method returns whether serialized responses are gzip compressed.
+     *
+     * @return whether compression is enabled or not.
+     */
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    /**
+     * This method sets whether serialized responses are gzip compressed.
+     *
+     * @param compressionEnabled whether compression is enabled or not.
+     */
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    /**
+     * This method gives the maximum number of payload bytes kept in the cache.
+     *
+     * @return maximum cache size in bytes.
+     */
+    public long getMaxSizeInBytes() {
+        return maxSizeInBytes;
+    }
+
+    /**
+     * This method sets the maximum number of payload bytes kept in the cache. When set, this replaces the entry count
+     * based bound.
+     *
+     * @param maxSizeInBytes maximum cache size in bytes.
+     */
+    public void setMaxSizeInBytes(long maxSizeInBytes) {
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * This method gives the time a response is kept and served after the timeout while it is refreshed.
+     *
+     * @return stale-while-revalidate window in seconds.
+     */
+    public long getStaleWhileRevalidateWindow() {
+        return staleWhileRevalidateWindow;
+    }
+
+    /**
+     * This method sets the time a response is kept and served after the timeout while it is refreshed.
+     *
+     * @param staleWhileRevalidateWindow stale-while-revalidate window in seconds.
+     */
+    public void setStaleWhileRevalidateWindow(long staleWhileRevalidateWindow) {
+        this.staleWhileRevalidateWindow = staleWhileRevalidateWindow;
+    }
+
+    /**
+     * This method gives the time before the timeout at which a cached response is refreshed in the background.
+     *
+     * @return refresh-ahead time in seconds.
+     */
+    public long getRefreshAheadTime() {
+        return refreshAheadTime;
+    }
+
+    /**
+     * This method sets the time before the timeout at which a cached response is refreshed in the background.
+     *
+     * @param refreshAheadTime refresh-ahead time in seconds.
+     */
+    public void setRefreshAheadTime(long refreshAheadTime) {
+        this.refreshAheadTime = refreshAheadTime;
+    }
+
+    /**
+     * This method gives the maximum number of bytes kept in the off-heap tier of the cache.
+     *
+     * @return maximum off-heap tier size in bytes.
+     */
+    public long getOffHeapSizeInBytes() {
+        return offHeapSizeInBytes;
+    }
+
+    /**
+     * This method sets the maximum number of bytes kept in the off-heap tier of the cache. Only json responses and
+     * responses stored as serialized bytes are moved to the off-heap tier.
+     *
+     * @param offHeapSizeInBytes maximum off-heap tier size in bytes.
+     */
+    public void setOffHeapSizeInBytes(long offHeapSizeInBytes) {
+        this.offHeapSizeInBytes = offHeapSizeInBytes;
+    }
+
+    /**
+     * This method gives the number of reads after which a response in the off-heap tier is promoted.
+     *
+     * @return the promotion threshold.
+     */
+    public int getPromotionThreshold() {
+        return promotionThreshold;
+    }
+
+    /**
+     * This method sets the number of reads after which a response in the off-heap tier is promoted.
+     *
+     * @param promotionThreshold the promotion threshold.
+     */
+    public void setPromotionThreshold(int promotionThreshold) {
+        this.promotionThreshold = promotionThreshold;
+    }
+
+    /**
+     * This method returns whether concurrent cache misses for the same request hash are coalesced or not.
+     *
+     * @return whether request coalescing is enabled or not.
+     */
+    public boolean isRequestCoalescingEnabled() {
+        return requestCoalescingEnabled;
+    }
+
+    /**
+     * This method sets whether concurrent cache misses for the same request hash are coalesced or not.
+     *
+     * @param requestCoalescingEnabled whether request coalescing is enabled or not.
+     */
+    public void setRequestCoalescingEnabled(boolean requestCoalescingEnabled) {
+        this.requestCoalescingEnabled = requestCoalescingEnabled;
+    }
+
+    /**
+     * This method gives the maximum time a coalesced request waits for the in-flight response.
+     *
+     * @return maximum wait time in milliseconds.
+     */
+    public long getCoalescingMaxWaitTime() {
+        return coalescingMaxWaitTime;
+    }
+
+    /**
+     * This method sets the maximum time a coalesced request waits for the in-flight response.
+     *
+     * @param coalescingMaxWaitTime maximum wait time in milliseconds.
+     */
+    public void setCoalescingMaxWaitTime(long coalescingMaxWaitTime) {
+        this.coalescingMaxWaitTime = coalescingMaxWaitTime;
+    }
+
+    /**
+     * This method returns whether the responses are shared with the other nodes of the cluster.
+     *
+     * @return whether the distributed cache is enabled or not.
+     */
+    public boolean isDistributedCacheEnabled() {
+        return distributedCacheEnabled;
+    }
+
+    /**
+     * This method sets whether the responses are shared with the other nodes of the cluster.
+     *
+     * @param distributedCacheEnabled whether the distributed cache is enabled or not.
+     */
+    public void setDistributedCacheEnabled(boolean distributedCacheEnabled) {
+        this.distributedCacheEnabled = distributedCacheEnabled;
+    }
+
+    /**
+     * This method gives the name of the distributed cache the responses are shared through.
+     *
+     * @return name of the distributed cache.
+     */
+    public String getDistributedCacheName() {
+        return distributedCacheName;
+    }
+
+    /**
+     * This method sets the name of the distributed cache the responses are shared through.
+     *
+     * @param distributedCacheName name of the distributed cache.
+     */
+    public void setDistributedCacheName(String distributedCacheName) {
+        this.distributedCacheName = distributedCacheName;
+    }
+
     /**
      * This method sets the id of the cache configuration.
      *
@@ -963,4 +1605,25 @@ public class CacheMediator extends AbstractMediator implements ManagedLifecycle,
     public void setPreviousCacheImplementation(boolean previousCacheImplementation) {
         isPreviousCacheImplementation = previousCacheImplementation;
     }
+
+    /**
+     * Fault handler of a request which refreshes a cached response in the background. The client has already been
+     * served with the cached response, hence the fault is logged and the message is dropped, keeping the cached
+     * response until another request refreshes it.
+     */
+    static class RefreshFaultHandler extends FaultHandler {
+
+        private final CachableResponse staleResponse;
+
+        RefreshFaultHandler(CachableResponse staleResponse) {
+            this.staleResponse = staleResponse;
+        }
+
+        @Override
+        public void onFault(MessageContext synCtx) {
+            log.warn("Unable to refresh the cached response for request hash : " + staleResponse.getRequestHash()
+                    + ", error : " + synCtx.getProperty(SynapseConstants.ERROR_MESSAGE));
+            staleResponse.releaseWaitingRequests();
+        }
+    }
 }
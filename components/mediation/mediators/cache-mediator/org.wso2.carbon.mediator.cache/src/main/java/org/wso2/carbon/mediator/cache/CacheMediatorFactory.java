@@ -112,6 +112,31 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
      */
     private static final QName ATT_SIZE = new QName(CachingConstants.MAX_SIZE_STRING);
 
+    /**
+     * QName of the response storage type.
+     */
+    private static final QName ATT_STORAGE = new QName(CachingConstants.STORAGE_STRING);
+
+    /**
+     * QName of the compress attribute.
+     */
+    private static final QName ATT_COMPRESS = new QName(CachingConstants.COMPRESS_STRING);
+
+    /**
+     * QName of the maximum cache size in bytes.
+     */
+    private static final QName ATT_SIZE_IN_BYTES = new QName(CachingConstants.MAX_SIZE_IN_BYTES_STRING);
+
+    /**
+     * QName of the maximum off-heap tier size in bytes.
+     */
+    private static final QName ATT_OFF_HEAP_SIZE_IN_BYTES = new QName(CachingConstants.OFF_HEAP_SIZE_IN_BYTES_STRING);
+
+    /**
+     * QName of the off-heap tier promotion threshold.
+     */
+    private static final QName ATT_PROMOTION_THRESHOLD = new QName(CachingConstants.PROMOTION_THRESHOLD_STRING);
+
     /**
      * QName of the enableCacheControl.
      */
@@ -123,6 +148,49 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
     private static final QName INCLUDE_AGE_HEADER_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE,
                                                             CachingConstants.INCLUDE_AGE_HEADER_STRING);
 
+    /**
+     * QName of the requestCoalescing.
+     */
+    private static final QName REQUEST_COALESCING_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE,
+                                                                CachingConstants.REQUEST_COALESCING_STRING);
+
+    /**
+     * QName of the enabled attribute.
+     */
+    private static final QName ATT_ENABLED = new QName(CachingConstants.ENABLED_STRING);
+
+    /**
+     * QName of the maximum wait time.
+     */
+    private static final QName ATT_MAX_WAIT_TIME = new QName(CachingConstants.MAX_WAIT_TIME_STRING);
+
+    /**
+     * QName of the staleWhileRevalidate.
+     */
+    private static final QName STALE_WHILE_REVALIDATE_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE,
+                                                                    CachingConstants.STALE_WHILE_REVALIDATE_STRING);
+
+    /**
+     * QName of the stale-while-revalidate window.
+     */
+    private static final QName ATT_WINDOW = new QName(CachingConstants.WINDOW_STRING);
+
+    /**
+     * QName of the refresh-ahead time.
+     */
+    private static final QName ATT_REFRESH_AHEAD = new QName(CachingConstants.REFRESH_AHEAD_STRING);
+
+    /**
+     * QName of the distributed cache.
+     */
+    private static final QName DISTRIBUTED_Q = new QName(XMLConfigConstants.SYNAPSE_NAMESPACE,
+                                                         CachingConstants.DISTRIBUTED_STRING);
+
+    /**
+     * QName of the distributed cache name.
+     */
+    private static final QName ATT_NAME = new QName(CachingConstants.NAME_STRING);
+
     /**
      * QNama of the cache id.
      */
@@ -327,6 +395,56 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
                     cache.setOnCacheHitSequence(null);
                 }
 
+                OMElement requestCoalescingElem = elem.getFirstChildWithName(REQUEST_COALESCING_Q);
+                if (requestCoalescingElem != null) {
+                    OMAttribute enabledAttr = requestCoalescingElem.getAttribute(ATT_ENABLED);
+                    if (enabledAttr != null && StringUtils.isNotEmpty(enabledAttr.getAttributeValue())) {
+                        cache.setRequestCoalescingEnabled(Boolean.parseBoolean(enabledAttr.getAttributeValue().trim()));
+                    } else {
+                        cache.setRequestCoalescingEnabled(true);
+                    }
+
+                    OMAttribute maxWaitTimeAttr = requestCoalescingElem.getAttribute(ATT_MAX_WAIT_TIME);
+                    if (maxWaitTimeAttr != null && maxWaitTimeAttr.getAttributeValue() != null) {
+                        cache.setCoalescingMaxWaitTime(Long.parseLong(maxWaitTimeAttr.getAttributeValue().trim()));
+                    } else {
+                        cache.setCoalescingMaxWaitTime(CachingConstants.DEFAULT_COALESCING_MAX_WAIT_TIME);
+                    }
+                }
+
+                OMElement staleWhileRevalidateElem = elem.getFirstChildWithName(STALE_WHILE_REVALIDATE_Q);
+                if (staleWhileRevalidateElem != null) {
+                    OMAttribute windowAttr = staleWhileRevalidateElem.getAttribute(ATT_WINDOW);
+                    if (windowAttr != null && windowAttr.getAttributeValue() != null) {
+                        cache.setStaleWhileRevalidateWindow(Long.parseLong(windowAttr.getAttributeValue().trim()));
+                    }
+
+                    OMAttribute refreshAheadAttr = staleWhileRevalidateElem.getAttribute(ATT_REFRESH_AHEAD);
+                    if (refreshAheadAttr != null && refreshAheadAttr.getAttributeValue() != null) {
+                        cache.setRefreshAheadTime(Long.parseLong(refreshAheadAttr.getAttributeValue().trim()));
+                    }
+                }
+
+                OMElement distributedElem = elem.getFirstChildWithName(DISTRIBUTED_Q);
+                if (distributedElem != null) {
+                    OMAttribute enabledAttr = distributedElem.getAttribute(ATT_ENABLED);
+                    if (enabledAttr != null && StringUtils.isNotEmpty(enabledAttr.getAttributeValue())) {
+                        cache.setDistributedCacheEnabled(Boolean.parseBoolean(enabledAttr.getAttributeValue().trim()));
+                    } else {
+                        cache.setDistributedCacheEnabled(true);
+                    }
+
+                    OMAttribute nameAttr = distributedElem.getAttribute(ATT_NAME);
+                    if (nameAttr != null && StringUtils.isNotEmpty(nameAttr.getAttributeValue())) {
+                        cache.setDistributedCacheName(nameAttr.getAttributeValue().trim());
+                    } else if (idAttribute != null && StringUtils.isNotEmpty(idAttribute.getAttributeValue())) {
+                        // the generated id differs among the nodes, hence only a configured one can name the cache
+                        cache.setDistributedCacheName(idAttribute.getAttributeValue().trim());
+                    } else if (cache.isDistributedCacheEnabled()) {
+                        handleException("The distributed cache requires a name or the id of the cache");
+                    }
+                }
+
                 OMElement implElem = elem.getFirstChildWithName(IMPLEMENTATION_Q);
                 if (implElem != null) {
                     OMAttribute sizeAttr = implElem.getAttribute(ATT_SIZE);
@@ -341,6 +459,44 @@ public class CacheMediatorFactory extends AbstractMediatorFactory {
                     if (typeAttribute != null && typeAttribute.getAttributeValue() != null) {
                         cache.setImplementationType(typeAttribute.getAttributeValue().trim());
                     }
+
+                    OMAttribute storageAttr = implElem.getAttribute(ATT_STORAGE);
+                    if (storageAttr != null && storageAttr.getAttributeValue() != null) {
+                        String storageType = storageAttr.getAttributeValue().trim();
+                        if (!(CachingConstants.ENVELOPE_STORAGE.equals(storageType) ||
+                                CachingConstants.SERIALIZED_STORAGE.equals(storageType))) {
+                            handleException("Unexpected storage type: " + storageType);
+                        }
+                        cache.setStorageType(storageType);
+                    }
+
+                    OMAttribute compressAttr = implElem.getAttribute(ATT_COMPRESS);
+                    if (compressAttr != null && StringUtils.isNotEmpty(compressAttr.getAttributeValue())) {
+                        cache.setCompressionEnabled(Boolean.parseBoolean(compressAttr.getAttributeValue().trim()));
+                    }
+
+                    OMAttribute sizeInBytesAttr = implElem.getAttribute(ATT_SIZE_IN_BYTES);
+                    if (sizeInBytesAttr != null && sizeInBytesAttr.getAttributeValue() != null) {
+                        cache.setMaxSizeInBytes(Long.parseLong(sizeInBytesAttr.getAttributeValue().trim()));
+                    }
+
+                    OMAttribute offHeapSizeAttr = implElem.getAttribute(ATT_OFF_HEAP_SIZE_IN_BYTES);
+                    if (offHeapSizeAttr != null && offHeapSizeAttr.getAttributeValue() != null) {
+                        cache.setOffHeapSizeInBytes(Long.parseLong(offHeapSizeAttr.getAttributeValue().trim()));
+                        // responses are moved to the off-heap tier only when the on-heap cache exceeds its bound
+                        if (cache.getOffHeapSizeInBytes() > -1 && cache.getMaxSizeInBytes() < 0
+                                && cache.getInMemoryCacheSize() < 0) {
+                            handleException("The " + CachingConstants.OFF_HEAP_SIZE_IN_BYTES_STRING + " requires "
+                                                    + CachingConstants.MAX_SIZE_STRING + " or "
+                                                    + CachingConstants.MAX_SIZE_IN_BYTES_STRING);
+                        }
+                    }
+
+                    OMAttribute promotionThresholdAttr = implElem.getAttribute(ATT_PROMOTION_THRESHOLD);
+                    if (promotionThresholdAttr != null && promotionThresholdAttr.getAttributeValue() != null) {
+                        cache.setPromotionThreshold(
+                                Integer.parseInt(promotionThresholdAttr.getAttributeValue().trim()));
+                    }
                 }
             } else {
                 handleException("The value for collector has to be either true or false");
@@ -155,10 +155,59 @@ public class CacheMediatorSerializer extends AbstractMediatorSerializer {
                 cacheElem.addChild(protocolElem);
             }
 
-            if (cacheMediator.getInMemoryCacheSize() > -1) {
+            if (cacheMediator.isRequestCoalescingEnabled()) {
+                OMElement requestCoalescingElem = fac.createOMElement(CachingConstants.REQUEST_COALESCING_STRING,
+                                                                      synNS);
+                requestCoalescingElem.addAttribute(fac.createOMAttribute(CachingConstants.ENABLED_STRING, nullNS,
+                                                                         "true"));
+                requestCoalescingElem.addAttribute(fac.createOMAttribute(CachingConstants.MAX_WAIT_TIME_STRING, nullNS,
+                        Long.toString(cacheMediator.getCoalescingMaxWaitTime())));
+                cacheElem.addChild(requestCoalescingElem);
+            }
+
+            if (cacheMediator.getStaleWhileRevalidateWindow() > 0 || cacheMediator.getRefreshAheadTime() > 0) {
+                OMElement staleWhileRevalidateElem = fac.createOMElement(
+                        CachingConstants.STALE_WHILE_REVALIDATE_STRING, synNS);
+                staleWhileRevalidateElem.addAttribute(fac.createOMAttribute(CachingConstants.WINDOW_STRING, nullNS,
+                        Long.toString(cacheMediator.getStaleWhileRevalidateWindow())));
+                staleWhileRevalidateElem.addAttribute(fac.createOMAttribute(CachingConstants.REFRESH_AHEAD_STRING,
+                        nullNS, Long.toString(cacheMediator.getRefreshAheadTime())));
+                cacheElem.addChild(staleWhileRevalidateElem);
+            }
+
+            if (cacheMediator.isDistributedCacheEnabled()) {
+                OMElement distributedElem = fac.createOMElement(CachingConstants.DISTRIBUTED_STRING, synNS);
+                distributedElem.addAttribute(fac.createOMAttribute(CachingConstants.ENABLED_STRING, nullNS, "true"));
+                distributedElem.addAttribute(fac.createOMAttribute(CachingConstants.NAME_STRING, nullNS,
+                        cacheMediator.getDistributedCacheName()));
+                cacheElem.addChild(distributedElem);
+            }
+
+            if (cacheMediator.getInMemoryCacheSize() > -1 || cacheMediator.getMaxSizeInBytes() > -1 ||
+                    !CachingConstants.ENVELOPE_STORAGE.equals(cacheMediator.getStorageType()) ||
+                    cacheMediator.getOffHeapSizeInBytes() > -1) {
                 OMElement implElem = fac.createOMElement(CachingConstants.IMPLEMENTATION_STRING, synNS);
-                implElem.addAttribute(fac.createOMAttribute(CachingConstants.MAX_SIZE_STRING, nullNS,
-                                                            Integer.toString(cacheMediator.getInMemoryCacheSize())));
+                if (cacheMediator.getInMemoryCacheSize() > -1) {
+                    implElem.addAttribute(fac.createOMAttribute(CachingConstants.MAX_SIZE_STRING, nullNS,
+                            Integer.toString(cacheMediator.getInMemoryCacheSize())));
+                }
+                if (cacheMediator.getMaxSizeInBytes() > -1) {
+                    implElem.addAttribute(fac.createOMAttribute(CachingConstants.MAX_SIZE_IN_BYTES_STRING, nullNS,
+                            Long.toString(cacheMediator.getMaxSizeInBytes())));
+                }
+                if (!CachingConstants.ENVELOPE_STORAGE.equals(cacheMediator.getStorageType())) {
+                    implElem.addAttribute(fac.createOMAttribute(CachingConstants.STORAGE_STRING, nullNS,
+                            cacheMediator.getStorageType()));
+                }
+                if (cacheMediator.isCompressionEnabled()) {
+                    implElem.addAttribute(fac.createOMAttribute(CachingConstants.COMPRESS_STRING, nullNS, "true"));
+                }
+                if (cacheMediator.getOffHeapSizeInBytes() > -1) {
+                    implElem.addAttribute(fac.createOMAttribute(CachingConstants.OFF_HEAP_SIZE_IN_BYTES_STRING,
+                            nullNS, Long.toString(cacheMediator.getOffHeapSizeInBytes())));
+                    implElem.addAttribute(fac.createOMAttribute(CachingConstants.PROMOTION_THRESHOLD_STRING, nullNS,
+                            Integer.toString(cacheMediator.getPromotionThreshold())));
+                }
                 if (isPreviousCacheImplementation) {
                     implElem.addAttribute(fac.createOMAttribute(CachingConstants.TYPE_STRING, nullNS,
                             cacheMediator.getImplementationType()));
@@ -94,6 +94,57 @@ public class CachingConstants {
      */
     public static final boolean DEFAULT_ADD_AGE_HEADER = false;
 
+    /**
+     * Stores non-json responses as {@link org.apache.axiom.soap.SOAPEnvelope} clones.
+     */
+    public static final String ENVELOPE_STORAGE = "envelope";
+
+    /**
+     * Stores non-json responses as serialized bytes.
+     */
+    public static final String SERIALIZED_STORAGE = "serialized";
+
+    /**
+     * String key to mark a request which revalidates a stale cached response, while the client is served with it.
+     */
+    public static final String BACKGROUND_REFRESH = "cacheBackgroundRefresh";
+
+    /**
+     * String key to store the cached response which is being refreshed in the background, in the message context.
+     */
+    public static final String STALE_OBJECT = "cacheStaleObject";
+
+    /**
+     * String key to store the id of the cache the request was looked up in, in the message context.
+     */
+    public static final String MEDIATOR_CACHE_ID = "mediatorCacheId";
+
+    /**
+     * String key to store the name of the distributed cache the response is shared through, in the message context.
+     */
+    public static final String DISTRIBUTED_CACHE_NAME = "distributedMediatorCacheName";
+
+    /**
+     * System property to specify the {@link DistributedCacheProvider} implementation used by the node.
+     */
+    public static final String DISTRIBUTED_CACHE_PROVIDER_PROPERTY = "mediator.cache.distributed.provider";
+
+    /**
+     * The default number of reads after which a response in the off-heap tier is promoted to the on-heap cache.
+     */
+    public static final int DEFAULT_PROMOTION_THRESHOLD = 2;
+
+    /**
+     * The default value for requestCoalescing.
+     */
+    public static final boolean DEFAULT_REQUEST_COALESCING = false;
+
+    /**
+     * The default time in milliseconds a concurrent cache miss waits for the in-flight response of the same request
+     * hash when request coalescing is enabled.
+     */
+    public static final long DEFAULT_COALESCING_MAX_WAIT_TIME = 5000;
+
     /**
      * Headers which need to be permanently excluded in hashing due to its dynamic nature.
      */
@@ -124,7 +175,21 @@ public class CachingConstants {
     public static final String NO_CACHE_STRING = "no-cache";
     public static final String MAX_AGE_STRING = "max-age";
     public static final String NO_STORE_STRING = "no-store";
+    public static final String STALE_WHILE_REVALIDATE_DIRECTIVE = "stale-while-revalidate";
     public static final String ID_STRING = "id";
     public static final String SCOPE_STRING = "scope";
     public static final String PERMANENTLY_EXCLUDED_HEADERS_STRING = "permanently-excluded-headers";
+    public static final String REQUEST_COALESCING_STRING = "requestCoalescing";
+    public static final String ENABLED_STRING = "enabled";
+    public static final String MAX_WAIT_TIME_STRING = "maxWaitTime";
+    public static final String STORAGE_STRING = "storage";
+    public static final String COMPRESS_STRING = "compress";
+    public static final String MAX_SIZE_IN_BYTES_STRING = "maxSizeInBytes";
+    public static final String OFF_HEAP_SIZE_IN_BYTES_STRING = "offHeapSizeInBytes";
+    public static final String PROMOTION_THRESHOLD_STRING = "promotionThreshold";
+    public static final String STALE_WHILE_REVALIDATE_STRING = "staleWhileRevalidate";
+    public static final String WINDOW_STRING = "window";
+    public static final String REFRESH_AHEAD_STRING = "refreshAhead";
+    public static final String DISTRIBUTED_STRING = "distributed";
+    public static final String NAME_STRING = "name";
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.mediator.cache;
+
+import java.util.Properties;
+
+/**
+ * Service provider interface of a store which shares the cached responses among the cache mediators of all the nodes
+ * of a cluster, so that a response fetched by a node is served from the cache by the others. The store is also used
+ * to broadcast the invalidation of the cache, so that it applies to the whole cluster.
+ * <p>
+ * The implementation used by the node is specified with the
+ * {@link CachingConstants#DISTRIBUTED_CACHE_PROVIDER_PROPERTY} system property, and it must have a public no argument
+ * constructor. {@link HazelcastCacheProvider} is used if the property is not set, which requires the optional Hazelcast
+ * bundle to be installed in the server. Responses are shared in their {@link java.io.Serializable} form, hence the
+ * envelope of a non json response is stored as serialized bytes.
+ * <p>
+ * The provider is created when a distributed cache is first used, and destroyed once all the mediators using it are
+ * undeployed.
+ */
+public interface DistributedCacheProvider {
+
+    /**
+     * Initializes the provider. This is called once before the provider is used.
+     *
+     * @param properties the system properties of the node
+     * @throws CachingException if the store cannot be reached
+     */
+    void init(Properties properties) throws CachingException;
+
+    /**
+     * @param cacheName   the name of the distributed cache
+     * @param requestHash the request hash of the response
+     * @return a copy of the shared response or null if there is no live response for the request hash
+     */
+    CachableResponse get(String cacheName, String requestHash);
+
+    /**
+     * Shares the given response with the other nodes.
+     *
+     * @param cacheName   the name of the distributed cache
+     * @param requestHash the request hash of the response
+     * @param response    the response to be shared
+     * @param timeToLive  the time in seconds the response is kept in the store
+     */
+    void put(String cacheName, String requestHash, CachableResponse response, long timeToLive);
+
+    /**
+     * Removes all the shared responses and notifies the invalidation listeners of all the nodes, including this one.
+     */
+    void invalidateAll();
+
+    /**
+     * Registers a listener to be notified when the cache is invalidated by any node of the cluster.
+     *
+     * @param listener the listener to be notified
+     */
+    void addInvalidationListener(CacheInvalidationListener listener);
+
+    /**
+     * Releases the resources held by the provider.
+     */
+    void destroy();
+}
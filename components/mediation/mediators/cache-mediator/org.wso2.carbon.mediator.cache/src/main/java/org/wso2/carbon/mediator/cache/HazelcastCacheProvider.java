@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.mediator.cache;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.XmlConfigBuilder;
+import com.hazelcast.core.DistributedObject;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastException;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reference {@link DistributedCacheProvider} which shares the responses through an embedded Hazelcast member. The
+ * member is configured with the hazelcast.xml found through the hazelcast.config system property or the classpath,
+ * and with the Hazelcast defaults otherwise. The responses of each distributed cache are kept in a map of their own
+ * with per entry expiry, and the invalidations are broadcast through a topic.
+ * <p>
+ * Hazelcast is an optional dependency of the cache mediator. This provider can be used only if the Hazelcast bundle is
+ * installed in the server.
+ */
+public class HazelcastCacheProvider implements DistributedCacheProvider {
+
+    private static final Log log = LogFactory.getLog(HazelcastCacheProvider.class);
+
+    /**
+     * Prefix of the names of the maps which hold the shared responses, followed by the name of the distributed cache.
+     */
+    static final String RESPONSE_MAP_PREFIX = "synapse.mediator.cache.responses.";
+
+    /**
+     * Name of the topic through which the invalidations are broadcast.
+     */
+    static final String INVALIDATION_TOPIC_NAME = "synapse.mediator.cache.invalidation";
+
+    private HazelcastInstance hazelcastInstance;
+
+    /**
+     * Whether the Hazelcast member was started by this provider, hence should be shut down with it.
+     */
+    private boolean ownInstance;
+
+    private ITopic<String> invalidationTopic;
+
+    public HazelcastCacheProvider() {
+    }
+
+    /**
+     * Creates a provider which shares the responses through an existing Hazelcast member.
+     *
+     * @param hazelcastInstance the Hazelcast member to be used
+     */
+    public HazelcastCacheProvider(HazelcastInstance hazelcastInstance) {
+        this.hazelcastInstance = hazelcastInstance;
+    }
+
+    @Override
+    public void init(Properties properties) throws CachingException {
+        try {
+            if (hazelcastInstance == null) {
+                Config config = new XmlConfigBuilder().build();
+                // the responses are deserialized with the classes of the cache mediator
+                config.setClassLoader(CachableResponse.class.getClassLoader());
+                hazelcastInstance = Hazelcast.newHazelcastInstance(config);
+                ownInstance = true;
+            }
+            invalidationTopic = hazelcastInstance.getTopic(INVALIDATION_TOPIC_NAME);
+        } catch (HazelcastException e) {
+            throw new CachingException("Unable to start the Hazelcast member of the distributed mediator cache", e);
+        }
+    }
+
+    @Override
+    public CachableResponse get(String cacheName, String requestHash) {
+        return getResponses(cacheName).get(requestHash);
+    }
+
+    @Override
+    public void put(String cacheName, String requestHash, CachableResponse response, long timeToLive) {
+        getResponses(cacheName).set(requestHash, response, timeToLive, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void invalidateAll() {
+        for (DistributedObject distributedObject : hazelcastInstance.getDistributedObjects()) {
+            if (distributedObject instanceof IMap && distributedObject.getName().startsWith(RESPONSE_MAP_PREFIX)) {
+                ((IMap) distributedObject).clear();
+            }
+        }
+        invalidationTopic.publish(hazelcastInstance.getCluster().getLocalMember().getUuid());
+    }
+
+    @Override
+    public void addInvalidationListener(final CacheInvalidationListener listener) {
+        invalidationTopic.addMessageListener(new MessageListener<String>() {
+            @Override
+            public void onMessage(Message<String> message) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Mediator cache invalidated by the member : " + message.getMessageObject());
+                }
+                listener.onInvalidation();
+            }
+        });
+    }
+
+    @Override
+    public void destroy() {
+        if (ownInstance && hazelcastInstance != null) {
+            hazelcastInstance.shutdown();
+        }
+    }
+
+    private IMap<String, CachableResponse> getResponses(String cacheName) {
+        return hazelcastInstance.getMap(RESPONSE_MAP_PREFIX + cacheName);
+    }
+}
@@ -65,10 +65,45 @@ public class MediatorCacheInvalidator implements MediatorCacheInvalidatorMBean {
 
     @Override
     public void invalidateTheWholeCache() {
-        cacheManager.clean();
+        cacheManager.invalidateAll();
         log.info("Total mediator cache has been invalidated.");
     }
 
+    @Override
+    public long getCoalescingLeaderCount() {
+        return cacheManager.getCoalescingLeaderCount();
+    }
+
+    @Override
+    public long getCoalescingFollowerCount() {
+        return cacheManager.getCoalescingFollowerCount();
+    }
+
+    @Override
+    public long getCoalescingTimeoutCount() {
+        return cacheManager.getCoalescingTimeoutCount();
+    }
+
+    @Override
+    public long getOffHeapHitCount() {
+        return cacheManager.getOffHeapHitCount();
+    }
+
+    @Override
+    public long getOffHeapMissCount() {
+        return cacheManager.getOffHeapMissCount();
+    }
+
+    @Override
+    public long getOffHeapEvictionCount() {
+        return cacheManager.getOffHeapEvictionCount();
+    }
+
+    @Override
+    public long getOffHeapSizeInBytes() {
+        return cacheManager.getOffHeapSizeInBytes();
+    }
+
     /**
      * This method gives the tenant domain.
      *
@@ -25,4 +25,39 @@ public interface MediatorCacheInvalidatorMBean {
      * This abstract method should be implemented to invalidate the whole mediator Cache.
      */
     void invalidateTheWholeCache();
+
+    /**
+     * @return number of cache misses which fetched the response from the backend on behalf of coalesced requests.
+     */
+    long getCoalescingLeaderCount();
+
+    /**
+     * @return number of cache misses which waited for the in-flight request with the same request hash.
+     */
+    long getCoalescingFollowerCount();
+
+    /**
+     * @return number of coalesced requests which timed out while waiting for the in-flight request.
+     */
+    long getCoalescingTimeoutCount();
+
+    /**
+     * @return number of hits in the off-heap cache tiers.
+     */
+    long getOffHeapHitCount();
+
+    /**
+     * @return number of misses in the off-heap cache tiers.
+     */
+    long getOffHeapMissCount();
+
+    /**
+     * @return number of entries evicted from the off-heap cache tiers.
+     */
+    long getOffHeapEvictionCount();
+
+    /**
+     * @return number of bytes held by the off-heap cache tiers.
+     */
+    long getOffHeapSizeInBytes();
 }
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.mediator.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Second level tier of the mediator cache which keeps serialized {@link CachableResponse}s in direct memory, outside
+ * the Java heap. Responses evicted from the on-heap cache due to its size bound are demoted to this tier, and are
+ * promoted back to the on-heap cache once they are read the configured number of times. Entries are evicted in the
+ * least recently used order when the byte quota of the tier is exceeded, and once the cache timeout elapses since the
+ * response was cached.
+ */
+public class OffHeapCacheTier {
+
+    /**
+     * The maximum number of serialized bytes kept in this tier.
+     */
+    private final long maxSizeInBytes;
+
+    /**
+     * The time in milliseconds a response is kept since it was cached.
+     */
+    private final long timeoutMillis;
+
+    /**
+     * The number of reads after which an entry is promoted to the on-heap cache.
+     */
+    private final int promotionThreshold;
+
+    /**
+     * Entries of this tier in the access order, which is used for the LRU eviction.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long sizeInBytes;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    /**
+     * @param maxSizeInBytes     the maximum number of serialized bytes kept in this tier
+     * @param timeout            the time in seconds a response is kept since it was cached
+     * @param promotionThreshold the number of reads after which an entry is promoted to the on-heap cache
+     */
+    OffHeapCacheTier(long maxSizeInBytes, long timeout, int promotionThreshold) {
+        this.maxSizeInBytes = maxSizeInBytes;
+        this.timeoutMillis = timeout * 1000;
+        this.promotionThreshold = promotionThreshold;
+    }
+
+    /**
+     * Stores the given response in this tier. Responses holding a {@link org.apache.axiom.soap.SOAPEnvelope} cannot be
+     * serialized, hence they are not stored.
+     *
+     * @param requestHash the request hash of the response
+     * @param response    the response to be stored
+     * @throws IOException if the response cannot be serialized
+     */
+    void put(String requestHash, CachableResponse response) throws IOException {
+        if (!response.isResponseAvailable() || response.getResponseEnvelope() != null) {
+            return;
+        }
+        long expiryTime = response.getCachedTime() + timeoutMillis;
+        if (expiryTime <= System.currentTimeMillis()) {
+            return;
+        }
+        byte[] serializedResponse = serialize(response);
+        if (serializedResponse.length > maxSizeInBytes) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(serializedResponse.length);
+        buffer.put(serializedResponse);
+        buffer.flip();
+
+        synchronized (this) {
+            Entry previous = entries.put(requestHash, new Entry(buffer, expiryTime));
+            if (previous != null) {
+                sizeInBytes -= previous.buffer.capacity();
+            }
+            sizeInBytes += serializedResponse.length;
+            evict();
+        }
+    }
+
+    /**
+     * Looks up the response of the given request hash in this tier.
+     *
+     * @param requestHash the request hash of the response
+     * @return the result of the lookup or null if there is no live entry for the request hash
+     * @throws IOException if the stored response cannot be deserialized
+     */
+    Lookup get(String requestHash) throws IOException {
+        byte[] serializedResponse;
+        boolean promote;
+        synchronized (this) {
+            Entry entry = entries.get(requestHash);
+            if (entry != null && entry.expiryTime <= System.currentTimeMillis()) {
+                remove(requestHash);
+                evictionCount++;
+                entry = null;
+            }
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+            serializedResponse = new byte[entry.buffer.capacity()];
+            entry.buffer.duplicate().get(serializedResponse);
+            promote = ++entry.readCount >= promotionThreshold;
+            if (promote) {
+                remove(requestHash);
+            }
+        }
+        return new Lookup(deserialize(serializedResponse), promote);
+    }
+
+    /**
+     * Removes all the entries of this tier.
+     */
+    synchronized void clear() {
+        entries.clear();
+        sizeInBytes = 0;
+    }
+
+    synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    synchronized long getMissCount() {
+        return missCount;
+    }
+
+    synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    synchronized long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private void remove(String requestHash) {
+        Entry entry = entries.remove(requestHash);
+        if (entry != null) {
+            sizeInBytes -= entry.buffer.capacity();
+        }
+    }
+
+    /**
+     * Removes the least recently used entries until the tier fits in its byte quota, together with the expired entries
+     * found at the least recently used end. Other expired entries are removed when they are looked up.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (sizeInBytes <= maxSizeInBytes && entry.expiryTime > now) {
+                break;
+            }
+            iterator.remove();
+            sizeInBytes -= entry.buffer.capacity();
+            evictionCount++;
+        }
+    }
+
+    private static byte[] serialize(CachableResponse response) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(baos)) {
+            outputStream.writeObject(response);
+        }
+        return baos.toByteArray();
+    }
+
+    private static CachableResponse deserialize(byte[] serializedResponse) throws IOException {
+        try (ObjectInputStream inputStream = new ObjectInputStream(new ByteArrayInputStream(serializedResponse))) {
+            return (CachableResponse) inputStream.readObject();
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to deserialize the cached response", e);
+        }
+    }
+
+    /**
+     * A response kept in this tier.
+     */
+    private static class Entry {
+
+        private final ByteBuffer buffer;
+
+        private final long expiryTime;
+
+        private int readCount;
+
+        Entry(ByteBuffer buffer, long expiryTime) {
+            this.buffer = buffer;
+            this.expiryTime = expiryTime;
+        }
+    }
+
+    /**
+     * The result of a lookup in this tier.
+     */
+    static class Lookup {
+
+        private final CachableResponse response;
+
+        private final boolean promoted;
+
+        Lookup(CachableResponse response, boolean promoted) {
+            this.response = response;
+            this.promoted = promoted;
+        }
+
+        /**
+         * @return a copy of the stored response
+         */
+        CachableResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * @return whether the entry got hot and was removed from this tier to be put in to the on-heap cache
+         */
+        boolean isPromoted() {
+            return promoted;
+        }
+    }
+}
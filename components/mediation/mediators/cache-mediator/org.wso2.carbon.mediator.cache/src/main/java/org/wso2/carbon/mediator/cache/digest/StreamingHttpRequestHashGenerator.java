@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.mediator.cache.digest;
+
+import org.apache.axiom.soap.SOAPBody;
+import org.apache.axis2.Constants;
+import org.apache.axis2.context.MessageContext;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.commons.json.JsonUtil;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
+import org.wso2.carbon.mediator.cache.CachingConstants;
+import org.wso2.carbon.mediator.cache.CachingException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A {@link DigestGenerator} for the HTTP protocol type which considers the same parts of the request as the
+ * {@link HttpRequestHashGenerator}, i.e. the To address, the transport headers and the payload of non GET requests.
+ * Instead of building a separate digest per element, attribute and text node, the payload is hashed in a single
+ * pass over its StAX events, feeding a canonical form (namespace aware names, sorted attributes, merged text and no
+ * comments) in to one digest reused by the thread. Json payloads are hashed over their raw bytes.
+ */
+public class StreamingHttpRequestHashGenerator implements DigestGenerator {
+
+    static final long serialVersionUID = 42L;
+
+    /**
+     * Log object to use when logging is required in this class.
+     */
+    private static final Log log = LogFactory.getLog(StreamingHttpRequestHashGenerator.class);
+
+    /**
+     * String representing the MD5 digest algorithm.
+     */
+    private static final String MD5_DIGEST_ALGORITHM = "MD5";
+
+    /**
+     * This value can be specified for the headersToExcludeInHash property to avoid all the headers when caching.
+     */
+    private static final String EXCLUDE_ALL_VAL = "*";
+
+    private static final byte ADDRESS = 1;
+    private static final byte HEADER = 2;
+    private static final byte ELEMENT_START = 3;
+    private static final byte ELEMENT_END = 4;
+    private static final byte ATTRIBUTE = 5;
+    private static final byte TEXT = 6;
+    private static final byte PROCESSING_INSTRUCTION = 7;
+    private static final byte JSON = 8;
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    /**
+     * Largest capacity of the text buffer a thread keeps after a request. A larger buffer, grown by a large payload,
+     * is dropped so that it is not held by the thread until it dies.
+     */
+    private static final int MAX_RETAINED_TEXT_CAPACITY = 16 * 1024;
+
+    /**
+     * The digest and the buffers reused by the thread across requests.
+     */
+    private static final ThreadLocal<DigestContext> DIGEST_CONTEXT = new ThreadLocal<DigestContext>() {
+        @Override
+        protected DigestContext initialValue() {
+            return new DigestContext();
+        }
+    };
+
+    String[] headers = {""};
+
+    String[] permanentlyExcludedHeaders = {};
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getDigest(MessageContext msgContext) throws CachingException {
+        String method = (String) msgContext.getProperty(Constants.Configuration.HTTP_METHOD);
+        boolean isGet = msgContext.isDoingREST() && (PassThroughConstants.HTTP_GET.equals(method) ||
+                PassThroughConstants.HTTP_DELETE.equals(method) ||
+                PassThroughConstants.HTTP_HEAD.equals(method));
+        if (isGet && msgContext.getTo() == null) {
+            return null;
+        }
+
+        DigestContext digestContext = DIGEST_CONTEXT.get();
+        try {
+            digestContext.reset();
+            if (msgContext.getTo() != null) {
+                digestContext.update(ADDRESS);
+                digestContext.update(msgContext.getTo().getAddress());
+            }
+            if (!EXCLUDE_ALL_VAL.equals(headers[0])) {
+                updateHeaders(digestContext, msgContext);
+            }
+            //If the HTTP method is GET do not hash the payload. Hash only url and headers.
+            if (!isGet) {
+                if (JsonUtil.hasAJsonPayload(msgContext)) {
+                    digestContext.update(JSON);
+                    digestContext.digest.update(JsonUtil.jsonPayloadToByteArray(msgContext));
+                } else {
+                    SOAPBody body = msgContext.getEnvelope().getBody();
+                    if (body == null) {
+                        return null;
+                    }
+                    updatePayload(digestContext, body);
+                }
+            }
+            return toHex(digestContext.digest.digest());
+        } finally {
+            digestContext.release();
+        }
+    }
+
+    /**
+     * Feeds the transport headers which are not excluded, in the case insensitive order of their names.
+     */
+    @SuppressWarnings("unchecked")
+    private void updateHeaders(DigestContext digestContext, MessageContext msgContext) {
+        Map<String, String> transportHeaders = (Map<String, String>) msgContext.getProperty(
+                MessageContext.TRANSPORT_HEADERS);
+        if (transportHeaders == null) {
+            return;
+        }
+        Map<String, String> sortedHeaders = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        sortedHeaders.putAll(transportHeaders);
+        for (String header : headers) {
+            sortedHeaders.remove(header);
+        }
+        //remove permanently excluded headers from hashing methods
+        for (String header : permanentlyExcludedHeaders) {
+            sortedHeaders.remove(header);
+        }
+        for (Map.Entry<String, String> entry : sortedHeaders.entrySet()) {
+            String key = entry.getKey();
+            if (!key.equalsIgnoreCase("Date") && !key.equalsIgnoreCase("User-Agent")) {
+                digestContext.update(HEADER);
+                digestContext.update(key);
+                digestContext.update(entry.getValue() != null ? entry.getValue() : "");
+            }
+        }
+    }
+
+    /**
+     * Feeds the canonical form of the payload while iterating its StAX events once.
+     */
+    private void updatePayload(DigestContext digestContext, SOAPBody body) throws CachingException {
+        XMLStreamReader reader = body.getXMLStreamReader();
+        try {
+            int event = reader.getEventType();
+            while (event != XMLStreamConstants.END_DOCUMENT) {
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        digestContext.flushText();
+                        digestContext.update(ELEMENT_START);
+                        updateName(digestContext, reader.getNamespaceURI(), reader.getLocalName());
+                        updateAttributes(digestContext, reader);
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        digestContext.flushText();
+                        digestContext.update(ELEMENT_END);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        // adjoining texts are merged
+                        digestContext.text.append(reader.getTextCharacters(), reader.getTextStart(),
+                                                  reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        digestContext.flushText();
+                        digestContext.update(PROCESSING_INSTRUCTION);
+                        digestContext.update(reader.getPITarget());
+                        digestContext.update(reader.getPIData() != null ? reader.getPIData() : "");
+                        break;
+                    default:
+                        // comments and the document events do not contribute to the hash
+                }
+                if (!reader.hasNext()) {
+                    break;
+                }
+                event = reader.next();
+            }
+            digestContext.flushText();
+        } catch (XMLStreamException e) {
+            handleException("Error in calculating the digest value for the payload", e);
+        }
+    }
+
+    /**
+     * Feeds the attributes of the current element sorted by their expanded names. Namespace declarations are not
+     * reported as attributes by the reader.
+     */
+    private void updateAttributes(DigestContext digestContext, XMLStreamReader reader) {
+        int count = reader.getAttributeCount();
+        if (count == 0) {
+            return;
+        }
+        if (count == 1) {
+            digestContext.update(ATTRIBUTE);
+            updateName(digestContext, reader.getAttributeNamespace(0), reader.getAttributeLocalName(0));
+            digestContext.update(reader.getAttributeValue(0));
+            return;
+        }
+        String[] names = new String[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            names[i] = namespace == null ? reader.getAttributeLocalName(i) :
+                    namespace + ":" + reader.getAttributeLocalName(i);
+            order[i] = i;
+        }
+        // attributes are few, hence an insertion sort on the indexes avoids allocating comparators
+        for (int i = 1; i < count; i++) {
+            int current = order[i];
+            int j = i - 1;
+            while (j >= 0 && names[order[j]].compareTo(names[current]) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = current;
+        }
+        for (int index : order) {
+            digestContext.update(ATTRIBUTE);
+            digestContext.update(names[index]);
+            digestContext.update(reader.getAttributeValue(index));
+        }
+    }
+
+    private void updateName(DigestContext digestContext, String namespace, String localName) {
+        digestContext.update(namespace != null ? namespace : "");
+        digestContext.update(localName);
+    }
+
+    private String toHex(byte[] digest) {
+        char[] chars = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            chars[i * 2] = HEX_CHARS[(digest[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX_CHARS[digest[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private void handleException(String message, Throwable cause) throws CachingException {
+        log.debug(message, cause);
+        throw new CachingException(message, cause);
+    }
+
+    @Override
+    public void init(Map<String, Object> properties) {
+        headers = (String[]) properties.get("headers-to-exclude");
+        if (headers == null || headers.length == 0) {
+            headers = new String[]{""};
+        }
+        permanentlyExcludedHeaders = (String[]) properties.get(CachingConstants.PERMANENTLY_EXCLUDED_HEADERS_STRING);
+        if (permanentlyExcludedHeaders == null) {
+            permanentlyExcludedHeaders = new String[0];
+        }
+    }
+
+    /**
+     * Holds the digest and the buffers used to feed it, which are reused by a thread across requests.
+     */
+    private static class DigestContext {
+
+        private final MessageDigest digest;
+
+        /**
+         * Buffer used to feed the UTF-16 code units of strings to the digest without encoding them in to new arrays.
+         */
+        private final byte[] buffer = new byte[4096];
+
+        /**
+         * Accumulates adjoining text events of the payload.
+         */
+        private StringBuilder text = new StringBuilder();
+
+        DigestContext() {
+            try {
+                digest = MessageDigest.getInstance(MD5_DIGEST_ALGORITHM);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("Can not locate the algorithm provided for the digest generation : "
+                        + MD5_DIGEST_ALGORITHM, e);
+            }
+        }
+
+        void reset() {
+            digest.reset();
+            text.setLength(0);
+        }
+
+        /**
+         * Drops the text buffer if it has grown beyond the capacity retained across requests.
+         */
+        void release() {
+            if (text.capacity() > MAX_RETAINED_TEXT_CAPACITY) {
+                text = new StringBuilder();
+            }
+        }
+
+        void update(byte type) {
+            digest.update(type);
+        }
+
+        /**
+         * Feeds the length followed by the characters, so that adjoining strings cannot be confused.
+         */
+        void update(CharSequence value) {
+            int length = value.length();
+            digest.update((byte) (length >>> 24));
+            digest.update((byte) (length >>> 16));
+            digest.update((byte) (length >>> 8));
+            digest.update((byte) length);
+            int position = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                buffer[position++] = (byte) (c >>> 8);
+                buffer[position++] = (byte) c;
+                if (position == buffer.length) {
+                    digest.update(buffer, 0, position);
+                    position = 0;
+                }
+            }
+            digest.update(buffer, 0, position);
+        }
+
+        void flushText() {
+            if (text.length() > 0) {
+                update(TEXT);
+                update(text);
+                text.setLength(0);
+            }
+        }
+    }
+}
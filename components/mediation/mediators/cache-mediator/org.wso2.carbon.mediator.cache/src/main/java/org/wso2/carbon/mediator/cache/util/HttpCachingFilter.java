@@ -71,7 +71,7 @@ public class HttpCachingFilter {
                         isNoCache = true;
                     }
                     if (cacheControlHeader.contains(CachingConstants.MAX_AGE_STRING)) {
-                        maxAge = Long.parseLong(cacheControlHeader.split("=")[1]);
+                        maxAge = getDirectiveValue(cacheControlHeader);
                     }
                 }
             }
@@ -80,6 +80,58 @@ public class HttpCachingFilter {
                 isValidateResponseWithETag(msgCtx, eTagValue, isNoCache);
     }
 
+    /**
+     * This method returns whether the max-age of the cached response has elapsed but it is still within the
+     * stale-while-revalidate period of its Cache-Control header, so that it can be served while it is revalidated.
+     *
+     * @param cachedResponse The cached response.
+     * @return True if the cached response can be served while it is revalidated with the backend.
+     */
+    public static boolean isStaleWhileRevalidate(CachableResponse cachedResponse) {
+        Map<String, Object> httpHeaders = cachedResponse.getHeaderProperties();
+        if (httpHeaders == null || httpHeaders.get(HttpHeaders.CACHE_CONTROL) == null) {
+            return false;
+        }
+        long maxAge = -1;
+        long staleWhileRevalidate = -1;
+        String cacheControlHeaderValue = String.valueOf(httpHeaders.get(HttpHeaders.CACHE_CONTROL));
+        for (String cacheControlHeader : cacheControlHeaderValue.split("\\s*,\\s*")) {
+            if (CachingConstants.NO_CACHE_STRING.equalsIgnoreCase(cacheControlHeader)) {
+                return false;
+            }
+            if (cacheControlHeader.startsWith(CachingConstants.STALE_WHILE_REVALIDATE_DIRECTIVE)) {
+                staleWhileRevalidate = getDirectiveValue(cacheControlHeader);
+            } else if (cacheControlHeader.contains(CachingConstants.MAX_AGE_STRING)) {
+                maxAge = getDirectiveValue(cacheControlHeader);
+            }
+        }
+        if (maxAge < 0 || staleWhileRevalidate <= 0) {
+            return false;
+        }
+        long responseExpirationTime = cachedResponse.getResponseFetchedTime() + maxAge * 1000;
+        long now = System.currentTimeMillis();
+        return responseExpirationTime < now && now <= responseExpirationTime + staleWhileRevalidate * 1000;
+    }
+
+    /**
+     * This method returns the number of seconds of a Cache-Control directive such as max-age=60.
+     *
+     * @param cacheControlHeader The Cache-Control directive.
+     * @return The number of seconds, or -1 if the directive does not have a valid number of seconds.
+     */
+    private static long getDirectiveValue(String cacheControlHeader) {
+        int index = cacheControlHeader.indexOf('=');
+        if (index < 0) {
+            return -1;
+        }
+        String value = StringUtils.strip(cacheControlHeader.substring(index + 1).trim(), "\"");
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
     /**
      * This method returns whether the cached response need to be validated using ETag.
      *
@@ -17,35 +17,55 @@
 
 package org.wso2.carbon.mediator.cache;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.net.HttpHeaders;
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
 import org.apache.axiom.om.OMAbstractFactory;
 import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
 import org.apache.axiom.om.util.UUIDGenerator;
 import org.apache.axiom.util.UIDGenerator;
 import org.apache.axis2.AxisFault;
+import org.apache.axis2.Constants;
+import org.apache.axis2.addressing.EndpointReference;
 import org.apache.axis2.context.ConfigurationContext;
 import org.apache.axis2.context.OperationContext;
 import org.apache.axis2.context.ServiceContext;
 import org.apache.axis2.description.InOutAxisOperation;
+import org.apache.axis2.engine.AxisConfiguration;
 import org.apache.commons.collections.map.MultiValueMap;
 import org.apache.synapse.MessageContext;
+import org.apache.synapse.SynapseException;
 import org.apache.synapse.config.SynapseConfigUtils;
 import org.apache.synapse.config.SynapseConfiguration;
 import org.apache.synapse.core.axis2.Axis2MessageContext;
+import org.apache.synapse.core.axis2.Axis2SynapseEnvironment;
 import org.apache.synapse.transport.nhttp.NhttpConstants;
+import org.apache.synapse.transport.passthru.PassThroughConstants;
 import org.custommonkey.xmlunit.XMLTestCase;
 import org.custommonkey.xmlunit.XMLUnit;
+import org.wso2.carbon.mediator.cache.digest.DigestGenerator;
+import org.wso2.carbon.mediator.cache.digest.StreamingHttpRequestHashGenerator;
 import org.wso2.carbon.mediator.cache.util.HttpCachingFilter;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * Test the functionality of the {@link CacheMediatorFactory} and the {@link CacheMediatorSerializer}
@@ -119,6 +139,326 @@ public class CacheMediatorTest extends XMLTestCase {
         }
     }
 
+    /**
+     * Test case for the requestCoalescing configuration.
+     */
+    public void testRequestCoalescingConfiguration() {
+        String coalescingMediatorXml =
+                "<cache xmlns=\"http://ws.apache.org/ns/synapse\" collector=\"false\" timeout=\"60\">\n" +
+                        "            <requestCoalescing enabled=\"true\" maxWaitTime=\"2000\"/>\n" +
+                        "         </cache>";
+        CacheMediatorFactory factory = new CacheMediatorFactory();
+        CacheMediator mediator = (CacheMediator) factory.createSpecificMediator(
+                SynapseConfigUtils.stringToOM(coalescingMediatorXml), new Properties());
+        assertTrue("Incorrect value for the requestCoalescing", mediator.isRequestCoalescingEnabled());
+        assertEquals("Incorrect value for the maxWaitTime", mediator.getCoalescingMaxWaitTime(), 2000);
+
+        OMElement serializedMediatorElement = new CacheMediatorSerializer().serializeSpecificMediator(mediator);
+        CacheMediator deserializedMediator =
+                (CacheMediator) factory.createSpecificMediator(serializedMediatorElement, new Properties());
+        assertTrue("requestCoalescing is not serialized", deserializedMediator.isRequestCoalescingEnabled());
+        assertEquals("maxWaitTime is not serialized", deserializedMediator.getCoalescingMaxWaitTime(), 2000);
+    }
+
+    /**
+     * Test case for the serialized storage and byte bounded cache configuration.
+     */
+    public void testSerializedStorageConfiguration() {
+        String storageMediatorXml =
+                "<cache xmlns=\"http://ws.apache.org/ns/synapse\" collector=\"false\" timeout=\"60\">\n" +
+                        "            <implementation storage=\"serialized\" compress=\"true\" " +
+                        "maxSizeInBytes=\"1048576\"/>\n" +
+                        "         </cache>";
+        CacheMediatorFactory factory = new CacheMediatorFactory();
+        CacheMediator mediator = (CacheMediator) factory.createSpecificMediator(
+                SynapseConfigUtils.stringToOM(storageMediatorXml), new Properties());
+        assertTrue("Incorrect value for the storage", mediator.isSerializedStorageEnabled());
+        assertTrue("Incorrect value for the compress", mediator.isCompressionEnabled());
+        assertEquals("Incorrect value for the maxSizeInBytes", mediator.getMaxSizeInBytes(), 1048576);
+        assertEquals("Incorrect value for the maxSize", mediator.getInMemoryCacheSize(), -1);
+
+        OMElement serializedMediatorElement = new CacheMediatorSerializer().serializeSpecificMediator(mediator);
+        CacheMediator deserializedMediator =
+                (CacheMediator) factory.createSpecificMediator(serializedMediatorElement, new Properties());
+        assertEquals("storage is not serialized", deserializedMediator.getStorageType(),
+                CachingConstants.SERIALIZED_STORAGE);
+        assertTrue("compress is not serialized", deserializedMediator.isCompressionEnabled());
+        assertEquals("maxSizeInBytes is not serialized", deserializedMediator.getMaxSizeInBytes(), 1048576);
+
+        CachableResponse cachedResponse = new CachableResponse();
+        assertEquals("Empty response should not be weighed", cachedResponse.getWeight(), 0);
+        cachedResponse.setResponsePayload(new byte[128]);
+        assertEquals("Incorrect weight for the cached response", cachedResponse.getWeight(), 128);
+    }
+
+    /**
+     * Test case for demotion, promotion and eviction in the off-heap cache tier.
+     *
+     * @throws IOException if the responses cannot be serialized
+     */
+    public void testOffHeapCacheTier() throws IOException {
+        OffHeapCacheTier offHeapTier = new OffHeapCacheTier(4096, 60, 2);
+        CachableResponse cachedResponse = new CachableResponse();
+        cachedResponse.setRequestHash("hash1");
+        cachedResponse.setResponsePayload("{\"name\":\"value\"}".getBytes());
+        cachedResponse.setJson(true);
+        cachedResponse.setCachedTime(System.currentTimeMillis());
+        offHeapTier.put("hash1", cachedResponse);
+        assertTrue("Response is not stored in the off-heap tier", offHeapTier.getSizeInBytes() > 0);
+
+        OffHeapCacheTier.Lookup lookup = offHeapTier.get("hash1");
+        assertNotNull("Response is not found in the off-heap tier", lookup);
+        assertFalse("Response should not be promoted on the first read", lookup.isPromoted());
+        assertTrue(Arrays.equals(lookup.getResponse().getResponsePayload(), cachedResponse.getResponsePayload()));
+        assertTrue("Response should be promoted on the second read", offHeapTier.get("hash1").isPromoted());
+        assertNull("Promoted response should be removed from the off-heap tier", offHeapTier.get("hash1"));
+
+        CachableResponse largeResponse = new CachableResponse();
+        largeResponse.setResponsePayload(new byte[3000]);
+        largeResponse.setCachedTime(System.currentTimeMillis());
+        offHeapTier.put("hash2", largeResponse);
+        offHeapTier.put("hash3", largeResponse);
+        assertNull("Least recently used response is not evicted", offHeapTier.get("hash2"));
+        assertNotNull(offHeapTier.get("hash3"));
+        assertEquals(offHeapTier.getEvictionCount(), 1);
+    }
+
+    /**
+     * Test case for demoting a response evicted from the on-heap cache and promoting it back, through the lookups of
+     * the cache mediator.
+     *
+     * @throws Exception if the responses cannot be looked up
+     */
+    public void testOffHeapDemotionAndPromotion() throws Exception {
+        CacheManager cacheManager = new CacheManager();
+        CacheMediator mediator = new CacheMediator(cacheManager);
+        // a bound below 20 bytes keeps the entries in a single segment, hence evicted in the LRU order
+        mediator.setMaxSizeInBytes(19);
+        mediator.setOffHeapSizeInBytes(4096);
+        mediator.setPromotionThreshold(2);
+        LoadingCache<String, CachableResponse> cache = mediator.getMediatorCache();
+        OffHeapCacheTier offHeapTier = cacheManager.getOffHeapTier(mediator.getId());
+        assertNotNull("Off-heap tier is not created", offHeapTier);
+
+        cache.put("hash1", createOffHeapResponse("hash1"));
+        cache.put("hash2", createOffHeapResponse("hash2"));
+        cache.cleanUp();
+        assertNull("Least recently used response is not evicted", cache.getIfPresent("hash1"));
+        assertTrue("Evicted response is not demoted", offHeapTier.getSizeInBytes() > 0);
+
+        // an empty entry created for a cache miss does not hide the demoted response
+        assertFalse(cache.get("hash1").isResponseAvailable());
+        MessageContext synCtx = createMessageContext();
+        CachableResponse demotedResponse = mediator.lookupCachedResponse("hash1", synCtx);
+        assertTrue("Demoted response is not found", demotedResponse.isResponseAvailable());
+        assertEquals("hash1-payload", new String(demotedResponse.getResponsePayload()));
+        assertFalse("Response should not be promoted on the first read",
+                cache.getIfPresent("hash1").isResponseAvailable());
+
+        assertTrue(mediator.lookupCachedResponse("hash1", synCtx).isResponseAvailable());
+        cache.cleanUp();
+        CachableResponse promotedResponse = cache.getIfPresent("hash1");
+        assertNotNull("Response is not promoted", promotedResponse);
+        assertTrue(promotedResponse.isResponseAvailable());
+        assertEquals("hash1-payload", new String(promotedResponse.getResponsePayload()));
+        assertSame("Promoted response should be served from the on-heap cache", promotedResponse,
+                mediator.lookupCachedResponse("hash1", synCtx));
+        assertNull("Response evicted by the promotion is not demoted", cache.getIfPresent("hash2"));
+        assertEquals("hash2-payload", new String(mediator.lookupCachedResponse("hash2", synCtx).getResponsePayload()));
+    }
+
+    /**
+     * Test case for rejecting an off-heap tier when the on-heap cache is not bounded.
+     */
+    public void testOffHeapConfigurationWithoutOnHeapBound() {
+        String offHeapMediatorXml =
+                "<cache xmlns=\"http://ws.apache.org/ns/synapse\" collector=\"false\" timeout=\"60\">\n" +
+                        "            <implementation offHeapSizeInBytes=\"1048576\"/>\n" +
+                        "         </cache>";
+        try {
+            new CacheMediatorFactory().createSpecificMediator(SynapseConfigUtils.stringToOM(offHeapMediatorXml),
+                    new Properties());
+            fail("Off-heap tier should require a bound for the on-heap cache");
+        } catch (SynapseException e) {
+            assertTrue(e.getMessage().contains(CachingConstants.OFF_HEAP_SIZE_IN_BYTES_STRING));
+        }
+    }
+
+    /**
+     * Test case for the distributed cache configuration.
+     */
+    public void testDistributedCacheConfiguration() {
+        String distributedMediatorXml =
+                "<cache xmlns=\"http://ws.apache.org/ns/synapse\" collector=\"false\" timeout=\"60\">\n" +
+                        "            <distributed enabled=\"true\" name=\"quotes\"/>\n" +
+                        "         </cache>";
+        CacheMediatorFactory factory = new CacheMediatorFactory();
+        CacheMediator mediator = (CacheMediator) factory.createSpecificMediator(
+                SynapseConfigUtils.stringToOM(distributedMediatorXml), new Properties());
+        assertTrue("Incorrect value for the distributed cache", mediator.isDistributedCacheEnabled());
+        assertEquals("Incorrect value for the name", mediator.getDistributedCacheName(), "quotes");
+        assertTrue("Shared responses should be serialized", mediator.isSerializedStorageEnabled());
+
+        OMElement serializedMediatorElement = new CacheMediatorSerializer().serializeSpecificMediator(mediator);
+        CacheMediator deserializedMediator =
+                (CacheMediator) factory.createSpecificMediator(serializedMediatorElement, new Properties());
+        assertTrue("distributed is not serialized", deserializedMediator.isDistributedCacheEnabled());
+        assertEquals("name is not serialized", deserializedMediator.getDistributedCacheName(), "quotes");
+
+        String unnamedMediatorXml =
+                "<cache xmlns=\"http://ws.apache.org/ns/synapse\" id=\"quotesCache\" collector=\"false\">\n" +
+                        "            <distributed enabled=\"true\"/>\n" +
+                        "         </cache>";
+        mediator = (CacheMediator) factory.createSpecificMediator(SynapseConfigUtils.stringToOM(unnamedMediatorXml),
+                                                                  new Properties());
+        assertEquals("The id should name the distributed cache", mediator.getDistributedCacheName(), "quotesCache");
+
+        String anonymousMediatorXml =
+                "<cache xmlns=\"http://ws.apache.org/ns/synapse\" collector=\"false\">\n" +
+                        "            <distributed enabled=\"true\"/>\n" +
+                        "         </cache>";
+        try {
+            factory.createSpecificMediator(SynapseConfigUtils.stringToOM(anonymousMediatorXml), new Properties());
+            fail("A distributed cache without a name or an id should be rejected");
+        } catch (SynapseException e) {
+            assertTrue(e.getMessage().contains("requires a name"));
+        }
+    }
+
+    /**
+     * Test case for destroying the distributed cache provider once the last mediator using it is undeployed.
+     *
+     * @throws CachingException if the provider cannot be accessed
+     */
+    public void testDistributedCacheProviderRelease() throws CachingException {
+        final AtomicInteger destroyCount = new AtomicInteger();
+        DistributedCacheProvider provider = new DistributedCacheProvider() {
+            @Override
+            public void init(Properties properties) {
+            }
+
+            @Override
+            public CachableResponse get(String cacheName, String requestHash) {
+                return null;
+            }
+
+            @Override
+            public void put(String cacheName, String requestHash, CachableResponse response, long timeToLive) {
+            }
+
+            @Override
+            public void invalidateAll() {
+            }
+
+            @Override
+            public void addInvalidationListener(CacheInvalidationListener listener) {
+            }
+
+            @Override
+            public void destroy() {
+                destroyCount.incrementAndGet();
+            }
+        };
+        CacheManager cacheManager = new CacheManager();
+        cacheManager.registerDistributedCache("first");
+        cacheManager.registerDistributedCache("second");
+        cacheManager.setDistributedCacheProvider(provider);
+        assertSame(provider, cacheManager.getDistributedCacheProvider());
+
+        cacheManager.releaseDistributedCache("first");
+        assertEquals("The provider is still in use", 0, destroyCount.get());
+        cacheManager.releaseDistributedCache("first");
+        assertEquals("A mediator should be released only once", 0, destroyCount.get());
+        cacheManager.releaseDistributedCache("second");
+        assertEquals("The provider is not destroyed", 1, destroyCount.get());
+        try {
+            cacheManager.getDistributedCacheProvider();
+            fail("The provider should not be created again without a distributed cache");
+        } catch (CachingException e) {
+            assertTrue(e.getMessage().contains("no distributed mediator cache"));
+        }
+    }
+
+    /**
+     * Test case for sharing responses and broadcasting invalidations among two nodes through the Hazelcast cache
+     * provider.
+     *
+     * @throws Exception if the members cannot be started
+     */
+    public void testHazelcastCacheProvider() throws Exception {
+        HazelcastInstance firstMember = Hazelcast.newHazelcastInstance(createHazelcastConfig());
+        HazelcastInstance secondMember = Hazelcast.newHazelcastInstance(createHazelcastConfig());
+        try {
+            CacheManager firstNode = new CacheManager();
+            DistributedCacheProvider firstProvider = new HazelcastCacheProvider(firstMember);
+            firstProvider.init(new Properties());
+            firstNode.setDistributedCacheProvider(firstProvider);
+            CacheManager secondNode = new CacheManager();
+            DistributedCacheProvider secondProvider = new HazelcastCacheProvider(secondMember);
+            secondProvider.init(new Properties());
+            secondNode.setDistributedCacheProvider(secondProvider);
+
+            CachableResponse cachedResponse = new CachableResponse();
+            cachedResponse.setRequestHash("hash1");
+            cachedResponse.setResponsePayload("{\"name\":\"value\"}".getBytes());
+            cachedResponse.setJson(true);
+            firstProvider.put("quotes", "hash1", cachedResponse, 60);
+            CachableResponse sharedResponse = secondProvider.get("quotes", "hash1");
+            assertNotNull("Response is not shared with the other node", sharedResponse);
+            assertTrue(Arrays.equals(sharedResponse.getResponsePayload(), cachedResponse.getResponsePayload()));
+            assertNull("Responses of other caches should not be shared", secondProvider.get("other", "hash1"));
+
+            LoadingCache<String, CachableResponse> localCache = CacheBuilder.newBuilder().build(
+                    new CacheLoader<String, CachableResponse>() {
+                        @Override
+                        public CachableResponse load(String requestHash) {
+                            return new CachableResponse();
+                        }
+                    });
+            localCache.put("hash1", sharedResponse);
+            secondNode.put("mediator", localCache);
+            firstNode.invalidateAll();
+            assertNull("Shared responses are not invalidated", secondProvider.get("quotes", "hash1"));
+            long deadline = System.currentTimeMillis() + 10000;
+            while (secondNode.get("mediator") != null && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            assertNull("Invalidation is not broadcast to the other node", secondNode.get("mediator"));
+        } finally {
+            secondMember.shutdown();
+            firstMember.shutdown();
+        }
+    }
+
+    /**
+     * Test case for coalescing concurrent cache misses on a single in-flight response.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void testRequestCoalescing() throws InterruptedException {
+        final CachableResponse cachedResponse = new CachableResponse();
+        assertTrue("First miss should become the leader", cachedResponse.claimLeadership(5000));
+        assertFalse("Concurrent miss should not become the leader", cachedResponse.claimLeadership(5000));
+
+        Thread collector = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                cachedResponse.setResponsePayload("{}".getBytes());
+                cachedResponse.releaseWaitingRequests();
+            }
+        });
+        collector.start();
+        assertTrue("In-flight response was not received", cachedResponse.awaitInFlightResponse(5000));
+        assertTrue(cachedResponse.isResponseAvailable());
+        collector.join();
+
+        CachableResponse timedOutResponse = new CachableResponse();
+        assertTrue(timedOutResponse.claimLeadership(5000));
+        assertFalse("Waiting should time out", timedOutResponse.awaitInFlightResponse(10));
+        assertTrue("Leadership should be reassigned once the wait time elapses",
+                timedOutResponse.claimLeadership(0));
+    }
+
     /**
      * Test case for isValidCacheEntry() with no-store header.
      *
@@ -192,6 +532,124 @@ public class CacheMediatorTest extends XMLTestCase {
                 HttpCachingFilter.isValidCacheEntry(cachedResponse, synCtx), false);
     }
 
+    /**
+     * Test case for isStaleWhileRevalidate() within and after the stale-while-revalidate period.
+     */
+    public void testIsStaleWhileRevalidate() {
+        CachableResponse cachedResponse = new CachableResponse();
+        ConcurrentHashMap<String, Object> httpHeaders = new ConcurrentHashMap<>();
+        httpHeaders.put(HttpHeaders.CACHE_CONTROL, "max-age=60, stale-while-revalidate=30");
+        cachedResponse.setHeaderProperties(httpHeaders);
+
+        cachedResponse.setResponseFetchedTime(System.currentTimeMillis() - 10000);
+        assertFalse("Fresh response should not be revalidated",
+                HttpCachingFilter.isStaleWhileRevalidate(cachedResponse));
+        cachedResponse.setResponseFetchedTime(System.currentTimeMillis() - 70000);
+        assertTrue("Stale response should be served while revalidating",
+                HttpCachingFilter.isStaleWhileRevalidate(cachedResponse));
+        cachedResponse.setResponseFetchedTime(System.currentTimeMillis() - 100000);
+        assertFalse("Response past the stale-while-revalidate period should not be served",
+                HttpCachingFilter.isStaleWhileRevalidate(cachedResponse));
+    }
+
+    /**
+     * Test case for Cache-Control headers having directives without a valid number of seconds.
+     *
+     * @throws AxisFault when exception happens on message context creation.
+     */
+    public void testMalformedCacheControlHeader() throws AxisFault {
+        CachableResponse cachedResponse = new CachableResponse();
+        ConcurrentHashMap<String, Object> httpHeaders = new ConcurrentHashMap<>();
+        httpHeaders.put(HttpHeaders.CACHE_CONTROL, "max-age=abc, stale-while-revalidate");
+        cachedResponse.setHeaderProperties(httpHeaders);
+        cachedResponse.setResponseFetchedTime(System.currentTimeMillis() - 70000);
+        assertFalse("Malformed directives should not allow serving a stale response",
+                HttpCachingFilter.isStaleWhileRevalidate(cachedResponse));
+        assertFalse("Malformed max-age should be ignored",
+                HttpCachingFilter.isValidCacheEntry(cachedResponse, createMessageContext()));
+
+        httpHeaders.put(HttpHeaders.CACHE_CONTROL, "max-age=\"60\", stale-while-revalidate=");
+        assertFalse(HttpCachingFilter.isStaleWhileRevalidate(cachedResponse));
+        httpHeaders.put(HttpHeaders.CACHE_CONTROL, "max-age=\"60\", stale-while-revalidate=30");
+        assertTrue("Quoted max-age should be honoured", HttpCachingFilter.isStaleWhileRevalidate(cachedResponse));
+    }
+
+    /**
+     * Test case for the background refresh of a stale response, which should replace the cached response only once
+     * the refreshed response is cached, and should never send the refreshed response to the client.
+     *
+     * @throws AxisFault when exception happens on message context creation.
+     */
+    public void testBackgroundRefresh() throws AxisFault {
+        CacheManager cacheManager = new CacheManager();
+        CacheMediator requestMediator = new CacheMediator(cacheManager);
+        CacheMediator collector = new CacheMediator(cacheManager);
+        collector.setCollector(true);
+
+        CachableResponse staleResponse = new CachableResponse();
+        staleResponse.setRequestHash("hash1");
+        staleResponse.setResponsePayload("{\"name\":\"stale\"}".getBytes());
+        staleResponse.setJson(true);
+        staleResponse.setResponseCodePattern(Pattern.compile("2[0-9][0-9]"));
+        requestMediator.getMediatorCache().put("hash1", staleResponse);
+        assertTrue(staleResponse.claimLeadership(5000));
+
+        MessageContext failedRefresh = createRefreshContext(requestMediator, staleResponse, "500");
+        assertFalse("Refreshed response should not be sent to the client", collector.mediate(failedRefresh));
+        assertSame("Stale response should be kept when the refresh is not cached", staleResponse,
+                requestMediator.getMediatorCache().getIfPresent("hash1"));
+        assertTrue("Stale response should not be cleaned", staleResponse.isResponseAvailable());
+        assertTrue("Another request should be able to refresh the stale response",
+                staleResponse.claimLeadership(5000));
+
+        MessageContext refresh = createRefreshContext(requestMediator, staleResponse, "200");
+        assertFalse("Refreshed response should not be sent to the client", collector.mediate(refresh));
+        CachableResponse refreshedResponse = requestMediator.getMediatorCache().getIfPresent("hash1");
+        assertNotSame("Refreshed response should replace the stale response", staleResponse, refreshedResponse);
+        assertTrue(refreshedResponse.isResponseAvailable());
+        assertEquals("Stale response should not be changed by the refresh", "{\"name\":\"stale\"}",
+                new String(staleResponse.getResponsePayload()));
+
+        assertTrue(staleResponse.claimLeadership(5000));
+        new CacheMediator.RefreshFaultHandler(staleResponse).onFault(createMessageContext());
+        assertTrue("A failed refresh should release the stale response", staleResponse.claimLeadership(5000));
+    }
+
+    /**
+     * Test case for the StreamingHttpRequestHashGenerator, which should not depend on the order of attributes and
+     * headers and should distinguish different payloads.
+     *
+     * @throws Exception on exception while building the payloads or generating the hashes
+     */
+    public void testStreamingHttpRequestHashGenerator() throws Exception {
+        DigestGenerator digestGenerator = new StreamingHttpRequestHashGenerator();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("headers-to-exclude", new String[]{""});
+        digestGenerator.init(properties);
+
+        String first = "<m:getQuote xmlns:m=\"http://services.samples\" a=\"1\" b=\"2\"><m:symbol>IBM</m:symbol>"
+                + "</m:getQuote>";
+        String reordered = "<m:getQuote xmlns:m=\"http://services.samples\" b=\"2\" a=\"1\"><!-- comment -->"
+                + "<m:symbol>IBM</m:symbol></m:getQuote>";
+        String different = "<m:getQuote xmlns:m=\"http://services.samples\" a=\"1\" b=\"2\"><m:symbol>WSO2"
+                + "</m:symbol></m:getQuote>";
+        String firstHash = digestGenerator.getDigest(createHashingContext(first, "Accept", "Host"));
+        assertEquals(firstHash, digestGenerator.getDigest(createHashingContext(reordered, "Host", "Accept")));
+        assertFalse(firstHash.equals(digestGenerator.getDigest(createHashingContext(different, "Accept", "Host"))));
+
+        // the text buffer grown by a large payload is dropped after the request, without affecting the next hashes
+        StringBuilder symbol = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            symbol.append((char) ('A' + i % 26));
+        }
+        String large = "<m:getQuote xmlns:m=\"http://services.samples\"><m:symbol>" + symbol + "</m:symbol>"
+                + "</m:getQuote>";
+        String largeHash = digestGenerator.getDigest(createHashingContext(large, "Accept", "Host"));
+        assertEquals(firstHash, digestGenerator.getDigest(createHashingContext(first, "Accept", "Host")));
+        assertEquals(largeHash, digestGenerator.getDigest(createHashingContext(large, "Accept", "Host")));
+        assertFalse(firstHash.equals(largeHash));
+    }
+
     /**
      * Test case for setAgeHeader() method
      */
@@ -219,6 +677,58 @@ public class CacheMediatorTest extends XMLTestCase {
         assertEquals(dateFormat.format(cachedResponse.getResponseFetchedTime()), responseOriginatedTime);
     }
 
+    private org.apache.axis2.context.MessageContext createHashingContext(String payload, String... headerNames)
+            throws Exception {
+        org.apache.axis2.context.MessageContext msgCtx = new org.apache.axis2.context.MessageContext();
+        msgCtx.setTo(new EndpointReference("http://localhost:9000/services/SimpleStockQuoteService"));
+        msgCtx.setProperty(Constants.Configuration.HTTP_METHOD, "POST");
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String headerName : headerNames) {
+            headers.put(headerName, headerName + "-value");
+        }
+        msgCtx.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, headers);
+        msgCtx.setEnvelope(OMAbstractFactory.getSOAP12Factory().getDefaultEnvelope());
+        msgCtx.getEnvelope().getBody().addChild(AXIOMUtil.stringToOM(payload));
+        return msgCtx;
+    }
+
+    private MessageContext createRefreshContext(CacheMediator requestMediator, CachableResponse staleResponse,
+                                                String statusCode) throws AxisFault {
+        org.apache.axis2.context.MessageContext axis2MC = new org.apache.axis2.context.MessageContext();
+        axis2MC.setConfigurationContext(new ConfigurationContext(new AxisConfiguration()));
+        axis2MC.setProperty(NhttpConstants.HTTP_SC, statusCode);
+        axis2MC.setProperty(org.apache.axis2.context.MessageContext.TRANSPORT_HEADERS, new HashMap<String, String>());
+        axis2MC.setProperty(PassThroughConstants.MESSAGE_BUILDER_INVOKED, Boolean.TRUE);
+        SynapseConfiguration synapseConfiguration = new SynapseConfiguration();
+        Axis2MessageContext synCtx = new Axis2MessageContext(axis2MC, synapseConfiguration,
+                new Axis2SynapseEnvironment(synapseConfiguration));
+        synCtx.setEnvelope(OMAbstractFactory.getSOAP11Factory().getDefaultEnvelope());
+        synCtx.setResponse(true);
+        synCtx.setProperty(CachingConstants.BACKGROUND_REFRESH, Boolean.TRUE);
+        synCtx.setProperty(CachingConstants.CACHED_OBJECT, staleResponse.createRefreshEntry());
+        synCtx.setProperty(CachingConstants.STALE_OBJECT, staleResponse);
+        synCtx.setProperty(CachingConstants.MEDIATOR_CACHE_ID, requestMediator.getId());
+        return synCtx;
+    }
+
+    private CachableResponse createOffHeapResponse(String requestHash) {
+        CachableResponse response = new CachableResponse();
+        response.setRequestHash(requestHash);
+        response.setResponsePayload((requestHash + "-payload").getBytes());
+        response.setJson(true);
+        response.setCachedTime(System.currentTimeMillis());
+        return response;
+    }
+
+    private Config createHazelcastConfig() {
+        Config config = new Config();
+        config.getGroupConfig().setName("cache-mediator-test");
+        JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+        joinConfig.getMulticastConfig().setEnabled(false);
+        joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return config;
+    }
+
     /**
      * Create Axis2 Message Context.
      *
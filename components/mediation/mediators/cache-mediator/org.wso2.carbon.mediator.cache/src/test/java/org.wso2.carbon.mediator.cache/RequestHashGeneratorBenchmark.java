@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.wso2.carbon.mediator.cache;
+
+import org.apache.axiom.om.OMXMLBuilderFactory;
+import org.apache.axiom.soap.SOAPEnvelope;
+import org.apache.axis2.Constants;
+import org.apache.axis2.addressing.EndpointReference;
+import org.apache.axis2.context.MessageContext;
+import org.apache.synapse.commons.json.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.wso2.carbon.mediator.cache.digest.DOMHASHGenerator;
+import org.wso2.carbon.mediator.cache.digest.DigestGenerator;
+import org.wso2.carbon.mediator.cache.digest.HttpRequestHashGenerator;
+import org.wso2.carbon.mediator.cache.digest.REQUESTHASHGenerator;
+import org.wso2.carbon.mediator.cache.digest.StreamingHttpRequestHashGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput and the allocation of the request hash generators of the cache mediator over SOAP and json
+ * payloads of different sizes. The benchmark is not run with the unit tests, run its main method with the test
+ * classpath instead. The gc profiler is enabled to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestHashGeneratorBenchmark {
+
+    /**
+     * The number of repeated items in the payload.
+     */
+    @Param({"1", "50", "2000"})
+    public int items;
+
+    @Param({"soap", "json"})
+    public String payloadType;
+
+    private MessageContext msgContext;
+
+    private DigestGenerator domHashGenerator;
+
+    private DigestGenerator requestHashGenerator;
+
+    private DigestGenerator httpRequestHashGenerator;
+
+    private DigestGenerator streamingHttpRequestHashGenerator;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        msgContext = new MessageContext();
+        msgContext.setTo(new EndpointReference("http://localhost:9000/services/SimpleStockQuoteService"));
+        msgContext.setProperty(Constants.Configuration.HTTP_METHOD, "POST");
+        Map<String, String> headers = new TreeMap<>();
+        headers.put("Content-Type", "json".equals(payloadType) ? "application/json" : "application/soap+xml");
+        headers.put("Accept", "*/*");
+        headers.put("Host", "localhost:8290");
+        headers.put("User-Agent", "Synapse-PT-HttpComponents-NIO");
+        headers.put("Date", "Thu, 01 Aug 2019 10:00:00 GMT");
+        msgContext.setProperty(MessageContext.TRANSPORT_HEADERS, headers);
+
+        if ("json".equals(payloadType)) {
+            msgContext.setEnvelope(OMXMLBuilderFactory.createSOAPModelBuilder(new ByteArrayInputStream(
+                    soapPayload(0).getBytes(StandardCharsets.UTF_8)), null).getSOAPEnvelope());
+            JsonUtil.getNewJsonPayload(msgContext, jsonPayload(items), true, true);
+        } else {
+            SOAPEnvelope envelope = OMXMLBuilderFactory.createSOAPModelBuilder(new ByteArrayInputStream(
+                    soapPayload(items).getBytes(StandardCharsets.UTF_8)), null).getSOAPEnvelope();
+            envelope.build();
+            msgContext.setEnvelope(envelope);
+        }
+
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("headers-to-exclude", new String[]{""});
+        properties.put(CachingConstants.PERMANENTLY_EXCLUDED_HEADERS_STRING, new String[0]);
+        domHashGenerator = new DOMHASHGenerator();
+        domHashGenerator.init(properties);
+        requestHashGenerator = new REQUESTHASHGenerator();
+        requestHashGenerator.init(properties);
+        httpRequestHashGenerator = new HttpRequestHashGenerator();
+        httpRequestHashGenerator.init(properties);
+        streamingHttpRequestHashGenerator = new StreamingHttpRequestHashGenerator();
+        streamingHttpRequestHashGenerator.init(properties);
+    }
+
+    @Benchmark
+    public String domHash() throws CachingException {
+        return domHashGenerator.getDigest(msgContext);
+    }
+
+    @Benchmark
+    public String requestHash() throws CachingException {
+        return requestHashGenerator.getDigest(msgContext);
+    }
+
+    @Benchmark
+    public String httpRequestHash() throws CachingException {
+        return httpRequestHashGenerator.getDigest(msgContext);
+    }
+
+    @Benchmark
+    public String streamingHttpRequestHash() throws CachingException {
+        return streamingHttpRequestHashGenerator.getDigest(msgContext);
+    }
+
+    private static String soapPayload(int items) {
+        StringBuilder payload = new StringBuilder(
+                "<soapenv:Envelope xmlns:soapenv=\"http://www.w3.org/2003/05/soap-envelope\" "
+                        + "xmlns:ser=\"http://services.samples\"><soapenv:Header/><soapenv:Body><ser:getQuotes>");
+        for (int i = 0; i < items; i++) {
+            payload.append("<ser:request id=\"").append(i).append("\" type=\"quote\"><ser:symbol>IBM")
+                    .append(i).append("</ser:symbol><ser:volume>").append(i * 100)
+                    .append("</ser:volume><!-- item --></ser:request>");
+        }
+        return payload.append("</ser:getQuotes></soapenv:Body></soapenv:Envelope>").toString();
+    }
+
+    private static String jsonPayload(int items) {
+        StringBuilder payload = new StringBuilder("{\"getQuotes\":{\"request\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append("{\"id\":").append(i).append(",\"type\":\"quote\",\"symbol\":\"IBM").append(i)
+                    .append("\",\"volume\":").append(i * 100).append('}');
+        }
+        return payload.append("]}}").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(RequestHashGeneratorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+}
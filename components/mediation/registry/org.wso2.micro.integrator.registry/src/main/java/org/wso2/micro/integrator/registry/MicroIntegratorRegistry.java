@@ -19,6 +19,7 @@
 package org.wso2.micro.integrator.registry;
 
 import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
 import org.apache.axiom.om.OMException;
 import org.apache.axiom.om.OMNode;
 import org.apache.axiom.om.impl.builder.StAXOMBuilder;
@@ -26,6 +27,7 @@ import org.apache.axiom.om.impl.llom.OMDocumentImpl;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.synapse.SynapseException;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
 import org.apache.synapse.registry.AbstractRegistry;
 import org.apache.synapse.registry.RegistryEntry;
 import org.apache.synapse.util.SynapseBinaryDataSource;
@@ -45,6 +47,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
@@ -69,6 +72,14 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
     private static final String METADATA_FILE_SUFFIX = ".meta";
     private static final String METADATA_KEY_MEDIA_TYPE = "mediaType";
 
+    private static final String RESOURCE_CACHE_MBEAN_CATEGORY = "Registry";
+    private static final String RESOURCE_CACHE_MBEAN_ID = "ResourceCache";
+
+    /**
+     * Parser factory shared by the lookups, since creating it looks up the implementation every time.
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
     private static final int FILE = 1;
     private static final int HTTP = 2;
     private static final int HTTPS = 3;
@@ -92,6 +103,12 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
      */
     private int registryProtocol = FILE;
 
+    /**
+     * Cache of the parsed resources of the file system based registry, which is null if it is disabled.
+     */
+    private volatile RegistryResourceCache resourceCache;
+    private volatile boolean resourceCacheInitialized;
+
 
     public MicroIntegratorRegistry() {
         //default registry is file system based resided in carbon home
@@ -160,6 +177,19 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
             handleException("Invalid path '" + resolvedRegKeyPath + "' for URL", e);
         }
 
+        RegistryResourceCache cache = getResourceCache();
+        Path resourceFile = cache != null ? getCachableFile(cache, url) : null;
+        long startTime = System.nanoTime();
+        if (resourceFile != null) {
+            OMNode cached = cache.get(resourceFile);
+            if (cached != null) {
+                attachToDocument(cached);
+                cache.recordHit(startTime);
+                return cached;
+            }
+        }
+        long changeCount = cache != null ? cache.getChangeCount() : 0;
+
         if (lookupUtil(key, url)) {
             return null;
         }
@@ -185,10 +215,11 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
         BufferedInputStream inputStream = new BufferedInputStream(input);
         OMNode result = null;
         try {
-            XMLStreamReader parser = XMLInputFactory.newInstance().
-                    createXMLStreamReader(inputStream);
+            XMLStreamReader parser = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
             StAXOMBuilder builder = new StAXOMBuilder(parser);
             result = builder.getDocumentElement();
+            // the element is built before the stream is closed, so that it can be cached
+            result.build();
 
         } catch (OMException | XMLStreamException ignored) {
 
@@ -213,8 +244,7 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
             try {
                 if (result != null && result.getParent() != null) {
                     result.detach();
-                    OMDocumentImpl parent = new OMDocumentImpl(OMAbstractFactory.getOMFactory());
-                    parent.addChild(result);
+                    attachToDocument(result);
                 }
                 inputStream.close();
             } catch (IOException e) {
@@ -222,9 +252,127 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
             }
 
         }
+        if (resourceFile != null && result != null) {
+            cache.put(resourceFile, result instanceof OMElement ? ((OMElement) result).cloneOMElement() : result,
+                      changeCount);
+            cache.recordMiss(startTime);
+        }
         return result;
     }
 
+    /**
+     * Adds the given looked up element to a new document, as the parsed resources are given.
+     *
+     * @param node looked up resource
+     */
+    private void attachToDocument(OMNode node) {
+        if (node instanceof OMElement) {
+            OMDocumentImpl parent = new OMDocumentImpl(OMAbstractFactory.getOMFactory());
+            parent.addChild(node);
+        }
+    }
+
+    /**
+     * Stops watching the registry directories and drops the cached resources. The registry reads the resources
+     * without the cache afterwards.
+     */
+    public void destroy() {
+        RegistryResourceCache cache;
+        synchronized (this) {
+            cache = resourceCache;
+            resourceCache = null;
+            resourceCacheInitialized = true;
+        }
+        if (cache != null) {
+            MBeanRegistrar.getInstance().unRegisterMBean(RESOURCE_CACHE_MBEAN_CATEGORY, RESOURCE_CACHE_MBEAN_ID);
+            cache.close();
+        }
+        log.debug("EI lightweight registry is destroyed.");
+    }
+
+    /**
+     * Returns the resource cache, which is created on the first lookup once the registry roots are configured.
+     *
+     * @return the resource cache, or null if the resources are not cached
+     */
+    private RegistryResourceCache getResourceCache() {
+        if (resourceCacheInitialized) {
+            return resourceCache;
+        }
+        synchronized (this) {
+            if (!resourceCacheInitialized) {
+                if (isResourceCacheEnabled()) {
+                    resourceCache = createResourceCache();
+                }
+                resourceCacheInitialized = true;
+            }
+        }
+        return resourceCache;
+    }
+
+    private boolean isResourceCacheEnabled() {
+        String enabled = (String) properties.get(MicroIntegratorRegistryConstants.RESOURCE_CACHE_ENABLED);
+        return enabled == null || Boolean.parseBoolean(enabled);
+    }
+
+    private RegistryResourceCache createResourceCache() {
+        List<Path> roots = new ArrayList<>();
+        for (String root : new String[] { localRegistry, configRegistry, govRegistry }) {
+            if (root != null && root.startsWith(MicroIntegratorRegistryConstants.PROTOCOL_FILE + ":")) {
+                try {
+                    roots.add(Paths.get(new URI(root)).toAbsolutePath().normalize());
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    log.warn("Registry root " + root + " is not a valid file URI, hence its resources are not cached",
+                             e);
+                }
+            }
+        }
+        if (roots.isEmpty()) {
+            return null;
+        }
+        try {
+            RegistryResourceCache cache = new RegistryResourceCache(roots);
+            MBeanRegistrar.getInstance().registerMBean(cache, RESOURCE_CACHE_MBEAN_CATEGORY,
+                                                       RESOURCE_CACHE_MBEAN_ID);
+            return cache;
+        } catch (IOException e) {
+            log.warn("Unable to watch the registry directories, hence the registry resources are not cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the file of the resource in the given URL if it can be cached, or null otherwise
+     */
+    private Path getCachableFile(RegistryResourceCache cache, URL url) {
+        if (url == null || !MicroIntegratorRegistryConstants.PROTOCOL_FILE.equals(url.getProtocol())) {
+            return null;
+        }
+        try {
+            Path file = Paths.get(url.toURI()).toAbsolutePath().normalize();
+            return cache.isCachable(file) ? file : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops the cached resources affected by a change done through the registry.
+     *
+     * @param resolvedPath resolved URI of the changed resource
+     */
+    private void invalidateResource(String resolvedPath) {
+        RegistryResourceCache cache = resourceCache;
+        if (cache != null) {
+            try {
+                cache.invalidate(Paths.get(new URI(resolvedPath)).toAbsolutePath().normalize());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // the resource was never cached, hence there is nothing to drop
+                cache.clear();
+            }
+        }
+    }
+
     private boolean lookupUtil(String key, URL url) {
         if (url == null) {
             handleException("Unable to create URL for target resource : " + key);
@@ -233,8 +381,8 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
         if ("file".equals(url.getProtocol())) {
             try {
                 if (new File(url.toURI()).exists()) {
-                    try {
-                        url.openStream();
+                    try (InputStream ignored = url.openStream()) {
+                        // checks whether the resource can be read
                     } catch (IOException e) {
                         log.error("Error occurred while accessing registry resource: " + key, e);
                         return true;
@@ -493,6 +641,8 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
                 addResource(parent, fileName, !isDirectory);
             } catch (Exception e) {
                 handleException("Error when adding a new resource", e);
+            } finally {
+                invalidateResource(resolvedPath);
             }
         } else {
             // Warn the user that unable to create resources in remote registry resources
@@ -523,6 +673,8 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
                 writeToFile(new URI(parent), fileName, content, metadata);
             } catch (Exception e) {
                 handleException("Error when adding a new resource", e);
+            } finally {
+                invalidateResource(targetPath);
             }
 
         } else {
@@ -540,14 +692,17 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
     @Override
     public void updateResource(String path, Object value) {
         if (registryType == MicroIntegratorRegistryConstants.LOCAL_HOST_REGISTRY) {
+            String resolvedPath = resolveRegistryURI(path);
             try {
-                File file = new File(new URI(resolveRegistryURI(path)));
+                File file = new File(new URI(resolvedPath));
                 if (file.exists()) {
                     try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
                         writer.write(value.toString());
                         writer.flush();
                     } catch (IOException e) {
                         handleException("Couldn't write to registry entry: " + path, e);
+                    } finally {
+                        invalidateResource(resolvedPath);
                     }
                 }
             } catch (URISyntaxException e) {
@@ -604,13 +759,18 @@ public class MicroIntegratorRegistry extends AbstractRegistry {
      * @param key resource key
      */
     private void removeResource(String key) {
+        String resolvedPath = resolveRegistryURI(key);
         try {
-            File resource = new File(new URI(resolveRegistryURI(key)));
+            File resource = new File(new URI(resolvedPath));
             if (resource.exists()) {
-                if (resource.isFile()) {
-                    deleteFile(resource);
-                } else if (resource.isDirectory()) {
-                    deleteDirectory(resource);
+                try {
+                    if (resource.isFile()) {
+                        deleteFile(resource);
+                    } else if (resource.isDirectory()) {
+                        deleteDirectory(resource);
+                    }
+                } finally {
+                    invalidateResource(resolvedPath);
                 }
 
             } else {
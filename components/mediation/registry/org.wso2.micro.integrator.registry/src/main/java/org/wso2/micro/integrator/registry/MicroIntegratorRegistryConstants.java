@@ -52,5 +52,8 @@ public class MicroIntegratorRegistryConstants {
 
     public static final String DEFAULT_MEDIA_TYPE = "text/plain";
 
+    // whether the parsed resources of the file system based registry are cached, which is enabled by default
+    public static final String RESOURCE_CACHE_ENABLED = "resourceCacheEnabled";
+
     public static final String CONNECTOR_SECURE_VAULT_CONFIG_REPOSITORY = "conf:/repository/components/secure-vault";
 }
@@ -0,0 +1,318 @@
+/**
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* WSO2 Inc. licenses this file to you under the Apache License,
+* Version 2.0 (the "License"); you may not use this file except
+* in compliance with the License.
+* you may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied. See the License for the
+* specific language governing permissions and limitations
+*
+*/
+
+package org.wso2.micro.integrator.registry;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNode;
+import org.apache.axiom.om.OMText;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of the resources read from the file system based registry, keyed by the resource file. The resources are
+ * cached as fully built OM nodes which are never handed out, and a lookup gets a copy of the cached element, so
+ * that the resource is neither read nor parsed again until it changes.
+ * <p>
+ * The registry directories are watched through a {@link WatchService}, and a change of a file drops the cached
+ * resources of its directory. The changes done through the registry itself drop the resources immediately.
+ */
+public class RegistryResourceCache implements RegistryResourceCacheMBean {
+
+    private static final Log log = LogFactory.getLog(RegistryResourceCache.class);
+
+    private static final String METADATA_DIR_NAME = ".metadata";
+
+    private final Map<Path, OMNode> resources = new ConcurrentHashMap<>();
+
+    private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<>();
+
+    private final WatchService watchService;
+
+    private final Thread watcher;
+
+    private final List<Path> roots;
+
+    /**
+     * Whether the changes of all the registry directories are seen, without which the resources are not cached.
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * Number of the changes seen, used to drop the resources read while they were being changed.
+     */
+    private final AtomicLong changeCount = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder hitTime = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder missTime = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    /**
+     * Creates the cache of the resources under the given registry directories, and starts watching them. The
+     * resources under the directories which do not exist yet are not cached.
+     *
+     * @param roots registry directories
+     * @throws IOException if the directories could not be watched
+     */
+    RegistryResourceCache(List<Path> roots) throws IOException {
+        this.roots = new ArrayList<>();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                watchTree(root);
+                this.roots.add(root);
+            }
+        }
+        watcher = new Thread(this::processChanges, "registry-resource-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * @param file resource file
+     * @return true if the resource is under a watched registry directory, and therefore can be cached
+     */
+    boolean isCachable(Path file) {
+        if (!enabled) {
+            return false;
+        }
+        for (Path root : roots) {
+            if (file.startsWith(root)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of the changes seen, which is to be given when a read resource is cached
+     */
+    long getChangeCount() {
+        return changeCount.get();
+    }
+
+    /**
+     * Returns a copy of the cached resource of the given file, which the caller is free to modify.
+     *
+     * @param file resource file
+     * @return the resource, or null if it is not cached
+     */
+    OMNode get(Path file) {
+        OMNode resource = resources.get(file);
+        if (resource instanceof OMElement) {
+            return ((OMElement) resource).cloneOMElement();
+        } else if (resource instanceof OMText) {
+            OMText text = (OMText) resource;
+            OMFactory factory = OMAbstractFactory.getOMFactory();
+            if (text.isBinary()) {
+                /* the data handler of a binary resource holds the content read, hence it is shared */
+                return factory.createOMText(text.getDataHandler(), text.isOptimized());
+            }
+            return factory.createOMText(text.getText());
+        }
+        return resource;
+    }
+
+    /**
+     * Caches the resource read from the given file, unless a change was seen while it was being read.
+     *
+     * @param file        resource file
+     * @param resource    fully built resource
+     * @param changeCount number of the changes seen, taken before the resource was read
+     */
+    void put(Path file, OMNode resource, long changeCount) {
+        resources.put(file, resource);
+        if (changeCount != this.changeCount.get()) {
+            resources.remove(file);
+        }
+    }
+
+    /**
+     * Drops the cached resources affected by a change of the given file or directory.
+     *
+     * @param path changed file or directory
+     */
+    void invalidate(Path path) {
+        changeCount.incrementAndGet();
+        Path directory = path.getParent();
+        if (directory != null && METADATA_DIR_NAME.equals(String.valueOf(directory.getFileName()))) {
+            /* metadata of the resources is kept in a sub directory */
+            directory = directory.getParent();
+        }
+        for (Path file : resources.keySet()) {
+            if (file.startsWith(path) || (directory != null && directory.equals(file.getParent()))) {
+                if (resources.remove(file) != null) {
+                    invalidationCount.increment();
+                }
+            }
+        }
+    }
+
+    void recordHit(long startTime) {
+        hitCount.increment();
+        hitTime.add(System.nanoTime() - startTime);
+    }
+
+    void recordMiss(long startTime) {
+        missCount.increment();
+        missTime.add(System.nanoTime() - startTime);
+    }
+
+    @Override
+    public int getSize() {
+        return resources.size();
+    }
+
+    @Override
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    @Override
+    public long getInvalidationCount() {
+        return invalidationCount.sum();
+    }
+
+    @Override
+    public double getAverageHitLatency() {
+        return average(hitTime.sum(), hitCount.sum());
+    }
+
+    @Override
+    public double getAverageMissLatency() {
+        return average(missTime.sum(), missCount.sum());
+    }
+
+    @Override
+    public void clear() {
+        changeCount.incrementAndGet();
+        resources.clear();
+    }
+
+    @Override
+    public void resetStatistics() {
+        hitCount.reset();
+        hitTime.reset();
+        missCount.reset();
+        missTime.reset();
+        invalidationCount.reset();
+    }
+
+    /**
+     * Stops watching the registry directories and drops the cached resources. The resources are not cached anymore.
+     */
+    void close() {
+        enabled = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Error while closing the registry resource watcher", e);
+        }
+        watcher.interrupt();
+        watchedDirectories.clear();
+        clear();
+    }
+
+    /**
+     * @return true if the registry directories are still watched
+     */
+    boolean isWatching() {
+        return watcher.isAlive();
+    }
+
+    private static double average(long totalNanos, long count) {
+        return count == 0 ? 0 : totalNanos / 1000.0 / count;
+    }
+
+    private void watchTree(Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                watchedDirectories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void processChanges() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    /* the changes are not known, hence all the resources are dropped */
+                    clear();
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (log.isDebugEnabled()) {
+                    log.debug("Registry resource changed : " + changed);
+                }
+                invalidate(changed);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                    try {
+                        watchTree(changed);
+                    } catch (IOException e) {
+                        log.warn("Unable to watch the registry directory " + changed
+                                + ", hence the resources are not cached anymore", e);
+                        enabled = false;
+                        clear();
+                    }
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+* Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+*
+* WSO2 Inc. licenses this file to you under the Apache License,
+* Version 2.0 (the "License"); you may not use this file except
+* in compliance with the License.
+* you may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied. See the License for the
+* specific language governing permissions and limitations
+*
+*/
+
+package org.wso2.micro.integrator.registry;
+
+/**
+ * JMX view of the registry resource cache, which exposes the cache statistics and the lookup latencies, so that the
+ * lookup latency can be compared with the cache enabled and disabled.
+ */
+public interface RegistryResourceCacheMBean {
+
+    /**
+     * @return number of the resources in the cache
+     */
+    int getSize();
+
+    /**
+     * @return number of the lookups served from the cache
+     */
+    long getHitCount();
+
+    /**
+     * @return number of the lookups which read the resource
+     */
+    long getMissCount();
+
+    /**
+     * @return number of the cached resources dropped due to the changes in the registry
+     */
+    long getInvalidationCount();
+
+    /**
+     * @return average time in microseconds taken by the lookups served from the cache
+     */
+    double getAverageHitLatency();
+
+    /**
+     * @return average time in microseconds taken by the lookups which read the resource
+     */
+    double getAverageMissLatency();
+
+    /**
+     * Drops all the cached resources.
+     */
+    void clear();
+
+    /**
+     * Resets the statistics of the cache.
+     */
+    void resetStatistics();
+}
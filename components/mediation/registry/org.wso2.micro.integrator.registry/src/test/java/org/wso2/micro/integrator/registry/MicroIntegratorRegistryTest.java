@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.registry;
+
+import org.apache.axiom.om.OMElement;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import static org.wso2.micro.integrator.registry.RegistryResourceCacheTest.delete;
+import static org.wso2.micro.integrator.registry.RegistryResourceCacheTest.waitUntil;
+import static org.wso2.micro.integrator.registry.RegistryResourceCacheTest.write;
+
+/**
+ * Tests the lookups of the file system based registry served from the resource cache.
+ */
+public class MicroIntegratorRegistryTest {
+
+    private static final String KEY = "gov:xslt/transform.xml";
+
+    private static final String WATCHER_THREAD_NAME = "registry-resource-watcher";
+
+    private String carbonHome;
+
+    private Path home;
+
+    private Path resource;
+
+    private MicroIntegratorRegistry registry;
+
+    @Before
+    public void setUp() throws Exception {
+        home = Files.createTempDirectory("micro-integrator-registry").toAbsolutePath().normalize();
+        for (String root : new String[] { "local", "config", "governance" }) {
+            Files.createDirectories(home.resolve("registry").resolve(root));
+        }
+        resource = write(Files.createDirectories(home.resolve("registry").resolve("governance").resolve("xslt"))
+                                 .resolve("transform.xml"), "<a>1</a>");
+        carbonHome = System.getProperty("carbon.home");
+        System.setProperty("carbon.home", home.toString());
+        registry = new MicroIntegratorRegistry();
+        registry.init(new Properties());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        registry.destroy();
+        if (carbonHome != null) {
+            System.setProperty("carbon.home", carbonHome);
+        } else {
+            System.clearProperty("carbon.home");
+        }
+        delete(home.toFile());
+    }
+
+    @Test
+    public void testLookupReadAgainWhenFileChanges() throws Exception {
+        OMElement resource = (OMElement) registry.lookup(KEY);
+        Assert.assertEquals("1", resource.getText());
+        // the cached resource is not affected by the changes of the looked up one
+        resource.setText("changed");
+        Assert.assertNotSame(resource, registry.lookup(KEY));
+        Assert.assertEquals("1", lookupText());
+
+        write(this.resource, "<a>2</a>");
+        waitUntil("the changed resource to be read", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return "2".equals(lookupText());
+            }
+        });
+    }
+
+    @Test
+    public void testLookupAfterUpdateThroughRegistry() throws Exception {
+        Assert.assertEquals("1", lookupText());
+        registry.updateResource(KEY, "<a>3</a>");
+        Assert.assertEquals("3", lookupText());
+    }
+
+    @Test
+    public void testResourcesNotCachedWhenDisabled() throws Exception {
+        registry.destroy();
+        registry = new MicroIntegratorRegistry();
+        Properties properties = new Properties();
+        properties.setProperty(MicroIntegratorRegistryConstants.RESOURCE_CACHE_ENABLED, "false");
+        registry.init(properties);
+
+        Assert.assertEquals("1", lookupText());
+        write(resource, "<a>4</a>");
+        Assert.assertEquals("4", lookupText());
+    }
+
+    @Test
+    public void testDestroyStopsWatching() throws Exception {
+        Assert.assertEquals("1", lookupText());
+        Assert.assertTrue(isWatcherAlive());
+
+        registry.destroy();
+        waitUntil("the watcher to stop", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return !isWatcherAlive();
+            }
+        });
+        // the resources are read without the cache afterwards
+        write(resource, "<a>5</a>");
+        Assert.assertEquals("5", lookupText());
+    }
+
+    private String lookupText() {
+        return ((OMElement) registry.lookup(KEY)).getText();
+    }
+
+    private static boolean isWatcherAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (WATCHER_THREAD_NAME.equals(thread.getName()) && thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.registry;
+
+import org.apache.axiom.om.OMNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static org.wso2.micro.integrator.registry.RegistryResourceCacheTest.delete;
+import static org.wso2.micro.integrator.registry.RegistryResourceCacheTest.write;
+
+/**
+ * Compares the latency of the registry lookups of an XSLT resource with the resource cache enabled and disabled,
+ * which is the lookup latency before the resources were cached. The benchmark is not run with the unit tests, run its
+ * main method with the test classpath instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistryLookupBenchmark {
+
+    private static final String KEY = "gov:xslt/transform.xslt";
+
+    @Param({"true", "false"})
+    public boolean cacheEnabled;
+
+    /**
+     * The number of the templates in the stylesheet.
+     */
+    @Param({"5", "500"})
+    public int templates;
+
+    private String carbonHome;
+
+    private Path home;
+
+    private MicroIntegratorRegistry registry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        home = Files.createTempDirectory("registry-lookup-benchmark").toAbsolutePath().normalize();
+        for (String root : new String[] { "local", "config", "governance" }) {
+            Files.createDirectories(home.resolve("registry").resolve(root));
+        }
+        write(Files.createDirectories(home.resolve("registry").resolve("governance").resolve("xslt"))
+                      .resolve("transform.xslt"), stylesheet(templates));
+        carbonHome = System.getProperty("carbon.home");
+        System.setProperty("carbon.home", home.toString());
+        registry = new MicroIntegratorRegistry();
+        Properties properties = new Properties();
+        properties.setProperty(MicroIntegratorRegistryConstants.RESOURCE_CACHE_ENABLED, String.valueOf(cacheEnabled));
+        registry.init(properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        registry.destroy();
+        if (carbonHome != null) {
+            System.setProperty("carbon.home", carbonHome);
+        } else {
+            System.clearProperty("carbon.home");
+        }
+        delete(home.toFile());
+    }
+
+    @Benchmark
+    public OMNode lookup() {
+        return registry.lookup(KEY);
+    }
+
+    private static String stylesheet(int templates) {
+        StringBuilder stylesheet = new StringBuilder(
+                "<xsl:stylesheet version=\"2.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                        + "<xsl:output method=\"xml\" indent=\"yes\"/>");
+        for (int i = 0; i < templates; i++) {
+            stylesheet.append("<xsl:template match=\"item").append(i).append("\"><result id=\"").append(i)
+                    .append("\"><xsl:value-of select=\"@name\"/><xsl:apply-templates/></result></xsl:template>");
+        }
+        return stylesheet.append("</xsl:stylesheet>").toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder().include(RegistryLookupBenchmark.class.getSimpleName()).build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.registry;
+
+import org.apache.axiom.om.OMAbstractFactory;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.util.AXIOMUtil;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+/**
+ * Tests that the resources cached by the RegistryResourceCache are dropped when their files are changed.
+ */
+public class RegistryResourceCacheTest {
+
+    /**
+     * Time to wait for a change to be seen, which the polling watch services of some platforms take seconds to see.
+     */
+    private static final long CHANGE_TIMEOUT = 30000;
+
+    private Path root;
+
+    private Path file;
+
+    private Path other;
+
+    private RegistryResourceCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        root = Files.createTempDirectory("registry-resource-cache").toAbsolutePath().normalize();
+        Path resourceDir = Files.createDirectories(root.resolve("xslt"));
+        Files.createDirectories(resourceDir.resolve(".metadata"));
+        file = write(resourceDir.resolve("transform.xml"), "<a>1</a>");
+        other = write(Files.createDirectories(root.resolve("wsdl")).resolve("other.xml"), "<b/>");
+        // the files are written before they are watched, so that their changes are not seen by the tests
+        cache = new RegistryResourceCache(Collections.singletonList(root));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.close();
+        delete(root.toFile());
+    }
+
+    @Test
+    public void testCachedResourceIsCopied() throws Exception {
+        cache.put(file, AXIOMUtil.stringToOM("<a><b>1</b></a>"), cache.getChangeCount());
+
+        OMElement resource = (OMElement) cache.get(file);
+        resource.addChild(OMAbstractFactory.getOMFactory().createOMElement("c", null));
+        Assert.assertNotSame(resource, cache.get(file));
+        Assert.assertEquals("<a><b>1</b></a>", cache.get(file).toString());
+        Assert.assertEquals(1, cache.getSize());
+    }
+
+    @Test
+    public void testResourceDroppedWhenFileChanges() throws Exception {
+        cache.put(file, AXIOMUtil.stringToOM("<a>1</a>"), cache.getChangeCount());
+        cache.put(other, AXIOMUtil.stringToOM("<b/>"), cache.getChangeCount());
+
+        write(file, "<a>2</a>");
+        waitUntil("the changed resource to be dropped", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return cache.get(file) == null;
+            }
+        });
+        // the resources of the other directories are kept
+        Assert.assertNotNull(cache.get(other));
+        Assert.assertTrue(cache.getInvalidationCount() >= 1);
+    }
+
+    @Test
+    public void testResourceDroppedWhenFileDeleted() throws Exception {
+        cache.put(file, AXIOMUtil.stringToOM("<a>1</a>"), cache.getChangeCount());
+
+        Files.delete(file);
+        waitUntil("the deleted resource to be dropped", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return cache.get(file) == null;
+            }
+        });
+    }
+
+    @Test
+    public void testResourcesDroppedWhenMetadataChanges() throws Exception {
+        cache.put(file, AXIOMUtil.stringToOM("<a>1</a>"), cache.getChangeCount());
+
+        write(file.resolveSibling(".metadata").resolve("transform.xml.meta"), "mediaType=application/xml");
+        waitUntil("the resource to be dropped with its metadata", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return cache.get(file) == null;
+            }
+        });
+    }
+
+    @Test
+    public void testResourceReadDuringChangeNotCached() throws Exception {
+        long changeCount = cache.getChangeCount();
+        // the resource is changed through the registry while it is being read
+        cache.invalidate(file);
+        cache.put(file, AXIOMUtil.stringToOM("<a>1</a>"), changeCount);
+        Assert.assertNull(cache.get(file));
+
+        cache.put(file, AXIOMUtil.stringToOM("<a>1</a>"), cache.getChangeCount());
+        Assert.assertNotNull(cache.get(file));
+    }
+
+    @Test
+    public void testOnlyResourcesUnderRootsCachable() throws Exception {
+        Assert.assertTrue(cache.isCachable(file));
+        Assert.assertFalse(cache.isCachable(root.getParent().resolve("transform.xml")));
+    }
+
+    @Test
+    public void testCloseStopsWatching() throws Exception {
+        cache.put(file, AXIOMUtil.stringToOM("<a>1</a>"), cache.getChangeCount());
+        Assert.assertTrue(cache.isWatching());
+
+        cache.close();
+        waitUntil("the watcher to stop", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return !cache.isWatching();
+            }
+        });
+        Assert.assertNull(cache.get(file));
+        Assert.assertFalse(cache.isCachable(file));
+        // closing again does nothing
+        cache.close();
+    }
+
+    static Path write(Path file, String content) throws IOException {
+        return Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void waitUntil(String condition, Callable<Boolean> check) throws Exception {
+        long deadline = System.currentTimeMillis() + CHANGE_TIMEOUT;
+        while (!check.call()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Timed out waiting for " + condition);
+            }
+            Thread.sleep(50);
+        }
+    }
+
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -55,6 +55,7 @@ import org.wso2.micro.integrator.websocket.transport.service.ServiceReferenceHol
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class WebSocketClientHandler extends SimpleChannelInboundHandler<Object> {
     private final WebSocketClientHandshaker handshaker;
@@ -65,6 +66,8 @@ public class WebSocketClientHandler extends SimpleChannelInboundHandler<Object>
     private ChannelHandlerContext ctx;
     private InboundResponseSender responseSender;
     private String tenantDomain;
+    private volatile long lastActivityTime = System.currentTimeMillis();
+    private final AtomicInteger leaseCount = new AtomicInteger();
 
     public void setTenantDomain(String tenantDomain) {
         this.tenantDomain = tenantDomain;
@@ -94,6 +97,44 @@ public class WebSocketClientHandler extends SimpleChannelInboundHandler<Object>
         this.responseSender = responseSender;
     }
 
+    /**
+     * Mark the connection as used by a sender until {@link #release()} is called.
+     */
+    public void lease() {
+        leaseCount.incrementAndGet();
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    public void release() {
+        leaseCount.decrementAndGet();
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    public boolean isLeased() {
+        return leaseCount.get() > 0;
+    }
+
+    /**
+     * @return Time at which a data frame was last sent or received on the connection.
+     */
+    public long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    /**
+     * @return Whether the connection is still open, or being opened, and the handshake has not failed.
+     */
+    public boolean isHealthy() {
+        if (handshakeFuture != null && handshakeFuture.isDone() && !handshakeFuture.isSuccess()) {
+            return false;
+        }
+        return ctx == null || ctx.channel().isActive();
+    }
+
+    public boolean isHandshakeComplete() {
+        return handshaker.isHandshakeComplete();
+    }
+
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) {
         handshakeFuture = ctx.newPromise();
@@ -229,6 +270,9 @@ public class WebSocketClientHandler extends SimpleChannelInboundHandler<Object>
         if (msg instanceof FullHttpResponse) {
             handleHandshake(ctx, (FullHttpResponse) msg);
         } else if (msg instanceof WebSocketFrame) {
+            if (msg instanceof TextWebSocketFrame || msg instanceof BinaryWebSocketFrame) {
+                lastActivityTime = System.currentTimeMillis();
+            }
             handleWebSocketFrame(ctx, (WebSocketFrame) msg);
         }
     }
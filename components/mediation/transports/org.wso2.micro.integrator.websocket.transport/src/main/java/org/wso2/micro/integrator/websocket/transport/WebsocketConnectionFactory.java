@@ -36,17 +36,19 @@ import io.netty.handler.codec.http.websocketx.WebSocketFrameAggregator;
 import io.netty.handler.codec.http.websocketx.WebSocketVersion;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.apache.axiom.om.OMElement;
 import org.apache.axis2.AxisFault;
 import org.apache.axis2.description.Parameter;
 import org.apache.axis2.description.TransportOutDescription;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.apache.synapse.commons.jmx.MBeanRegistrar;
 import org.wso2.micro.integrator.websocket.transport.utils.SSLUtil;
 
 import java.net.URI;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 import javax.net.ssl.SSLException;
 import javax.xml.namespace.QName;
 
@@ -54,8 +56,17 @@ public class WebsocketConnectionFactory {
 
     private static final Log log = LogFactory.getLog(WebsocketConnectionFactory.class);
 
+    /**
+     * Event loop group shared by the outbound connections of the WS and WSS transport senders which do not set the
+     * number of the event loop threads
+     */
+    private static EventLoopGroup sharedEventLoopGroup;
+    private static int sharedEventLoopGroupUsers;
+
     private final TransportOutDescription transportOut;
-    private ConcurrentHashMap<String, ConcurrentHashMap<String, WebSocketClientHandler>> channelHandlerPool = new ConcurrentHashMap<String, ConcurrentHashMap<String, WebSocketClientHandler>>();
+    private final WebsocketConnectionPool connectionPool;
+    private final EventLoopGroup eventLoopGroup;
+    private final boolean sharedEventLoop;
 
     public WebsocketConnectionFactory(TransportOutDescription transportOut) throws AxisFault {
         this.transportOut = transportOut;
@@ -80,27 +91,107 @@ public class WebsocketConnectionFactory {
                                 + WebsocketConstants.TRUST_STORE_PASSWORD + " from Transport configurations");
             }
         }
+        connectionPool = new WebsocketConnectionPool(
+                (int) getLongParameter(WebsocketConstants.WEBSOCKET_MAX_CONNECTIONS_PER_TARGET,
+                                       WebsocketConstants.WEBSOCKET_DEFAULT_MAX_CONNECTIONS_PER_TARGET),
+                getLongParameter(WebsocketConstants.WEBSOCKET_CONNECTION_WAIT_TIMEOUT,
+                                 WebsocketConstants.WEBSOCKET_DEFAULT_CONNECTION_WAIT_TIMEOUT),
+                getLongParameter(WebsocketConstants.WEBSOCKET_CONNECTION_IDLE_TIMEOUT,
+                                 WebsocketConstants.WEBSOCKET_DEFAULT_CONNECTION_IDLE_TIMEOUT));
+        int eventLoopThreads = (int) getLongParameter(WebsocketConstants.WEBSOCKET_CLIENT_EVENT_LOOP_THREADS, 0);
+        // a sender setting the number of the threads gets its own group, as the shared group is already sized
+        sharedEventLoop = eventLoopThreads <= 0;
+        if (sharedEventLoop) {
+            eventLoopGroup = acquireEventLoopGroup();
+        } else {
+            eventLoopGroup = new NioEventLoopGroup(
+                    eventLoopThreads, new DefaultThreadFactory("websocket-client-" + transportOut.getName()));
+        }
+        connectionPool.start(eventLoopGroup,
+                             getLongParameter(WebsocketConstants.WEBSOCKET_CONNECTION_HEALTH_CHECK_INTERVAL,
+                                              WebsocketConstants.WEBSOCKET_DEFAULT_CONNECTION_HEALTH_CHECK_INTERVAL));
+        MBeanRegistrar.getInstance()
+                .registerMBean(connectionPool, WebsocketConnectionPool.MBEAN_CATEGORY, transportOut.getName());
+    }
+
+    /**
+     * Get the shared event loop group, creating it with the Netty default number of threads if this is the first user.
+     */
+    private static synchronized EventLoopGroup acquireEventLoopGroup() {
+        if (sharedEventLoopGroup == null) {
+            sharedEventLoopGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("websocket-client"));
+        }
+        sharedEventLoopGroupUsers++;
+        return sharedEventLoopGroup;
+    }
+
+    private static synchronized void releaseEventLoopGroup() {
+        if (--sharedEventLoopGroupUsers == 0) {
+            sharedEventLoopGroup.shutdownGracefully();
+            sharedEventLoopGroup = null;
+        }
+    }
+
+    private long getLongParameter(String name, long defaultValue) {
+        Parameter parameter = transportOut.getParameter(name);
+        if (parameter == null || parameter.getValue() == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(parameter.getValue().toString().trim());
+        } catch (NumberFormatException e) {
+            log.warn("Invalid value " + parameter.getValue() + " for the parameter " + name + ". Using the default "
+                             + "value " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Close the connections opened by this factory, and release the event loop group.
+     */
+    public void shutdown() {
+        connectionPool.shutdown();
+        MBeanRegistrar.getInstance().unRegisterMBean(WebsocketConnectionPool.MBEAN_CATEGORY, transportOut.getName());
+        if (sharedEventLoop) {
+            releaseEventLoopGroup();
+        } else {
+            eventLoopGroup.shutdownGracefully();
+        }
     }
 
     public WebSocketClientHandler getChannelHandler(final URI uri, final String sourceIdentifier,
                                                     final boolean handshakePresent, final String dispatchSequence,
                                                     final String dispatchErrorSequence, final String contentType,
-                                                    final Map<String, Object> headers) throws InterruptedException {
-        WebSocketClientHandler channelHandler;
-        if (handshakePresent) {
+                                                    final Map<String, Object> headers)
+            throws InterruptedException, AxisFault {
+        WebSocketClientHandler channelHandler = null;
+        if (!handshakePresent) {
+            channelHandler = connectionPool.lease(getConnectionPoolKey(uri, headers), sourceIdentifier);
+        }
+        if (channelHandler == null) {
             channelHandler = cacheNewConnection(uri, sourceIdentifier, dispatchSequence, dispatchErrorSequence,
                                                 contentType, headers);
-        } else {
-            channelHandler = getChannelHandlerFromPool(sourceIdentifier, getClientHandlerIdentifier(uri));
             if (channelHandler == null) {
-                channelHandler = cacheNewConnection(uri, sourceIdentifier, dispatchSequence, dispatchErrorSequence,
-                                                    contentType, headers);
+                throw new AxisFault("Unable to open a connection to the WS endpoint " + uri);
             }
+            connectionPool.lease(channelHandler);
+        }
+        try {
+            channelHandler.handshakeFuture().sync();
+        } catch (Throwable e) {
+            connectionPool.release(channelHandler);
+            throw e;
         }
-        channelHandler.handshakeFuture().sync();
         return channelHandler;
     }
 
+    /**
+     * Return a connection obtained by {@link #getChannelHandler} to the pool, once the message is sent.
+     */
+    public void releaseChannelHandler(WebSocketClientHandler channelHandler) {
+        connectionPool.release(channelHandler);
+    }
+
     public String getClientHandlerIdentifier(final URI uri) {
         final String host = uri.getHost() == null ? "127.0.0.1" : uri.getHost();
         final int port = uri.getPort();
@@ -108,6 +199,37 @@ public class WebsocketConnectionFactory {
         return host.concat(String.valueOf(port)).concat(subscriberPath);
     }
 
+    /**
+     * Get the key of the connections to the given endpoint in the pool. The key is made of the endpoint URI and the
+     * custom handshake headers. The content type of the message is not a part of it, as it only selects the
+     * subprotocol when a new connection is opened, hence the messages of a source share its connection whatever their
+     * content types are.
+     *
+     * @param uri     endpoint URI
+     * @param headers custom headers of the handshake request
+     * @return key of the target in the pool
+     */
+    static String getConnectionPoolKey(final URI uri, final Map<String, Object> headers) {
+        String scheme = uri.getScheme() == null ? WebsocketConstants.WS : uri.getScheme().toLowerCase();
+        String host = uri.getHost() == null ? "127.0.0.1" : uri.getHost().toLowerCase();
+        int port = uri.getPort();
+        if (port < 0) {
+            port = WebsocketConstants.WSS.equals(scheme) ?
+                    WebsocketConstants.WEBSOCKET_DEFAULT_WSS_PORT :
+                    WebsocketConstants.WEBSOCKET_DEFAULT_WS_PORT;
+        }
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        StringBuilder key = new StringBuilder(scheme).append("://").append(host).append(':').append(port).append(path);
+        if (uri.getRawQuery() != null) {
+            key.append('?').append(uri.getRawQuery());
+        }
+        if (headers != null && !headers.isEmpty()) {
+            // sorted, so that the same headers give the same key
+            key.append('|').append(new TreeMap<>(headers));
+        }
+        return key.toString();
+    }
+
     public WebSocketClientHandler cacheNewConnection(final URI uri, final String sourceIdentifier,
                                                      String dispatchSequence, String dispatchErrorSequence,
                                                      String contentType, Map<String, Object> headers) {
@@ -187,14 +309,13 @@ public class WebsocketConnectionFactory {
                 }
             }
 
-            final EventLoopGroup group = new NioEventLoopGroup();
             handler = new WebSocketClientHandler(WebSocketClientHandshakerFactory
                                                          .newHandshaker(uri, WebSocketVersion.V13, contentType != null ?
                                                                  SubprotocolBuilderUtil
                                                                          .contentTypeToSyanapeSubprotocol(contentType) :
                                                                  null, false, defaultHttpHeaders));
             Bootstrap b = new Bootstrap();
-            b.group(group).channel(NioSocketChannel.class).handler(new ChannelInitializer<SocketChannel>() {
+            b.group(eventLoopGroup).channel(NioSocketChannel.class).handler(new ChannelInitializer<SocketChannel>() {
                 @Override
                 protected void initChannel(SocketChannel ch) {
                     ChannelPipeline p = ch.pipeline();
@@ -206,17 +327,31 @@ public class WebsocketConnectionFactory {
                 }
             });
 
-            Channel ch = b.connect(uri.getHost(), port).sync().channel();
+            final String connectionPoolKey = getConnectionPoolKey(uri, headers);
+            if (!connectionPool.reserve(connectionPoolKey)) {
+                log.error("Maximum number of connections to the WS endpoint " + uri + " are open. Unable to open a "
+                                  + "new connection.");
+                return null;
+            }
+            Channel ch;
+            boolean registered = false;
+            try {
+                ch = b.connect(uri.getHost(), port).sync().channel();
+                connectionPool.register(connectionPoolKey, sourceIdentifier, handler);
+                registered = true;
+            } finally {
+                if (!registered) {
+                    connectionPool.cancel(connectionPoolKey);
+                }
+            }
             ch.closeFuture().addListener(new ChannelFutureListener() {
                 @Override
                 public void operationComplete(ChannelFuture channelFuture) throws Exception {
-                    group.shutdownGracefully();
-                    removeChannelHandler(sourceIdentifier, getClientHandlerIdentifier(uri));
+                    connectionPool.connectionClosed(connectionPoolKey, sourceIdentifier, handler);
                 }
             });
             handler.setDispatchSequence(dispatchSequence);
             handler.setDispatchErrorSequence(dispatchErrorSequence);
-            addChannelHandler(sourceIdentifier, getClientHandlerIdentifier(uri), handler);
             return handler;
 
         } catch (InterruptedException e) {
@@ -232,31 +367,4 @@ public class WebsocketConnectionFactory {
         log.error(errorMsg);
         throw new AxisFault(errorMsg);
     }
-
-    public void addChannelHandler(String sourceIdentifier, String clientIdentifier,
-                                  WebSocketClientHandler clientHandler) {
-        ConcurrentHashMap<String, WebSocketClientHandler> handlerMap = channelHandlerPool.get(sourceIdentifier);
-        if (handlerMap == null) {
-            handlerMap = new ConcurrentHashMap<String, WebSocketClientHandler>();
-            handlerMap.put(clientIdentifier, clientHandler);
-            channelHandlerPool.put(sourceIdentifier, handlerMap);
-        } else {
-            handlerMap.put(clientIdentifier, clientHandler);
-        }
-    }
-
-    public WebSocketClientHandler getChannelHandlerFromPool(String sourceIdentifier, String clientIdentifier) {
-        ConcurrentHashMap<String, WebSocketClientHandler> handlerMap = channelHandlerPool.get(sourceIdentifier);
-        if (handlerMap == null) {
-            return null;
-        } else {
-            return handlerMap.get(clientIdentifier);
-        }
-    }
-
-    public void removeChannelHandler(String sourceIdentifier, String clientIdentifier) {
-        ConcurrentHashMap<String, WebSocketClientHandler> handlerMap = channelHandlerPool.get(sourceIdentifier);
-        handlerMap.remove(clientIdentifier);
-    }
-
 }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.websocket.transport;
+
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.EventLoopGroup;
+import io.netty.handler.codec.http.websocketx.CloseWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.PingWebSocketFrame;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of the outbound WebSocket connections, grouped by the target URI and the handshake headers. A connection
+ * belongs to the source which opened it, since the frames received on it are dispatched back to that source, hence the
+ * pool bounds the number of connections opened to each target rather than sharing the connections between the sources.
+ * A target is removed once its last connection is closed.
+ * <p>
+ * The connections are checked periodically on the event loop. The connections which are closed or failed the
+ * handshake are removed, the connections idle for longer than the idle timeout are closed, and the others are pinged
+ * so that half-open connections are detected.
+ */
+public class WebsocketConnectionPool implements WebsocketConnectionPoolMBean {
+
+    private static final Log log = LogFactory.getLog(WebsocketConnectionPool.class);
+
+    public static final String MBEAN_CATEGORY = "WebsocketConnectionPool";
+
+    private final ConcurrentHashMap<String, TargetConnections> targets = new ConcurrentHashMap<>();
+
+    private final int maxConnectionsPerTarget;
+
+    private final long connectionWaitTimeout;
+
+    private final long idleTimeout;
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    private final AtomicInteger pendingConnections = new AtomicInteger();
+
+    private final LongAdder evictedConnections = new LongAdder();
+
+    private final LongAdder rejectedConnections = new LongAdder();
+
+    private ScheduledFuture<?> healthCheckTask;
+
+    /**
+     * @param maxConnectionsPerTarget maximum number of the connections open to a target, or 0 to not limit them
+     * @param connectionWaitTimeout   maximum time in milliseconds to wait for a free slot when the maximum is reached
+     * @param idleTimeout             time in milliseconds after which an idle connection is closed, or 0 to keep
+     *                                the idle connections open
+     */
+    public WebsocketConnectionPool(int maxConnectionsPerTarget, long connectionWaitTimeout, long idleTimeout) {
+        this.maxConnectionsPerTarget = maxConnectionsPerTarget;
+        this.connectionWaitTimeout = connectionWaitTimeout;
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Schedule the health check of the connections on the given event loop group.
+     *
+     * @param eventLoopGroup      event loop group of the connections
+     * @param healthCheckInterval interval in milliseconds between the health checks, or 0 to disable them
+     */
+    public void start(EventLoopGroup eventLoopGroup, long healthCheckInterval) {
+        if (healthCheckInterval > 0) {
+            healthCheckTask = eventLoopGroup.scheduleAtFixedRate(this::checkConnections, healthCheckInterval,
+                                                                 healthCheckInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Close all the connections and stop the health check.
+     */
+    public void shutdown() {
+        if (healthCheckTask != null) {
+            healthCheckTask.cancel(false);
+        }
+        for (TargetConnections target : targets.values()) {
+            for (WebSocketClientHandler handler : target.connections.values()) {
+                ChannelHandlerContext ctx = handler.getChannelHandlerContext();
+                if (ctx != null) {
+                    ctx.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lease the connection opened by the given source to the given target, if it is healthy.
+     *
+     * @param targetKey        target URI and handshake headers
+     * @param sourceIdentifier source which opened the connection
+     * @return the leased connection, or null if there is no healthy connection
+     */
+    public WebSocketClientHandler lease(String targetKey, String sourceIdentifier) {
+        TargetConnections target = targets.get(targetKey);
+        if (target == null) {
+            return null;
+        }
+        WebSocketClientHandler handler = target.connections.get(sourceIdentifier);
+        if (handler == null || !handler.isHealthy()) {
+            return null;
+        }
+        lease(handler);
+        return handler;
+    }
+
+    public void lease(WebSocketClientHandler handler) {
+        handler.lease();
+        activeConnections.incrementAndGet();
+    }
+
+    public void release(WebSocketClientHandler handler) {
+        handler.release();
+        activeConnections.decrementAndGet();
+    }
+
+    /**
+     * Reserve a slot for a new connection to the given target, waiting for the connection wait timeout if the maximum
+     * number of connections are open. A reserved slot should be either registered or cancelled. A slot is always
+     * reserved when the connections are not limited.
+     *
+     * @param targetKey target URI and handshake headers
+     * @return whether a slot was reserved
+     * @throws InterruptedException if interrupted while waiting for a slot
+     */
+    public boolean reserve(String targetKey) throws InterruptedException {
+        // the target is kept while a slot is being reserved, so that the slot is not taken from a removed target
+        TargetConnections target = targets.compute(targetKey, (key, existing) -> {
+            TargetConnections connections =
+                    existing != null ? existing : new TargetConnections(maxConnectionsPerTarget);
+            connections.users++;
+            return connections;
+        });
+        pendingConnections.incrementAndGet();
+        boolean reserved = false;
+        try {
+            reserved = target.permits == null
+                    || target.permits.tryAcquire(connectionWaitTimeout, TimeUnit.MILLISECONDS);
+        } finally {
+            if (!reserved) {
+                pendingConnections.decrementAndGet();
+                rejectedConnections.increment();
+                removeUser(targetKey);
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * Add a connection opened in a reserved slot. The connection should be reported by {@link #connectionClosed}
+     * once closed.
+     */
+    public void register(String targetKey, String sourceIdentifier, WebSocketClientHandler handler) {
+        targets.get(targetKey).connections.put(sourceIdentifier, handler);
+        openConnections.incrementAndGet();
+        pendingConnections.decrementAndGet();
+    }
+
+    /**
+     * Free a reserved slot, when the connection could not be opened.
+     */
+    public void cancel(String targetKey) {
+        pendingConnections.decrementAndGet();
+        targets.get(targetKey).releasePermit();
+        removeUser(targetKey);
+    }
+
+    public void connectionClosed(String targetKey, String sourceIdentifier, WebSocketClientHandler handler) {
+        TargetConnections target = targets.get(targetKey);
+        target.connections.remove(sourceIdentifier, handler);
+        target.releasePermit();
+        openConnections.decrementAndGet();
+        removeUser(targetKey);
+    }
+
+    /**
+     * Release a reserved slot or a closed connection of the target, removing the target if it was the last one.
+     */
+    private void removeUser(String targetKey) {
+        targets.computeIfPresent(targetKey, (key, target) -> --target.users == 0 ? null : target);
+    }
+
+    private void checkConnections() {
+        try {
+            long now = System.currentTimeMillis();
+            for (TargetConnections target : targets.values()) {
+                for (WebSocketClientHandler handler : target.connections.values()) {
+                    ChannelHandlerContext ctx = handler.getChannelHandlerContext();
+                    if (ctx == null || handler.isLeased()) {
+                        continue;
+                    }
+                    if (!handler.isHealthy()) {
+                        evictedConnections.increment();
+                        ctx.close();
+                    } else if (!handler.isHandshakeComplete()) {
+                        continue;
+                    } else if (idleTimeout > 0 && now - handler.getLastActivityTime() > idleTimeout) {
+                        if (log.isDebugEnabled()) {
+                            log.debug("Closing the idle WebSocket connection on context id : " + ctx.channel());
+                        }
+                        evictedConnections.increment();
+                        ctx.channel().writeAndFlush(new CloseWebSocketFrame()).addListener(ChannelFutureListener.CLOSE);
+                    } else {
+                        ctx.channel().writeAndFlush(new PingWebSocketFrame())
+                                .addListener(ChannelFutureListener.CLOSE_ON_FAILURE);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error while checking the health of the WebSocket connections", e);
+        }
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return Math.max(openConnections.get() - activeConnections.get(), 0);
+    }
+
+    @Override
+    public int getPendingConnections() {
+        return pendingConnections.get();
+    }
+
+    @Override
+    public int getTargetCount() {
+        return targets.size();
+    }
+
+    @Override
+    public long getEvictedConnections() {
+        return evictedConnections.sum();
+    }
+
+    @Override
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * Connections open to a target URI and handshake headers, by the source which opened them.
+     */
+    private static class TargetConnections {
+
+        final ConcurrentHashMap<String, WebSocketClientHandler> connections = new ConcurrentHashMap<>();
+
+        /**
+         * Free slots of the target, or null if the connections are not limited.
+         */
+        final Semaphore permits;
+
+        /**
+         * Number of the reserved slots and the open connections, which is only updated while the target is locked
+         * in the targets map.
+         */
+        int users;
+
+        TargetConnections(int maxConnections) {
+            this.permits = maxConnections > 0 ? new Semaphore(maxConnections) : null;
+        }
+
+        void releasePermit() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.websocket.transport;
+
+/**
+ * MBean interface to expose the state of the outbound WebSocket connection pool using JMX.
+ */
+public interface WebsocketConnectionPoolMBean {
+
+    /**
+     * @return Number of the open connections which are being used to send a message.
+     */
+    int getActiveConnections();
+
+    /**
+     * @return Number of the open connections which are not being used to send a message.
+     */
+    int getIdleConnections();
+
+    /**
+     * @return Number of the connections being established, including the ones waiting for a free slot.
+     */
+    int getPendingConnections();
+
+    /**
+     * @return Number of the targets, by URI and handshake headers, having open or pending connections.
+     */
+    int getTargetCount();
+
+    /**
+     * @return Number of the connections closed by the pool as they were idle or unhealthy.
+     */
+    long getEvictedConnections();
+
+    /**
+     * @return Number of the connections refused as the maximum connections to the target were open.
+     */
+    long getRejectedConnections();
+}
@@ -51,4 +51,19 @@ public class WebsocketConstants {
     public static final String WEBSOCKET_SUBSCRIBER_PATH = "websocket.subscriber.path";
 
     public static final String WEBSOCKET_CUSTOM_HEADER_PREFIX = "websocket.custom.header.";
+
+    public static final String WEBSOCKET_CLIENT_EVENT_LOOP_THREADS = "ws.client.event.loop.threads";
+    public static final String WEBSOCKET_MAX_CONNECTIONS_PER_TARGET = "ws.max.connections.per.target";
+    public static final String WEBSOCKET_CONNECTION_WAIT_TIMEOUT = "ws.connection.wait.timeout";
+    public static final String WEBSOCKET_CONNECTION_IDLE_TIMEOUT = "ws.connection.idle.timeout";
+    public static final String WEBSOCKET_CONNECTION_HEALTH_CHECK_INTERVAL = "ws.connection.health.check.interval";
+
+    /**
+     * The connections to a target are not limited unless the maximum is configured, as each of them belongs to a
+     * client session of its own.
+     */
+    public static final int WEBSOCKET_DEFAULT_MAX_CONNECTIONS_PER_TARGET = 0;
+    public static final long WEBSOCKET_DEFAULT_CONNECTION_WAIT_TIMEOUT = 10000;
+    public static final long WEBSOCKET_DEFAULT_CONNECTION_IDLE_TIMEOUT = 0;
+    public static final long WEBSOCKET_DEFAULT_CONNECTION_HEALTH_CHECK_INTERVAL = 30000;
 }
@@ -120,11 +120,12 @@ public class WebsocketTransportSender extends AbstractTransportSender {
             }
         }
 
+        WebSocketClientHandler clientHandler = null;
         try {
             if (log.isDebugEnabled()) {
                 log.debug("Fetching a Connection from the WS(WSS) Connection Factory.");
             }
-            WebSocketClientHandler clientHandler = connectionFactory
+            clientHandler = connectionFactory
                     .getChannelHandler(new URI(targetEPR), sourceIdentier, handshakePresent, responceDispatchSequence,
                                        responceErrorSequence, messageType, customHeaders);
 
@@ -187,6 +188,18 @@ public class WebsocketTransportSender extends AbstractTransportSender {
             log.error("Error writting to the websocket channel", e);
         } catch (XMLStreamException e) {
             handleException("Error while building message", e);
+        } finally {
+            if (clientHandler != null) {
+                connectionFactory.releaseChannelHandler(clientHandler);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (connectionFactory != null) {
+            connectionFactory.shutdown();
         }
+        super.stop();
     }
 }
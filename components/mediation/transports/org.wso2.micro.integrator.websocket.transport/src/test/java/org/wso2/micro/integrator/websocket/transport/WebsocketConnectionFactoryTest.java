@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.websocket.transport;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tests the keys of the targets in the connection pool, which are made of the endpoint URI and the handshake headers.
+ */
+public class WebsocketConnectionFactoryTest {
+
+    @Test
+    public void testKeyOfEndpointUri() {
+
+        Assert.assertEquals(key("ws://localhost:80/echo"), key("ws://LOCALHOST/echo"));
+        Assert.assertEquals(key("wss://localhost:443/echo"), key("wss://localhost/echo"));
+        Assert.assertEquals(key("ws://localhost:8080"), key("ws://localhost:8080/"));
+        Assert.assertFalse(key("ws://localhost/echo").equals(key("wss://localhost/echo")));
+        Assert.assertFalse(key("ws://localhost:8080/echo").equals(key("ws://localhost:8081/echo")));
+        Assert.assertFalse(key("ws://localhost/echo").equals(key("ws://localhost/echo?room=1")));
+        Assert.assertFalse(key("ws://localhost/echo?room=1").equals(key("ws://localhost/echo?room=2")));
+    }
+
+    @Test
+    public void testKeyOfHandshakeHeaders() {
+
+        URI uri = URI.create("ws://localhost:8080/echo");
+        Map<String, Object> headers = new LinkedHashMap<>();
+        headers.put("Authorization", "Bearer 1");
+        headers.put("X-Tenant", "carbon.super");
+        Map<String, Object> reordered = new LinkedHashMap<>();
+        reordered.put("X-Tenant", "carbon.super");
+        reordered.put("Authorization", "Bearer 1");
+
+        String key = WebsocketConnectionFactory.getConnectionPoolKey(uri, headers);
+        Assert.assertEquals(key, WebsocketConnectionFactory.getConnectionPoolKey(uri, reordered));
+        // no headers
+        Assert.assertEquals(key("ws://localhost:8080/echo"),
+                            WebsocketConnectionFactory.getConnectionPoolKey(uri, null));
+        Assert.assertFalse(key.equals(key("ws://localhost:8080/echo")));
+        reordered.put("Authorization", "Bearer 2");
+        Assert.assertFalse(key.equals(WebsocketConnectionFactory.getConnectionPoolKey(uri, reordered)));
+    }
+
+    private static String key(String uri) {
+
+        return WebsocketConnectionFactory.getConnectionPoolKey(URI.create(uri), Collections.<String, Object>emptyMap());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.micro.integrator.websocket.transport;
+
+import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.websocketx.WebSocketClientHandshakerFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketVersion;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Tests the connections reserved, registered and closed in the pool, and the targets removed once their last
+ * connection is closed.
+ */
+public class WebsocketConnectionPoolTest {
+
+    private static final String TARGET = "ws://localhost:9000/echo";
+
+    @Test
+    public void testTargetRemovedWhenLastConnectionClosed() throws Exception {
+
+        WebsocketConnectionPool pool = new WebsocketConnectionPool(2, 0, 0);
+        WebSocketClientHandler first = newHandler();
+        WebSocketClientHandler second = newHandler();
+        Assert.assertTrue(pool.reserve(TARGET));
+        pool.register(TARGET, "source1", first);
+        Assert.assertTrue(pool.reserve(TARGET));
+        pool.register(TARGET, "source2", second);
+        Assert.assertEquals(1, pool.getTargetCount());
+        Assert.assertEquals(2, pool.getIdleConnections());
+
+        // a connection is leased only to the source which opened it
+        Assert.assertSame(first, pool.lease(TARGET, "source1"));
+        Assert.assertNull(pool.lease(TARGET, "source3"));
+        Assert.assertEquals(1, pool.getActiveConnections());
+        pool.release(first);
+
+        pool.connectionClosed(TARGET, "source1", first);
+        Assert.assertEquals(1, pool.getTargetCount());
+        Assert.assertNull(pool.lease(TARGET, "source1"));
+        pool.connectionClosed(TARGET, "source2", second);
+        Assert.assertEquals(0, pool.getTargetCount());
+        Assert.assertNull(pool.lease(TARGET, "source2"));
+        Assert.assertEquals(0, pool.getIdleConnections());
+    }
+
+    @Test
+    public void testTargetRemovedWhenReservationFails() throws Exception {
+
+        WebsocketConnectionPool pool = new WebsocketConnectionPool(1, 0, 0);
+        Assert.assertTrue(pool.reserve(TARGET));
+        Assert.assertFalse("Slot reserved above the maximum", pool.reserve(TARGET));
+        Assert.assertEquals(1, pool.getRejectedConnections());
+        Assert.assertEquals(1, pool.getPendingConnections());
+        Assert.assertEquals(1, pool.getTargetCount());
+
+        // the connection could not be opened
+        pool.cancel(TARGET);
+        Assert.assertEquals(0, pool.getPendingConnections());
+        Assert.assertEquals(0, pool.getTargetCount());
+
+        // the slot is free again
+        Assert.assertTrue(pool.reserve(TARGET));
+        pool.cancel(TARGET);
+        Assert.assertEquals(0, pool.getTargetCount());
+    }
+
+    @Test
+    public void testConnectionsNotLimitedByDefault() throws Exception {
+
+        WebsocketConnectionPool pool = new WebsocketConnectionPool(
+                WebsocketConstants.WEBSOCKET_DEFAULT_MAX_CONNECTIONS_PER_TARGET, 0, 0);
+        int connections = 5000;
+        for (int i = 0; i < connections; i++) {
+            Assert.assertTrue("Slot not reserved for connection " + i, pool.reserve(TARGET));
+            pool.register(TARGET, "source" + i, newHandler());
+        }
+        Assert.assertEquals(connections, pool.getIdleConnections());
+        Assert.assertEquals(0, pool.getRejectedConnections());
+    }
+
+    @Test
+    public void testConcurrentConnections() throws Exception {
+
+        final WebsocketConnectionPool pool = new WebsocketConnectionPool(3, 5000, 0);
+        final int threads = 8;
+        final int connections = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<String> errors = new ArrayList<>();
+        List<Thread> sources = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final String source = "source" + t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+
+                    try {
+                        start.await();
+                        for (int i = 0; i < connections; i++) {
+                            String target = "ws://localhost:" + (9000 + i % 4) + "/echo";
+                            if (!pool.reserve(target)) {
+                                throw new IllegalStateException("Slot of " + target + " not reserved");
+                            }
+                            if (i % 5 == 0) {
+                                pool.cancel(target);
+                                continue;
+                            }
+                            WebSocketClientHandler handler = newHandler();
+                            pool.register(target, source, handler);
+                            if (pool.lease(target, source) != handler) {
+                                throw new IllegalStateException("Connection of " + source + " not leased");
+                            }
+                            pool.release(handler);
+                            pool.connectionClosed(target, source, handler);
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(String.valueOf(e));
+                        }
+                    }
+                }
+            });
+            thread.start();
+            sources.add(thread);
+        }
+        start.countDown();
+        for (Thread source : sources) {
+            source.join();
+        }
+
+        Assert.assertEquals(new ArrayList<String>(), errors);
+        Assert.assertEquals("Targets left after the connections were closed", 0, pool.getTargetCount());
+        Assert.assertEquals(0, pool.getPendingConnections());
+        Assert.assertEquals(0, pool.getActiveConnections());
+        Assert.assertEquals(0, pool.getIdleConnections());
+        Assert.assertEquals(0, pool.getRejectedConnections());
+    }
+
+    private static WebSocketClientHandler newHandler() {
+
+        return new WebSocketClientHandler(WebSocketClientHandshakerFactory.newHandshaker(
+                URI.create(TARGET), WebSocketVersion.V13, null, false, new DefaultHttpHeaders()));
+    }
+}
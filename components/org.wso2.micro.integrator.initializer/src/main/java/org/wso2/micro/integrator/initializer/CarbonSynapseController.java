@@ -42,7 +42,9 @@ import org.apache.synapse.config.SynapsePropertiesLoader;
 import org.apache.synapse.core.axis2.ProxyService;
 import org.apache.synapse.deployers.ClassMediatorDeployer;
 import org.apache.synapse.deployers.ExtensionDeployer;
+import org.apache.synapse.registry.Registry;
 import org.wso2.carbon.base.ServerConfiguration;
+import org.wso2.micro.integrator.registry.MicroIntegratorRegistry;
 
 import java.io.File;
 import java.io.IOException;
@@ -180,6 +182,17 @@ public class CarbonSynapseController extends Axis2SynapseController {
         super.destroySynapseEnvironment();
     }
 
+    @Override
+    public void destroySynapseConfiguration() {
+
+        Registry registry = synapseConfiguration != null ? synapseConfiguration.getRegistry() : null;
+        super.destroySynapseConfiguration();
+        // stops watching the registry resources, since the registry does not get destroyed with the configuration
+        if (registry instanceof MicroIntegratorRegistry) {
+            ((MicroIntegratorRegistry) registry).destroy();
+        }
+    }
+
     private void addServerIPAndHostEnrties(SynapseConfiguration configuration) {
         String hostName = ServiceBusInitializer.getServerConfigurationInformation().getHostName();
         String ipAddress = ServiceBusInitializer.getServerConfigurationInformation().getIpAddress();
@@ -120,6 +120,22 @@ public class ODataQueryTestCase extends DSSIntegrationTest {
         Assert.assertTrue(response[1].toString().contains("Yoshi"));
     }
 
+    @Test(groups = "wso2.dss", description = "filter, order by, skip, top and count query test")
+    public void validateCombinedQueryTestCase() throws Exception {
+        String endpoint = webAppUrl + "/odata/" + serviceName + "/" + configId
+                + "/CUSTOMERS?$filter=COUNTRY%20eq%20%27France%27%20and%20CREDITLIMIT%20gt%2080000"
+                + "&$orderby=CREDITLIMIT%20desc&$skip=1&$top=2&$count=true";
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "application/json");
+        Object[] response = sendGET(endpoint, headers);
+        Assert.assertEquals(response[0], ODataTestUtils.OK);
+        Assert.assertTrue(response[1].toString().contains("\"@odata.count\":6"));
+        Assert.assertTrue(response[1].toString().contains("La Rochelle Gifts"));
+        Assert.assertTrue(response[1].toString().contains("Auto Canal+ Petit"));
+        Assert.assertTrue(!response[1].toString().contains("Saveley & Henriot, Co."));
+        Assert.assertTrue(!response[1].toString().contains("La Corne D'abondance, Co."));
+    }
+
     @Test(groups = "wso2.dss", description = "skip token query test")
     public void validateSkipTokenQueryTestCase() throws Exception {
         String endpoint = webAppUrl + "/odata/" + serviceName + "/" + configId + "/CUSTOMERS?$skiptoken=2";
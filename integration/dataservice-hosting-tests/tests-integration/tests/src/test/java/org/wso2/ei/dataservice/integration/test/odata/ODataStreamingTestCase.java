@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2019, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ * WSO2 Inc. licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.wso2.ei.dataservice.integration.test.odata;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.ei.dataservice.integration.test.DSSIntegrationTest;
+
+/**
+ * This class contains test cases for the OData responses which are large enough to be streamed to the client while
+ * they are written.
+ */
+public class ODataStreamingTestCase extends DSSIntegrationTest {
+    private final String serviceName = "ODataStreamingSampleService";
+    private final String configId = "default";
+    private static final int ENTRY_COUNT = 2000;
+    private String webAppUrl;
+
+    @BeforeClass(alwaysRun = true)
+    public void serviceDeployment() throws Exception {
+        super.init();
+        webAppUrl = dssContext.getContextUrls().getWebAppURL();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void destroy() throws Exception {
+        deleteService(serviceName);
+        cleanup();
+    }
+
+    @Test(groups = "wso2.dss", description = "streamed response content type test")
+    public void validateStreamedResponseTestCase() throws Exception {
+        String endpoint = webAppUrl + "/odata/" + serviceName + "/" + configId + "/LOGENTRIES";
+        HttpGet httpGet = new HttpGet(endpoint);
+        httpGet.setHeader("Accept", "application/json");
+        HttpResponse httpResponse = new DefaultHttpClient().execute(httpGet);
+        String content = EntityUtils.toString(httpResponse.getEntity());
+
+        Assert.assertEquals(httpResponse.getStatusLine().getStatusCode(), ODataTestUtils.OK);
+        Header contentType = httpResponse.getFirstHeader("Content-Type");
+        Assert.assertNotNull(contentType, "Content-Type of the streamed response is missing");
+        Assert.assertTrue(contentType.getValue().startsWith("application/json"),
+                          "Content-Type of the streamed response is " + contentType.getValue());
+        // larger than the size of a response kept in memory, which is 64 KB
+        Assert.assertTrue(content.length() > 64 * 1024, "Response is not large enough to be streamed");
+        JSONArray entries = (JSONArray) ((JSONObject) new JSONParser().parse(content)).get("value");
+        Assert.assertEquals(entries.size(), ENTRY_COUNT);
+    }
+}